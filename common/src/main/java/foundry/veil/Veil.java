@@ -19,6 +19,8 @@ public class Veil {
     public static final boolean DEBUG;
     public static final boolean IMGUI;
     public static final boolean VERBOSE_SHADER_ERRORS;
+    public static final boolean MODIFIED_SHADER_CACHE;
+    public static final boolean PROGRAM_BINARY_CACHE;
 
     private static final VeilPlatform PLATFORM = ServiceLoader.load(VeilPlatform.class).findFirst().orElseThrow(() -> new RuntimeException("Veil expected platform implementation"));
 
@@ -28,6 +30,8 @@ public class Veil {
         DEBUG = System.getProperty("veil.debug") != null;
         IMGUI = System.getProperty("veil.disableImgui") == null;
         VERBOSE_SHADER_ERRORS = System.getProperty("veil.verboseShaderErrors") != null;
+        MODIFIED_SHADER_CACHE = System.getProperty("veil.modifiedShaderCache") != null;
+        PROGRAM_BINARY_CACHE = System.getProperty("veil.disableProgramBinaryCache") == null;
     }
 
     @ApiStatus.Internal
@@ -59,6 +59,7 @@ public class VeilClient {
                 editorManager.add(new TextureEditor());
                 editorManager.add(new OpenCLEditor());
                 editorManager.add(new DeviceInfoViewer());
+                editorManager.add(new GpuProfilerEditor());
                 editorManager.add(new DeferredEditor());
                 editorManager.add(new LightEditor());
                 editorManager.add(new FramebufferEditor());
@@ -38,4 +38,9 @@ public class AnimationProperties {
     public float getNumProperty(String name) {
         return this.numberProperties.getFloat(name);
     }
+
+    public void clear() {
+        this.objectProperties.clear();
+        this.numberProperties.clear();
+    }
 }
@@ -0,0 +1,146 @@
+package foundry.veil.api.client.graveyard;
+
+import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeleton;
+import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeletonParent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Ticks the skeletons of many entities in parallel.</p>
+ * <p>Animation properties are collected on the calling thread since they read entity state, then the skeletons are split
+ * between the workers of a fork-join pool. Skeletons don't share any state, so they can be ticked in any order.
+ * {@link #tick(List)} waits for every skeleton that was started to finish, so the new poses are visible to the render thread
+ * once it returns.</p>
+ * <p>Skeletons that haven't started by the deadline are skipped until the next tick instead of holding up the game.</p>
+ */
+public class AnimationScheduler implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 4;
+
+    private final ForkJoinPool pool;
+    private final long deadline;
+    private final List<AnimationProperties> properties;
+    private final AtomicInteger skipped;
+
+    /**
+     * Creates a scheduler that uses all but one processor and gives up on skeletons after a single game tick.
+     */
+    public AnimationScheduler() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 50, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param parallelism The number of worker threads to use
+     * @param deadline    The maximum time to start ticking skeletons in
+     * @param unit        The unit of the deadline
+     */
+    public AnimationScheduler(int parallelism, long deadline, TimeUnit unit) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Veil Animation Worker-" + thread.getPoolIndex());
+            thread.setContextClassLoader(AnimationScheduler.class.getClassLoader());
+            return thread;
+        }, null, false);
+        this.deadline = unit.toNanos(deadline);
+        this.properties = new ArrayList<>();
+        this.skipped = new AtomicInteger();
+    }
+
+    /**
+     * Ticks the skeletons of all specified parents and waits for them to finish.
+     *
+     * @param parents The entities to animate
+     */
+    public void tick(List<? extends InterpolatedSkeletonParent> parents) {
+        int count = parents.size();
+        while (this.properties.size() < count) {
+            this.properties.add(new AnimationProperties());
+        }
+
+        // Entities can only be read safely from the main thread, so collect everything the skeletons need first
+        for (int i = 0; i < count; i++) {
+            InterpolatedSkeletonParent parent = parents.get(i);
+            AnimationProperties properties = this.properties.get(i);
+            properties.clear();
+
+            InterpolatedSkeleton skeleton = parent.getSkeleton();
+            if (skeleton != null) {
+                skeleton.addAnimationProperties(properties, parent);
+            }
+        }
+
+        this.skipped.set(0);
+        TickTask task = new TickTask(parents, this.properties, this.skipped, 0, count, System.nanoTime() + this.deadline);
+        if (count <= BATCH_SIZE) {
+            // Not worth waking up the workers
+            task.tickRange();
+        } else {
+            this.pool.invoke(task);
+        }
+    }
+
+    /**
+     * @return The number of skeletons that missed the deadline during the last tick
+     */
+    public int getSkipped() {
+        return this.skipped.get();
+    }
+
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    private static class TickTask extends RecursiveAction {
+
+        private final List<? extends InterpolatedSkeletonParent> parents;
+        private final List<AnimationProperties> properties;
+        private final AtomicInteger skipped;
+        private final int start;
+        private final int end;
+        private final long deadline;
+
+        private TickTask(List<? extends InterpolatedSkeletonParent> parents, List<AnimationProperties> properties, AtomicInteger skipped, int start, int end, long deadline) {
+            this.parents = parents;
+            this.properties = properties;
+            this.skipped = skipped;
+            this.start = start;
+            this.end = end;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= BATCH_SIZE) {
+                this.tickRange();
+                return;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new TickTask(this.parents, this.properties, this.skipped, this.start, middle, this.deadline),
+                    new TickTask(this.parents, this.properties, this.skipped, middle, this.end, this.deadline));
+        }
+
+        private void tickRange() {
+            for (int i = this.start; i < this.end; i++) {
+                if (System.nanoTime() - this.deadline > 0) {
+                    this.skipped.addAndGet(this.end - i);
+                    return;
+                }
+
+                InterpolatedSkeleton skeleton = this.parents.get(i).getSkeleton();
+                if (skeleton != null) {
+                    skeleton.tick(this.properties.get(i));
+                }
+            }
+        }
+    }
+}
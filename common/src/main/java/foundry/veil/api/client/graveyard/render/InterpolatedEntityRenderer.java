@@ -3,7 +3,7 @@ package foundry.veil.api.client.graveyard.render;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.math.Axis;
-import foundry.veil.api.client.graveyard.AnimationProperties;
+import foundry.veil.api.client.graveyard.AnimationScheduler;
 import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeleton;
 import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeletonParent;
 import foundry.veil.api.client.graveyard.skeleton.SkeletonFactory;
@@ -22,6 +22,8 @@ import java.util.List;
 
 public abstract class InterpolatedEntityRenderer<T extends LivingEntity & InterpolatedSkeletonParent, S extends InterpolatedSkeleton> extends EntityRenderer<T> {
 
+    private static final AnimationScheduler SCHEDULER = new AnimationScheduler();
+
     protected final SkeletonFactory<S> modelFactory;
     private final List<InterpolatedEntityRenderLayer<T, S>> layers = new ArrayList<>();
 
@@ -125,33 +127,6 @@ public abstract class InterpolatedEntityRenderer<T extends LivingEntity & Interp
     }
 
     public static void tick(List<InterpolatedSkeletonParent> entitiesToRender) {
-        for (InterpolatedSkeletonParent interpolatedSkeletonParent : entitiesToRender) {
-            AnimationProperties properties = new AnimationProperties();
-            interpolatedSkeletonParent.getSkeleton().addAnimationProperties(properties, interpolatedSkeletonParent);
-            interpolatedSkeletonParent.getSkeleton().tick(properties);
-        }
-
-        // TODO: MULTITHREAD ANIMATION CALCULATION AND EXECUTION?
-//        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
-//        for (InterpolatedSkeletonParent interpolatedSkeletonParent : entitiesToRender) {
-//            executor.submit(new UpdateEntityTask(interpolatedSkeletonParent));
-//        }
-//
-//        //maximum time of 1 tick
-//        try {
-//            executor.awaitTermination(50, TimeUnit.MILLISECONDS);
-//        } catch (InterruptedException e) {
-//            Clinker.LOGGER.warn("! Abandoned animation task early !");
-//            Clinker.LOGGER.warn(e.getLocalizedMessage());
-//        }
+        SCHEDULER.tick(entitiesToRender);
     }
-
-//    private record UpdateEntityTask(InterpolatedSkeletonParent animator) implements Runnable {
-//        @Override
-//        public void run() {
-//            AnimationProperties properties = new AnimationProperties();
-//            animator.getSkeleton().addAnimationProperties(properties, animator);
-//            animator.getSkeleton().tick(properties);
-//        }
-//    }
 }
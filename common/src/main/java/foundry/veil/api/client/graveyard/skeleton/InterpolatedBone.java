@@ -3,6 +3,7 @@ package foundry.veil.api.client.graveyard.skeleton;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import foundry.veil.api.client.graveyard.render.mesh.ModelMesh;
+import foundry.veil.api.client.necromancer.SkeletonPose;
 import net.minecraft.core.Direction;
 import net.minecraft.util.Mth;
 import org.jetbrains.annotations.Nullable;
@@ -107,6 +108,25 @@ public class InterpolatedBone {
     protected void tick(float deltaTime) {
     }
 
+    /**
+     * Writes the current position, rotation, and size of this bone into a flat pose.
+     *
+     * @param dest   The current transforms of a {@link SkeletonPose}
+     * @param offset The offset of this bone in the pose
+     */
+    void writePose(float[] dest, int offset) {
+        dest[offset + SkeletonPose.POSITION] = this.x;
+        dest[offset + SkeletonPose.POSITION + 1] = this.y;
+        dest[offset + SkeletonPose.POSITION + 2] = this.z;
+        dest[offset + SkeletonPose.ROTATION] = this.rotation.x;
+        dest[offset + SkeletonPose.ROTATION + 1] = this.rotation.y;
+        dest[offset + SkeletonPose.ROTATION + 2] = this.rotation.z;
+        dest[offset + SkeletonPose.ROTATION + 3] = this.rotation.w;
+        dest[offset + SkeletonPose.SIZE] = this.xSize;
+        dest[offset + SkeletonPose.SIZE + 1] = this.ySize;
+        dest[offset + SkeletonPose.SIZE + 2] = this.zSize;
+    }
+
     public void transform(PoseStack pPoseStack, float partialTick) {
         pPoseStack.translate(Mth.lerp(partialTick, this.pX, this.x), Mth.lerp(partialTick, this.pY, this.y), Mth.lerp(partialTick, this.pZ, this.z));
         this.currentRotation = this.pRotation.slerp(this.rotation, partialTick, this.currentRotation);
@@ -7,14 +7,21 @@ import foundry.veil.api.client.graveyard.AnimationProperties;
 import foundry.veil.api.client.graveyard.constraint.Constraint;
 import foundry.veil.api.client.graveyard.render.mesh.DynamicMesh;
 import foundry.veil.api.client.graveyard.render.mesh.ModelMesh;
+import foundry.veil.api.client.necromancer.SkeletonPose;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.world.entity.LivingEntity;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix3f;
+import org.joml.Matrix4x3f;
+
+import java.util.*;
+
+/**
+ * <p>A skeleton made of {@link InterpolatedBone bones} that are animated every tick.</p>
+ * <p>Bones are edited through their fields while ticking. At the end of every tick the transforms of all bones are copied
+ * into a flat {@link SkeletonPose}, which is used to interpolate and calculate the model transforms of every bone
+ * in a single pass when rendering.</p>
+ */
 public abstract class InterpolatedSkeleton {
 
     private final List<InterpolatedBone> roots;
@@ -22,8 +29,13 @@ public abstract class InterpolatedSkeleton {
     private final Map<String, InterpolatedBone> parts;
     private final Map<String, ModelMesh> meshes;
     private final Map<String, DynamicMesh> dynamicMeshes;
+    private final Matrix4x3f boneTransform;
+    private final Matrix3f boneNormal;
 
     private int ticksExisted;
+    private List<InterpolatedBone> poseBones;
+    private boolean[] visible;
+    private SkeletonPose pose;
 
     public InterpolatedSkeleton() {
         this.roots = new ArrayList<>();
@@ -31,12 +43,15 @@ public abstract class InterpolatedSkeleton {
         this.parts = new HashMap<>();
         this.meshes = new HashMap<>();
         this.dynamicMeshes = new HashMap<>();
+        this.boneTransform = new Matrix4x3f();
+        this.boneNormal = new Matrix3f();
     }
 
     protected void updatePreviousPosition() {
         for (InterpolatedBone part : this.parts.values()) {
             part.updatePreviousPosition();
         }
+        this.getPose().updatePrevious();
     }
 
     public void tick(AnimationProperties properties) {
@@ -50,6 +65,7 @@ public abstract class InterpolatedSkeleton {
             constraint.apply();
         }
         //this.applyConstraints(8);
+        this.syncPose();
     }
 
     public void addAnimationProperties(AnimationProperties properties, InterpolatedSkeletonParent parent) {
@@ -92,8 +108,31 @@ public abstract class InterpolatedSkeleton {
             entry.getValue().update(this.parts.get(entry.getKey()), this, this.ticksExisted, partialTicks);
         }
 
-        for (InterpolatedBone part : this.roots) {
-            part.render(this.meshes, partialTicks, pPoseStack, pVertexConsumer, pPackedLight, pPackedOverlay, pRed, pGreen, pBlue, pAlpha, true);
+        SkeletonPose pose = this.getPose();
+        float[] transforms = pose.computeModelTransforms(partialTicks);
+        for (int i = 0; i < this.poseBones.size(); i++) {
+            InterpolatedBone bone = this.poseBones.get(i);
+            int parent = pose.getParent(i);
+
+            // Hidden bones hide all of their children, and bones attached to a bone outside the skeleton are never drawn
+            boolean visible = bone.shouldRender && (parent >= 0 ? this.visible[parent] : bone.parent == null);
+            this.visible[i] = visible;
+            if (!visible) {
+                continue;
+            }
+
+            ModelMesh mesh = this.meshes.get(bone.identifier);
+            if (mesh == null) {
+                continue;
+            }
+
+            this.boneTransform.set(transforms, i * SkeletonPose.MATRIX_STRIDE);
+            pPoseStack.pushPose();
+            PoseStack.Pose last = pPoseStack.last();
+            last.pose().mul(this.boneTransform);
+            last.normal().mul(this.boneTransform.normal(this.boneNormal));
+            mesh.render(bone, pPoseStack, pVertexConsumer, pPackedLight, pPackedOverlay, pRed, pGreen, pBlue, pAlpha);
+            pPoseStack.popPose();
         }
     }
 
@@ -103,8 +142,9 @@ public abstract class InterpolatedSkeleton {
         }
     }
 
-    public void addBone(InterpolatedBone part, ModelMesh mesh) {
+    public void addBone(InterpolatedBone part, @Nullable ModelMesh mesh) {
         this.parts.put(part.identifier, part);
+        this.pose = null;
         this.meshes.put(part.identifier, mesh);
         if (mesh instanceof DynamicMesh dynamicMesh) {
             this.dynamicMeshes.put(part.identifier, dynamicMesh);
@@ -129,4 +169,55 @@ public abstract class InterpolatedSkeleton {
             }
         }
     }
+
+    /**
+     * Copies the current transform of every bone into the pose.
+     */
+    protected void syncPose() {
+        SkeletonPose pose = this.getPose();
+        float[] current = pose.getCurrent();
+        for (int i = 0; i < this.poseBones.size(); i++) {
+            this.poseBones.get(i).writePose(current, i * SkeletonPose.STRIDE);
+        }
+    }
+
+    /**
+     * Retrieves the flat pose of this skeleton. Bones are stored so parents always come before their children.
+     * The pose contains the bone transforms from the end of the last two ticks.
+     *
+     * @return The pose of this skeleton
+     */
+    public SkeletonPose getPose() {
+        if (this.pose == null) {
+            List<InterpolatedBone> bones = new ArrayList<>(this.parts.values());
+            // Parents are always less deep than their children, so this puts every parent before its children
+            bones.sort(Comparator.comparingInt(InterpolatedSkeleton::getDepth));
+
+            Map<InterpolatedBone, Integer> indices = new IdentityHashMap<>(bones.size());
+            int[] parents = new int[bones.size()];
+            for (int i = 0; i < bones.size(); i++) {
+                InterpolatedBone bone = bones.get(i);
+                Integer parent = bone.parent != null ? indices.get(bone.parent) : null;
+                parents[i] = parent != null ? parent : -1;
+                indices.put(bone, i);
+            }
+
+            this.poseBones = bones;
+            this.visible = new boolean[bones.size()];
+            this.pose = new SkeletonPose(parents);
+            this.syncPose();
+            this.pose.updatePrevious();
+        }
+        return this.pose;
+    }
+
+    private static int getDepth(InterpolatedBone bone) {
+        int depth = 0;
+        InterpolatedBone parent = bone.parent;
+        while (parent != null) {
+            depth++;
+            parent = parent.parent;
+        }
+        return depth;
+    }
 }
@@ -1,67 +1,128 @@
 package foundry.veil.api.client.necromancer;
 
-import net.minecraft.util.Mth;
 import org.jetbrains.annotations.Nullable;
-import org.joml.Matrix4x3f;
-import org.joml.Matrix4x3fc;
-import org.joml.Quaternionf;
-import org.joml.Vector3f;
+import org.joml.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static foundry.veil.api.client.necromancer.SkeletonPose.*;
+
 // W.I.P. replacement for graveyard
 // dooooon't use this. i'm still working on it...
 //
 //      ~ your best friend,
 //          cappin  >_o
 
+/**
+ * A view over a single bone in a {@link SkeletonPose}. The transform itself lives in the flat arrays of the pose.
+ */
 public class Bone {
-    String name;
+    final String name;
+    final int id;
+    final SkeletonPose pose;
 
     @Nullable
     Bone parent;
-    List<Bone> children;
+    final List<Bone> children;
 
-    Vector3f position;
-    Vector3f previousPosition;
+    private final Matrix4x3f composedTransform = new Matrix4x3f();
 
-    Vector3f size;
-    Vector3f previousSize;
+    Bone(String name, int id, SkeletonPose pose) {
+        this.name = name;
+        this.id = id;
+        this.pose = pose;
+        this.children = new ArrayList<>();
+    }
 
-    Quaternionf rotation;
-    Quaternionf previousRotation;
+    public Matrix4x3fc getTransform(float partialTime) {
+        return this.pose.getLocalTransform(this.id, partialTime, this.composedTransform);
+    }
 
-    float red, green, blue, alpha;
-    float previousRed, previousGreen, previousBlue, previousAlpha;
+    public void updatePrevious() {
+        this.pose.updatePrevious(this.id);
+    }
 
-    private Matrix4x3f composedTransform = new Matrix4x3f();
+    public void update(float deltaTime) {
+    }
 
-    public Matrix4x3fc getTransform(float partialTime) {
-        return this.composedTransform.translationRotate(
-                // translation
-                Mth.lerp(partialTime, this.previousPosition.x, this.position.x),
-                Mth.lerp(partialTime, this.previousPosition.y, this.position.y),
-                Mth.lerp(partialTime, this.previousPosition.z, this.position.z),
-                // rotation
-                Mth.lerp(partialTime, this.previousRotation.x, this.rotation.x),
-                Mth.lerp(partialTime, this.previousRotation.y, this.rotation.y),
-                Mth.lerp(partialTime, this.previousRotation.z, this.rotation.z),
-                Mth.lerp(partialTime, this.previousRotation.w, this.rotation.w)
-        );
+    public Vector3f getPosition(Vector3f dest) {
+        return this.get(POSITION, dest);
     }
 
-    public void updatePrevious() {
-        this.previousPosition.set(this.position);
-        this.previousSize.set(this.size);
-        this.previousRotation.set(this.rotation);
+    public void setPosition(float x, float y, float z) {
+        this.set(POSITION, x, y, z);
+    }
 
-        this.previousRed = this.red;
-        this.previousGreen = this.green;
-        this.previousBlue = this.blue;
-        this.previousAlpha = this.alpha;
+    public Quaternionf getRotation(Quaternionf dest) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(ROTATION);
+        return dest.set(current[offset], current[offset + 1], current[offset + 2], current[offset + 3]);
     }
 
-    public void update(float deltaTime) {
-        this.updatePrevious();
+    public void setRotation(Quaternionfc rotation) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(ROTATION);
+        current[offset] = rotation.x();
+        current[offset + 1] = rotation.y();
+        current[offset + 2] = rotation.z();
+        current[offset + 3] = rotation.w();
+    }
+
+    public Vector3f getSize(Vector3f dest) {
+        return this.get(SIZE, dest);
+    }
+
+    public void setSize(float x, float y, float z) {
+        this.set(SIZE, x, y, z);
+    }
+
+    public Vector4f getColor(Vector4f dest) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(COLOR);
+        return dest.set(current[offset], current[offset + 1], current[offset + 2], current[offset + 3]);
+    }
+
+    public void setColor(float red, float green, float blue, float alpha) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(COLOR);
+        current[offset] = red;
+        current[offset + 1] = green;
+        current[offset + 2] = blue;
+        current[offset + 3] = alpha;
+    }
+
+    private int offset(int field) {
+        return this.id * STRIDE + field;
+    }
+
+    private Vector3f get(int field, Vector3f dest) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(field);
+        return dest.set(current[offset], current[offset + 1], current[offset + 2]);
+    }
+
+    private void set(int field, float x, float y, float z) {
+        float[] current = this.pose.getCurrent();
+        int offset = this.offset(field);
+        current[offset] = x;
+        current[offset + 1] = y;
+        current[offset + 2] = z;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public @Nullable Bone getParent() {
+        return this.parent;
+    }
+
+    public List<Bone> getChildren() {
+        return this.children;
     }
 }
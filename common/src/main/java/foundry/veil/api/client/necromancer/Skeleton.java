@@ -1,7 +1,11 @@
 package foundry.veil.api.client.necromancer;
 
-import java.util.List;
-import java.util.Map;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4x3f;
+
+import java.util.*;
 
 // W.I.P. replacement for graveyard
 // dooooon't use this. i'm still working on it...
@@ -10,14 +14,103 @@ import java.util.Map;
 //          cappin  >_o
 
 public class Skeleton {
-    Bone root;
-    Map<String, Integer> nameToId;
-    List<Bone> bones;
-    List<Constraint> constraints;
+    final Bone root;
+    final Map<String, Integer> nameToId;
+    final List<Bone> bones;
+    final List<Constraint> constraints;
+    final SkeletonPose pose;
+
+    private Skeleton(List<String> names, int[] parents) {
+        this.pose = new SkeletonPose(parents);
+        this.nameToId = new HashMap<>();
+
+        List<Bone> bones = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Bone bone = new Bone(names.get(i), i, this.pose);
+            if (parents[i] >= 0) {
+                bone.parent = bones.get(parents[i]);
+                bone.parent.children.add(bone);
+            }
+            bones.add(bone);
+            this.nameToId.put(bone.name, i);
+        }
+        this.bones = Collections.unmodifiableList(bones);
+        this.root = bones.isEmpty() ? null : bones.get(0);
+        this.constraints = new ArrayList<>();
+    }
 
     public void update(float deltaTime) {
+        this.pose.updatePrevious();
         for (Bone bone : this.bones) {
             bone.update(deltaTime);
         }
     }
+
+    /**
+     * Calculates the transform of every bone relative to the root of the skeleton in a single pass over the pose.
+     *
+     * @param partialTime The time between the previous and current update
+     * @return The model space transform of each bone indexed by bone id as column-major 4x3 matrices.
+     * The array is reused the next time this is called
+     * @see SkeletonPose#computeModelTransforms(float)
+     */
+    public float[] computeModelTransforms(float partialTime) {
+        return this.pose.computeModelTransforms(partialTime);
+    }
+
+    /**
+     * Retrieves a single model space transform calculated by {@link #computeModelTransforms(float)}.
+     *
+     * @param bone The id of the bone
+     * @param dest The matrix to store the result in
+     * @return The destination matrix
+     */
+    public Matrix4x3f getModelTransform(int bone, Matrix4x3f dest) {
+        return dest.set(this.pose.getModelTransforms(), bone * SkeletonPose.MATRIX_STRIDE);
+    }
+
+    public @Nullable Bone getBone(String name) {
+        Integer id = this.nameToId.get(name);
+        return id != null ? this.bones.get(id) : null;
+    }
+
+    public List<Bone> getBones() {
+        return this.bones;
+    }
+
+    public SkeletonPose getPose() {
+        return this.pose;
+    }
+
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final IntList parents = new IntArrayList();
+
+        /**
+         * Adds a bone to the skeleton. Parents must be added before their children, so bones are always stored in an order that can be evaluated in one pass.
+         *
+         * @param name   The name of the bone
+         * @param parent The name of the parent bone or <code>null</code> for the root
+         * @throws IllegalArgumentException If the bone already exists or the parent hasn't been added yet
+         */
+        public Builder addBone(String name, @Nullable String parent) {
+            if (this.names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate bone: " + name);
+            }
+            int parentId = parent != null ? this.names.indexOf(parent) : -1;
+            if (parent != null && parentId == -1) {
+                throw new IllegalArgumentException("Parent bone " + parent + " must be added before " + name);
+            }
+            if (parent == null && !this.names.isEmpty()) {
+                throw new IllegalArgumentException("Skeleton already has a root bone: " + this.names.get(0));
+            }
+            this.names.add(name);
+            this.parents.add(parentId);
+            return this;
+        }
+
+        public Skeleton build() {
+            return new Skeleton(new ArrayList<>(this.names), this.parents.toIntArray());
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package foundry.veil.api.client.necromancer;
+
+import org.joml.Math;
+import org.joml.Matrix4x3f;
+
+import java.util.Arrays;
+
+/**
+ * <p>Stores the transforms of every bone in a skeleton in flat arrays.</p>
+ * <p>Each bone uses {@value #STRIDE} floats for its position, rotation, size and color, for both the current and previous update.
+ * Bones are sorted so parents always come before their children, which allows the model transforms of all bones to be
+ * calculated in a single pass without following any references. Interpolating between the previous and current update is
+ * done over the whole array at once.</p>
+ *
+ * @author Ocelot
+ */
+public class SkeletonPose {
+
+    public static final int POSITION = 0;
+    public static final int ROTATION = 3;
+    public static final int SIZE = 7;
+    public static final int COLOR = 10;
+    public static final int STRIDE = 14;
+    public static final int MATRIX_STRIDE = 12;
+
+    private final int[] parents;
+    private final float[] current;
+    private final float[] previous;
+    private final float[] interpolated;
+    private final float[] modelTransforms;
+
+    /**
+     * Creates a new pose with every bone at the origin.
+     *
+     * @param parents The index of the parent of each bone or <code>-1</code> for root bones. Parents must come before their children
+     * @throws IllegalArgumentException If a bone comes before its parent
+     */
+    public SkeletonPose(int[] parents) {
+        for (int i = 0; i < parents.length; i++) {
+            if (parents[i] >= i) {
+                throw new IllegalArgumentException("Bone " + i + " comes before its parent " + parents[i]);
+            }
+        }
+
+        this.parents = parents.clone();
+        this.current = new float[parents.length * STRIDE];
+        this.previous = new float[parents.length * STRIDE];
+        this.interpolated = new float[parents.length * STRIDE];
+        this.modelTransforms = new float[parents.length * MATRIX_STRIDE];
+
+        for (int i = 0; i < parents.length; i++) {
+            int offset = i * STRIDE;
+            this.current[offset + ROTATION + 3] = 1.0F;
+            Arrays.fill(this.current, offset + SIZE, offset + SIZE + 3, 1.0F);
+            Arrays.fill(this.current, offset + COLOR, offset + COLOR + 4, 1.0F);
+        }
+        System.arraycopy(this.current, 0, this.previous, 0, this.current.length);
+    }
+
+    /**
+     * Copies the current transform of every bone into the previous transforms.
+     */
+    public void updatePrevious() {
+        System.arraycopy(this.current, 0, this.previous, 0, this.current.length);
+    }
+
+    /**
+     * Copies the current transform of a single bone into its previous transform.
+     *
+     * @param bone The index of the bone to update
+     */
+    public void updatePrevious(int bone) {
+        System.arraycopy(this.current, bone * STRIDE, this.previous, bone * STRIDE, STRIDE);
+    }
+
+    /**
+     * Interpolates every bone and calculates their transforms relative to the root of the skeleton.
+     *
+     * @param partialTime The time between the previous and current update
+     * @return The model space transform of each bone as column-major 4x3 matrices, {@value #MATRIX_STRIDE} floats per bone.
+     * The array is reused the next time this is called
+     */
+    public float[] computeModelTransforms(float partialTime) {
+        float[] current = this.current;
+        float[] previous = this.previous;
+        float[] interpolated = this.interpolated;
+        for (int i = 0; i < interpolated.length; i++) {
+            interpolated[i] = previous[i] + (current[i] - previous[i]) * partialTime;
+        }
+
+        float[] matrices = this.modelTransforms;
+        for (int i = 0; i < this.parents.length; i++) {
+            int offset = i * STRIDE;
+
+            // Rotations on opposite hemispheres have to be blended with one negated to take the short path
+            if (dot(current, previous, offset + ROTATION) < 0) {
+                for (int j = offset + ROTATION; j < offset + ROTATION + 4; j++) {
+                    interpolated[j] = previous[j] - (current[j] + previous[j]) * partialTime;
+                }
+            }
+
+            float qx = interpolated[offset + ROTATION];
+            float qy = interpolated[offset + ROTATION + 1];
+            float qz = interpolated[offset + ROTATION + 2];
+            float qw = interpolated[offset + ROTATION + 3];
+            float length = qx * qx + qy * qy + qz * qz + qw * qw;
+            float scale = length > 0 ? 2.0F / length : 0.0F;
+            float sx = interpolated[offset + SIZE];
+            float sy = interpolated[offset + SIZE + 1];
+            float sz = interpolated[offset + SIZE + 2];
+
+            // Local translation * rotation * scale
+            float l00 = (1.0F - scale * (qy * qy + qz * qz)) * sx;
+            float l01 = scale * (qx * qy + qz * qw) * sx;
+            float l02 = scale * (qx * qz - qy * qw) * sx;
+            float l10 = scale * (qx * qy - qz * qw) * sy;
+            float l11 = (1.0F - scale * (qx * qx + qz * qz)) * sy;
+            float l12 = scale * (qy * qz + qx * qw) * sy;
+            float l20 = scale * (qx * qz + qy * qw) * sz;
+            float l21 = scale * (qy * qz - qx * qw) * sz;
+            float l22 = (1.0F - scale * (qx * qx + qy * qy)) * sz;
+            float l30 = interpolated[offset + POSITION];
+            float l31 = interpolated[offset + POSITION + 1];
+            float l32 = interpolated[offset + POSITION + 2];
+
+            int dest = i * MATRIX_STRIDE;
+            int parent = this.parents[i];
+            if (parent < 0) {
+                matrices[dest] = l00;
+                matrices[dest + 1] = l01;
+                matrices[dest + 2] = l02;
+                matrices[dest + 3] = l10;
+                matrices[dest + 4] = l11;
+                matrices[dest + 5] = l12;
+                matrices[dest + 6] = l20;
+                matrices[dest + 7] = l21;
+                matrices[dest + 8] = l22;
+                matrices[dest + 9] = l30;
+                matrices[dest + 10] = l31;
+                matrices[dest + 11] = l32;
+                continue;
+            }
+
+            // Parents are always before children, so the parent transform is already final
+            int p = parent * MATRIX_STRIDE;
+            float p00 = matrices[p], p01 = matrices[p + 1], p02 = matrices[p + 2];
+            float p10 = matrices[p + 3], p11 = matrices[p + 4], p12 = matrices[p + 5];
+            float p20 = matrices[p + 6], p21 = matrices[p + 7], p22 = matrices[p + 8];
+            float p30 = matrices[p + 9], p31 = matrices[p + 10], p32 = matrices[p + 11];
+            matrices[dest] = p00 * l00 + p10 * l01 + p20 * l02;
+            matrices[dest + 1] = p01 * l00 + p11 * l01 + p21 * l02;
+            matrices[dest + 2] = p02 * l00 + p12 * l01 + p22 * l02;
+            matrices[dest + 3] = p00 * l10 + p10 * l11 + p20 * l12;
+            matrices[dest + 4] = p01 * l10 + p11 * l11 + p21 * l12;
+            matrices[dest + 5] = p02 * l10 + p12 * l11 + p22 * l12;
+            matrices[dest + 6] = p00 * l20 + p10 * l21 + p20 * l22;
+            matrices[dest + 7] = p01 * l20 + p11 * l21 + p21 * l22;
+            matrices[dest + 8] = p02 * l20 + p12 * l21 + p22 * l22;
+            matrices[dest + 9] = p00 * l30 + p10 * l31 + p20 * l32 + p30;
+            matrices[dest + 10] = p01 * l30 + p11 * l31 + p21 * l32 + p31;
+            matrices[dest + 11] = p02 * l30 + p12 * l31 + p22 * l32 + p32;
+        }
+        return matrices;
+    }
+
+    /**
+     * Calculates the transform of a single bone relative to its parent.
+     *
+     * @param bone        The index of the bone
+     * @param partialTime The time between the previous and current update
+     * @param dest        The matrix to store the result in
+     * @return The destination matrix
+     */
+    public Matrix4x3f getLocalTransform(int bone, float partialTime, Matrix4x3f dest) {
+        int offset = bone * STRIDE;
+        float sign = dot(this.current, this.previous, offset + ROTATION) < 0 ? -1.0F : 1.0F;
+        float qx = Math.lerp(this.previous[offset + ROTATION], sign * this.current[offset + ROTATION], partialTime);
+        float qy = Math.lerp(this.previous[offset + ROTATION + 1], sign * this.current[offset + ROTATION + 1], partialTime);
+        float qz = Math.lerp(this.previous[offset + ROTATION + 2], sign * this.current[offset + ROTATION + 2], partialTime);
+        float qw = Math.lerp(this.previous[offset + ROTATION + 3], sign * this.current[offset + ROTATION + 3], partialTime);
+        float length = Math.invsqrt(qx * qx + qy * qy + qz * qz + qw * qw);
+        return dest.translationRotateScale(
+                this.lerp(offset + POSITION, partialTime),
+                this.lerp(offset + POSITION + 1, partialTime),
+                this.lerp(offset + POSITION + 2, partialTime),
+                qx * length,
+                qy * length,
+                qz * length,
+                qw * length,
+                this.lerp(offset + SIZE, partialTime),
+                this.lerp(offset + SIZE + 1, partialTime),
+                this.lerp(offset + SIZE + 2, partialTime));
+    }
+
+    private float lerp(int index, float partialTime) {
+        return Math.lerp(this.previous[index], this.current[index], partialTime);
+    }
+
+    private static float dot(float[] a, float[] b, int offset) {
+        return a[offset] * b[offset] + a[offset + 1] * b[offset + 1] + a[offset + 2] * b[offset + 2] + a[offset + 3] * b[offset + 3];
+    }
+
+    /**
+     * @return The number of bones in this pose
+     */
+    public int getBoneCount() {
+        return this.parents.length;
+    }
+
+    /**
+     * @param bone The index of the bone
+     * @return The index of the parent of the bone or <code>-1</code> if it is a root
+     */
+    public int getParent(int bone) {
+        return this.parents[bone];
+    }
+
+    /**
+     * @return The current transforms of all bones. Values at {@link #STRIDE} * bone + {@link #POSITION}, {@link #ROTATION}, {@link #SIZE}, or {@link #COLOR}
+     */
+    public float[] getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * @return The transforms of all bones from the previous update
+     */
+    public float[] getPrevious() {
+        return this.previous;
+    }
+
+    /**
+     * @return The interpolated transforms of all bones from the last call to {@link #computeModelTransforms(float)}
+     */
+    public float[] getInterpolated() {
+        return this.interpolated;
+    }
+
+    /**
+     * @return The model space transforms of all bones from the last call to {@link #computeModelTransforms(float)}
+     */
+    public float[] getModelTransforms() {
+        return this.modelTransforms;
+    }
+}
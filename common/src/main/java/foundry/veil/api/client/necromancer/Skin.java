@@ -5,24 +5,60 @@ import com.mojang.blaze3d.vertex.*;
 import foundry.veil.Veil;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.VeilVertexFormat;
+import foundry.veil.api.client.render.rendertype.VeilRenderType;
+import foundry.veil.api.client.render.shader.definition.DynamicShaderBlock;
+import foundry.veil.api.client.render.shader.definition.ShaderBlock;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import net.minecraft.client.renderer.RenderType;
 import net.minecraft.resources.ResourceLocation;
+import org.joml.Matrix4f;
+import org.joml.Matrix4x3f;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.lwjgl.opengl.GL20C.GL_VERTEX_SHADER;
+import static org.lwjgl.opengl.GL43C.GL_SHADER_STORAGE_BUFFER;
+
 // W.I.P. replacement for graveyard
 // dooooon't use this. i'm still working on it...
 //
 //      ~ your best friend,
 //          cappin  >_o
 
-public class Skin {
+/**
+ * <p>A static mesh that is deformed by the bones of a {@link Skeleton} on the GPU.</p>
+ * <p>{@link #render(PoseStack, Skeleton, float, int, int)} only records the bone palette of a skeleton, so every skeleton
+ * using this skin can be drawn with a single instanced draw call in {@link #flush()}. Each instance reads its own slice of
+ * the palette, so no vertices are touched on the CPU after the mesh is built.</p>
+ */
+public class Skin implements NativeResource {
+
+    // mat4 transform, vec4 color
+    private static final int BONE_SIZE = Float.BYTES * 16 + Float.BYTES * 4;
+    // ivec2 overlay, ivec2 light
+    private static final int INSTANCE_SIZE = Integer.BYTES * 4;
+
+    private static boolean printedError;
+
     final Map<Integer, SkinnedMesh> boneToMesh = new HashMap<>();
     final ResourceLocation shader;
     final ResourceLocation texture;
 
     VertexBuffer mesh = null;
 
+    private final Matrix4f transform = new Matrix4f();
+    private final Matrix4x3f boneTransform = new Matrix4x3f();
+    private DynamicShaderBlock<Skin> boneBlock;
+    private DynamicShaderBlock<Skin> instanceBlock;
+    private ByteBuffer boneData;
+    private ByteBuffer instanceData;
+    private int boneCount;
+    private int instances;
+
     private Skin(ResourceLocation shader, ResourceLocation texture) {
         this.shader = shader;
         this.texture = texture;
@@ -32,8 +68,6 @@ public class Skin {
         Tesselator tesselator = Tesselator.getInstance();
         BufferBuilder bufferbuilder = tesselator.getBuilder();
 
-        VeilRenderSystem.setShader(shader);
-
         this.mesh = new VertexBuffer(VertexBuffer.Usage.STATIC);
 
         bufferbuilder.begin(VertexFormat.Mode.QUADS, VeilVertexFormat.SKINNED_MESH);
@@ -46,10 +80,148 @@ public class Skin {
         VertexBuffer.unbind();
     }
 
-    // todo:
-    //  this
-    public void render(PoseStack stack, Skeleton skeleton) {
-        this.mesh.drawWithShader(stack.last().pose(), RenderSystem.getProjectionMatrix(), VeilRenderSystem.setShader(shader).toShaderInstance());
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, long size) {
+        if (buffer == null) {
+            return MemoryUtil.memAlloc((int) size);
+        }
+        if (buffer.capacity() < size) {
+            return MemoryUtil.memRealloc(buffer, (int) Math.max(size, buffer.capacity() * 2L));
+        }
+        return buffer;
+    }
+
+    private static void writeBones(Skin skin, ByteBuffer buffer) {
+        MemoryUtil.memCopy(MemoryUtil.memAddress(skin.boneData), MemoryUtil.memAddress(buffer), (long) skin.instances * skin.boneCount * BONE_SIZE);
+    }
+
+    private static void writeInstances(Skin skin, ByteBuffer buffer) {
+        MemoryUtil.memCopy(MemoryUtil.memAddress(skin.instanceData), MemoryUtil.memAddress(buffer), (long) skin.instances * INSTANCE_SIZE);
+    }
+
+    /**
+     * @return Whether skins can be drawn. Vertex shaders must be able to read the bone palette from shader storage buffers
+     */
+    public static boolean isSupported() {
+        return VeilRenderSystem.shaderLimits(GL_VERTEX_SHADER).maxShaderStorageBlocks() >= 2;
+    }
+
+    /**
+     * Records the bone palette of the specified skeleton to be drawn with this skin during the next {@link #flush()}.
+     *
+     * @param stack         The pose to draw the skeleton at
+     * @param skeleton      The skeleton to deform the mesh with
+     * @param partialTime   The time between the previous and current skeleton update
+     * @param packedLight   The packed lightmap coordinates
+     * @param packedOverlay The packed overlay coordinates
+     */
+    public void render(PoseStack stack, Skeleton skeleton, float partialTime, int packedLight, int packedOverlay) {
+        int boneCount = skeleton.bones.size();
+        if (this.instances == 0) {
+            this.boneCount = boneCount;
+        } else if (this.boneCount != boneCount) {
+            Veil.LOGGER.error("Skeleton has {} bones, but other instances of this skin have {}. Skeleton not drawn.", boneCount, this.boneCount);
+            return;
+        }
+
+        this.boneData = ensureCapacity(this.boneData, (long) (this.instances + 1) * boneCount * BONE_SIZE);
+        this.instanceData = ensureCapacity(this.instanceData, (long) (this.instances + 1) * INSTANCE_SIZE);
+
+        // The pose is applied to every bone, so the instance doesn't need a model view matrix of its own
+        float[] transforms = skeleton.computeModelTransforms(partialTime);
+        float[] interpolated = skeleton.pose.getInterpolated();
+        Matrix4f pose = stack.last().pose();
+        int offset = this.instances * boneCount * BONE_SIZE;
+        for (int i = 0; i < boneCount; i++) {
+            this.boneTransform.set(transforms, i * SkeletonPose.MATRIX_STRIDE);
+            this.transform.set(pose).mul(this.boneTransform).get(offset, this.boneData);
+
+            int color = i * SkeletonPose.STRIDE + SkeletonPose.COLOR;
+            for (int j = 0; j < 4; j++) {
+                this.boneData.putFloat(offset + Float.BYTES * (16 + j), interpolated[color + j]);
+            }
+            offset += BONE_SIZE;
+        }
+
+        int instanceOffset = this.instances * INSTANCE_SIZE;
+        this.instanceData.putInt(instanceOffset, packedOverlay & 0xFFFF);
+        this.instanceData.putInt(instanceOffset + Integer.BYTES, packedOverlay >> 16 & 0xFFFF);
+        this.instanceData.putInt(instanceOffset + Integer.BYTES * 2, packedLight & 0xFFFF);
+        this.instanceData.putInt(instanceOffset + Integer.BYTES * 3, packedLight >> 16 & 0xFFFF);
+        this.instances++;
+    }
+
+    /**
+     * Draws every skeleton recorded since the last flush in a single draw call.
+     */
+    public void flush() {
+        if (this.instances == 0) {
+            return;
+        }
+
+        if (!isSupported()) {
+            if (!printedError) {
+                printedError = true;
+                Veil.LOGGER.error("Skinned meshes require shader storage buffers in vertex shaders");
+            }
+            this.instances = 0;
+            return;
+        }
+
+        if (this.mesh == null) {
+            this.build();
+        }
+        if (this.boneBlock == null) {
+            this.boneBlock = ShaderBlock.dynamic(GL_SHADER_STORAGE_BUFFER, Skin::writeBones);
+            this.instanceBlock = ShaderBlock.dynamic(GL_SHADER_STORAGE_BUFFER, Skin::writeInstances);
+        }
+
+        this.boneBlock.setSize((long) this.instances * this.boneCount * BONE_SIZE);
+        this.boneBlock.set(this);
+        this.instanceBlock.setSize((long) this.instances * INSTANCE_SIZE);
+        this.instanceBlock.set(this);
+        VeilRenderSystem.bind("VeilSkinBones", this.boneBlock);
+        VeilRenderSystem.bind("VeilSkinInstances", this.instanceBlock);
+
+        RenderType renderType = VeilRenderType.skinnedMesh(this.texture);
+        renderType.setupRenderState();
+        ShaderProgram shader = VeilRenderSystem.setShader(this.shader);
+        if (shader != null) {
+            shader.setup();
+            shader.setMatrix("ModelViewMat", RenderSystem.getModelViewMatrix());
+            shader.setMatrix("ProjMat", RenderSystem.getProjectionMatrix());
+            shader.setMatrix("IViewRotMat", RenderSystem.getInverseViewRotationMatrix());
+            shader.setVector("Light0_Direction", VeilRenderSystem.getLight0Position());
+            shader.setVector("Light1_Direction", VeilRenderSystem.getLight1Position());
+            shader.setInt("BoneCount", this.boneCount);
+
+            this.mesh.bind();
+            VeilRenderSystem.drawInstanced(this.mesh, this.instances);
+            VertexBuffer.unbind();
+            ShaderProgram.unbind();
+        }
+        renderType.clearRenderState();
+        this.instances = 0;
+    }
+
+    @Override
+    public void free() {
+        if (this.mesh != null) {
+            this.mesh.close();
+            this.mesh = null;
+        }
+        if (this.boneBlock != null) {
+            this.boneBlock.free();
+            this.instanceBlock.free();
+            this.boneBlock = null;
+            this.instanceBlock = null;
+        }
+        if (this.boneData != null) {
+            MemoryUtil.memFree(this.boneData);
+            MemoryUtil.memFree(this.instanceData);
+            this.boneData = null;
+            this.instanceData = null;
+        }
+        this.instances = 0;
     }
 
     public static class Builder {
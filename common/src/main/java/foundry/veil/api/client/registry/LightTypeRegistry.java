@@ -2,10 +2,14 @@ package foundry.veil.api.client.registry;
 
 import foundry.veil.Veil;
 import foundry.veil.api.client.render.deferred.light.*;
+import foundry.veil.api.client.render.deferred.light.renderer.ClusteredLightRenderer;
 import foundry.veil.api.client.render.deferred.light.renderer.IndirectLightRenderer;
+import foundry.veil.api.client.render.deferred.light.renderer.LightRenderer;
 import foundry.veil.api.client.render.deferred.light.renderer.LightTypeRenderer;
 import foundry.veil.impl.client.editor.LightEditor;
 import foundry.veil.impl.client.render.deferred.light.AreaLightRenderer;
+import foundry.veil.impl.client.render.deferred.light.ClusteredAreaLightRenderer;
+import foundry.veil.impl.client.render.deferred.light.ClusteredPointLightRenderer;
 import foundry.veil.impl.client.render.deferred.light.DirectionalLightRenderer;
 import foundry.veil.impl.client.render.deferred.light.IndirectPointLightRenderer;
 import foundry.veil.impl.client.render.deferred.light.InstancedPointLightRenderer;
@@ -38,8 +42,8 @@ public class LightTypeRegistry {
             Veil.LOGGER.info("Using Instanced Point Light Renderer");
             return new InstancedPointLightRenderer();
         }
-    }, (level, camera) -> new PointLight().setTo(camera).setRadius(15.0F));
-    public static final Supplier<LightType<AreaLight>> AREA = register("area", AreaLightRenderer::new, (level, camera) -> new AreaLight().setDistance(15.0F).setTo(camera));
+    }, ClusteredPointLightRenderer::new, (level, camera) -> new PointLight().setTo(camera).setRadius(15.0F));
+    public static final Supplier<LightType<AreaLight>> AREA = register("area", AreaLightRenderer::new, ClusteredAreaLightRenderer::new, (level, camera) -> new AreaLight().setDistance(15.0F).setTo(camera));
 
     @ApiStatus.Internal
     public static void bootstrap() {
@@ -49,8 +53,33 @@ public class LightTypeRegistry {
         return PROVIDER.register(name, () -> new LightType<>(factory, debugFactory));
     }
 
+    private static <T extends Light> Supplier<LightType<T>> register(String name, RendererFactory<T> factory, RendererFactory<T> clusteredFactory, @Nullable DebugLightFactory debugFactory) {
+        return PROVIDER.register(name, () -> new LightType<>(factory, clusteredFactory, debugFactory));
+    }
+
+    /**
+     * A type of light that can be rendered.
+     *
+     * @param rendererFactory          The factory for the default renderer of lights
+     * @param clusteredRendererFactory The factory for the renderer used when {@link LightRenderer#setClusteredLighting(LightType, boolean) clustered lighting} is enabled,
+     *                                 or <code>null</code> if the type can't be drawn with clustered lighting
+     * @param debugLightFactory        The factory for lights spawned in the light editor
+     * @param <T>                      The type of light
+     */
     public record LightType<T extends Light>(RendererFactory<T> rendererFactory,
+                                             @Nullable RendererFactory<T> clusteredRendererFactory,
                                              @Nullable DebugLightFactory debugLightFactory) {
+
+        public LightType(RendererFactory<T> rendererFactory, @Nullable DebugLightFactory debugLightFactory) {
+            this(rendererFactory, null, debugLightFactory);
+        }
+
+        /**
+         * @return Whether lights of this type can be drawn with clustered lighting on this device
+         */
+        public boolean supportsClusteredLighting() {
+            return this.clusteredRendererFactory != null && ClusteredLightRenderer.isSupported();
+        }
     }
 
     /**
@@ -0,0 +1,289 @@
+package foundry.veil.api.client.render;
+
+import foundry.veil.Veil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.ApiStatus;
+import org.lwjgl.system.NativeResource;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL33C.GL_TIMESTAMP;
+import static org.lwjgl.opengl.GL33C.glGetQueryObjectui64;
+import static org.lwjgl.opengl.GL33C.glQueryCounter;
+
+/**
+ * <p>Measures how long sections of a frame take on the GPU.</p>
+ * <p>Sections are pushed and popped like the vanilla profiler, and the GPU timestamp is recorded at the start and end of each one.
+ * Timestamps are used instead of elapsed time queries so sections can be nested. Results are read back
+ * {@value #FRAME_LATENCY} frames later once the GPU has finished them, so the profiler never waits for the GPU.</p>
+ * <p>The profiler does nothing unless it is enabled, so sections can always be pushed.</p>
+ *
+ * @author Ocelot
+ */
+public class GpuProfiler implements NativeResource {
+
+    private static final int FRAME_LATENCY = 3;
+    private static final int HISTORY_SIZE = 240;
+
+    private final Frame[] frames;
+    private final IntArrayList freeQueries;
+    private final Deque<Section> stack;
+    private final Deque<List<Result>> history;
+    private boolean enabled;
+    private int frameIndex;
+    private long frameId;
+
+    @ApiStatus.Internal
+    public GpuProfiler() {
+        this.frames = new Frame[FRAME_LATENCY];
+        for (int i = 0; i < this.frames.length; i++) {
+            this.frames[i] = new Frame();
+        }
+        this.freeQueries = new IntArrayList();
+        this.stack = new ArrayDeque<>();
+        this.history = new ArrayDeque<>(HISTORY_SIZE);
+    }
+
+    private int allocateQuery() {
+        return this.freeQueries.isEmpty() ? glGenQueries() : this.freeQueries.popInt();
+    }
+
+    /**
+     * Starts timing a new section inside the current section.
+     *
+     * @param name The name of the section
+     */
+    public void push(String name) {
+        if (!this.enabled) {
+            return;
+        }
+
+        Section parent = this.stack.peek();
+        Frame frame = this.frames[this.frameIndex];
+        Section section = new Section(parent != null ? parent.path + "/" + name : name, this.stack.size(), this.allocateQuery());
+        glQueryCounter(section.startQuery, GL_TIMESTAMP);
+        frame.sections.add(section);
+        frame.lastQuery = section.startQuery;
+        this.stack.push(section);
+    }
+
+    /**
+     * Stops timing the current section.
+     */
+    public void pop() {
+        if (!this.enabled) {
+            return;
+        }
+
+        Section section = this.stack.poll();
+        if (section == null) {
+            Veil.LOGGER.error("GPU profiler section popped too many times");
+            return;
+        }
+
+        section.endQuery = this.allocateQuery();
+        glQueryCounter(section.endQuery, GL_TIMESTAMP);
+        this.frames[this.frameIndex].lastQuery = section.endQuery;
+    }
+
+    /**
+     * Stops timing the current section and starts timing a new one.
+     *
+     * @param name The name of the new section
+     */
+    public void popPush(String name) {
+        this.pop();
+        this.push(name);
+    }
+
+    /**
+     * Reads the results of finished frames and starts recording a new frame.
+     */
+    @ApiStatus.Internal
+    public void endFrame() {
+        if (!this.enabled) {
+            return;
+        }
+
+        if (!this.stack.isEmpty()) {
+            Veil.LOGGER.error("GPU profiler sections were not popped: {}", this.stack.peek().path);
+            while (!this.stack.isEmpty()) {
+                this.pop();
+            }
+        }
+
+        Frame current = this.frames[this.frameIndex];
+        current.id = this.frameId++;
+        current.pending = !current.sections.isEmpty();
+
+        // Oldest frames are read first, and stop at the first one the GPU hasn't finished yet
+        for (int i = 1; i <= FRAME_LATENCY; i++) {
+            Frame frame = this.frames[(this.frameIndex + i) % FRAME_LATENCY];
+            if (!frame.pending) {
+                continue;
+            }
+            if (!frame.isAvailable()) {
+                break;
+            }
+            this.addResults(frame.read());
+            this.release(frame);
+        }
+
+        this.frameIndex = (this.frameIndex + 1) % FRAME_LATENCY;
+
+        // The GPU is more than FRAME_LATENCY frames behind, so drop the oldest results instead of waiting
+        Frame next = this.frames[this.frameIndex];
+        if (next.pending) {
+            this.release(next);
+        }
+    }
+
+    private void addResults(List<Result> results) {
+        if (this.history.size() >= HISTORY_SIZE) {
+            this.history.removeFirst();
+        }
+        this.history.addLast(results);
+    }
+
+    private void release(Frame frame) {
+        for (Section section : frame.sections) {
+            this.freeQueries.add(section.startQuery);
+            if (section.endQuery != 0) {
+                this.freeQueries.add(section.endQuery);
+            }
+        }
+        frame.sections.clear();
+        frame.lastQuery = 0;
+        frame.pending = false;
+    }
+
+    /**
+     * Writes every frame in the history to the specified file as comma-separated values.
+     *
+     * @param file The file to write to
+     * @throws IOException If an error occurs writing the file
+     */
+    public void exportCsv(Path file) throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write("frame,section,depth,time_ms\n");
+            for (List<Result> frame : this.history) {
+                for (Result result : frame) {
+                    writer.write(result.frame() + ",\"" + result.path().replace("\"", "\"\"") + "\"," + result.depth() + "," + String.format(Locale.ROOT, "%.4f", result.nanos() / 1_000_000.0) + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether sections are currently being timed
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Sets whether sections should be timed. Recorded history is cleared when disabled.
+     *
+     * @param enabled Whether to time sections
+     */
+    public void setEnabled(boolean enabled) {
+        enabled &= VeilRenderSystem.timerQuerySupported();
+        if (this.enabled == enabled) {
+            return;
+        }
+
+        this.enabled = enabled;
+        if (!enabled) {
+            this.stack.clear();
+            for (Frame frame : this.frames) {
+                this.release(frame);
+            }
+            this.history.clear();
+        }
+    }
+
+    /**
+     * @return The results of the most recent finished frame in the order sections were pushed
+     */
+    public List<Result> getLatest() {
+        return this.history.isEmpty() ? Collections.emptyList() : this.history.getLast();
+    }
+
+    /**
+     * @return The results of all recorded frames from oldest to newest
+     */
+    public Collection<List<Result>> getHistory() {
+        return Collections.unmodifiableCollection(this.history);
+    }
+
+    @Override
+    public void free() {
+        this.setEnabled(false);
+        if (!this.freeQueries.isEmpty()) {
+            glDeleteQueries(this.freeQueries.toIntArray());
+            this.freeQueries.clear();
+        }
+    }
+
+    /**
+     * The time a single section took on the GPU.
+     *
+     * @param frame The id of the frame the section was recorded in
+     * @param path  The names of all parent sections and this section separated by <code>/</code>
+     * @param depth The number of parent sections
+     * @param nanos The time the section took in nanoseconds
+     */
+    public record Result(long frame, String path, int depth, long nanos) {
+    }
+
+    private static class Section {
+
+        private final String path;
+        private final int depth;
+        private final int startQuery;
+        private int endQuery;
+
+        private Section(String path, int depth, int startQuery) {
+            this.path = path;
+            this.depth = depth;
+            this.startQuery = startQuery;
+        }
+    }
+
+    private static class Frame {
+
+        private final List<Section> sections;
+        private long id;
+        private int lastQuery;
+        private boolean pending;
+
+        private Frame() {
+            this.sections = new ArrayList<>();
+        }
+
+        private boolean isAvailable() {
+            // Queries finish in order, so the last query being available means all of them are
+            return glGetQueryObjecti(this.lastQuery, GL_QUERY_RESULT_AVAILABLE) == GL_TRUE;
+        }
+
+        private List<Result> read() {
+            List<Result> results = new ArrayList<>(this.sections.size());
+            for (Section section : this.sections) {
+                long start = glGetQueryObjectui64(section.startQuery, GL_QUERY_RESULT);
+                long end = glGetQueryObjectui64(section.endQuery, GL_QUERY_RESULT);
+                results.add(new Result(this.id, section.path, section.depth, end - start));
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package foundry.veil.api.client.render;
+
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL30C.*;
+import static org.lwjgl.opengl.GL31C.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL32C.*;
+import static org.lwjgl.opengl.GL44C.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * <p>A GPU buffer for data that is rewritten every frame.</p>
+ * <p>When {@link VeilRenderSystem#bufferStorageSupported()}, the buffer is persistently mapped and split into {@value #FRAMES} sections.
+ * Each call to {@link #map(long)} hands out the next section and fences the previous one,
+ * so data is written straight into GPU visible memory without any driver calls or stalls on data still in use.
+ * Otherwise, data is written into a staging buffer and uploaded into a freshly orphaned buffer on {@link #unmap()}.</p>
+ * <p>Data that changes many times per frame should use {@link #mapFrame(long)} instead. It places every write after the
+ * last one in the section for the current frame, and only moves to the next section once per frame.</p>
+ * <p>After mapping, {@link #getOffset()} is the byte offset of the written data in {@link #getBuffer()}.
+ * The buffer object can change when the buffer grows, so users that cache the buffer id need to check it after mapping.</p>
+ *
+ * @author Ocelot
+ */
+public class StreamingBuffer implements NativeResource {
+
+    /**
+     * The number of frames of data the buffer holds at once.
+     */
+    public static final int FRAMES = 3;
+
+    private static final long FENCE_TIMEOUT = 1_000_000_000L;
+
+    private final long alignment;
+    private final boolean persistent;
+    private final long[] fences;
+
+    private int buffer;
+    private long sectionSize;
+    private long mappedAddress;
+    private ByteBuffer staging;
+    private int section;
+    private long offset;
+    private long size;
+    private boolean written;
+    private boolean mapped;
+    private int frame;
+    private long cursor;
+    private boolean orphan;
+
+    /**
+     * Creates a new streaming buffer.
+     *
+     * @param initialSize The initial number of bytes that can be written each frame
+     * @param alignment   The alignment of each section in bytes. This must be a multiple of any offset alignment required when binding the buffer
+     */
+    public StreamingBuffer(long initialSize, long alignment) {
+        this.alignment = Math.max(alignment, 1);
+        this.persistent = VeilRenderSystem.bufferStorageSupported();
+        this.fences = new long[FRAMES];
+        this.frame = Integer.MIN_VALUE;
+        this.allocate(initialSize);
+    }
+
+    private void allocate(long size) {
+        this.freeBuffer();
+
+        this.sectionSize = Math.max((size + this.alignment - 1) / this.alignment, 1) * this.alignment;
+        this.buffer = glGenBuffers();
+        this.section = 0;
+        this.offset = 0;
+        this.written = false;
+        this.cursor = 0;
+
+        glBindBuffer(GL_COPY_WRITE_BUFFER, this.buffer);
+        if (this.persistent) {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(GL_COPY_WRITE_BUFFER, this.sectionSize * FRAMES, flags);
+            this.mappedAddress = nglMapBufferRange(GL_COPY_WRITE_BUFFER, 0, this.sectionSize * FRAMES, flags);
+            if (this.mappedAddress == NULL) {
+                glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+                throw new IllegalStateException("Failed to map streaming buffer");
+            }
+        } else {
+            glBufferData(GL_COPY_WRITE_BUFFER, this.sectionSize, GL_STREAM_DRAW);
+            this.staging = MemoryUtil.memRealloc(this.staging, (int) this.sectionSize);
+        }
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    private void waitFence(int section) {
+        long fence = this.fences[section];
+        if (fence == NULL) {
+            return;
+        }
+
+        int status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+        while (status == GL_TIMEOUT_EXPIRED) {
+            status = glClientWaitSync(fence, 0, FENCE_TIMEOUT);
+        }
+        glDeleteSync(fence);
+        this.fences[section] = NULL;
+    }
+
+    /**
+     * Reserves space for the specified number of bytes in the next section of this buffer.
+     * The buffer must be {@link #unmap() unmapped} before any commands using it are issued.
+     *
+     * @param size The number of bytes to write
+     * @return A buffer to write data into. Its position is 0 and its limit is <code>size</code>
+     */
+    public ByteBuffer map(long size) {
+        if (this.mapped) {
+            throw new IllegalStateException("Streaming buffer is already mapped");
+        }
+
+        if (size > this.sectionSize) {
+            this.allocate(size + size / 2);
+        } else if (this.persistent && this.written) {
+            // Every command that could read the last section has been issued by now
+            this.fences[this.section] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            this.section = (this.section + 1) % FRAMES;
+        }
+
+        this.mapped = true;
+        this.written = true;
+        this.size = size;
+        if (this.persistent) {
+            this.waitFence(this.section);
+            this.offset = this.section * this.sectionSize;
+            return MemoryUtil.memByteBuffer(this.mappedAddress + this.offset, (int) size);
+        }
+
+        this.offset = 0;
+        this.orphan = true;
+        return this.staging.clear().limit((int) size);
+    }
+
+    /**
+     * <p>Reserves space for the specified number of bytes in the section of this buffer for the current frame.</p>
+     * <p>This can be called any number of times each frame. Each write is placed at the next aligned offset after the last one,
+     * and the section is only fenced and swapped for the next one on the first call in a new frame.
+     * The buffer must be {@link #unmap() unmapped} before any commands using it are issued.</p>
+     *
+     * @param size The number of bytes to write
+     * @return A buffer to write data into. Its position is 0 and its limit is <code>size</code>
+     */
+    public ByteBuffer mapFrame(long size) {
+        if (this.mapped) {
+            throw new IllegalStateException("Streaming buffer is already mapped");
+        }
+
+        int frame = VeilRenderSystem.getFrame();
+        boolean newFrame = frame != this.frame;
+        this.frame = frame;
+
+        long start = newFrame ? 0 : this.cursor;
+        this.orphan = false;
+        if (start + size > this.sectionSize) {
+            // Writes from earlier this frame have already been bound, so they can stay in the old buffer until it is released
+            this.allocate((start + size) + (start + size) / 2);
+            start = 0;
+        } else if (newFrame && this.written) {
+            if (this.persistent) {
+                // Every command that could read the last frame has been issued by now
+                this.fences[this.section] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+                this.section = (this.section + 1) % FRAMES;
+                this.waitFence(this.section);
+            } else {
+                this.orphan = true;
+            }
+        }
+
+        this.mapped = true;
+        this.written = true;
+        this.size = size;
+        this.cursor = (start + size + this.alignment - 1) / this.alignment * this.alignment;
+        if (this.persistent) {
+            this.offset = this.section * this.sectionSize + start;
+            return MemoryUtil.memByteBuffer(this.mappedAddress + this.offset, (int) size);
+        }
+
+        this.offset = start;
+        return this.staging.clear().limit((int) size);
+    }
+
+    /**
+     * Finishes writing data from the last call to {@link #map(long)}.
+     */
+    public void unmap() {
+        if (!this.mapped) {
+            throw new IllegalStateException("Streaming buffer is not mapped");
+        }
+
+        this.mapped = false;
+        if (!this.persistent) {
+            glBindBuffer(GL_COPY_WRITE_BUFFER, this.buffer);
+            if (this.orphan) {
+                // Orphan the previous contents so the driver doesn't wait for draws still reading them
+                glBufferData(GL_COPY_WRITE_BUFFER, this.sectionSize, GL_STREAM_DRAW);
+            }
+            nglBufferSubData(GL_COPY_WRITE_BUFFER, this.offset, this.size, MemoryUtil.memAddress0(this.staging));
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        }
+    }
+
+    /**
+     * @return The OpenGL buffer object data is written into
+     */
+    public int getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * @return The byte offset of the last data written into {@link #getBuffer()}
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return The number of bytes last written
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of bytes that can be written each frame without growing the buffer
+     */
+    public long getCapacity() {
+        return this.sectionSize;
+    }
+
+    /**
+     * @return Whether this buffer is persistently mapped
+     */
+    public boolean isPersistent() {
+        return this.persistent;
+    }
+
+    private void freeBuffer() {
+        for (int i = 0; i < this.fences.length; i++) {
+            if (this.fences[i] != NULL) {
+                glDeleteSync(this.fences[i]);
+                this.fences[i] = NULL;
+            }
+        }
+        if (this.buffer != 0) {
+            // Deleting a mapped buffer also unmaps it
+            glDeleteBuffers(this.buffer);
+            this.buffer = 0;
+            this.mappedAddress = NULL;
+        }
+        this.mapped = false;
+    }
+
+    @Override
+    public void free() {
+        this.freeBuffer();
+        if (this.staging != null) {
+            MemoryUtil.memFree(this.staging);
+            this.staging = null;
+        }
+    }
+}
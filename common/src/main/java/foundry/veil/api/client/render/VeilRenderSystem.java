@@ -13,6 +13,7 @@ import foundry.veil.ext.VertexBufferExtension;
 import foundry.veil.impl.client.imgui.VeilImGuiImpl;
 import foundry.veil.impl.client.render.pipeline.VeilUniformBlockState;
 import foundry.veil.impl.client.render.shader.ShaderProgramImpl;
+import foundry.veil.impl.client.render.shader.definition.ShaderBlockArena;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.ShaderInstance;
 import net.minecraft.resources.ResourceLocation;
@@ -60,6 +61,12 @@ public final class VeilRenderSystem {
     private static final BooleanSupplier TEXTURE_MULTIBIND_SUPPORTED = glCapability(caps -> caps.OpenGL44 || caps.glBindTextures != 0L);
     private static final BooleanSupplier SPARSE_BUFFERS_SUPPORTED = glCapability(caps -> caps.OpenGL44 || caps.GL_ARB_sparse_buffer);
     private static final BooleanSupplier DIRECT_STATE_ACCESS_SUPPORTED = glCapability(caps -> caps.OpenGL45 || caps.GL_ARB_direct_state_access);
+    private static final BooleanSupplier BUFFER_STORAGE_SUPPORTED = glCapability(caps -> caps.OpenGL44 || caps.GL_ARB_buffer_storage);
+    private static final BooleanSupplier INDIRECT_PARAMETERS_SUPPORTED = glCapability(caps -> caps.OpenGL46 || caps.GL_ARB_indirect_parameters);
+    private static final BooleanSupplier PROGRAM_BINARY_SUPPORTED = glCapability(caps -> (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0);
+    private static final BooleanSupplier PARALLEL_SHADER_COMPILE_SUPPORTED = glCapability(caps -> caps.GL_KHR_parallel_shader_compile || caps.GL_ARB_parallel_shader_compile);
+    private static final BooleanSupplier TIMER_QUERY_SUPPORTED = glCapability(caps -> caps.OpenGL33 || caps.GL_ARB_timer_query);
+    private static final BooleanSupplier INVALIDATE_SUBDATA_SUPPORTED = glCapability(caps -> caps.OpenGL43 || caps.GL_ARB_invalidate_subdata);
     private static final IntSupplier MAX_COMBINED_TEXTURE_IMAGE_UNITS = VeilRenderSystem.glGetter(() -> glGetInteger(GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS));
     private static final IntSupplier MAX_COLOR_ATTACHMENTS = VeilRenderSystem.glGetter(() -> glGetInteger(GL_MAX_COLOR_ATTACHMENTS));
     private static final IntSupplier MAX_SAMPLES = VeilRenderSystem.glGetter(() -> glGetInteger(GL_MAX_SAMPLES));
@@ -187,6 +194,7 @@ public final class VeilRenderSystem {
     private static VeilRenderer renderer;
     private static ResourceLocation shaderLocation;
     private static VertexBuffer vbo;
+    private static int frame;
 
 
     private VeilRenderSystem() {
@@ -249,6 +257,15 @@ public final class VeilRenderSystem {
         renderer = new VeilRenderer(resourceManager);
         VeilImGuiImpl.init(client.getWindow().getWindow());
 
+        if (PARALLEL_SHADER_COMPILE_SUPPORTED.getAsBoolean()) {
+            // Let the driver use as many threads as it wants to compile shaders
+            if (GL.getCapabilities().GL_KHR_parallel_shader_compile) {
+                KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+            } else {
+                ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(0xFFFFFFFF);
+            }
+        }
+
         Tesselator tesselator = RenderSystem.renderThreadTesselator();
         BufferBuilder bufferBuilder = tesselator.getBuilder();
 
@@ -345,12 +362,12 @@ public final class VeilRenderSystem {
     }
 
     /**
-     * Clears all pending shader errors and re-queues uniform block ids to shaders.
+     * Clears all pending shader errors and assigns named shader blocks new bindings the next time they are bound.
      */
     @ApiStatus.Internal
     public static void finalizeShaderCompilation() {
         ERRORED_SHADERS.clear();
-        UNIFORM_BLOCK_STATE.queueUpload();
+        UNIFORM_BLOCK_STATE.reload();
     }
 
     /**
@@ -374,6 +391,18 @@ public final class VeilRenderSystem {
         ((VertexBufferExtension) vbo).veil$drawInstanced(instances);
     }
 
+    /**
+     * Draws instances of the specified vertex buffer, offsetting all instanced attributes by the specified base instance.
+     *
+     * @param vbo          The vertex buffer to draw
+     * @param instances    The number of instances to draw
+     * @param baseInstance The first instance to read instanced attributes from
+     * @see <a target="_blank" href="http://docs.gl/gl4/glDrawElementsInstancedBaseInstance">Reference Page</a>
+     */
+    public static void drawInstanced(VertexBuffer vbo, int instances, int baseInstance) {
+        ((VertexBufferExtension) vbo).veil$drawInstanced(instances, baseInstance);
+    }
+
     /**
      * Draws indirect instances of the specified vertex buffer.
      *
@@ -387,6 +416,21 @@ public final class VeilRenderSystem {
         ((VertexBufferExtension) vbo).veil$drawIndirect(indirect, drawCount, stride);
     }
 
+    /**
+     * Draws indirect instances of the specified vertex buffer, reading the number of draws from the currently bound {@link GL46C#GL_PARAMETER_BUFFER}.
+     * This requires {@link #indirectParametersSupported()}.
+     *
+     * @param vbo          The vertex buffer to draw
+     * @param indirect     A pointer into the currently bound {@link GL40C#GL_DRAW_INDIRECT_BUFFER}
+     * @param drawCount    The offset into the currently bound {@link GL46C#GL_PARAMETER_BUFFER} of the number of draws
+     * @param maxDrawCount The maximum number of draws that will be read
+     * @param stride       The offset between indirect elements
+     * @see <a target="_blank" href="https://registry.khronos.org/OpenGL-Refpages/gl4/html/glMultiDrawElementsIndirectCount.xhtml">Reference Page</a>
+     */
+    public static void drawIndirectCount(VertexBuffer vbo, long indirect, long drawCount, int maxDrawCount, int stride) {
+        ((VertexBufferExtension) vbo).veil$drawIndirectCount(indirect, drawCount, maxDrawCount, stride);
+    }
+
     /**
      * Consumes all OpenGL errors and prints them to console.
      *
@@ -459,6 +503,48 @@ public final class VeilRenderSystem {
         return VeilRenderSystem.DIRECT_STATE_ACCESS_SUPPORTED.getAsBoolean();
     }
 
+    /**
+     * @return Whether {@link ARBBufferStorage} is supported
+     */
+    public static boolean bufferStorageSupported() {
+        return VeilRenderSystem.BUFFER_STORAGE_SUPPORTED.getAsBoolean();
+    }
+
+    /**
+     * @return Whether {@link ARBIndirectParameters} is supported
+     */
+    public static boolean indirectParametersSupported() {
+        return VeilRenderSystem.INDIRECT_PARAMETERS_SUPPORTED.getAsBoolean();
+    }
+
+    /**
+     * @return Whether {@link ARBGetProgramBinary} is supported and the driver has at least one binary format
+     */
+    public static boolean programBinarySupported() {
+        return VeilRenderSystem.PROGRAM_BINARY_SUPPORTED.getAsBoolean();
+    }
+
+    /**
+     * @return Whether {@link KHRParallelShaderCompile} or {@link ARBParallelShaderCompile} is supported
+     */
+    public static boolean parallelShaderCompileSupported() {
+        return VeilRenderSystem.PARALLEL_SHADER_COMPILE_SUPPORTED.getAsBoolean();
+    }
+
+    /**
+     * @return Whether {@link ARBTimerQuery} is supported
+     */
+    public static boolean timerQuerySupported() {
+        return VeilRenderSystem.TIMER_QUERY_SUPPORTED.getAsBoolean();
+    }
+
+    /**
+     * @return Whether {@link ARBInvalidateSubdata} is supported
+     */
+    public static boolean invalidateSubdataSupported() {
+        return VeilRenderSystem.INVALIDATE_SUBDATA_SUPPORTED.getAsBoolean();
+    }
+
     /**
      * @return The GL maximum number of texture units that can be bound
      */
@@ -651,6 +737,29 @@ public final class VeilRenderSystem {
         UNIFORM_BLOCK_STATE.unbind(block);
     }
 
+    /**
+     * Assigns the bindings of all named shader blocks to the specified program.
+     *
+     * @param program The program to update
+     */
+    @ApiStatus.Internal
+    public static void applyShaderBlockBindings(ShaderProgram program) {
+        RenderSystem.assertOnRenderThreadOrInit();
+        UNIFORM_BLOCK_STATE.applyBindings(program);
+    }
+
+    /**
+     * Retrieves the shared buffer fixed-size shader blocks are allocated from.
+     *
+     * @param target The buffer target of the block
+     * @return The arena for that target
+     */
+    @ApiStatus.Internal
+    public static ShaderBlockArena blockArena(int target) {
+        RenderSystem.assertOnRenderThreadOrInit();
+        return UNIFORM_BLOCK_STATE.getArena(target);
+    }
+
     /**
      * Binds the specified vertex array and invalidates the vanilla MC immediate buffer state.
      *
@@ -698,6 +807,13 @@ public final class VeilRenderSystem {
         return LIGHT1_POSITION;
     }
 
+    /**
+     * @return The number of frames that have finished rendering. This changes exactly once per frame
+     */
+    public static int getFrame() {
+        return frame;
+    }
+
     // Internal
 
     @ApiStatus.Internal
@@ -708,8 +824,13 @@ public final class VeilRenderSystem {
     @ApiStatus.Internal
     public static void endFrame() {
         VeilImGuiImpl.get().endFrame();
+        renderer.getShaderManager().pollPendingPrograms();
+        renderer.getDeferredRenderer().getDeferredShaderManager().pollPendingPrograms();
         renderer.getFramebufferManager().clear();
+        renderer.getFramebufferManager().endFrame();
+        renderer.getGpuProfiler().endFrame();
         UNIFORM_BLOCK_STATE.clear();
+        frame++;
     }
 
     @ApiStatus.Internal
@@ -731,6 +852,7 @@ public final class VeilRenderSystem {
         if (renderer != null) {
             renderer.free();
         }
+        UNIFORM_BLOCK_STATE.free();
         vbo.close();
     }
 
@@ -1,11 +1,13 @@
 package foundry.veil.api.client.render;
 
+import foundry.veil.Veil;
 import foundry.veil.api.client.editor.EditorManager;
 import foundry.veil.api.client.render.deferred.VeilDeferredRenderer;
 import foundry.veil.api.client.render.framebuffer.FramebufferManager;
 import foundry.veil.api.client.render.post.PostPipeline;
 import foundry.veil.api.client.render.post.PostProcessingManager;
 import foundry.veil.api.client.render.rendertype.layer.DynamicRenderTypeManager;
+import foundry.veil.api.client.render.shader.ProgramBinaryCache;
 import foundry.veil.api.client.render.shader.ShaderManager;
 import foundry.veil.api.client.render.shader.ShaderModificationManager;
 import foundry.veil.api.client.render.shader.definition.ShaderPreDefinitions;
@@ -19,7 +21,9 @@ import net.minecraft.server.packs.resources.ReloadableResourceManager;
 import org.jetbrains.annotations.ApiStatus;
 import org.lwjgl.system.NativeResource;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages the render pipeline for Veil.
@@ -30,6 +34,7 @@ public class VeilRenderer implements NativeResource {
 
     private final ShaderModificationManager shaderModificationManager;
     private final ShaderPreDefinitions shaderPreDefinitions;
+    private final ProgramBinaryCache programBinaryCache;
     private final ShaderManager shaderManager;
     private final FramebufferManager framebufferManager;
     private final PostProcessingManager postProcessingManager;
@@ -39,21 +44,25 @@ public class VeilRenderer implements NativeResource {
     private final EditorManager editorManager;
     private final CameraMatrices cameraMatrices;
     private final GuiInfo guiInfo;
+    private final GpuProfiler gpuProfiler;
 
     @ApiStatus.Internal
     public VeilRenderer(ReloadableResourceManager resourceManager) {
-        this.shaderModificationManager = new ShaderModificationManager();
+        Path shaderCache = Minecraft.getInstance().gameDirectory.toPath().resolve("veil").resolve("shader_cache");
+        this.shaderModificationManager = new ShaderModificationManager(Veil.MODIFIED_SHADER_CACHE ? shaderCache.resolve("modified") : null);
         this.shaderPreDefinitions = new ShaderPreDefinitions();
-        this.shaderManager = new ShaderManager(ShaderManager.PROGRAM_SET, this.shaderPreDefinitions);
+        this.programBinaryCache = new ProgramBinaryCache(shaderCache);
+        this.shaderManager = new ShaderManager(ShaderManager.PROGRAM_SET, this.shaderPreDefinitions, this.programBinaryCache);
         this.framebufferManager = new FramebufferManager();
         this.postProcessingManager = new PostProcessingManager();
-        ShaderManager deferredShaderManager = new ShaderManager(ShaderManager.DEFERRED_SET, this.shaderPreDefinitions);
+        ShaderManager deferredShaderManager = new ShaderManager(ShaderManager.DEFERRED_SET, this.shaderPreDefinitions, this.programBinaryCache);
         this.deferredRenderer = new VeilDeferredRenderer(deferredShaderManager, this.shaderPreDefinitions, this.framebufferManager, this.postProcessingManager);
         this.dynamicRenderTypeManager = new DynamicRenderTypeManager();
         this.quasarParticleManager = new ParticleSystemManager();
         this.editorManager = new EditorManager(resourceManager);
         this.cameraMatrices = new CameraMatrices();
         this.guiInfo = new GuiInfo();
+        this.gpuProfiler = new GpuProfiler();
 
         List<PreparableReloadListener> listeners = ((ReloadableResourceManagerAccessor) resourceManager).getListeners();
 
@@ -61,6 +70,9 @@ public class VeilRenderer implements NativeResource {
         listeners.add(0, this.shaderModificationManager);
         // This must be before vanilla shaders so vanilla shaders can be replaced
         listeners.add(1, this.shaderManager);
+        // Program binaries that were not used since the last reload are pruned before any shaders are compiled again
+        listeners.add(0, (barrier, manager, prepareProfiler, applyProfiler, backgroundExecutor, gameExecutor) ->
+                CompletableFuture.runAsync(this.programBinaryCache::startReload, gameExecutor).thenCompose(barrier::wait));
         resourceManager.registerReloadListener(this.framebufferManager);
         resourceManager.registerReloadListener(this.postProcessingManager);
         resourceManager.registerReloadListener(this.deferredRenderer);
@@ -81,6 +93,13 @@ public class VeilRenderer implements NativeResource {
         return this.shaderPreDefinitions;
     }
 
+    /**
+     * @return The on-disk cache of linked shader programs
+     */
+    public ProgramBinaryCache getProgramBinaryCache() {
+        return this.programBinaryCache;
+    }
+
     /**
      * @return The manager for all veil shaders
      */
@@ -144,6 +163,13 @@ public class VeilRenderer implements NativeResource {
         return this.guiInfo;
     }
 
+    /**
+     * @return The profiler for GPU time spent in each part of the frame
+     */
+    public GpuProfiler getGpuProfiler() {
+        return this.gpuProfiler;
+    }
+
     /**
      * @return Whether ImGui can be used
      */
@@ -167,5 +193,6 @@ public class VeilRenderer implements NativeResource {
         this.quasarParticleManager.clear();
         this.cameraMatrices.free();
         this.guiInfo.free();
+        this.gpuProfiler.free();
     }
 }
@@ -7,7 +7,8 @@ import com.mojang.blaze3d.vertex.VertexFormatElement;
 import static com.mojang.blaze3d.vertex.DefaultVertexFormat.*;
 
 public class VeilVertexFormat {
-    public static final VertexFormatElement ELEMENT_BONE_INDEX = new VertexFormatElement(0, VertexFormatElement.Type.USHORT, VertexFormatElement.Usage.GENERIC, 1);
+    // UV elements are uploaded as integer attributes, generic elements would be converted to floats
+    public static final VertexFormatElement ELEMENT_BONE_INDEX = new VertexFormatElement(0, VertexFormatElement.Type.USHORT, VertexFormatElement.Usage.UV, 1);
 
     // todo: padding???
     public static final VertexFormat SKINNED_MESH = new VertexFormat(
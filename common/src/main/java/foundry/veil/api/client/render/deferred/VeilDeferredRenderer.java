@@ -2,6 +2,7 @@ package foundry.veil.api.client.render.deferred;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import foundry.veil.Veil;
+import foundry.veil.api.client.render.GpuProfiler;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.VeilRenderer;
 import foundry.veil.api.client.render.deferred.light.renderer.LightRenderer;
@@ -22,6 +23,7 @@ import net.minecraft.server.packs.resources.PreparableReloadListener;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.util.profiling.ProfilerFiller;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.NativeResource;
 
 import java.util.concurrent.CompletableFuture;
@@ -46,6 +48,10 @@ import static org.lwjgl.opengl.GL11C.GL_NEAREST;
  *     <li>Final image compositing</li>
  *     <li>Final post-processing via {@link PostProcessingManager}</li>
  * </ul>
+ * <p>When {@link #SINGLE_LIGHT_PASS_KEY} is defined, both post-processing pipelines run first and the lights are drawn once into
+ * both light buffers at the same time. The light and mix pipelines are then run for each buffer in the same order as before.
+ * Light shaders must write the transparent light to {@value LightRenderer#TRANSPARENT_LIGHT_OUTPUT} at location 1. If any light shader doesn't,
+ * its lights are drawn into the transparent buffer separately and the normal two pass order above is used until the next reload.</p>
  *
  * @author Ocelot
  */
@@ -53,6 +59,7 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
 
     public static final ResourceLocation PACK_ID = Veil.veilPath("deferred");
     public static final String DISABLE_VANILLA_ENTITY_LIGHT_KEY = "DISABLE_VANILLA_ENTITY_LIGHT";
+    public static final String SINGLE_LIGHT_PASS_KEY = "SINGLE_LIGHT_PASS";
 
     public static final ResourceLocation OPAQUE_POST = Veil.veilPath("core/opaque");
     public static final ResourceLocation LIGHT_POST = Veil.veilPath("core/light");
@@ -71,6 +78,8 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
     private final PostProcessingManager postProcessingManager;
     private final LightRenderer lightRenderer;
 
+    private AdvancedFbo lightFramebuffer;
+    private boolean singleLightPassUnsupported;
     private boolean enabled;
     private RendererState state;
 
@@ -104,6 +113,8 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
             }
 
             if (this.enabled) {
+                // Light shaders may have been replaced, so check if they support a single pass again
+                this.singleLightPassUnsupported = false;
                 return this.deferredShaderManager.reload(preparationBarrier, resourceManager, prepareProfiler, applyProfiler, backgroundExecutor, gameExecutor);
             }
 
@@ -117,6 +128,14 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         this.state = RendererState.INACTIVE;
         this.deferredShaderManager.close();
         this.lightRenderer.free();
+        this.freeLightFramebuffer();
+    }
+
+    private void freeLightFramebuffer() {
+        if (this.lightFramebuffer != null) {
+            this.lightFramebuffer.free();
+            this.lightFramebuffer = null;
+        }
     }
 
     @ApiStatus.Internal
@@ -207,34 +226,93 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         }
     }
 
-    private void run(ProfilerFiller profiler, AdvancedFbo deferred, AdvancedFbo light, ResourceLocation post, ResourceLocation mix) {
-        PostPipeline postPipeline = this.postProcessingManager.getPipeline(post);
-        if (postPipeline != null) {
-            profiler.push("post");
-            this.postProcessingManager.runPipeline(postPipeline, false);
+    private void runPipeline(ProfilerFiller profiler, GpuProfiler gpuProfiler, String name, ResourceLocation id) {
+        PostPipeline pipeline = this.postProcessingManager.getPipeline(id);
+        if (pipeline != null) {
+            profiler.push(name);
+            gpuProfiler.push(name);
+            this.postProcessingManager.runPipeline(pipeline, false);
             profiler.pop();
+            gpuProfiler.pop();
         }
+    }
+
+    private void run(ProfilerFiller profiler, GpuProfiler gpuProfiler, AdvancedFbo deferred, AdvancedFbo light, ResourceLocation post, ResourceLocation mix) {
+        this.runPipeline(profiler, gpuProfiler, "post", post);
 
         profiler.push("draw_lights");
+        gpuProfiler.push("draw_lights");
         light.bind(true);
         this.lightRenderer.render(deferred);
         profiler.pop();
+        gpuProfiler.pop();
 
         // Applies effects to the final light image
-        PostPipeline lightPipeline = this.postProcessingManager.getPipeline(LIGHT_POST);
-        if (lightPipeline != null) {
-            profiler.push("light_post");
-            this.postProcessingManager.runPipeline(lightPipeline, false);
-            profiler.pop();
+        this.runPipeline(profiler, gpuProfiler, "light_post", LIGHT_POST);
+        // Applies light to the image
+        this.runPipeline(profiler, gpuProfiler, "mix", mix);
+        invalidateDepth(deferred);
+    }
+
+    private void runSinglePass(ProfilerFiller profiler, GpuProfiler gpuProfiler, AdvancedFbo deferred, AdvancedFbo transparent, AdvancedFbo light, AdvancedFbo transparentLight) {
+        this.runPipeline(profiler, gpuProfiler, "opaque_post", OPAQUE_POST);
+        this.runPipeline(profiler, gpuProfiler, "transparent_post", TRANSPARENT_POST);
+
+        profiler.push("draw_lights");
+        gpuProfiler.push("draw_lights");
+        light.bind(true);
+        this.lightRenderer.render(deferred, transparent);
+        // Some light shaders may not write the transparent light, so draw them again into the transparent buffer
+        transparentLight.bind(true);
+        if (this.lightRenderer.renderTransparentFallback(transparent)) {
+            this.singleLightPassUnsupported = true;
         }
+        profiler.pop();
+        gpuProfiler.pop();
+
+        this.runPipeline(profiler, gpuProfiler, "opaque_light_post", LIGHT_POST);
+        this.runPipeline(profiler, gpuProfiler, "opaque_mix", OPAQUE_MIX);
+        invalidateDepth(deferred);
+        this.runPipeline(profiler, gpuProfiler, "transparent_light_post", LIGHT_POST);
+        this.runPipeline(profiler, gpuProfiler, "transparent_mix", TRANSPARENT_MIX);
+        invalidateDepth(transparent);
+    }
 
-        // Applies light to the image
-        PostPipeline mixPipeline = this.postProcessingManager.getPipeline(mix);
-        if (mixPipeline != null) {
-            profiler.push("mix");
-            this.postProcessingManager.runPipeline(mixPipeline, false);
-            profiler.pop();
+    /**
+     * The mix pipelines copy the depth into the final buffers, so the original is no longer needed until it is cleared next frame.
+     */
+    private static void invalidateDepth(AdvancedFbo framebuffer) {
+        framebuffer.invalidate(GL_DEPTH_BUFFER_BIT);
+        AdvancedFbo.unbind();
+    }
+
+    /**
+     * Retrieves a framebuffer that draws into both light buffers at once.
+     *
+     * @return The combined framebuffer or <code>null</code> if the light buffers can't be drawn to together
+     */
+    private @Nullable AdvancedFbo getLightFramebuffer(AdvancedFbo deferredLight, AdvancedFbo transparentLight) {
+        if (!deferredLight.isColorTextureAttachment(0) || !transparentLight.isColorTextureAttachment(0) ||
+                deferredLight.getWidth() != transparentLight.getWidth() || deferredLight.getHeight() != transparentLight.getHeight()) {
+            return null;
         }
+
+        int opaqueTexture = deferredLight.getColorTextureAttachment(0).getId();
+        int transparentTexture = transparentLight.getColorTextureAttachment(0).getId();
+        if (this.lightFramebuffer == null || this.lightFramebuffer.getWidth() != deferredLight.getWidth() || this.lightFramebuffer.getHeight() != deferredLight.getHeight()) {
+            this.freeLightFramebuffer();
+            this.lightFramebuffer = AdvancedFbo.withSize(deferredLight.getWidth(), deferredLight.getHeight())
+                    .addColorTextureWrapper(opaqueTexture)
+                    .addColorTextureWrapper(transparentTexture)
+                    .build(true);
+            return this.lightFramebuffer;
+        }
+
+        // The light buffers may have been recreated, so always attach the current textures
+        this.lightFramebuffer.bind(false);
+        this.lightFramebuffer.setColorAttachmentTexture(0, opaqueTexture);
+        this.lightFramebuffer.setColorAttachmentTexture(1, transparentTexture);
+        return this.lightFramebuffer;
     }
 
     @ApiStatus.Internal
@@ -249,7 +327,9 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         }
 
         ProfilerFiller profiler = Minecraft.getInstance().getProfiler();
+        GpuProfiler gpuProfiler = VeilRenderSystem.renderer().getGpuProfiler();
         profiler.push("veil_deferred");
+        gpuProfiler.push("veil_deferred");
 
         this.end();
 
@@ -261,19 +341,35 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         if (deferred == null || transparent == null || deferredLight == null || transparentLight == null || post == null) {
             Veil.LOGGER.error("Missing deferred light buffers");
             this.free();
+            gpuProfiler.pop();
             return;
         }
 
         profiler.push("setup_lights");
+        gpuProfiler.push("setup_lights");
         this.lightRenderer.setup(VeilRenderer.getCullingFrustum());
-        profiler.popPush("opaque_light");
-        this.run(profiler, deferred, deferredLight, OPAQUE_POST, OPAQUE_MIX);
-        profiler.popPush("transparent_light");
-        this.run(profiler, transparent, transparentLight, TRANSPARENT_POST, TRANSPARENT_MIX);
+        AdvancedFbo light = this.isSingleLightPass() && !this.singleLightPassUnsupported ? this.getLightFramebuffer(deferredLight, transparentLight) : null;
+        if (light != null) {
+            // The light buffers are drawn through the combined framebuffer, so they need to be told to clear
+            deferredLight.markDrawn();
+            transparentLight.markDrawn();
+            profiler.popPush("light");
+            gpuProfiler.popPush("light");
+            this.runSinglePass(profiler, gpuProfiler, deferred, transparent, light, transparentLight);
+        } else {
+            profiler.popPush("opaque_light");
+            gpuProfiler.popPush("opaque_light");
+            this.run(profiler, gpuProfiler, deferred, deferredLight, OPAQUE_POST, OPAQUE_MIX);
+            profiler.popPush("transparent_light");
+            gpuProfiler.popPush("transparent_light");
+            this.run(profiler, gpuProfiler, transparent, transparentLight, TRANSPARENT_POST, TRANSPARENT_MIX);
+        }
         profiler.pop();
+        gpuProfiler.pop();
         this.lightRenderer.clear();
 
         profiler.push("screen_post");
+        gpuProfiler.push("screen_post");
 
         // Draws the final opaque image and transparent onto the background
         PostPipeline screenPipeline = this.postProcessingManager.getPipeline(SCREEN_POST);
@@ -288,8 +384,10 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
 //        profiler.popPush("resolve");
 //        post.resolveToFramebuffer(Minecraft.getInstance().getMainRenderTarget());
         profiler.pop();
+        gpuProfiler.pop();
 
         profiler.pop();
+        gpuProfiler.pop();
     }
 
     @ApiStatus.Internal
@@ -306,9 +404,11 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         boolean ambientOcclusion = this.lightRenderer.isAmbientOcclusionEnabled();
         boolean vanillaLights = this.lightRenderer.isVanillaLightEnabled();
         boolean vanillaEntityLights = this.shaderPreDefinitions.getDefinition(DISABLE_VANILLA_ENTITY_LIGHT_KEY) == null;
+        boolean singleLightPass = this.isSingleLightPass();
         consumer.accept("Ambient Occlusion: " + (ambientOcclusion ? ChatFormatting.GREEN + "On" : ChatFormatting.RED + "Off"));
         consumer.accept("Vanilla Light: " + (vanillaLights ? ChatFormatting.GREEN + "On" : ChatFormatting.RED + "Off"));
         consumer.accept("Vanilla Entity Light: " + (vanillaEntityLights ? ChatFormatting.GREEN + "On" : ChatFormatting.RED + "Off"));
+        consumer.accept("Single Light Pass: " + (singleLightPass ? this.singleLightPassUnsupported ? ChatFormatting.YELLOW + "Unsupported" : ChatFormatting.GREEN + "On" : ChatFormatting.RED + "Off"));
         this.lightRenderer.addDebugInfo(consumer);
     }
 
@@ -326,6 +426,30 @@ public class VeilDeferredRenderer implements PreparableReloadListener, NativeRes
         this.state = RendererState.DISABLED;
     }
 
+    /**
+     * Sets whether the opaque and transparent buffers should be lit in a single pass.
+     * This recompiles all light shaders since they need to read from both buffers.
+     * Two passes are still used if any light shader doesn't write {@value LightRenderer#TRANSPARENT_LIGHT_OUTPUT}.
+     *
+     * @param singleLightPass Whether to draw lights once for both buffers
+     */
+    public void setSingleLightPass(boolean singleLightPass) {
+        this.singleLightPassUnsupported = false;
+        if (singleLightPass) {
+            this.shaderPreDefinitions.define(SINGLE_LIGHT_PASS_KEY);
+        } else {
+            this.shaderPreDefinitions.remove(SINGLE_LIGHT_PASS_KEY);
+            this.freeLightFramebuffer();
+        }
+    }
+
+    /**
+     * @return Whether the opaque and transparent buffers are lit in a single pass
+     */
+    public boolean isSingleLightPass() {
+        return this.shaderPreDefinitions.getDefinition(SINGLE_LIGHT_PASS_KEY) != null;
+    }
+
     /**
      * @return Whether the deferred renderer is initialized and ready to use
      */
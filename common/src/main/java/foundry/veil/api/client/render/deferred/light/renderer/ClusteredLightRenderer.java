@@ -0,0 +1,312 @@
+package foundry.veil.api.client.render.deferred.light.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import foundry.veil.api.client.render.CullFrustum;
+import foundry.veil.api.client.render.StreamingBuffer;
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.deferred.light.Light;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import foundry.veil.api.client.render.shader.definition.DynamicShaderBlock;
+import foundry.veil.api.client.render.shader.definition.ShaderBlock;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.profiling.ProfilerFiller;
+import org.joml.Vector3dc;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL31C.*;
+import static org.lwjgl.opengl.GL42C.glMemoryBarrier;
+import static org.lwjgl.opengl.GL43C.*;
+
+/**
+ * <p>Shades lights with a single full-screen pass instead of drawing a proxy volume for each light.</p>
+ * <p>Visible lights are binned by a compute shader into a {@value #CLUSTER_X}x{@value #CLUSTER_Y}x{@value #CLUSTER_Z} grid of view-space clusters,
+ * with depth slices spaced exponentially between the near and far plane.
+ * The full-screen pass then only evaluates the lights in the cluster of each pixel, so large overlapping lights don't cause any overdraw.</p>
+ * <p>Each cluster holds up to {@value #MAX_CLUSTER_LIGHTS} lights. Any additional lights touching a cluster are ignored in that cluster.</p>
+ *
+ * @param <T> The type of lights to render
+ * @author Ocelot
+ */
+public abstract class ClusteredLightRenderer<T extends Light> implements LightTypeRenderer<T> {
+
+    public static final int CLUSTER_X = 16;
+    public static final int CLUSTER_Y = 9;
+    public static final int CLUSTER_Z = 24;
+    public static final int CLUSTER_COUNT = CLUSTER_X * CLUSTER_Y * CLUSTER_Z;
+    public static final int MAX_CLUSTER_LIGHTS = 64;
+
+    private static final int MIN_LIGHTS = 20;
+    private static final int BIN_GROUP_SIZE = 64;
+    private static final int BOUNDS_SIZE = Float.BYTES * 4;
+
+    protected final int lightSize;
+    protected int maxLights;
+
+    private final VertexBuffer vbo;
+    private final int boundsVbo;
+    private final int lightVbo;
+    private final int clusterVbo;
+    private final DynamicShaderBlock<?> boundsBlock;
+    private final DynamicShaderBlock<?> lightBlock;
+    private final DynamicShaderBlock<?> clusterBlock;
+    private final StreamingBuffer boundsUploadBuffer;
+    private final StreamingBuffer lightUploadBuffer;
+    private final IntList visible;
+
+    private int visibleLights;
+
+    /**
+     * Creates a new clustered light renderer with a resizeable light buffer.
+     *
+     * @param lightSize The size of each light in bytes. Must be a multiple of {@link Float#BYTES}
+     */
+    public ClusteredLightRenderer(int lightSize) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Clustered light renderer is not supported");
+        }
+
+        this.lightSize = lightSize;
+        this.maxLights = MIN_LIGHTS;
+        this.vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        this.boundsVbo = glGenBuffers();
+        this.lightVbo = glGenBuffers();
+        this.clusterVbo = glGenBuffers();
+        this.boundsBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.boundsVbo);
+        this.lightBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.lightVbo);
+        this.clusterBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.clusterVbo);
+        this.boundsUploadBuffer = new StreamingBuffer((long) this.maxLights * BOUNDS_SIZE, Integer.BYTES);
+        this.lightUploadBuffer = new StreamingBuffer((long) this.maxLights * this.lightSize, Integer.BYTES);
+        this.visible = new IntArrayList();
+
+        this.vbo.bind();
+        this.vbo.upload(createMesh());
+        VertexBuffer.unbind();
+
+        // Light counts are stored first, followed by the light indices of each cluster
+        long clusterSize = (long) CLUSTER_COUNT * (MAX_CLUSTER_LIGHTS + 1) * Integer.BYTES;
+        glBindBuffer(GL_COPY_WRITE_BUFFER, this.clusterVbo);
+        glBufferData(GL_COPY_WRITE_BUFFER, clusterSize, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        this.clusterBlock.setSize(clusterSize);
+
+        this.initBuffers();
+    }
+
+    private static BufferBuilder.RenderedBuffer createMesh() {
+        Tesselator tesselator = RenderSystem.renderThreadTesselator();
+        BufferBuilder bufferBuilder = tesselator.getBuilder();
+        bufferBuilder.begin(VertexFormat.Mode.TRIANGLE_STRIP, DefaultVertexFormat.POSITION);
+        LightTypeRenderer.createQuad(bufferBuilder);
+        return bufferBuilder.end();
+    }
+
+    /**
+     * Retrieves the center of the sphere used to bin the specified light.
+     *
+     * @param light The light to get the position of
+     * @return The world-space center of the light bounds
+     */
+    protected abstract Vector3dc getPosition(T light);
+
+    /**
+     * Retrieves the radius of the sphere used to bin the specified light.
+     *
+     * @param light The light to get the radius of
+     * @return The radius of the light bounds
+     */
+    protected abstract float getRadius(T light);
+
+    /**
+     * Writes the shading data of the specified light into the buffer.
+     * This should write exactly {@link #lightSize} bytes starting at the current position of the buffer.
+     *
+     * @param light  The light to store
+     * @param buffer The buffer to write into
+     */
+    protected abstract void store(T light, ByteBuffer buffer);
+
+    /**
+     * Sets up the render state for the full-screen shading pass.
+     *
+     * @param lightRenderer The renderer instance
+     * @param lights        All lights of this type
+     */
+    protected abstract void setupRenderState(LightRenderer lightRenderer, List<T> lights);
+
+    /**
+     * Clears the render state after the full-screen shading pass.
+     *
+     * @param lightRenderer The renderer instance
+     * @param lights        All lights of this type
+     */
+    protected abstract void clearRenderState(LightRenderer lightRenderer, List<T> lights);
+
+    private void initBuffers() {
+        glBindBuffer(GL_COPY_WRITE_BUFFER, this.boundsVbo);
+        glBufferData(GL_COPY_WRITE_BUFFER, (long) this.maxLights * BOUNDS_SIZE, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, this.lightVbo);
+        glBufferData(GL_COPY_WRITE_BUFFER, (long) this.maxLights * this.lightSize, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        this.boundsBlock.setSize((long) this.maxLights * BOUNDS_SIZE);
+        this.lightBlock.setSize((long) this.maxLights * this.lightSize);
+    }
+
+    /**
+     * Copies the contents of the specified streaming buffer into the start of the specified buffer.
+     */
+    private static void copyFrom(StreamingBuffer buffer, int target) {
+        glBindBuffer(GL_COPY_READ_BUFFER, buffer.getBuffer());
+        glBindBuffer(GL_COPY_WRITE_BUFFER, target);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, buffer.getOffset(), 0L, buffer.getSize());
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    private void bindBlocks() {
+        VeilRenderSystem.bind("VeilLightBounds", this.boundsBlock);
+        VeilRenderSystem.bind("VeilLightData", this.lightBlock);
+        VeilRenderSystem.bind("VeilLightClusters", this.clusterBlock);
+    }
+
+    private void unbindBlocks() {
+        VeilRenderSystem.unbind(this.boundsBlock);
+        VeilRenderSystem.unbind(this.lightBlock);
+        VeilRenderSystem.unbind(this.clusterBlock);
+    }
+
+    private static void setClusterUniforms(ShaderProgram shader) {
+        shader.setVectorI("ClusterGrid", CLUSTER_X, CLUSTER_Y, CLUSTER_Z);
+        shader.setInt("MaxClusterLights", MAX_CLUSTER_LIGHTS);
+    }
+
+    @Override
+    public void prepareLights(LightRenderer lightRenderer, List<T> lights, Set<T> removedLights, CullFrustum frustum) {
+        ProfilerFiller profiler = Minecraft.getInstance().getProfiler();
+        profiler.push("visibility");
+
+        // Lights are culled on the CPU so the compute pass only has to test lights that can touch a cluster
+        this.visible.clear();
+        for (int i = 0; i < lights.size(); i++) {
+            T light = lights.get(i);
+            Vector3dc position = this.getPosition(light);
+            if (frustum.testSphere(position.x(), position.y(), position.z(), this.getRadius(light))) {
+                this.visible.add(i);
+            }
+        }
+        this.visibleLights = this.visible.size();
+        if (this.visible.isEmpty()) {
+            profiler.pop();
+            return;
+        }
+
+        profiler.popPush("resize");
+        if (this.visible.size() > this.maxLights) {
+            this.maxLights = (int) Math.max(MIN_LIGHTS, this.visible.size() * 1.5);
+            this.initBuffers();
+        }
+
+        // Visible lights are rewritten every frame, so there is no need to track dirty lights
+        profiler.popPush("update");
+        Vector3dc cameraPos = frustum.getPosition();
+        ByteBuffer bounds = this.boundsUploadBuffer.map((long) this.visible.size() * BOUNDS_SIZE);
+        ByteBuffer data = this.lightUploadBuffer.map((long) this.visible.size() * this.lightSize);
+        for (int i = 0; i < this.visible.size(); i++) {
+            T light = lights.get(this.visible.getInt(i));
+            light.clean();
+
+            Vector3dc position = this.getPosition(light);
+            bounds.putFloat((float) (position.x() - cameraPos.x()));
+            bounds.putFloat((float) (position.y() - cameraPos.y()));
+            bounds.putFloat((float) (position.z() - cameraPos.z()));
+            bounds.putFloat(this.getRadius(light));
+
+            data.position(i * this.lightSize);
+            this.store(light, data);
+        }
+        this.boundsUploadBuffer.unmap();
+        this.lightUploadBuffer.unmap();
+        copyFrom(this.boundsUploadBuffer, this.boundsVbo);
+        copyFrom(this.lightUploadBuffer, this.lightVbo);
+
+        profiler.popPush("bin");
+        VeilRenderSystem.setShader(VeilShaders.LIGHT_CLUSTER_BIN);
+        ShaderProgram shader = VeilRenderSystem.getShader();
+        if (shader != null && shader.isCompute()) {
+            try {
+                this.bindBlocks();
+                setClusterUniforms(shader);
+                shader.setInt("LightCount", this.visible.size());
+                shader.bind();
+
+                glDispatchCompute((CLUSTER_COUNT + BIN_GROUP_SIZE - 1) / BIN_GROUP_SIZE, 1, 1);
+                glMemoryBarrier(GL_SHADER_STORAGE_BARRIER_BIT);
+
+                ShaderProgram.unbind();
+            } finally {
+                this.unbindBlocks();
+            }
+        }
+
+        profiler.pop();
+    }
+
+    @Override
+    public void renderLights(LightRenderer lightRenderer, List<T> lights) {
+        if (this.visible.isEmpty()) {
+            return;
+        }
+
+        this.setupRenderState(lightRenderer, lights);
+        lightRenderer.applyShader();
+
+        ShaderProgram shader = VeilRenderSystem.getShader();
+        if (shader == null) {
+            this.clearRenderState(lightRenderer, lights);
+            return;
+        }
+
+        try {
+            this.bindBlocks();
+            setClusterUniforms(shader);
+            this.vbo.bind();
+            this.vbo.draw();
+            VertexBuffer.unbind();
+        } finally {
+            this.unbindBlocks();
+        }
+        this.clearRenderState(lightRenderer, lights);
+    }
+
+    @Override
+    public int getVisibleLights() {
+        return this.visibleLights;
+    }
+
+    @Override
+    public void free() {
+        this.vbo.close();
+        glDeleteBuffers(this.boundsVbo);
+        glDeleteBuffers(this.lightVbo);
+        glDeleteBuffers(this.clusterVbo);
+        this.boundsBlock.free();
+        this.lightBlock.free();
+        this.clusterBlock.free();
+        this.boundsUploadBuffer.free();
+        this.lightUploadBuffer.free();
+    }
+
+    /**
+     * @return Whether this renderer is supported
+     */
+    public static boolean isSupported() {
+        return VeilRenderSystem.computeSupported();
+    }
+}
@@ -4,6 +4,7 @@ import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.VertexBuffer;
 import foundry.veil.Veil;
 import foundry.veil.api.client.render.CullFrustum;
+import foundry.veil.api.client.render.StreamingBuffer;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.deferred.light.IndirectLight;
 import foundry.veil.api.client.render.deferred.light.Light;
@@ -18,7 +19,6 @@ import org.joml.Vector4fc;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.system.MemoryStack;
-import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
@@ -27,10 +27,13 @@ import java.util.Set;
 
 import static org.lwjgl.opengl.GL15C.*;
 import static org.lwjgl.opengl.GL30C.glBindBufferRange;
+import static org.lwjgl.opengl.GL31C.*;
+import static org.lwjgl.opengl.GL32C.*;
 import static org.lwjgl.opengl.GL40C.GL_DRAW_INDIRECT_BUFFER;
 import static org.lwjgl.opengl.GL42C.*;
 import static org.lwjgl.opengl.GL43C.GL_SHADER_STORAGE_BUFFER;
 import static org.lwjgl.opengl.GL43C.glDispatchCompute;
+import static org.lwjgl.opengl.GL46C.GL_PARAMETER_BUFFER;
 
 /**
  * Draws lights as indirect instanced quads in the scene.
@@ -41,6 +44,7 @@ import static org.lwjgl.opengl.GL43C.glDispatchCompute;
 public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>> implements LightTypeRenderer<T> {
 
     private static final int MIN_LIGHTS = 20;
+    private static final int COUNT_FRAMES = 3;
 
     protected final int lightSize;
     protected final int highResSize;
@@ -55,8 +59,15 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
     private final int sizeVbo;
     private final DynamicShaderBlock<?> instancedBlock;
     private final DynamicShaderBlock<?> indirectBlock;
+    private final StreamingBuffer lightUploadBuffer;
+    private final StreamingBuffer commandUploadBuffer;
+    private final boolean indirectCount;
+    private final int countReadbackVbo;
+    private final long[] countFences;
 
+    private int drawCount;
     private int visibleLights;
+    private int frame;
 
     /**
      * Creates a new instanced light renderer with a resizeable light buffer.
@@ -74,6 +85,7 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
         this.vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
         this.instancedVbo = glGenBuffers();
         this.indirectVbo = glGenBuffers();
+        this.lightUploadBuffer = new StreamingBuffer((long) this.maxLights * this.lightSize, Integer.BYTES);
 
         if (VeilRenderSystem.computeSupported() && VeilRenderSystem.atomicCounterSupported()) {
             Veil.LOGGER.info("Using GPU Frustum Culling for {} renderer", this.getClass().getSimpleName());
@@ -84,11 +96,24 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
             glBindBuffer(GL_ATOMIC_COUNTER_BUFFER, this.sizeVbo);
             glBufferData(GL_ATOMIC_COUNTER_BUFFER, Integer.BYTES, GL_DYNAMIC_DRAW);
             glBindBuffer(GL_ATOMIC_COUNTER_BUFFER, 0);
+
+            // The visible count is only read back for debug info, so it is copied out and read a few frames later to avoid stalling
+            this.indirectCount = VeilRenderSystem.indirectParametersSupported();
+            this.countReadbackVbo = glGenBuffers();
+            this.countFences = new long[COUNT_FRAMES];
+            glBindBuffer(GL_COPY_WRITE_BUFFER, this.countReadbackVbo);
+            glBufferData(GL_COPY_WRITE_BUFFER, (long) COUNT_FRAMES * Integer.BYTES, GL_STREAM_READ);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+            this.commandUploadBuffer = null;
         } else {
             Veil.LOGGER.info("Using CPU Frustum Culling for {} renderer", this.getClass().getSimpleName());
             this.sizeVbo = 0;
             this.instancedBlock = null;
             this.indirectBlock = null;
+            this.commandUploadBuffer = new StreamingBuffer((long) this.maxLights * Integer.BYTES * 5, Integer.BYTES);
+            this.indirectCount = false;
+            this.countReadbackVbo = 0;
+            this.countFences = null;
         }
 
         this.vbo.bind();
@@ -158,18 +183,25 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
         return frustum.testSphere(position.x, position.y, position.z, radius * 1.414F);
     }
 
+    /**
+     * Copies the contents of the specified streaming buffer into the buffer currently bound to the target.
+     */
+    private static void copyFrom(StreamingBuffer buffer, int target) {
+        glBindBuffer(GL_COPY_READ_BUFFER, buffer.getBuffer());
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, target, buffer.getOffset(), 0L, buffer.getSize());
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+    }
+
     private void updateAllLights(List<T> lights) {
-        ByteBuffer dataBuffer = MemoryUtil.memAlloc(lights.size() * this.lightSize);
+        ByteBuffer dataBuffer = this.lightUploadBuffer.map((long) lights.size() * this.lightSize);
         for (int i = 0; i < lights.size(); i++) {
             T light = lights.get(i);
             light.clean();
             dataBuffer.position(i * this.lightSize);
             light.store(dataBuffer);
         }
-
-        dataBuffer.rewind();
-        glBufferSubData(GL_ARRAY_BUFFER, 0, dataBuffer);
-        MemoryUtil.memFree(dataBuffer);
+        this.lightUploadBuffer.unmap();
+        copyFrom(this.lightUploadBuffer, GL_ARRAY_BUFFER);
     }
 
     private int updateVisibility(List<T> lights, CullFrustum frustum) {
@@ -189,6 +221,7 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
                     shader.setInt("LightSize", this.lightSize / Float.BYTES);
                     shader.setInt("PositionOffset", this.positionOffset);
                     shader.setInt("RangeOffset", this.rangeOffset);
+                    shader.setInt("CompactCommands", this.indirectCount ? 1 : 0);
 
                     Vector4fc[] planes = frustum.getPlanes();
                     float[] values = new float[4 * planes.length];
@@ -203,16 +236,16 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
 
                     shader.bind();
 
-                    glDispatchCompute(Math.min(lights.size(), VeilRenderSystem.maxComputeWorkGroupCountX()), 1, 1);
-                    glMemoryBarrier(GL_BUFFER_UPDATE_BARRIER_BIT | GL_ATOMIC_COUNTER_BARRIER_BIT);
+                    int lightCount = Math.min(lights.size(), VeilRenderSystem.maxComputeWorkGroupCountX());
+                    glDispatchCompute(lightCount, 1, 1);
+                    glMemoryBarrier(GL_COMMAND_BARRIER_BIT | GL_BUFFER_UPDATE_BARRIER_BIT | GL_ATOMIC_COUNTER_BARRIER_BIT);
 
                     ShaderProgram.unbind();
 
-                    IntBuffer counter = stack.mallocInt(1);
-                    glBindBuffer(GL_ATOMIC_COUNTER_BUFFER, this.sizeVbo);
-                    glGetBufferSubData(GL_ATOMIC_COUNTER_BUFFER, 0L, counter);
-                    glBindBuffer(GL_ATOMIC_COUNTER_BUFFER, 0);
-                    return counter.get(0);
+                    this.readVisibleCount(stack);
+                    // With indirect parameters the GPU decides how many commands to draw,
+                    // otherwise all commands are drawn and hidden lights have no instances
+                    return lightCount;
                 } finally {
                     VeilRenderSystem.unbind(this.instancedBlock);
                     VeilRenderSystem.unbind(this.indirectBlock);
@@ -222,33 +255,57 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
         }
 
         int count = 0;
-        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, this.indirectVbo);
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            ByteBuffer buffer = stack.malloc(this.lowResSize > 0 ? Integer.BYTES * 5 : Integer.BYTES);
-
-            int index = 0;
-            for (T light : lights) {
-                if (this.isVisible(light, frustum)) {
-                    if (this.lowResSize > 0) {
-                        boolean highRes = this.shouldDrawHighResolution(light, frustum);
-                        buffer.putInt(0, highRes ? this.highResSize : this.lowResSize);
-                        buffer.putInt(4, 1);
-                        buffer.putInt(8, !highRes ? this.highResSize : 0);
-                        buffer.putInt(12, 0);
-                        buffer.putInt(16, index);
-                        glBufferSubData(GL_DRAW_INDIRECT_BUFFER, count * Integer.BYTES * 5L, buffer);
-                    } else {
-                        buffer.putInt(0, index);
-                        glBufferSubData(GL_DRAW_INDIRECT_BUFFER, count * Integer.BYTES * 5L + 16, buffer);
-                    }
-                    count++;
-                }
-                index++;
+        ByteBuffer buffer = this.commandUploadBuffer.map((long) lights.size() * Integer.BYTES * 5);
+        for (int i = 0; i < lights.size(); i++) {
+            T light = lights.get(i);
+            if (this.isVisible(light, frustum)) {
+                boolean highRes = this.lowResSize <= 0 || this.shouldDrawHighResolution(light, frustum);
+                buffer.putInt(highRes ? this.highResSize : this.lowResSize);
+                buffer.putInt(1);
+                buffer.putInt(!highRes ? this.highResSize : 0);
+                buffer.putInt(0);
+                buffer.putInt(i);
+                count++;
             }
         }
+        this.commandUploadBuffer.unmap();
+
+        if (count > 0) {
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, this.indirectVbo);
+            copyFrom(this.commandUploadBuffer, GL_DRAW_INDIRECT_BUFFER);
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+        }
         return count;
     }
 
+    /**
+     * Copies the visible light count into the readback ring and reads the value written {@link #COUNT_FRAMES} frames ago if the GPU has finished with it.
+     */
+    private void readVisibleCount(MemoryStack stack) {
+        int slot = this.frame;
+        this.frame = (this.frame + 1) % COUNT_FRAMES;
+
+        glBindBuffer(GL_COPY_READ_BUFFER, this.sizeVbo);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, this.countReadbackVbo);
+
+        long fence = this.countFences[slot];
+        if (fence != 0L) {
+            int status = glClientWaitSync(fence, 0, 0L);
+            if (status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED) {
+                IntBuffer counter = stack.mallocInt(1);
+                glGetBufferSubData(GL_COPY_WRITE_BUFFER, (long) slot * Integer.BYTES, counter);
+                this.visibleLights = counter.get(0);
+            }
+            glDeleteSync(fence);
+        }
+
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0L, (long) slot * Integer.BYTES, Integer.BYTES);
+        this.countFences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
     @Override
     public void prepareLights(LightRenderer lightRenderer, List<T> lights, Set<T> removedLights, CullFrustum frustum) {
         glBindBuffer(GL_ARRAY_BUFFER, this.instancedVbo);
@@ -267,29 +324,28 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
         }
         profiler.popPush("update");
 
-        // The instanced buffer needs to be updated
-        if (rebuild || !removedLights.isEmpty()) {
-            this.updateAllLights(lights);
-        } else {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                ByteBuffer buffer = stack.malloc(this.lightSize);
-                for (int i = 0; i < lights.size(); i++) {
-                    T light = lights.get(i);
-                    if (light.isDirty()) {
-                        light.clean();
-                        light.store(buffer);
-                        buffer.rewind();
-                        glBufferSubData(GL_ARRAY_BUFFER, (long) i * this.lightSize, buffer);
-                    }
+        // The instanced buffer needs to be updated. All lights are written into the streaming buffer and copied with a single call
+        boolean update = rebuild || !removedLights.isEmpty();
+        if (!update) {
+            for (T light : lights) {
+                if (light.isDirty()) {
+                    update = true;
+                    break;
                 }
             }
         }
+        if (update && !lights.isEmpty()) {
+            this.updateAllLights(lights);
+        }
         glBindBuffer(GL_ARRAY_BUFFER, 0);
 
         profiler.popPush("visibility");
 
         // Fill indirect buffer draw calls
-        this.visibleLights = !lights.isEmpty() ? this.updateVisibility(lights, frustum) : 0;
+        this.drawCount = !lights.isEmpty() ? this.updateVisibility(lights, frustum) : 0;
+        if (this.sizeVbo == 0 || lights.isEmpty()) {
+            this.visibleLights = this.drawCount;
+        }
 
         profiler.pop();
     }
@@ -297,7 +353,7 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
     @Override
     public void renderLights(LightRenderer lightRenderer, List<T> lights) {
         // If there are no visible lights, then don't render anything
-        if (this.visibleLights <= 0) {
+        if (this.drawCount <= 0) {
             return;
         }
 
@@ -306,13 +362,23 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
 
         this.setupRenderState(lightRenderer, lights);
         lightRenderer.applyShader();
-        VeilRenderSystem.drawIndirect(this.vbo, 0L, this.visibleLights, 0);
+        if (this.indirectCount) {
+            glBindBuffer(GL_PARAMETER_BUFFER, this.sizeVbo);
+            VeilRenderSystem.drawIndirectCount(this.vbo, 0L, 0L, this.drawCount, 0);
+            glBindBuffer(GL_PARAMETER_BUFFER, 0);
+        } else {
+            VeilRenderSystem.drawIndirect(this.vbo, 0L, this.drawCount, 0);
+        }
         this.clearRenderState(lightRenderer, lights);
 
         glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
         VertexBuffer.unbind();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>When lights are culled on the GPU, this value is read back a few frames late to avoid stalling the pipeline.</p>
+     */
     @Override
     public int getVisibleLights() {
         return this.visibleLights;
@@ -323,8 +389,18 @@ public abstract class IndirectLightRenderer<T extends Light & IndirectLight<T>>
         this.vbo.close();
         glDeleteBuffers(this.instancedVbo);
         glDeleteBuffers(this.indirectVbo);
+        this.lightUploadBuffer.free();
+        if (this.commandUploadBuffer != null) {
+            this.commandUploadBuffer.free();
+        }
         if (this.sizeVbo != 0) {
             glDeleteBuffers(this.sizeVbo);
+            glDeleteBuffers(this.countReadbackVbo);
+            for (long fence : this.countFences) {
+                if (fence != 0L) {
+                    glDeleteSync(fence);
+                }
+            }
             this.instancedBlock.free();
             this.indirectBlock.free();
         }
@@ -3,18 +3,18 @@ package foundry.veil.api.client.render.deferred.light.renderer;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.VertexBuffer;
 import foundry.veil.api.client.render.CullFrustum;
+import foundry.veil.api.client.render.StreamingBuffer;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.deferred.light.InstancedLight;
 import foundry.veil.api.client.render.deferred.light.Light;
-import org.lwjgl.system.MemoryStack;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
-import static org.lwjgl.opengl.GL15C.*;
-import static org.lwjgl.system.MemoryUtil.memAddress;
+import static org.lwjgl.opengl.GL15C.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15C.glBindBuffer;
 
 /**
  * Draws lights as instanced quads in the scene.
@@ -24,14 +24,13 @@ import static org.lwjgl.system.MemoryUtil.memAddress;
  */
 public abstract class InstancedLightRenderer<T extends Light & InstancedLight> implements LightTypeRenderer<T> {
 
-    private static final int MAX_UPLOADS = 400;
-
     protected final int lightSize;
     protected int maxLights;
 
     private final List<T> visibleLights;
     private final VertexBuffer vbo;
-    private final int instancedVbo;
+    private final StreamingBuffer instanceBuffer;
+    private int boundInstanceBuffer;
 
     /**
      * Creates a new instanced light renderer with a resizeable light buffer.
@@ -43,13 +42,14 @@ public abstract class InstancedLightRenderer<T extends Light & InstancedLight> i
         this.maxLights = 100;
         this.visibleLights = new ArrayList<>();
         this.vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
-        this.instancedVbo = glGenBuffers();
+        // Sections must start on a light boundary so they can be addressed with a base instance
+        this.instanceBuffer = new StreamingBuffer((long) this.maxLights * this.lightSize, this.lightSize);
+        this.boundInstanceBuffer = this.instanceBuffer.getBuffer();
 
         this.vbo.bind();
         this.vbo.upload(this.createMesh());
 
-        glBindBuffer(GL_ARRAY_BUFFER, this.instancedVbo);
-        glBufferData(GL_ARRAY_BUFFER, (long) this.maxLights * this.lightSize, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, this.boundInstanceBuffer);
         this.setupBufferState();
         glBindBuffer(GL_ARRAY_BUFFER, 0);
 
@@ -91,30 +91,6 @@ public abstract class InstancedLightRenderer<T extends Light & InstancedLight> i
      */
     protected abstract boolean isVisible(T light, CullFrustum frustum);
 
-    private void updateAllLights(List<T> lights) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            int pointer = 0;
-            long offset = 0;
-            ByteBuffer dataBuffer = stack.malloc(Math.min(MAX_UPLOADS, lights.size()) * this.lightSize);
-            for (T light : lights) {
-                light.clean();
-                dataBuffer.position((pointer++) * this.lightSize);
-                light.store(dataBuffer);
-                if (pointer >= MAX_UPLOADS) {
-                    dataBuffer.rewind();
-                    glBufferSubData(GL_ARRAY_BUFFER, offset, dataBuffer);
-                    offset += dataBuffer.capacity();
-                    pointer = 0;
-                }
-            }
-
-            if (pointer > 0) {
-                dataBuffer.rewind();
-                nglBufferSubData(GL_ARRAY_BUFFER, offset, (long) pointer * this.lightSize, memAddress(dataBuffer));
-            }
-        }
-    }
-
     @Override
     public void prepareLights(LightRenderer lightRenderer, List<T> lights, Set<T> removedLights, CullFrustum frustum) {
         this.visibleLights.clear();
@@ -128,34 +104,26 @@ public abstract class InstancedLightRenderer<T extends Light & InstancedLight> i
             return;
         }
 
-        glBindBuffer(GL_ARRAY_BUFFER, this.instancedVbo);
-
-        // If there is no space, then resize
-        boolean rebuild = false;
-        if (this.visibleLights.size() > this.maxLights) {
-            rebuild = true;
-            this.maxLights = (int) Math.max(Math.ceil(this.maxLights / 2.0), this.visibleLights.size() * 1.5);
-            glBufferData(GL_ARRAY_BUFFER, (long) this.maxLights * this.lightSize, GL_STREAM_DRAW);
+        // Every visible light is written each frame straight into the mapped buffer, so dirty tracking only affects the light itself
+        ByteBuffer buffer = this.instanceBuffer.map((long) this.visibleLights.size() * this.lightSize);
+        for (int i = 0; i < this.visibleLights.size(); i++) {
+            T light = this.visibleLights.get(i);
+            light.clean();
+            buffer.position(i * this.lightSize);
+            light.store(buffer);
         }
-
-        if (rebuild || !removedLights.isEmpty()) {
-            this.updateAllLights(this.visibleLights);
-        } else {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                ByteBuffer buffer = stack.malloc(this.lightSize);
-                for (int i = 0; i < this.visibleLights.size(); i++) {
-                    T light = this.visibleLights.get(i);
-                    if (light.isDirty()) {
-                        light.clean();
-                        light.store(buffer);
-                        buffer.rewind();
-                        glBufferSubData(GL_ARRAY_BUFFER, (long) i * this.lightSize, buffer);
-                    }
-                }
-            }
+        this.instanceBuffer.unmap();
+        this.maxLights = (int) (this.instanceBuffer.getCapacity() / this.lightSize);
+
+        // The buffer object is replaced when it grows
+        if (this.instanceBuffer.getBuffer() != this.boundInstanceBuffer) {
+            this.boundInstanceBuffer = this.instanceBuffer.getBuffer();
+            this.vbo.bind();
+            glBindBuffer(GL_ARRAY_BUFFER, this.boundInstanceBuffer);
+            this.setupBufferState();
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            VertexBuffer.unbind();
         }
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
 
     @Override
@@ -167,7 +135,7 @@ public abstract class InstancedLightRenderer<T extends Light & InstancedLight> i
         this.vbo.bind();
         this.setupRenderState(lightRenderer, this.visibleLights);
         lightRenderer.applyShader();
-        VeilRenderSystem.drawInstanced(this.vbo, this.visibleLights.size());
+        VeilRenderSystem.drawInstanced(this.vbo, this.visibleLights.size(), (int) (this.instanceBuffer.getOffset() / this.lightSize));
         this.clearRenderState(lightRenderer, this.visibleLights);
         VertexBuffer.unbind();
     }
@@ -180,6 +148,6 @@ public abstract class InstancedLightRenderer<T extends Light & InstancedLight> i
     @Override
     public void free() {
         this.vbo.close();
-        glDeleteBuffers(this.instancedVbo);
+        this.instanceBuffer.free();
     }
 }
@@ -2,11 +2,14 @@ package foundry.veil.api.client.render.deferred.light.renderer;
 
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
+import foundry.veil.Veil;
 import foundry.veil.api.client.registry.LightTypeRegistry;
 import foundry.veil.api.client.render.CullFrustum;
+import foundry.veil.api.client.render.GpuProfiler;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.deferred.light.Light;
 import foundry.veil.api.client.render.framebuffer.AdvancedFbo;
+import foundry.veil.api.client.render.framebuffer.AdvancedFboTextureAttachment;
 import foundry.veil.api.client.render.shader.program.ShaderProgram;
 import foundry.veil.impl.client.render.deferred.light.VanillaLightRenderer;
 import net.minecraft.client.Minecraft;
@@ -18,6 +21,8 @@ import org.lwjgl.system.NativeResource;
 import java.util.*;
 import java.util.function.Consumer;
 
+import static org.lwjgl.opengl.GL30C.*;
+
 /**
  * Renders all lights in a scene.
  * <p>Lights can be added with {@link #addLight(Light)}, and subsequently removed with
@@ -26,23 +31,39 @@ import java.util.function.Consumer;
  * </p>
  * <p>There is no way to retrieve a light, so care should be taken to keep track of what lights
  * have been added to the scene and when they should be removed.</p>
+ * <p>When both deferred buffers are shaded in a single pass, light shaders must write the transparent light to an output named
+ * {@value #TRANSPARENT_LIGHT_OUTPUT} at location 1. Lights drawn with a shader that doesn't declare it only write the opaque light
+ * and are drawn again for the transparent buffer with {@link #renderTransparentFallback(AdvancedFbo)}.</p>
  *
  * @author Ocelot
  */
 public class LightRenderer implements NativeResource {
 
+    /**
+     * The name of the fragment output light shaders write the transparent light to when shading both buffers at once.
+     */
+    public static final String TRANSPARENT_LIGHT_OUTPUT = "transparentFragColor";
+    private static final int[] SINGLE_PASS_DRAW_BUFFERS = {GL_COLOR_ATTACHMENT0, GL_COLOR_ATTACHMENT1};
+
     private final Map<LightTypeRegistry.LightType<?>, LightData<?>> lights;
+    private final Set<LightTypeRegistry.LightType<?>> clusteredTypes;
 
     private VanillaLightRenderer vanillaLightRenderer;
     private boolean vanillaLightEnabled;
     private boolean ambientOcclusionEnabled;
     private AdvancedFbo framebuffer;
+    private AdvancedFbo transparentFramebuffer;
+    private final List<LightTypeRegistry.LightType<?>> transparentFallbackTypes;
+    private boolean transparentFallbackVanilla;
+    private boolean missingTransparentOutput;
 
     /**
      * Creates a new light renderer.
      */
     public LightRenderer() {
         this.lights = new HashMap<>();
+        this.clusteredTypes = new HashSet<>();
+        this.transparentFallbackTypes = new ArrayList<>();
         this.vanillaLightEnabled = true;
         this.ambientOcclusionEnabled = true;
     }
@@ -63,9 +84,50 @@ public class LightRenderer implements NativeResource {
         } else {
             shader.setVector("ScreenSize", 1.0F, 1.0F);
         }
+        if (this.transparentFramebuffer != null) {
+            setTransparentSamplers(shader, this.transparentFramebuffer);
+            this.setTransparentOutput(shader);
+        }
         shader.applyShaderSamplers(0);
     }
 
+    /**
+     * Only draws into the transparent light buffer if the shader writes to it, since the output would otherwise be undefined.
+     */
+    private void setTransparentOutput(ShaderProgram shader) {
+        if (glGetFragDataLocation(shader.getProgram(), TRANSPARENT_LIGHT_OUTPUT) == 1) {
+            glDrawBuffers(SINGLE_PASS_DRAW_BUFFERS);
+            return;
+        }
+
+        glDrawBuffers(GL_COLOR_ATTACHMENT0);
+        if (!this.missingTransparentOutput) {
+            this.missingTransparentOutput = true;
+            Veil.LOGGER.warn("Light shader {} doesn't write '{}' at location 1, drawing it again for the transparent buffer", shader.getId(), TRANSPARENT_LIGHT_OUTPUT);
+        }
+    }
+
+    /**
+     * Binds the named attachments of the transparent buffer with <code>Transparent</code> in front of the name,
+     * so a single shader can read both deferred buffers.
+     */
+    private static void setTransparentSamplers(ShaderProgram shader, AdvancedFbo framebuffer) {
+        for (int i = 0; i < framebuffer.getColorAttachments(); i++) {
+            if (!framebuffer.isColorTextureAttachment(i)) {
+                continue;
+            }
+
+            AdvancedFboTextureAttachment attachment = framebuffer.getColorTextureAttachment(i);
+            if (attachment.getName() != null) {
+                shader.addSampler("Transparent" + attachment.getName(), attachment.getId());
+            }
+        }
+
+        if (framebuffer.isDepthTextureAttachment()) {
+            shader.addSampler("TransparentDiffuseDepthSampler", framebuffer.getDepthTextureAttachment().getId());
+        }
+    }
+
     @ApiStatus.Internal
     public void setup(CullFrustum frustum) {
         RenderSystem.enableBlend();
@@ -88,22 +150,96 @@ public class LightRenderer implements NativeResource {
 
     @ApiStatus.Internal
     public void render(AdvancedFbo framebuffer) {
+        this.render(framebuffer, null);
+    }
+
+    /**
+     * Draws all lights into the bound framebuffer.
+     * If a transparent buffer is specified, light shaders are expected to shade both buffers at once and write the transparent light to {@value #TRANSPARENT_LIGHT_OUTPUT}.
+     * Lights with shaders that don't are remembered and must be drawn again with {@link #renderTransparentFallback(AdvancedFbo)}.
+     *
+     * @param framebuffer            The deferred framebuffer to read from
+     * @param transparentFramebuffer The transparent deferred framebuffer to read from at the same time or <code>null</code> to only shade <code>framebuffer</code>
+     */
+    @ApiStatus.Internal
+    public void render(AdvancedFbo framebuffer, @Nullable AdvancedFbo transparentFramebuffer) {
         this.framebuffer = framebuffer;
+        this.transparentFramebuffer = transparentFramebuffer;
+        this.transparentFallbackTypes.clear();
+        this.transparentFallbackVanilla = false;
+
+        GpuProfiler profiler = VeilRenderSystem.renderer().getGpuProfiler();
+        for (Map.Entry<LightTypeRegistry.LightType<?>, LightData<?>> entry : this.lights.entrySet()) {
+            this.missingTransparentOutput = false;
+            this.renderType(profiler, entry.getKey(), entry.getValue());
+            if (this.missingTransparentOutput) {
+                this.transparentFallbackTypes.add(entry.getKey());
+            }
+        }
+        this.missingTransparentOutput = false;
+        this.renderVanilla(profiler);
+        this.transparentFallbackVanilla = this.missingTransparentOutput;
+
+        if (transparentFramebuffer != null) {
+            glDrawBuffers(SINGLE_PASS_DRAW_BUFFERS);
+        }
+        this.framebuffer = null;
+        this.transparentFramebuffer = null;
+        this.missingTransparentOutput = false;
+    }
+
+    /**
+     * Draws the lights that couldn't write to the transparent light buffer during the last single pass {@link #render(AdvancedFbo, AdvancedFbo)}
+     * into the bound framebuffer.
+     *
+     * @param transparentFramebuffer The transparent deferred framebuffer to read from
+     * @return Whether any lights had to be drawn again
+     */
+    @ApiStatus.Internal
+    public boolean renderTransparentFallback(AdvancedFbo transparentFramebuffer) {
+        if (this.transparentFallbackTypes.isEmpty() && !this.transparentFallbackVanilla) {
+            return false;
+        }
+
+        this.framebuffer = transparentFramebuffer;
+
+        GpuProfiler profiler = VeilRenderSystem.renderer().getGpuProfiler();
+        for (LightTypeRegistry.LightType<?> type : this.transparentFallbackTypes) {
+            LightData<?> data = this.lights.get(type);
+            if (data != null) {
+                this.renderType(profiler, type, data);
+            }
+        }
+        if (this.transparentFallbackVanilla) {
+            this.renderVanilla(profiler);
+        }
+
+        this.transparentFallbackTypes.clear();
+        this.transparentFallbackVanilla = false;
+        this.framebuffer = null;
+        return true;
+    }
 
-        for (LightData<?> value : this.lights.values()) {
-            value.render(this);
+    private void renderType(GpuProfiler profiler, LightTypeRegistry.LightType<?> type, LightData<?> data) {
+        if (profiler.isEnabled()) {
+            profiler.push(String.valueOf(LightTypeRegistry.REGISTRY.getKey(type)));
         }
+        data.render(this);
+        profiler.pop();
+    }
+
+    private void renderVanilla(GpuProfiler profiler) {
         if (this.vanillaLightEnabled) {
             ClientLevel level = Minecraft.getInstance().level;
             if (level != null) {
                 if (this.vanillaLightRenderer == null) {
                     this.vanillaLightRenderer = new VanillaLightRenderer();
                 }
+                profiler.push("vanilla");
                 this.vanillaLightRenderer.render(this, level);
+                profiler.pop();
             }
         }
-
-        this.framebuffer = null;
     }
 
     /**
@@ -114,7 +250,7 @@ public class LightRenderer implements NativeResource {
     public void addLight(Light light) {
         Objects.requireNonNull(light, "light");
         RenderSystem.assertOnRenderThreadOrInit();
-        this.lights.computeIfAbsent(light.getType(), LightData::new).addLight(light);
+        this.lights.computeIfAbsent(light.getType(), type -> new LightData<>(this.createRenderer(type))).addLight(light);
     }
 
     /**
@@ -149,6 +285,44 @@ public class LightRenderer implements NativeResource {
         return (List<T>) data.lightsView;
     }
 
+    /**
+     * <p>Sets whether lights of the specified type are shaded with a single clustered full-screen pass instead of a volume per light.</p>
+     * <p>This has no effect if the type does not {@link LightTypeRegistry.LightType#supportsClusteredLighting() support clustered lighting}.</p>
+     *
+     * @param type    The type of lights to change the renderer of
+     * @param enabled Whether to use clustered lighting
+     * @see ClusteredLightRenderer
+     */
+    public void setClusteredLighting(LightTypeRegistry.LightType<?> type, boolean enabled) {
+        Objects.requireNonNull(type, "type");
+        RenderSystem.assertOnRenderThreadOrInit();
+        if (enabled && !type.supportsClusteredLighting()) {
+            return;
+        }
+
+        boolean changed = enabled ? this.clusteredTypes.add(type) : this.clusteredTypes.remove(type);
+        LightData<?> data = this.lights.get(type);
+        if (changed && data != null) {
+            data.setRenderer(this.createRenderer(type));
+        }
+    }
+
+    /**
+     * @param type The type of lights to check
+     * @return Whether lights of the specified type are shaded with clustered lighting
+     */
+    public boolean isClusteredLighting(LightTypeRegistry.LightType<?> type) {
+        return this.clusteredTypes.contains(type);
+    }
+
+    private LightTypeRenderer<?> createRenderer(LightTypeRegistry.LightType<?> type) {
+        Objects.requireNonNull(type, "type");
+        if (this.clusteredTypes.contains(type) && type.clusteredRendererFactory() != null) {
+            return type.clusteredRendererFactory().createRenderer();
+        }
+        return type.rendererFactory().createRenderer();
+    }
+
     /**
      * Enables the vanilla lightmap and directional shading.
      */
@@ -194,6 +368,13 @@ public class LightRenderer implements NativeResource {
         return this.framebuffer;
     }
 
+    /**
+     * @return The transparent deferred framebuffer being read from if both buffers are shaded in a single pass
+     */
+    public @Nullable AdvancedFbo getTransparentFramebuffer() {
+        return this.transparentFramebuffer;
+    }
+
     /**
      * @return Whether the vanilla lighting is enabled
      */
@@ -212,6 +393,8 @@ public class LightRenderer implements NativeResource {
     public void free() {
         this.lights.values().forEach(LightData::free);
         this.lights.clear();
+        this.transparentFallbackTypes.clear();
+        this.transparentFallbackVanilla = false;
         if (this.vanillaLightRenderer != null) {
             this.vanillaLightRenderer.free();
             this.vanillaLightRenderer = null;
@@ -228,21 +411,27 @@ public class LightRenderer implements NativeResource {
     @ApiStatus.Internal
     private static class LightData<T extends Light> implements NativeResource {
 
-        private final LightTypeRenderer<T> renderer;
         private final List<T> lights;
         private final List<T> lightsView;
         private final Set<T> removedLights;
+        private LightTypeRenderer<T> renderer;
 
-        private LightData(LightTypeRenderer<T> renderer) {
-            this.renderer = renderer;
+        @SuppressWarnings("unchecked")
+        private LightData(LightTypeRenderer<?> renderer) {
+            this.renderer = (LightTypeRenderer<T>) renderer;
             this.lights = new ArrayList<>();
             this.lightsView = Collections.unmodifiableList(this.lights);
             this.removedLights = new HashSet<>();
         }
 
         @SuppressWarnings("unchecked")
-        public LightData(LightTypeRegistry.LightType<?> type) {
-            this((LightTypeRenderer<T>) Objects.requireNonNull(type, "type").rendererFactory().createRenderer());
+        private void setRenderer(LightTypeRenderer<?> renderer) {
+            this.renderer.free();
+            this.renderer = (LightTypeRenderer<T>) renderer;
+            // The new renderer has no light data uploaded yet
+            for (T light : this.lights) {
+                light.markDirty();
+            }
         }
 
         private void prepare(LightRenderer lightRenderer, CullFrustum frustum) {
@@ -10,8 +10,10 @@ import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL11C;
+import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.NativeResource;
 
+import java.nio.IntBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -22,6 +24,7 @@ import static org.lwjgl.opengl.GL30.GL_DEPTH_BUFFER_BIT;
 import static org.lwjgl.opengl.GL30.GL_NEAREST;
 import static org.lwjgl.opengl.GL30.GL_RGBA;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL43C.glInvalidateFramebuffer;
 
 /**
  * <p>A framebuffer that has more capabilities than the vanilla Minecraft {@link RenderTarget}.</p>
@@ -64,6 +67,51 @@ public interface AdvancedFbo extends NativeResource {
      */
     void bindDraw(boolean setViewport);
 
+    /**
+     * Marks this framebuffer as drawn to since it was last cleared. This is done automatically when binding for drawing,
+     * so it only needs to be called when the attachments are written some other way, like through another framebuffer.
+     */
+    default void markDrawn() {
+    }
+
+    /**
+     * @return Whether this framebuffer may have been drawn to since it was last cleared
+     */
+    default boolean isDrawn() {
+        return true;
+    }
+
+    /**
+     * <p>Tells the driver the contents of the specified buffers are no longer needed, so they don't have to be kept.
+     * The contents are undefined afterward and must be cleared or completely overwritten before being read again.</p>
+     * <p>This binds the framebuffer for drawing and does nothing if {@link VeilRenderSystem#invalidateSubdataSupported()} is <code>false</code>.</p>
+     *
+     * @param mask The buffers to invalidate. Only {@link GL11C#GL_COLOR_BUFFER_BIT} and {@link GL11C#GL_DEPTH_BUFFER_BIT} are used
+     */
+    default void invalidate(int mask) {
+        if (!VeilRenderSystem.invalidateSubdataSupported()) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer attachments = stack.mallocInt(this.getColorAttachments() + 1);
+            if ((mask & GL_COLOR_BUFFER_BIT) != 0) {
+                for (int i = 0; i < this.getColorAttachments(); i++) {
+                    attachments.put(GL_COLOR_ATTACHMENT0 + i);
+                }
+            }
+            if ((mask & GL_DEPTH_BUFFER_BIT) != 0 && this.hasDepthAttachment()) {
+                attachments.put(GL_DEPTH_ATTACHMENT);
+            }
+            attachments.flip();
+
+            if (attachments.hasRemaining()) {
+                this.bindDraw(false);
+                glInvalidateFramebuffer(GL_DRAW_FRAMEBUFFER, attachments);
+            }
+        }
+    }
+
     /**
      * Gets the main framebuffer.
      *
@@ -156,11 +204,7 @@ public interface AdvancedFbo extends NativeResource {
      * @param target The target framebuffer to copy data into
      */
     default void resolveToAdvancedFbo(AdvancedFbo target) {
-        this.resolveToFbo(target.getId(),
-                target.getWidth(),
-                target.getHeight(),
-                GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT,
-                GL_NEAREST);
+        this.resolveToAdvancedFbo(target, GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT, GL_NEAREST);
     }
 
     /**
@@ -171,6 +215,7 @@ public interface AdvancedFbo extends NativeResource {
      * @param filtering The filter to use if this framebuffer and the provided framebuffer are different sizes
      */
     default void resolveToAdvancedFbo(AdvancedFbo target, int mask, int filtering) {
+        target.markDrawn();
         this.resolveToFbo(target.getId(), target.getWidth(), target.getHeight(), mask, filtering);
     }
 
@@ -6,6 +6,7 @@ import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.client.render.post.PostProcessingManager;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.Optional;
 
 import static org.lwjgl.opengl.GL11C.*;
@@ -20,12 +21,14 @@ import static org.lwjgl.opengl.GL41C.GL_RGB565;
 /**
  * Represents a framebuffer attachment that can be turned into a real framebuffer.
  *
- * @param type   The type of attachment this is
- * @param format The internal format of the data
- * @param depth  Whether this is a color or depth attachment
- * @param linear Whether this should have linear filtering. Only applies to texture buffers
- * @param levels The number of mipmaps for textures and samples for render buffers
- * @param name   The custom name to use when uploading this as a sampler to shaders
+ * @param type     The type of attachment this is
+ * @param format   The internal format of the data
+ * @param dataType The type of data stored
+ * @param depth    Whether this is a color or depth attachment
+ * @param linear   Whether this should have linear filtering. Only applies to texture buffers
+ * @param levels   The number of mipmaps for textures and samples for render buffers
+ * @param name     The custom name to use when uploading this as a sampler to shaders
+ * @param encoding How shaders pack data into this attachment
  * @author Ocelot
  * @see AdvancedFbo
  * @see FramebufferManager
@@ -37,14 +40,15 @@ public record FramebufferAttachmentDefinition(FramebufferAttachmentDefinition.Ty
                                               boolean depth,
                                               boolean linear,
                                               int levels,
-                                              @Nullable String name) {
+                                              @Nullable String name,
+                                              FramebufferAttachmentDefinition.Encoding encoding) {
 
     public static final Codec<FramebufferAttachmentDefinition> COLOR_CODEC =
             RecordCodecBuilder.create(instance -> instance.group(
                     Type.CODEC.optionalFieldOf("type", Type.TEXTURE)
                             .forGetter(FramebufferAttachmentDefinition::type),
-                    Format.CODEC.optionalFieldOf("format", Format.RGBA8)
-                            .forGetter(FramebufferAttachmentDefinition::format),
+                    Format.CODEC.optionalFieldOf("format")
+                            .forGetter(attachment -> Optional.of(attachment.format())),
                     DataType.CODEC.optionalFieldOf("dataType", DataType.UNSIGNED_BYTE)
                             .forGetter(FramebufferAttachmentDefinition::dataType),
                     Codec.BOOL.optionalFieldOf("linear", false)
@@ -52,9 +56,12 @@ public record FramebufferAttachmentDefinition(FramebufferAttachmentDefinition.Ty
                     Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("levels", 0)
                             .forGetter(FramebufferAttachmentDefinition::levels),
                     Codec.STRING.optionalFieldOf("name")
-                            .forGetter(attachment -> Optional.ofNullable(attachment.name()))
-            ).apply(instance, (type, format, dataType, linear, levels, name) ->
-                    new FramebufferAttachmentDefinition(type, format, dataType, false, linear, levels, name.orElse(null))));
+                            .forGetter(attachment -> Optional.ofNullable(attachment.name())),
+                    Encoding.CODEC.optionalFieldOf("encoding", Encoding.NONE)
+                            .forGetter(FramebufferAttachmentDefinition::encoding)
+            ).apply(instance, (type, format, dataType, linear, levels, name, encoding) ->
+                    new FramebufferAttachmentDefinition(type, format.orElse(encoding.getDefaultFormat()), dataType, false, linear, levels, name.orElse(null), encoding))
+            ).flatXmap(FramebufferAttachmentDefinition::validateEncoding, FramebufferAttachmentDefinition::validateEncoding);
     public static final Codec<FramebufferAttachmentDefinition> DEPTH_CODEC =
             RecordCodecBuilder.create(instance -> instance.group(
                     Type.CODEC.optionalFieldOf("type", Type.TEXTURE)
@@ -72,6 +79,28 @@ public record FramebufferAttachmentDefinition(FramebufferAttachmentDefinition.Ty
             ).apply(instance, (type, format, dataType, linear, levels, name) ->
                     new FramebufferAttachmentDefinition(type, format, dataType, true, linear, levels, name.orElse(null))));
 
+    /**
+     * Creates an attachment without any special encoding.
+     *
+     * @param type     The type of attachment this is
+     * @param format   The internal format of the data
+     * @param dataType The type of data stored
+     * @param depth    Whether this is a color or depth attachment
+     * @param linear   Whether this should have linear filtering. Only applies to texture buffers
+     * @param levels   The number of mipmaps for textures and samples for render buffers
+     * @param name     The custom name to use when uploading this as a sampler to shaders
+     */
+    public FramebufferAttachmentDefinition(Type type, Format format, DataType dataType, boolean depth, boolean linear, int levels, @Nullable String name) {
+        this(type, format, dataType, depth, linear, levels, name, Encoding.NONE);
+    }
+
+    static DataResult<FramebufferAttachmentDefinition> validateEncoding(FramebufferAttachmentDefinition definition) {
+        if (!definition.encoding.supports(definition.format)) {
+            return DataResult.error(() -> "Attachment format " + definition.format.name() + " can't store " + definition.encoding.getDisplayName() + " data, expected one of " + Arrays.toString(definition.encoding.formats));
+        }
+        return DataResult.success(definition);
+    }
+
     /**
      * @return Whether this attachment can be represented as <code>"depth": true</code> in the JSON
      */
@@ -144,7 +173,7 @@ public record FramebufferAttachmentDefinition(FramebufferAttachmentDefinition.Ty
         RGBA8(GL_RGBA, GL_RGBA8),
         RGBA8_SNORM(GL_RGBA, GL_RGBA8_SNORM),
         RGB10_A2(GL_RGBA, GL_RGB10_A2),
-        RGB10_A2UI(GL_RGBA, GL_RGB10_A2UI),
+        RGB10_A2UI(GL_RGBA_INTEGER, GL_RGB10_A2UI),
         RGBA12(GL_RGBA, GL_RGBA12),
         RGBA16(GL_RGBA, GL_RGBA16),
         RGBA16_SNORM(GL_RGBA, GL_RGBA16_SNORM),
@@ -226,6 +255,71 @@ public record FramebufferAttachmentDefinition(FramebufferAttachmentDefinition.Ty
         }
     }
 
+    /**
+     * <p>Compact ways data can be packed into an attachment to save bandwidth.</p>
+     * <p>The encoding doesn't change how the attachment is created, it restricts the attachment to formats that can hold the packed data.
+     * Shaders pack and unpack the data with the functions in <code>veil:deferred_packing</code>.</p>
+     */
+    public enum Encoding {
+
+        /**
+         * Data is stored as-is.
+         */
+        NONE("None", Format.RGBA8),
+        /**
+         * Unit vectors folded onto an octahedron and stored in two signed channels.
+         */
+        OCTAHEDRAL_NORMAL("Octahedral Normal", Format.RG16_SNORM, Format.RG8_SNORM, Format.RG16F, Format.RG32F),
+        /**
+         * Material id, transparency, and vanilla light coordinates packed into a single integer texel.
+         */
+        PACKED_MATERIAL("Packed Material", Format.RGB10_A2UI);
+
+        public static final Codec<Encoding> CODEC = Codec.STRING.flatXmap(name -> {
+            for (Encoding encoding : Encoding.values()) {
+                if (encoding.name().equalsIgnoreCase(name)) {
+                    return DataResult.success(encoding);
+                }
+            }
+            return DataResult.error(() -> "Unknown attachment encoding: " + name);
+        }, encoding -> DataResult.success(encoding.name()));
+
+        private final String displayName;
+        private final Format[] formats;
+
+        Encoding(String displayName, Format... formats) {
+            this.displayName = displayName;
+            this.formats = formats;
+        }
+
+        /**
+         * @return The format to use if the attachment doesn't specify one
+         */
+        public Format getDefaultFormat() {
+            return this.formats[0];
+        }
+
+        /**
+         * @param format The format to check
+         * @return Whether the specified format can hold data of this encoding
+         */
+        public boolean supports(Format format) {
+            if (this == NONE) {
+                return true;
+            }
+            for (Format supported : this.formats) {
+                if (supported == format) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
     /**
      * The formats for attachments.
      */
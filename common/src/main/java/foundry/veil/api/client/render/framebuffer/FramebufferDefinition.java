@@ -24,7 +24,8 @@ import java.util.Optional;
  * @param height       The height of the framebuffer
  * @param colorBuffers The color attachments to add
  * @param depthBuffer  The depth attachment to use or <code>null</code> to not add a depth buffer
- * @param autoClear    Whether the framebuffer should be cleared automatically at the start of the next frame
+ * @param autoClear    Whether the framebuffer should be cleared automatically at the start of the next frame.
+ *                     Framebuffers that are completely overwritten every frame don't need to be cleared
  * @author Ocelot
  */
 public record FramebufferDefinition(MolangExpression width,
@@ -98,8 +99,8 @@ public record FramebufferDefinition(MolangExpression width,
                             .optionalFieldOf("type", FramebufferAttachmentDefinition.Type.TEXTURE)
                             .forGetter(definition -> definition.colorBuffers[0].type()),
                     FramebufferAttachmentDefinition.Format.CODEC
-                            .optionalFieldOf("format", FramebufferAttachmentDefinition.Format.RGBA8)
-                            .forGetter(definition -> definition.colorBuffers[0].format()),
+                            .optionalFieldOf("format")
+                            .forGetter(definition -> Optional.of(definition.colorBuffers[0].format())),
                     FramebufferAttachmentDefinition.DataType.CODEC
                             .optionalFieldOf("dataType", FramebufferAttachmentDefinition.DataType.UNSIGNED_BYTE)
                             .forGetter(definition -> definition.colorBuffers[0].dataType()),
@@ -109,29 +110,38 @@ public record FramebufferDefinition(MolangExpression width,
                             .forGetter(definition -> definition.colorBuffers[0].levels()),
                     Codec.STRING.optionalFieldOf("name")
                             .forGetter(definition -> Optional.ofNullable(definition.colorBuffers[0].name())),
+                    FramebufferAttachmentDefinition.Encoding.CODEC
+                            .optionalFieldOf("encoding", FramebufferAttachmentDefinition.Encoding.NONE)
+                            .forGetter(definition -> definition.colorBuffers[0].encoding()),
                     FramebufferDefinition.DEPTH_CODEC.fieldOf("depth")
                             .forGetter(definition -> Optional.ofNullable(definition.depthBuffer)),
                     Codec.BOOL.optionalFieldOf("autoClear", true)
                             .forGetter(FramebufferDefinition::autoClear)
-            ).apply(instance, (width, height, type, format, dataType, linear, levels, name, depth, autoClear) ->
+            ).apply(instance, (width, height, type, format, dataType, linear, levels, name, encoding, depth, autoClear) ->
                     new FramebufferDefinition(width,
                             height,
                             new FramebufferAttachmentDefinition[]{
                                     new FramebufferAttachmentDefinition(type,
-                                            format,
+                                            format.orElse(encoding.getDefaultFormat()),
                                             dataType,
                                             false,
                                             linear,
                                             levels,
-                                            name.orElse(null))
+                                            name.orElse(null),
+                                            encoding)
                             },
                             depth.orElse(null),
-                            autoClear)));
+                            autoClear))
+            ).flatXmap(FramebufferDefinition::validateCompactEncoding, FramebufferDefinition::validateCompactEncoding);
 
     public static final Codec<FramebufferDefinition> CODEC = Codec.either(FramebufferDefinition.FULL_CODEC, FramebufferDefinition.COMPACT_CODEC)
             .xmap(either -> either.map(left -> left, right -> right),
                     definition -> definition.colorBuffers.length == 1 ? Either.right(definition) : Either.left(definition));
 
+    private static DataResult<FramebufferDefinition> validateCompactEncoding(FramebufferDefinition definition) {
+        return FramebufferAttachmentDefinition.validateEncoding(definition.colorBuffers[0]).map(unused -> definition);
+    }
+
     private static DataResult<List<FramebufferAttachmentDefinition>> colorSizeCheck(
             List<FramebufferAttachmentDefinition> definitions) {
         if (definitions.isEmpty()) {
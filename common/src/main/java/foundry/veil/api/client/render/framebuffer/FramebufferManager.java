@@ -53,6 +53,7 @@ public class FramebufferManager extends CodecReloadListener<FramebufferDefinitio
     private final Map<ResourceLocation, AdvancedFbo> framebuffersView;
     private final Set<ResourceLocation> screenFramebuffers;
     private final Set<ResourceLocation> manualFramebuffers;
+    private final FramebufferPool pool;
 
     /**
      * Creates a new instance of the framebuffer manager.
@@ -64,6 +65,7 @@ public class FramebufferManager extends CodecReloadListener<FramebufferDefinitio
         this.framebuffersView = Collections.unmodifiableMap(this.framebuffers);
         this.screenFramebuffers = new HashSet<>();
         this.manualFramebuffers = new HashSet<>();
+        this.pool = new FramebufferPool();
     }
 
     private void initFramebuffer(ResourceLocation name, FramebufferDefinition definition, MolangEnvironment runtime) {
@@ -89,25 +91,43 @@ public class FramebufferManager extends CodecReloadListener<FramebufferDefinitio
 
         RenderSystem.clearColor(0.0F, 0.0F, 0.0F, 0.0F);
         for (ResourceLocation name : this.screenFramebuffers) {
+            FramebufferDefinition definition = this.framebufferDefinitions.get(name);
+            AdvancedFbo fbo = this.framebuffers.get(name);
+
+            // Buffers with a clamped or fixed size in one direction might not have changed
+            if (definition != null && fbo != null &&
+                    fbo.getWidth() == (int) runtime.safeResolve(definition.width()) &&
+                    fbo.getHeight() == (int) runtime.safeResolve(definition.height())) {
+                continue;
+            }
+
             this.manualFramebuffers.remove(name);
-            AdvancedFbo fbo = this.framebuffers.remove(name);
+            this.framebuffers.remove(name);
             if (fbo != null) {
                 fbo.free();
             }
 
-            FramebufferDefinition definition = this.framebufferDefinitions.get(name);
             if (definition != null) {
                 this.initFramebuffer(name, definition, runtime);
             }
         }
         AdvancedFbo.unbind();
+
+        // Pooled buffers for the old size will never be acquired again
+        this.pool.trim();
+    }
+
+    @ApiStatus.Internal
+    public void endFrame() {
+        this.pool.endFrame();
     }
 
     @ApiStatus.Internal
     public void clear() {
         RenderSystem.clearColor(0.0F, 0.0F, 0.0F, 0.0F);
         this.framebuffers.forEach((name, fbo) -> {
-            if (this.manualFramebuffers.contains(name)) {
+            // Framebuffers that weren't drawn to since the last clear are still empty
+            if (this.manualFramebuffers.contains(name) || !fbo.isDrawn()) {
                 return;
             }
 
@@ -168,13 +188,20 @@ public class FramebufferManager extends CodecReloadListener<FramebufferDefinitio
         return this.framebuffersView;
     }
 
+    /**
+     * @return The pool of temporary framebuffers shared between post pipelines
+     */
+    public FramebufferPool getPool() {
+        return this.pool;
+    }
+
     @Override
     protected void apply(@NotNull Map<ResourceLocation, FramebufferDefinition> data, @NotNull ResourceManager resourceManager, @NotNull ProfilerFiller profilerFiller) {
         this.framebufferDefinitions.clear();
         this.framebufferDefinitions.putAll(data);
         Veil.LOGGER.info("Loaded {} framebuffers", this.framebufferDefinitions.size());
 
-        this.free();
+        this.freeFramebuffers();
         Window window = Minecraft.getInstance().getWindow();
         MolangRuntime runtime = MolangRuntime.runtime()
                 .setQuery("screen_width", window.getWidth())
@@ -193,12 +220,17 @@ public class FramebufferManager extends CodecReloadListener<FramebufferDefinitio
         this.setFramebuffer(MAIN, AdvancedFbo.getMainFramebuffer());
     }
 
-    @Override
-    public void free() {
+    private void freeFramebuffers() {
         this.framebuffers.keySet().removeAll(this.manualFramebuffers);
         this.framebuffers.values().forEach(AdvancedFbo::free);
         this.framebuffers.clear();
         this.manualFramebuffers.clear();
         this.screenFramebuffers.clear();
     }
+
+    @Override
+    public void free() {
+        this.freeFramebuffers();
+        this.pool.free();
+    }
 }
@@ -0,0 +1,153 @@
+package foundry.veil.api.client.render.framebuffer;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.NativeResource;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * <p>Shares short-lived framebuffers between users that need them at different times.</p>
+ * <p>Framebuffers are keyed on their size and attachments. Releasing a framebuffer makes it available to the next
+ * caller that acquires one with the same key, so targets that are never used at the same time share the same memory.
+ * The contents of an acquired framebuffer are undefined, so they should be cleared or completely overwritten before being read.</p>
+ * <p>Framebuffers that have not been acquired for {@value #MAX_UNUSED_FRAMES} frames are deleted.</p>
+ *
+ * @author Ocelot
+ */
+public class FramebufferPool implements NativeResource {
+
+    private static final int MAX_UNUSED_FRAMES = 10;
+
+    private final Map<Key, List<Entry>> available;
+    private final Map<AdvancedFbo, Key> allocated;
+    private int frame;
+
+    /**
+     * Creates a new empty pool.
+     */
+    public FramebufferPool() {
+        this.available = new HashMap<>();
+        this.allocated = new HashMap<>();
+    }
+
+    /**
+     * Acquires a framebuffer matching the specified definition.
+     *
+     * @param definition  The definition of the framebuffer to get
+     * @param environment The environment to evaluate the size in
+     * @return A framebuffer matching the definition that is reserved until {@link #release(AdvancedFbo)} is called
+     */
+    public AdvancedFbo acquire(FramebufferDefinition definition, MolangEnvironment environment) {
+        Key key = Key.of(definition, environment);
+        List<Entry> entries = this.available.get(key);
+        if (entries != null && !entries.isEmpty()) {
+            return entries.remove(entries.size() - 1).framebuffer;
+        }
+
+        AdvancedFbo framebuffer = definition.createBuilder(environment).build(true);
+        this.allocated.put(framebuffer, key);
+        return framebuffer;
+    }
+
+    /**
+     * Returns the specified framebuffer to the pool. Framebuffers not created by this pool are freed.
+     *
+     * @param framebuffer The framebuffer to release
+     */
+    public void release(AdvancedFbo framebuffer) {
+        Key key = this.allocated.get(framebuffer);
+        if (key == null) {
+            framebuffer.free();
+            return;
+        }
+
+        this.available.computeIfAbsent(key, unused -> new ArrayList<>()).add(new Entry(framebuffer, this.frame));
+    }
+
+    /**
+     * Marks the end of a frame and deletes framebuffers that haven't been used recently.
+     */
+    public void endFrame() {
+        this.frame++;
+        this.delete(entry -> this.frame - entry.releaseFrame > MAX_UNUSED_FRAMES);
+    }
+
+    /**
+     * Deletes all framebuffers that are not currently acquired.
+     */
+    public void trim() {
+        this.delete(entry -> true);
+    }
+
+    private void delete(Predicate<Entry> filter) {
+        Iterator<List<Entry>> iterator = this.available.values().iterator();
+        while (iterator.hasNext()) {
+            List<Entry> entries = iterator.next();
+            entries.removeIf(entry -> {
+                if (filter.test(entry)) {
+                    this.allocated.remove(entry.framebuffer);
+                    entry.framebuffer.free();
+                    return true;
+                }
+                return false;
+            });
+            if (entries.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The number of framebuffers created by this pool
+     */
+    public int getAllocatedCount() {
+        return this.allocated.size();
+    }
+
+    /**
+     * @return The number of framebuffers waiting to be acquired
+     */
+    public int getAvailableCount() {
+        int count = 0;
+        for (List<Entry> entries : this.available.values()) {
+            count += entries.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void free() {
+        this.allocated.keySet().forEach(AdvancedFbo::free);
+        this.allocated.clear();
+        this.available.clear();
+    }
+
+    private record Entry(AdvancedFbo framebuffer, int releaseFrame) {
+    }
+
+    /**
+     * Identifies framebuffers that can be used in place of each other.
+     *
+     * @param width        The width of the framebuffer
+     * @param height       The height of the framebuffer
+     * @param colorBuffers The color attachments of the framebuffer
+     * @param depthBuffer  The depth attachment or <code>null</code> if there is no depth buffer
+     */
+    private record Key(int width,
+                       int height,
+                       List<FramebufferAttachmentDefinition> colorBuffers,
+                       @Nullable FramebufferAttachmentDefinition depthBuffer) {
+
+        private static Key of(FramebufferDefinition definition, MolangEnvironment environment) {
+            int width = (int) environment.safeResolve(definition.width());
+            int height = (int) environment.safeResolve(definition.height());
+            Validate.inclusiveBetween(1, VeilRenderSystem.maxFramebufferWidth(), width, "width must be between 1 and " + VeilRenderSystem.maxFramebufferWidth());
+            Validate.inclusiveBetween(1, VeilRenderSystem.maxFramebufferHeight(), height, "height must be between 1 and " + VeilRenderSystem.maxFramebufferHeight());
+            return new Key(width, height, List.of(definition.colorBuffers()), definition.depthBuffer());
+        }
+    }
+}
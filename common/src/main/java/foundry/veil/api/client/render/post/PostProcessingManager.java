@@ -11,6 +11,7 @@ import com.mojang.serialization.JsonOps;
 import foundry.veil.Veil;
 import foundry.veil.VeilClient;
 import foundry.veil.api.CodecReloadListener;
+import foundry.veil.api.client.render.GpuProfiler;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.framebuffer.AdvancedFbo;
 import foundry.veil.api.client.render.framebuffer.VeilFramebuffers;
@@ -149,11 +150,17 @@ public class PostProcessingManager extends CodecReloadListener<CompositePostPipe
             this.setup();
             int activeTexture = GlStateManager._getActiveTexture();
 
+            GpuProfiler profiler = VeilRenderSystem.renderer().getGpuProfiler();
+            profiler.push("veil_post");
+
             this.activePipelines.sort(PIPELINE_SORTER);
             for (ProfileEntry entry : this.activePipelines) {
                 ResourceLocation id = entry.getPipeline();
                 PostPipeline pipeline = this.pipelines.get(id);
                 if (pipeline != null) {
+                    if (profiler.isEnabled()) {
+                        profiler.push(id.toString());
+                    }
                     platform.preVeilPostProcessing(id, pipeline, this.context);
                     try {
                         pipeline.apply(this.context);
@@ -162,9 +169,12 @@ public class PostProcessingManager extends CodecReloadListener<CompositePostPipe
                         Veil.LOGGER.error("Error running pipeline {}", id, e);
                     }
                     platform.postVeilPostProcessing(id, pipeline, this.context);
+                    profiler.pop();
                 }
             }
 
+            profiler.pop();
+
             RenderSystem.activeTexture(activeTexture);
             this.clear();
             this.context.end();
@@ -3,21 +3,28 @@ package foundry.veil.api.client.render.post.stage;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.client.registry.PostPipelineStageRegistry;
+import foundry.veil.api.client.render.GpuProfiler;
+import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.framebuffer.AdvancedFbo;
 import foundry.veil.api.client.render.framebuffer.FramebufferDefinition;
+import foundry.veil.api.client.render.framebuffer.FramebufferPool;
 import foundry.veil.api.client.render.post.PostPipeline;
+import foundry.veil.api.client.render.shader.program.ProgramDefinition;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import foundry.veil.api.client.render.shader.texture.FramebufferSource;
 import foundry.veil.api.client.render.shader.texture.ShaderTextureSource;
 import gg.moonflower.molangcompiler.api.MolangRuntime;
 import net.minecraft.resources.ResourceLocation;
 import org.joml.*;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
- * A pipeline that runs all child pipelines in order.
+ * <p>A pipeline that runs all child pipelines in order.</p>
+ * <p>Framebuffers are taken from the shared {@link FramebufferPool}. A framebuffer that is always cleared by the first stage
+ * that uses it is only held from that stage until the last stage that uses it, so temporaries that are never used at
+ * the same time share memory with each other and with other pipelines. All other framebuffers keep their contents
+ * between frames and are held until the screen is resized.</p>
  */
 public class CompositePostPipeline implements PostPipeline {
 
@@ -36,13 +43,22 @@ public class CompositePostPipeline implements PostPipeline {
             Codec.BOOL.optionalFieldOf("replace", false).forGetter(CompositePostPipeline::isReplace)
     ).apply(instance, (pipelines, textures, framebuffers, priority, replace) -> new CompositePostPipeline(pipelines.toArray(PostPipeline[]::new), textures, framebuffers, priority, replace)));
 
+    private static final int UNUSED = -1;
+
     private final PostPipeline[] stages;
     private final Map<String, ShaderTextureSource> textures;
     private final Map<ResourceLocation, FramebufferDefinition> framebufferDefinitions;
-    private final Map<ResourceLocation, AdvancedFbo> framebuffers;
+    private final ResourceLocation[] framebufferNames;
+    private final Map<ResourceLocation, Integer> framebufferIndices;
+    private final AdvancedFbo[] framebuffers;
+    private final int[] firstUse;
+    private final int[] lastUse;
+    private final boolean[] transientFramebuffers;
     private final int priority;
     private final boolean replace;
 
+    private String[] stageNames;
+    private MolangRuntime runtime;
     private int screenWidth = -1;
     private int screenHeight = -1;
 
@@ -50,7 +66,15 @@ public class CompositePostPipeline implements PostPipeline {
         this.stages = stages;
         this.textures = textures;
         this.framebufferDefinitions = framebufferDefinitions;
-        this.framebuffers = new HashMap<>();
+        this.framebufferNames = framebufferDefinitions.keySet().toArray(ResourceLocation[]::new);
+        this.framebufferIndices = new HashMap<>();
+        for (int i = 0; i < this.framebufferNames.length; i++) {
+            this.framebufferIndices.put(this.framebufferNames[i], i);
+        }
+        this.framebuffers = new AdvancedFbo[this.framebufferNames.length];
+        this.firstUse = new int[this.framebufferNames.length];
+        this.lastUse = new int[this.framebufferNames.length];
+        this.transientFramebuffers = new boolean[this.framebufferNames.length];
         this.priority = priority;
         this.replace = replace;
     }
@@ -68,25 +92,190 @@ public class CompositePostPipeline implements PostPipeline {
 
     @Override
     public void apply(Context context) {
+        FramebufferPool pool = VeilRenderSystem.renderer().getFramebufferManager().getPool();
         AdvancedFbo main = context.getDrawFramebuffer();
         if (this.screenWidth != main.getWidth() || this.screenHeight != main.getHeight()) {
             this.screenWidth = main.getWidth();
             this.screenHeight = main.getHeight();
-            this.framebuffers.values().forEach(AdvancedFbo::free);
-            this.framebuffers.clear();
+            this.releaseFramebuffers(pool);
 
-            MolangRuntime runtime = MolangRuntime.runtime()
+            this.runtime = MolangRuntime.runtime()
                     .setQuery("screen_width", this.screenWidth)
                     .setQuery("screen_height", this.screenHeight)
                     .create();
-            this.framebufferDefinitions.forEach((name, definition) -> this.framebuffers.put(name, definition.createBuilder(runtime).build(true)));
         }
 
-        this.framebuffers.forEach(context::setFramebuffer);
+        // Shaders can be reloaded at any time, so the framebuffers they sample have to be checked every frame
+        this.computeLifetimes();
+        for (int i = 0; i < this.framebufferNames.length; i++) {
+            if (this.transientFramebuffers[i]) {
+                if (this.framebuffers[i] != null) {
+                    pool.release(this.framebuffers[i]);
+                    this.framebuffers[i] = null;
+                }
+                continue;
+            }
+
+            if (this.framebuffers[i] == null) {
+                this.framebuffers[i] = pool.acquire(this.framebufferDefinitions.get(this.framebufferNames[i]), this.runtime);
+            }
+            context.setFramebuffer(this.framebufferNames[i], this.framebuffers[i]);
+        }
+
         this.textures.forEach((name, texture) -> context.setSampler(name, texture.getId(context)));
-        for (PostPipeline pipeline : this.stages) {
-            pipeline.apply(context);
+        GpuProfiler profiler = VeilRenderSystem.renderer().getGpuProfiler();
+        try {
+            for (int stage = 0; stage < this.stages.length; stage++) {
+                for (int i = 0; i < this.framebufferNames.length; i++) {
+                    if (this.transientFramebuffers[i] && this.firstUse[i] == stage) {
+                        this.framebuffers[i] = pool.acquire(this.framebufferDefinitions.get(this.framebufferNames[i]), this.runtime);
+                        context.setFramebuffer(this.framebufferNames[i], this.framebuffers[i]);
+                    }
+                }
+
+                if (profiler.isEnabled()) {
+                    profiler.push(this.getStageName(stage));
+                    try {
+                        this.stages[stage].apply(context);
+                    } finally {
+                        profiler.pop();
+                    }
+                } else {
+                    this.stages[stage].apply(context);
+                }
+
+                for (int i = 0; i < this.framebufferNames.length; i++) {
+                    if (this.transientFramebuffers[i] && this.lastUse[i] == stage && this.framebuffers[i] != null) {
+                        pool.release(this.framebuffers[i]);
+                        this.framebuffers[i] = null;
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < this.framebufferNames.length; i++) {
+                if (this.transientFramebuffers[i] && this.framebuffers[i] != null) {
+                    pool.release(this.framebuffers[i]);
+                    this.framebuffers[i] = null;
+                }
+            }
+        }
+    }
+
+    private String getStageName(int stage) {
+        if (this.stageNames == null) {
+            this.stageNames = new String[this.stages.length];
+            for (int i = 0; i < this.stages.length; i++) {
+                PostPipeline pipeline = this.stages[i];
+                if (pipeline instanceof CompositePostPipeline) {
+                    this.stageNames[i] = i + ": composite";
+                } else if (pipeline instanceof BlitPostStage blitStage) {
+                    this.stageNames[i] = i + ": " + blitStage.getShaderId();
+                } else {
+                    this.stageNames[i] = i + ": " + PostPipelineStageRegistry.REGISTRY.getKey(pipeline.getType());
+                }
+            }
+        }
+        return this.stageNames[stage];
+    }
+
+    private void releaseFramebuffers(FramebufferPool pool) {
+        for (int i = 0; i < this.framebuffers.length; i++) {
+            if (this.framebuffers[i] != null) {
+                pool.release(this.framebuffers[i]);
+                this.framebuffers[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Finds the first and last stage that uses each framebuffer.
+     * A framebuffer is transient if the first stage to use it clears it without reading it first.
+     */
+    private void computeLifetimes() {
+        Arrays.fill(this.firstUse, UNUSED);
+        Arrays.fill(this.lastUse, UNUSED);
+        Arrays.fill(this.transientFramebuffers, false);
+
+        // Global textures are read for the entire pipeline
+        for (ShaderTextureSource texture : this.textures.values()) {
+            if (texture instanceof FramebufferSource source) {
+                this.markRead(source.name(), 0);
+                this.markRead(source.name(), this.stages.length - 1);
+            }
+        }
+
+        for (int stage = 0; stage < this.stages.length; stage++) {
+            this.markStage(this.stages[stage], stage);
+        }
+    }
+
+    private void markStage(PostPipeline pipeline, int stage) {
+        if (pipeline instanceof MaskPostStage || pipeline instanceof DepthFunctionPostStage) {
+            return;
+        }
+
+        if (pipeline instanceof CompositePostPipeline composite) {
+            for (ShaderTextureSource texture : composite.textures.values()) {
+                if (texture instanceof FramebufferSource source) {
+                    this.markRead(source.name(), stage);
+                }
+            }
+            for (PostPipeline child : composite.stages) {
+                this.markStage(child, stage);
+            }
+            return;
+        }
+
+        if (pipeline instanceof FramebufferPostStage framebufferStage) {
+            if (framebufferStage.getIn() != null) {
+                this.markRead(framebufferStage.getIn(), stage);
+            }
+            if (framebufferStage instanceof BlitPostStage blitStage) {
+                ShaderProgram shader = blitStage.getShader();
+                ProgramDefinition definition = shader != null ? shader.getDefinition() : null;
+                if (definition != null) {
+                    for (ShaderTextureSource texture : definition.textures().values()) {
+                        if (texture instanceof FramebufferSource source) {
+                            this.markRead(source.name(), stage);
+                        }
+                    }
+                }
+            }
+
+            // Reads are marked first, so a stage that reads and clears the same buffer still keeps it
+            if (framebufferStage.clearOut()) {
+                this.markWrite(framebufferStage.getOut(), stage);
+            } else {
+                this.markRead(framebufferStage.getOut(), stage);
+            }
+            return;
+        }
+
+        // Custom stages can access any framebuffer
+        for (ResourceLocation name : this.framebufferNames) {
+            this.markRead(name, stage);
+        }
+    }
+
+    private void markRead(ResourceLocation name, int stage) {
+        this.mark(name, stage, false);
+    }
+
+    private void markWrite(ResourceLocation name, int stage) {
+        this.mark(name, stage, true);
+    }
+
+    private void mark(ResourceLocation name, int stage, boolean clear) {
+        Integer index = this.framebufferIndices.get(name);
+        if (index == null) {
+            return;
+        }
+
+        if (this.firstUse[index] == UNUSED) {
+            this.firstUse[index] = stage;
+            this.transientFramebuffers[index] = clear;
         }
+        this.lastUse[index] = Math.max(this.lastUse[index], stage);
     }
 
     @Override
@@ -94,8 +283,7 @@ public class CompositePostPipeline implements PostPipeline {
         for (PostPipeline pipeline : this.stages) {
             pipeline.free();
         }
-        this.framebuffers.values().forEach(AdvancedFbo::free);
-        this.framebuffers.clear();
+        this.releaseFramebuffers(VeilRenderSystem.renderer().getFramebufferManager().getPool());
     }
 
     @Override
@@ -70,6 +70,10 @@ public final class VeilRenderType extends RenderType {
         return QUASAR_TRAIL.apply(texture);
     }
 
+    public static RenderType skinnedMesh(ResourceLocation texture) {
+        return NECROMANCER_SKINNED_MESH.apply(texture);
+    }
+
     /**
      * Creates a render type that uses a single draw buffer, but re-uses the data to draw the specified layers.
      *
@@ -12,7 +12,8 @@ import java.util.Set;
  * {@link #apply(ShaderProgram)} should be called after this shader is attached to a program.
  *
  * @param sourceFile             The source file this shader was compiled from or <code>null</code> if the shader has no file
- * @param id                     The OpenGL id of the shader. The shader is automatically deleted later
+ * @param id                     The OpenGL id of the shader or <code>0</code> if the program was loaded from a {@link ProgramBinaryCache binary}.
+ *                               The shader is automatically deleted later
  * @param uniformBindings        The bindings set by the shader
  * @param definitionDependencies The shader pre-definitions this shader is dependent on
  * @param includes               All shader imports included in this file
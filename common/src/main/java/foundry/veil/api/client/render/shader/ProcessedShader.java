@@ -0,0 +1,39 @@
+package foundry.veil.api.client.render.shader;
+
+import foundry.veil.api.client.render.shader.program.ProgramDefinition;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * A shader that has been run through all pre-processors, but not compiled yet.
+ *
+ * @param sourceFile             The source file this shader was loaded from or <code>null</code> if the shader has no file
+ * @param type                   The OpenGL type of shader
+ * @param sourceType             The type of source code
+ * @param source                 The final source code to compile
+ * @param uniformBindings        The bindings set by the shader
+ * @param definitionDependencies The shader pre-definitions this shader is dependent on
+ * @param includes               All shader imports included in this file
+ * @author Ocelot
+ */
+public record ProcessedShader(@Nullable ResourceLocation sourceFile,
+                              int type,
+                              ProgramDefinition.SourceType sourceType,
+                              String source,
+                              Object2IntMap<String> uniformBindings,
+                              Set<String> definitionDependencies,
+                              Set<ResourceLocation> includes) {
+
+    /**
+     * Creates a compiled shader from this processed shader.
+     *
+     * @param id The OpenGL id of the compiled shader or <code>0</code> if the shader was never compiled
+     * @return A new compiled shader with the same attributes as this shader
+     */
+    public CompiledShader toCompiled(int id) {
+        return new CompiledShader(this.sourceFile, id, this.uniformBindings, this.definitionDependencies, this.includes);
+    }
+}
@@ -0,0 +1,315 @@
+package foundry.veil.api.client.render.shader;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.mojang.blaze3d.systems.RenderSystem;
+import foundry.veil.Veil;
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.shader.definition.ShaderPreDefinitions;
+import net.minecraft.Util;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL20C.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20C.glGetProgrami;
+import static org.lwjgl.opengl.GL41C.*;
+
+/**
+ * <p>Stores linked shader programs on disk with <code>glGetProgramBinary</code> so they can be restored on the next load without compiling any shaders.</p>
+ * <p>Programs are keyed on the final pre-processed source of every shader, the values of all pre-definitions the shaders depend on,
+ * and the GL vendor, renderer, and version. Drivers can still reject binaries, so callers must fall back to compiling the program from source when loading fails.</p>
+ * <p>Binaries are deleted when a reload passes without them being used
+ * and the least recently used binaries are deleted when the folder grows larger than {@value #MAX_DISK_SIZE} bytes.
+ * The cache can be turned off with the <code>veil.disableProgramBinaryCache</code> system property.</p>
+ *
+ * @author Ocelot
+ */
+public class ProgramBinaryCache {
+
+    private static final String EXTENSION = ".bin";
+    // Increase when the key or file format changes to invalidate old binaries
+    private static final int VERSION = 1;
+    private static final long MAX_DISK_SIZE = 64L * 1024 * 1024;
+
+    private final Path folder;
+    private volatile Set<String> used;
+    private boolean reloaded;
+    private String driver;
+    private int hits;
+    private int misses;
+
+    /**
+     * Creates a new program cache.
+     *
+     * @param folder The folder to store program binaries in
+     */
+    public ProgramBinaryCache(Path folder) {
+        this.folder = folder;
+        this.used = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * @return Whether program binaries can be saved and loaded
+     */
+    public boolean isSupported() {
+        return Veil.PROGRAM_BINARY_CACHE && VeilRenderSystem.programBinarySupported();
+    }
+
+    /**
+     * Computes the key for the program made of the specified shaders.
+     *
+     * @param definitions The current shader pre-definitions
+     * @param shaders     All shaders in the program
+     * @return The key for the program or <code>null</code> if program binaries are not supported
+     */
+    public @Nullable String getKey(ShaderPreDefinitions definitions, Collection<ProcessedShader> shaders) {
+        RenderSystem.assertOnRenderThreadOrInit();
+        if (!this.isSupported()) {
+            return null;
+        }
+
+        if (this.driver == null) {
+            this.driver = glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n" + glGetString(GL_VERSION);
+        }
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(VERSION);
+        hasher.putString(this.driver, StandardCharsets.UTF_8);
+
+        // Only the definitions the program actually uses are part of the key
+        Collection<String> dependencies = new TreeSet<>();
+        for (ProcessedShader shader : shaders) {
+            hasher.putInt(shader.type());
+            hasher.putInt(shader.sourceType().ordinal());
+            hasher.putInt(shader.source().length());
+            hasher.putString(shader.source(), StandardCharsets.UTF_8);
+            dependencies.addAll(shader.definitionDependencies());
+        }
+        for (String dependency : dependencies) {
+            hasher.putString(dependency, StandardCharsets.UTF_8);
+            hasher.putByte((byte) 0);
+            hasher.putString(Objects.toString(definitions.getDefinition(dependency)), StandardCharsets.UTF_8);
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Attempts to load the program with the specified key into the program object.
+     *
+     * @param program The program to load the binary into
+     * @param key     The key of the program from {@link #getKey(ShaderPreDefinitions, Collection)}
+     * @return Whether the program was loaded and successfully linked
+     */
+    public boolean load(int program, String key) {
+        RenderSystem.assertOnRenderThreadOrInit();
+        Path file = this.folder.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            this.misses++;
+            return false;
+        }
+
+        ByteBuffer buffer = null;
+        try {
+            byte[] data = Files.readAllBytes(file);
+            if (data.length <= Integer.BYTES) {
+                throw new IOException("Truncated program binary");
+            }
+
+            int format = ByteBuffer.wrap(data).getInt();
+            buffer = MemoryUtil.memAlloc(data.length - Integer.BYTES);
+            buffer.put(data, Integer.BYTES, data.length - Integer.BYTES).flip();
+            glProgramBinary(program, format, buffer);
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_TRUE) {
+                this.hits++;
+                this.used.add(key);
+                // Mark the file as recently used so it is evicted last
+                this.touch(file);
+                return true;
+            }
+
+            // The driver rejected the binary, usually because it was updated
+            Veil.LOGGER.debug("Discarding rejected program binary: {}", file);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to read program binary: {}", file, e);
+        } finally {
+            if (buffer != null) {
+                MemoryUtil.memFree(buffer);
+            }
+        }
+
+        this.misses++;
+        this.delete(file);
+        return false;
+    }
+
+    /**
+     * Retrieves the binary of the specified program and writes it to disk in the background.
+     * The program must have been linked with <code>GL_PROGRAM_BINARY_RETRIEVABLE_HINT</code> set.
+     *
+     * @param program The program to save
+     * @param key     The key of the program from {@link #getKey(ShaderPreDefinitions, Collection)}
+     */
+    public void save(int program, String key) {
+        RenderSystem.assertOnRenderThreadOrInit();
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+
+        byte[] data = new byte[Integer.BYTES + length];
+        ByteBuffer buffer = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer format = stack.mallocInt(1);
+            glGetProgramBinary(program, null, format, buffer);
+            ByteBuffer.wrap(data).putInt(format.get(0)).put(buffer);
+        } finally {
+            MemoryUtil.memFree(buffer);
+        }
+
+        this.used.add(key);
+        Path file = this.folder.resolve(key + EXTENSION);
+        CompletableFuture.runAsync(() -> {
+            try {
+                Files.createDirectories(this.folder);
+                // Write to a temporary file first so a partially written binary is never loaded
+                Path temp = Files.createTempFile(this.folder, key, ".tmp");
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Veil.LOGGER.warn("Failed to write program binary: {}", file, e);
+            }
+        }, Util.ioPool());
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to update program binary: {}", file, e);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to delete program binary: {}", file, e);
+        }
+    }
+
+    /**
+     * Starts a new reload. Binaries that were not used since the last reload are deleted from disk.
+     */
+    public synchronized void startReload() {
+        Set<String> used = this.used;
+        this.used = ConcurrentHashMap.newKeySet();
+
+        // Nothing has been used before the first reload, so there is nothing to compare against yet
+        Set<String> keep = this.reloaded ? new HashSet<>(used) : null;
+        this.reloaded = true;
+        CompletableFuture.runAsync(() -> this.prune(keep), Util.ioPool());
+    }
+
+    private void prune(@Nullable Set<String> keep) {
+        if (!Files.isDirectory(this.folder)) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(this.folder)) {
+            stream.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).forEach(files::add);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to prune program binary cache: {}", this.folder, e);
+            return;
+        }
+
+        List<CachedFile> remaining = new ArrayList<>(files.size());
+        long size = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (keep != null && !keep.contains(name.substring(0, name.length() - EXTENSION.length()))) {
+                this.delete(file);
+                continue;
+            }
+
+            try {
+                long fileSize = Files.size(file);
+                remaining.add(new CachedFile(file, fileSize, Files.getLastModifiedTime(file).toMillis()));
+                size += fileSize;
+            } catch (IOException e) {
+                Veil.LOGGER.warn("Failed to read program binary attributes: {}", file, e);
+            }
+        }
+
+        if (size <= MAX_DISK_SIZE) {
+            return;
+        }
+
+        remaining.sort(Comparator.comparingLong(CachedFile::lastUsed));
+        for (CachedFile file : remaining) {
+            if (size <= MAX_DISK_SIZE) {
+                break;
+            }
+            this.delete(file.path());
+            size -= file.size();
+        }
+    }
+
+    /**
+     * Deletes all stored program binaries and resets the hit and miss counters.
+     */
+    public void clear() {
+        this.used = ConcurrentHashMap.newKeySet();
+        this.hits = 0;
+        this.misses = 0;
+        if (!Files.isDirectory(this.folder)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(this.folder)) {
+            files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).forEach(this::delete);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to clear program binary cache: {}", this.folder, e);
+        }
+    }
+
+    /**
+     * @return The number of programs loaded from the cache
+     */
+    public int getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of programs that had to be compiled from source
+     */
+    public int getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The folder program binaries are stored in
+     */
+    public Path getFolder() {
+        return this.folder;
+    }
+
+    private record CachedFile(Path path, long size, long lastUsed) {
+    }
+}
@@ -21,6 +21,56 @@ import java.io.IOException;
  */
 public interface ShaderCompiler extends NativeResource {
 
+    /**
+     * Reads the specified shader file and runs all pre-processors on it without compiling it.
+     * Processing doesn't use OpenGL, so this can be called from any thread.
+     *
+     * @param context    The context for compiling the shader
+     * @param type       The type of shader to create
+     * @param sourceType The type of source code in the file
+     * @param id         The id of the shader to process
+     * @return The processed shader source
+     * @throws IOException     If the file could not be found or an error occurs processing the shader source
+     * @throws ShaderException If an error occurs processing the shader source
+     */
+    ProcessedShader process(Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException;
+
+    /**
+     * Runs all pre-processors on the specified shader source without compiling it.
+     *
+     * @param context    The context for compiling the shader
+     * @param type       The type of shader to create
+     * @param sourceType The type of source code
+     * @param source     The source of the shader to process
+     * @return The processed shader source
+     * @throws IOException     If an error occurs processing the shader source
+     * @throws ShaderException If an error occurs processing the shader source
+     */
+    ProcessedShader process(Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException;
+
+    /**
+     * Creates a new shader from the specified processed source.
+     * The shader will automatically be deleted at some point in the future.
+     *
+     * @param shader The processed shader to compile
+     * @return A new shader that can be attached to programs
+     * @throws ShaderException If an error occurs compiling the shader
+     */
+    CompiledShader compile(ProcessedShader shader) throws ShaderException;
+
+    /**
+     * Creates a new shader from the specified processed source without waiting for the driver to finish compiling it.
+     * Compile errors are only reported once the program the shader is attached to is linked.
+     * The shader will automatically be deleted at some point in the future.
+     *
+     * @param shader The processed shader to compile
+     * @return A new shader that can be attached to programs
+     * @throws ShaderException If the shader type is not supported
+     */
+    default CompiledShader submit(ProcessedShader shader) throws ShaderException {
+        return this.compile(shader);
+    }
+
     /**
      * Creates a new shader and attempts to attach sources read from file to it.
      * The sources are read from
@@ -33,7 +83,9 @@ public interface ShaderCompiler extends NativeResource {
      * @throws IOException     If the file could not be found.
      * @throws ShaderException If an error occurs compiling the shader
      */
-    CompiledShader compile(Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException;
+    default CompiledShader compile(Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException {
+        return this.compile(this.process(context, type, sourceType, id));
+    }
 
     /**
      * Creates a new shader and attempts to attach the specified sources to it.
@@ -46,7 +98,9 @@ public interface ShaderCompiler extends NativeResource {
      * @throws IOException     If an error occurs processing the shader source
      * @throws ShaderException If an error occurs compiling the shader
      */
-    CompiledShader compile(Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException;
+    default CompiledShader compile(Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException {
+        return this.compile(this.process(context, type, sourceType, source));
+    }
 
     /**
      * Adds the specified pre-processor to the end of the stack.
@@ -96,9 +150,15 @@ public interface ShaderCompiler extends NativeResource {
      * @param preDefinitions The set of all shader pre-definitions
      * @param sourceSet      The location to load relative shader files from
      * @param definition     The definition the shader is being compiled for or <code>null</code> if there is no program
+     * @param binaryCache    The cache to load and store linked programs with or <code>null</code> to always compile programs from source
      */
     record Context(ShaderPreDefinitions preDefinitions,
                    ShaderSourceSet sourceSet,
-                   @Nullable ProgramDefinition definition) {
+                   @Nullable ProgramDefinition definition,
+                   @Nullable ProgramBinaryCache binaryCache) {
+
+        public Context(ShaderPreDefinitions preDefinitions, ShaderSourceSet sourceSet, @Nullable ProgramDefinition definition) {
+            this(preDefinitions, sourceSet, definition, null);
+        }
     }
 }
@@ -14,6 +14,7 @@ import foundry.veil.api.client.render.shader.processor.ShaderCustomProcessor;
 import foundry.veil.api.client.render.shader.processor.ShaderModifyProcessor;
 import foundry.veil.api.client.render.shader.program.ProgramDefinition;
 import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import foundry.veil.impl.client.render.shader.ShaderProgramImpl;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
@@ -26,6 +27,7 @@ import net.minecraft.server.packs.resources.ResourceProvider;
 import net.minecraft.util.GsonHelper;
 import net.minecraft.util.profiling.InactiveProfiler;
 import net.minecraft.util.profiling.ProfilerFiller;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
@@ -44,6 +46,8 @@ import static org.lwjgl.opengl.GL43C.GL_COMPUTE_SHADER;
 
 /**
  * <p>Manages all shaders and compiles them automatically.</p>
+ * <p>Shader sources are processed in the background and all programs are submitted to the driver at once.
+ * When parallel shader compilation is supported, programs are swapped in over the next frames as the driver finishes them.</p>
  * <p>Shaders can be recompiled using {@link #recompile(ResourceLocation, ResourceProvider)} or
  * {@link #recompile(ResourceLocation, ResourceProvider, ShaderCompiler)} to use a custom compiler.</p>
  *
@@ -72,9 +76,14 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
 
     private final ShaderSourceSet sourceSet;
     private final ShaderPreDefinitions definitions;
+    private final ProgramBinaryCache binaryCache;
     private final Map<ResourceLocation, ShaderProgram> shaders;
     private final Map<ResourceLocation, ShaderProgram> shadersView;
     private final Set<ResourceLocation> dirtyShaders;
+    private final Map<ResourceLocation, Set<ResourceLocation>> shaderIncludes;
+    private final Map<ResourceLocation, Set<ResourceLocation>> includeDependents;
+    private final List<ShaderProgramImpl.PendingLink> pendingPrograms;
+    private CompletableFuture<Void> pendingFuture;
     private CompletableFuture<Void> reloadFuture;
     private CompletableFuture<Void> recompileFuture;
 
@@ -85,12 +94,28 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
      * @param shaderPreDefinitions The set of shader pre-definitions
      */
     public ShaderManager(ShaderSourceSet sourceSet, ShaderPreDefinitions shaderPreDefinitions) {
+        this(sourceSet, shaderPreDefinitions, null);
+    }
+
+    /**
+     * Creates a new shader manager.
+     *
+     * @param sourceSet            The source set to load all shaders from
+     * @param shaderPreDefinitions The set of shader pre-definitions
+     * @param binaryCache          The cache to store linked programs in or <code>null</code> to always compile programs from source
+     */
+    public ShaderManager(ShaderSourceSet sourceSet, ShaderPreDefinitions shaderPreDefinitions, @Nullable ProgramBinaryCache binaryCache) {
         this.sourceSet = sourceSet;
         this.definitions = shaderPreDefinitions;
+        this.binaryCache = binaryCache;
         this.definitions.addListener(this::onDefinitionChanged);
         this.shaders = new HashMap<>();
         this.shadersView = Collections.unmodifiableMap(this.shaders);
         this.dirtyShaders = new HashSet<>();
+        this.shaderIncludes = new HashMap<>();
+        this.includeDependents = new HashMap<>();
+        this.pendingPrograms = new ArrayList<>();
+        this.pendingFuture = CompletableFuture.completedFuture(null);
         this.reloadFuture = CompletableFuture.completedFuture(null);
         this.recompileFuture = CompletableFuture.completedFuture(null);
     }
@@ -180,18 +205,63 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
         return shaderSources;
     }
 
-    private void compile(ShaderProgram program, ProgramDefinition definition, ShaderCompiler compiler) {
-        ResourceLocation id = program.getId();
-        try {
-            program.compile(new ShaderCompiler.Context(this.definitions, this.sourceSet, definition), compiler);
-        } catch (ShaderException e) {
+    private ShaderCompiler.Context createContext(ProgramDefinition definition) {
+        return new ShaderCompiler.Context(this.definitions, this.sourceSet, definition, this.binaryCache);
+    }
+
+    private void logError(ResourceLocation id, Exception exception) {
+        if (exception instanceof ShaderException e) {
             Veil.LOGGER.error("Failed to create shader {}: {}", id, e.getMessage());
             String error = e.getGlError();
             if (error != null) {
                 Veil.LOGGER.warn(error);
             }
+        } else {
+            Veil.LOGGER.error("Failed to create shader: {}", id, exception);
+        }
+    }
+
+    private void compile(ShaderProgram program, ProgramDefinition definition, ShaderCompiler compiler) {
+        try {
+            program.compile(this.createContext(definition), compiler);
         } catch (Exception e) {
-            Veil.LOGGER.error("Failed to create shader: {}", id, e);
+            this.logError(program.getId(), e);
+        }
+    }
+
+    private void submit(ShaderProgram program, ProgramDefinition definition, @Nullable List<ProcessedShader> processedShaders, ShaderCompiler compiler) {
+        if (processedShaders == null) {
+            return; // The error was already logged while processing
+        }
+
+        try {
+            this.pendingPrograms.add(((ShaderProgramImpl) program).link(this.createContext(definition), compiler, processedShaders));
+        } catch (Exception e) {
+            this.logError(program.getId(), e);
+        }
+    }
+
+    private void updateIncludes(ResourceLocation id, @Nullable List<ProcessedShader> processedShaders) {
+        if (processedShaders == null) {
+            return; // Keep the old includes so fixing the broken include still recompiles this shader
+        }
+
+        Set<ResourceLocation> includes = new HashSet<>();
+        for (ProcessedShader shader : processedShaders) {
+            includes.addAll(shader.includes());
+        }
+
+        Set<ResourceLocation> oldIncludes = this.shaderIncludes.put(id, includes);
+        if (oldIncludes != null) {
+            for (ResourceLocation include : oldIncludes) {
+                Set<ResourceLocation> dependents = this.includeDependents.get(include);
+                if (dependents != null) {
+                    dependents.remove(id);
+                }
+            }
+        }
+        for (ResourceLocation include : includes) {
+            this.includeDependents.computeIfAbsent(include, unused -> new HashSet<>()).add(id);
         }
     }
 
@@ -234,6 +304,60 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
         }
     }
 
+    /**
+     * Swaps in all programs the driver has finished compiling and linking since the last call.
+     * Without parallel shader compilation, every program is finished immediately.
+     */
+    @ApiStatus.Internal
+    public void pollPendingPrograms() {
+        if (this.pendingPrograms.isEmpty()) {
+            return;
+        }
+
+        boolean finished = false;
+        Iterator<ShaderProgramImpl.PendingLink> iterator = this.pendingPrograms.iterator();
+        while (iterator.hasNext()) {
+            ShaderProgramImpl.PendingLink link = iterator.next();
+            if (!link.isDone()) {
+                continue;
+            }
+
+            iterator.remove();
+            finished = true;
+            try {
+                link.finish();
+            } catch (Exception e) {
+                this.logError(link.getShader().getId(), e);
+            }
+        }
+
+        if (finished) {
+            VeilRenderSystem.finalizeShaderCompilation();
+        }
+        if (this.pendingPrograms.isEmpty()) {
+            this.pendingFuture.complete(null);
+        }
+    }
+
+    private CompletableFuture<Void> awaitPendingPrograms() {
+        if (this.pendingPrograms.isEmpty()) {
+            VeilRenderSystem.finalizeShaderCompilation();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        this.pendingFuture = new CompletableFuture<>();
+        CompletableFuture<Void> future = this.pendingFuture;
+        // Anything the driver has already finished can be swapped in right away
+        this.pollPendingPrograms();
+        return future;
+    }
+
+    private void cancelPendingPrograms() {
+        this.pendingPrograms.forEach(ShaderProgramImpl.PendingLink::cancel);
+        this.pendingPrograms.clear();
+        this.pendingFuture.complete(null);
+    }
+
     /**
      * Sets a global shader value.
      *
@@ -260,6 +384,24 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
         return this.shadersView;
     }
 
+    /**
+     * Retrieves all shaders that include the specified file directly or through another include.
+     *
+     * @param include The id of the include file
+     * @return A view of the ids of all shaders depending on that include
+     */
+    public Set<ResourceLocation> getIncludeDependents(ResourceLocation include) {
+        Set<ResourceLocation> dependents = this.includeDependents.get(include);
+        return dependents != null ? Collections.unmodifiableSet(dependents) : Collections.emptySet();
+    }
+
+    /**
+     * @return The cache linked programs are stored in or <code>null</code> if programs are always compiled from source
+     */
+    public @Nullable ProgramBinaryCache getBinaryCache() {
+        return this.binaryCache;
+    }
+
     /**
      * @return The source set all shaders are loaded from
      */
@@ -276,31 +418,50 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
         }
         shaderSources.putAll(this.readIncludes(resourceManager));
 
-        return new ReloadState(definitions, shaderSources);
+        return new ReloadState(definitions, shaderSources, Collections.emptyMap());
     }
 
-    private void apply(ShaderManager.ReloadState reloadState) {
-        this.shaders.values().forEach(ShaderProgram::free);
-        this.shaders.clear();
+    private ReloadState process(ShaderManager.ReloadState reloadState) {
+        Map<ResourceLocation, List<ProcessedShader>> processedShaders = new HashMap<>();
 
         ResourceProvider sourceProvider = loc -> Optional.ofNullable(reloadState.shaderSources().get(loc));
         try (ShaderCompiler compiler = this.addProcessors(ShaderCompiler.cached(sourceProvider), sourceProvider)) {
+            for (Map.Entry<ResourceLocation, ProgramDefinition> entry : reloadState.definitions().entrySet()) {
+                ResourceLocation id = entry.getKey();
+                try {
+                    processedShaders.put(id, ShaderProgramImpl.process(this.createContext(entry.getValue()), compiler));
+                } catch (Exception e) {
+                    this.logError(id, e);
+                }
+            }
+        }
+
+        return new ReloadState(reloadState.definitions(), reloadState.shaderSources(), processedShaders);
+    }
+
+    private CompletableFuture<Void> apply(ShaderManager.ReloadState reloadState) {
+        this.cancelPendingPrograms();
+        this.shaders.values().forEach(ShaderProgram::free);
+        this.shaders.clear();
+        this.shaderIncludes.clear();
+        this.includeDependents.clear();
+
+        // All sources are already processed, so the compiler only has to create shaders
+        try (ShaderCompiler compiler = ShaderCompiler.cached(null)) {
             for (Map.Entry<ResourceLocation, ProgramDefinition> entry : reloadState.definitions().entrySet()) {
                 ResourceLocation id = entry.getKey();
                 ShaderProgram program = ShaderProgram.create(id);
-                this.compile(program, entry.getValue(), compiler);
+                this.updateIncludes(id, reloadState.processedShaders().get(id));
+                this.submit(program, entry.getValue(), reloadState.processedShaders().get(id), compiler);
                 this.shaders.put(id, program);
             }
         }
 
-        VeilRenderSystem.finalizeShaderCompilation();
-
-        Veil.LOGGER.info("Loaded {} shaders from: {}", this.shaders.size(), this.sourceSet.getFolder());
+        return this.awaitPendingPrograms().thenRun(() -> Veil.LOGGER.info("Loaded {} shaders from: {}", this.shaders.size(), this.sourceSet.getFolder()));
     }
 
-    private void applyRecompile(ShaderManager.ReloadState reloadState, Collection<ResourceLocation> shaders) {
-        ResourceProvider sourceProvider = loc -> Optional.ofNullable(reloadState.shaderSources().get(loc));
-        try (ShaderCompiler compiler = this.addProcessors(ShaderCompiler.cached(sourceProvider), sourceProvider)) {
+    private CompletableFuture<Void> applyRecompile(ShaderManager.ReloadState reloadState, Collection<ResourceLocation> shaders) {
+        try (ShaderCompiler compiler = ShaderCompiler.cached(null)) {
             for (Map.Entry<ResourceLocation, ProgramDefinition> entry : reloadState.definitions().entrySet()) {
                 ResourceLocation id = entry.getKey();
                 ShaderProgram program = this.getShader(id);
@@ -308,13 +469,12 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
                     Veil.LOGGER.warn("Failed to recompile shader: {}", id);
                     continue;
                 }
-                this.compile(program, entry.getValue(), compiler);
+                this.updateIncludes(id, reloadState.processedShaders().get(id));
+                this.submit(program, entry.getValue(), reloadState.processedShaders().get(id), compiler);
             }
         }
 
-        VeilRenderSystem.finalizeShaderCompilation();
-
-        Veil.LOGGER.info("Recompiled {} shaders from: {}", shaders.size(), this.sourceSet.getFolder());
+        return this.awaitPendingPrograms().thenRun(() -> Veil.LOGGER.info("Recompiled {} shaders from: {}", shaders.size(), this.sourceSet.getFolder()));
     }
 
     private void scheduleRecompile(int attempt) {
@@ -329,8 +489,8 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
                 shaders = new HashSet<>(this.dirtyShaders);
                 this.dirtyShaders.clear();
             }
-            this.recompileFuture = CompletableFuture.supplyAsync(() -> this.prepare(client.getResourceManager(), shaders), Util.backgroundExecutor())
-                    .thenAcceptAsync(state -> this.applyRecompile(state, shaders), client)
+            this.recompileFuture = CompletableFuture.supplyAsync(() -> this.process(this.prepare(client.getResourceManager(), shaders)), Util.backgroundExecutor())
+                    .thenComposeAsync(state -> this.applyRecompile(state, shaders), client)
                     .handle((value, e) -> {
                         if (e != null) {
                             Veil.LOGGER.error("Error recompiling shaders", e);
@@ -385,7 +545,9 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
                             return this.prepare(resourceManager, shaderIds);
                         }, backgroundExecutor)
                         .thenCompose(preparationBarrier::wait)
-                        .thenAcceptAsync(this::apply, gameExecutor));
+                        // Shader modifications are applied by now, so sources can be processed off-thread
+                        .thenApplyAsync(this::process, backgroundExecutor)
+                        .thenComposeAsync(this::apply, gameExecutor));
     }
 
     @Override
@@ -448,11 +610,15 @@ public class ShaderManager implements PreparableReloadListener, Closeable {
 
     @Override
     public void close() {
+        this.cancelPendingPrograms();
         this.shaders.values().forEach(ShaderProgram::free);
         this.shaders.clear();
+        this.shaderIncludes.clear();
+        this.includeDependents.clear();
     }
 
     private record ReloadState(Map<ResourceLocation, ProgramDefinition> definitions,
-                               Map<ResourceLocation, Resource> shaderSources) {
+                               Map<ResourceLocation, Resource> shaderSources,
+                               Map<ResourceLocation, List<ProcessedShader>> processedShaders) {
     }
 }
@@ -0,0 +1,265 @@
+package foundry.veil.api.client.render.shader;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import foundry.veil.Veil;
+import net.minecraft.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * <p>Stores the output of {@link ShaderModificationManager#applyModifiers} so unchanged shaders don't have to be parsed, modified, and written again.</p>
+ * <p>Sources are keyed on the hash of the original source, the modifiers applied to it in order, the flags used when applying,
+ * and the version of Veil that modified them. Entries are kept in memory until a full reload passes without them being used,
+ * and can optionally be stored on disk so they also survive restarting the game.</p>
+ * <p>Files on disk are deleted when a reload passes without them being used
+ * and the least recently used files are deleted when the folder grows larger than {@value #MAX_DISK_SIZE} bytes.</p>
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Ocelot
+ */
+public class ShaderModificationCache {
+
+    private static final String EXTENSION = ".glsl";
+    // Increase when the format of the key changes. Changes to the output of modifiers are covered by the mod version
+    private static final int VERSION = 2;
+    private static final String MOD_VERSION = Objects.requireNonNullElse(Veil.platform().getModVersion(Veil.MODID), "unknown");
+    private static final long MAX_DISK_SIZE = 32L * 1024 * 1024;
+
+    private final Path folder;
+    private volatile Map<String, String> current;
+    private volatile Map<String, String> previous;
+    private final AtomicInteger hits;
+    private final AtomicInteger misses;
+    private boolean reloaded;
+
+    /**
+     * Creates a new modified source cache.
+     *
+     * @param folder The folder to store modified sources in or <code>null</code> to only keep them in memory
+     */
+    public ShaderModificationCache(@Nullable Path folder) {
+        this.folder = folder;
+        this.current = new ConcurrentHashMap<>();
+        this.previous = new ConcurrentHashMap<>();
+        this.hits = new AtomicInteger();
+        this.misses = new AtomicInteger();
+    }
+
+    /**
+     * Computes the key for a modified shader.
+     *
+     * @param modifiers The hash of all modifiers applied to the shader in order
+     * @param source    The original shader source
+     * @param flags     The flags used to apply the modifiers
+     * @return The key for the modified source
+     */
+    public String getKey(HashCode modifiers, String source, int flags) {
+        return Hashing.sha256().newHasher()
+                .putInt(VERSION)
+                .putString(MOD_VERSION, StandardCharsets.UTF_8)
+                .putBytes(modifiers.asBytes())
+                .putInt(flags)
+                .putString(source, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    /**
+     * Retrieves the modified source for the specified key.
+     *
+     * @param key The key from {@link #getKey(HashCode, String, int)}
+     * @return The modified source or <code>null</code> if it has to be generated again
+     */
+    public @Nullable String get(String key) {
+        String source = this.current.get(key);
+        if (source == null) {
+            source = this.previous.get(key);
+            if (source == null) {
+                source = this.read(key);
+            }
+            if (source != null) {
+                this.current.put(key, source);
+            }
+        }
+
+        if (source != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return source;
+    }
+
+    /**
+     * Stores a modified source in memory and writes it to disk in the background.
+     *
+     * @param key    The key from {@link #getKey(HashCode, String, int)}
+     * @param source The modified source
+     */
+    public void put(String key, String source) {
+        this.current.put(key, source);
+        if (this.folder == null) {
+            return;
+        }
+
+        Path file = this.folder.resolve(key + EXTENSION);
+        CompletableFuture.runAsync(() -> {
+            try {
+                Files.createDirectories(this.folder);
+                // Write to a temporary file first so a partially written source is never loaded
+                Path temp = Files.createTempFile(this.folder, key, ".tmp");
+                Files.writeString(temp, source);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Veil.LOGGER.warn("Failed to write modified shader: {}", file, e);
+            }
+        }, Util.ioPool());
+    }
+
+    private @Nullable String read(String key) {
+        if (this.folder == null) {
+            return null;
+        }
+
+        Path file = this.folder.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            String source = Files.readString(file);
+            // Mark the file as recently used so it is evicted last
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return source;
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to read modified shader: {}", file, e);
+            this.delete(file);
+            return null;
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to delete modified shader: {}", file, e);
+        }
+    }
+
+    /**
+     * Starts a new reload. Sources that were not used since the last reload are dropped from memory and deleted from disk.
+     */
+    public synchronized void startReload() {
+        Map<String, String> used = this.current;
+        this.previous = used;
+        this.current = new ConcurrentHashMap<>();
+        if (this.folder == null) {
+            return;
+        }
+
+        // Nothing has been used before the first reload, so there is nothing to compare against yet
+        Set<String> keep = this.reloaded ? new HashSet<>(used.keySet()) : null;
+        this.reloaded = true;
+        CompletableFuture.runAsync(() -> this.prune(keep), Util.ioPool());
+    }
+
+    private void prune(@Nullable Set<String> keep) {
+        if (!Files.isDirectory(this.folder)) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(this.folder)) {
+            stream.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).forEach(files::add);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to prune modified shader cache: {}", this.folder, e);
+            return;
+        }
+
+        List<CachedFile> remaining = new ArrayList<>(files.size());
+        long size = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (keep != null && !keep.contains(name.substring(0, name.length() - EXTENSION.length()))) {
+                this.delete(file);
+                continue;
+            }
+
+            try {
+                long fileSize = Files.size(file);
+                remaining.add(new CachedFile(file, fileSize, Files.getLastModifiedTime(file).toMillis()));
+                size += fileSize;
+            } catch (IOException e) {
+                Veil.LOGGER.warn("Failed to read modified shader attributes: {}", file, e);
+            }
+        }
+
+        if (size <= MAX_DISK_SIZE) {
+            return;
+        }
+
+        remaining.sort(Comparator.comparingLong(CachedFile::lastUsed));
+        for (CachedFile file : remaining) {
+            if (size <= MAX_DISK_SIZE) {
+                break;
+            }
+            this.delete(file.path());
+            size -= file.size();
+        }
+    }
+
+    /**
+     * Deletes all stored sources and resets the hit and miss counters.
+     */
+    public void clear() {
+        this.current = new ConcurrentHashMap<>();
+        this.previous = new ConcurrentHashMap<>();
+        this.hits.set(0);
+        this.misses.set(0);
+        if (this.folder == null || !Files.isDirectory(this.folder)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(this.folder)) {
+            files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).forEach(this::delete);
+        } catch (IOException e) {
+            Veil.LOGGER.warn("Failed to clear modified shader cache: {}", this.folder, e);
+        }
+    }
+
+    /**
+     * @return The number of sources loaded from the cache
+     */
+    public int getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return The number of sources that had to be modified again
+     */
+    public int getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return The folder modified sources are stored in or <code>null</code> if they are only kept in memory
+     */
+    public @Nullable Path getFolder() {
+        return this.folder;
+    }
+
+    private record CachedFile(Path path, long size, long lastUsed) {
+    }
+}
@@ -1,5 +1,8 @@
 package foundry.veil.api.client.render.shader;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import foundry.veil.Veil;
 import foundry.veil.impl.client.render.shader.modifier.InputShaderModification;
 import foundry.veil.impl.client.render.shader.modifier.ReplaceShaderModification;
@@ -23,6 +26,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -40,15 +45,30 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
     );
     private static final Pattern OUT_PATTERN = Pattern.compile("out ");
 
+    private final ShaderModificationCache cache;
     private Map<ResourceLocation, List<ShaderModification>> shaders;
     private Map<ShaderModification, ResourceLocation> names;
+    private Map<ResourceLocation, HashCode> hashes;
 
     public ShaderModificationManager() {
+        this(null);
+    }
+
+    /**
+     * Creates a new modification manager.
+     *
+     * @param cacheFolder The folder to store modified shader sources in or <code>null</code> to only cache them in memory
+     */
+    public ShaderModificationManager(@Nullable Path cacheFolder) {
+        this.cache = new ShaderModificationCache(cacheFolder);
         this.shaders = Collections.emptyMap();
+        this.names = Collections.emptyMap();
+        this.hashes = Collections.emptyMap();
     }
 
     /**
      * Applies all shader modifiers to the specified shader source.
+     * Results are cached, so modifying the same source with the same modifiers again only costs a hash lookup.
      *
      * @param shaderId The id of the shader to get modifiers for
      * @param source   The shader source text
@@ -62,6 +82,15 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
             return source;
         }
 
+        HashCode hash = this.hashes.get(shaderId);
+        String key = hash != null ? this.cache.getKey(hash, source, flags) : null;
+        if (key != null) {
+            String cached = this.cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         try {
             GlslTree tree = GlslParser.parse(source);
             VeilJobParameters parameters = new VeilJobParameters(this, shaderId, flags);
@@ -71,7 +100,11 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
 
             GlslStringWriter writer = new GlslStringWriter();
             tree.visit(writer);
-            return writer.toString();
+            String modified = writer.toString();
+            if (key != null) {
+                this.cache.put(key, modified);
+            }
+            return modified;
         } catch (Exception e) {
             Veil.LOGGER.error("Failed to transform shader: {}", shaderId, e);
         }
@@ -98,6 +131,13 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
         return this.names.get(modification);
     }
 
+    /**
+     * @return The cache of modified shader sources
+     */
+    public ShaderModificationCache getCache() {
+        return this.cache;
+    }
+
     private @Nullable ResourceLocation getNextStage(ResourceLocation shader, ResourceProvider resourceProvider) {
         String[] parts = shader.getPath().split("\\.");
         String extension = parts[parts.length - 1].toLowerCase(Locale.ROOT);
@@ -117,6 +157,7 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
     protected @NotNull Preparations prepare(@NotNull ResourceManager resourceManager, @NotNull ProfilerFiller profilerFiller) {
         Map<ResourceLocation, List<ShaderModification>> modifiers = new HashMap<>();
         Map<ShaderModification, ResourceLocation> names = new HashMap<>();
+        Map<ShaderModification, String> sources = new HashMap<>();
 
         for (Map.Entry<ResourceLocation, Resource> entry : MODIFIER_LISTER.listMatchingResources(resourceManager).entrySet()) {
             ResourceLocation file = entry.getKey();
@@ -131,7 +172,8 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
 
                 ResourceLocation shaderId = new ResourceLocation(parts[0], parts[1]);
                 try (Reader reader = entry.getValue().openAsReader()) {
-                    ShaderModification modification = ShaderModification.parse(IOUtils.toString(reader), shaderId.getPath().endsWith(".vsh"));
+                    String source = IOUtils.toString(reader);
+                    ShaderModification modification = ShaderModification.parse(source, shaderId.getPath().endsWith(".vsh"));
                     List<ShaderModification> modifications = modifiers.computeIfAbsent(shaderId, name -> new LinkedList<>());
 
                     if (modification instanceof ReplaceShaderModification) {
@@ -142,6 +184,7 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
                         modifications.add(modification);
                     }
                     names.put(modification, id);
+                    sources.put(modification, source);
                 }
             } catch (Exception e) {
                 Veil.LOGGER.error("Couldn't parse data file {} from {}", id, file, e);
@@ -170,25 +213,44 @@ public class ShaderModificationManager extends SimplePreparableReloadListener<Sh
                     break;
                 }
 
-                InputShaderModification input = new InputShaderModification(simpleMod.priority(), OUT_PATTERN.matcher(simpleMod.fillPlaceholders(simpleMod.getOutput())).replaceAll("in "));
+                String inputSource = OUT_PATTERN.matcher(simpleMod.fillPlaceholders(simpleMod.getOutput())).replaceAll("in ");
+                InputShaderModification input = new InputShaderModification(simpleMod.priority(), inputSource);
                 modifiers.computeIfAbsent(nextStage, unused -> new LinkedList<>()).add(input);
                 names.put(input, names.get(simpleMod));
+                sources.put(input, input.priority() + "\0" + inputSource);
             }
         }
         modifiers.values().forEach(modifications -> modifications.sort(Comparator.comparingInt(ShaderModification::priority).thenComparing(names::get)));
 
-        return new Preparations(modifiers, names);
+        // The output of each shader only depends on the ordered text of the modifiers applied to it
+        Map<ResourceLocation, HashCode> hashes = new HashMap<>();
+        for (Map.Entry<ResourceLocation, List<ShaderModification>> entry : modifiers.entrySet()) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            hasher.putString(entry.getKey().toString(), StandardCharsets.UTF_8);
+            for (ShaderModification modification : entry.getValue()) {
+                hasher.putByte((byte) 0);
+                hasher.putString(Objects.toString(names.get(modification)), StandardCharsets.UTF_8);
+                hasher.putByte((byte) 0);
+                hasher.putString(sources.get(modification), StandardCharsets.UTF_8);
+            }
+            hashes.put(entry.getKey(), hasher.hash());
+        }
+
+        return new Preparations(modifiers, names, hashes);
     }
 
     @Override
     protected void apply(@NotNull Preparations preparations, @NotNull ResourceManager resourceManager, @NotNull ProfilerFiller profilerFiller) {
         this.shaders = Collections.unmodifiableMap(preparations.shaders);
         this.names = Collections.unmodifiableMap(preparations.names);
+        this.hashes = Collections.unmodifiableMap(preparations.hashes);
+        this.cache.startReload();
         Veil.LOGGER.info("Loaded {} shader modifications", this.names.size());
     }
 
     @ApiStatus.Internal
     public record Preparations(Map<ResourceLocation, List<ShaderModification>> shaders,
-                               Map<ShaderModification, ResourceLocation> names) {
+                               Map<ShaderModification, ResourceLocation> names,
+                               Map<ResourceLocation, HashCode> hashes) {
     }
 }
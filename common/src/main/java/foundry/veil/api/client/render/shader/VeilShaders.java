@@ -13,6 +13,9 @@ public final class VeilShaders {
 
     public static final ResourceLocation PARTICLE = quasar("particle");
     public static final ResourceLocation PARTICLE_ADD = quasar("particle_add");
+    public static final ResourceLocation PARTICLE_INSTANCED = quasar("particle_instanced");
+    public static final ResourceLocation PARTICLE_INSTANCED_ADD = quasar("particle_instanced_add");
+    public static final ResourceLocation QUASAR_SIMULATE = quasar("simulate");
 
     public static final ResourceLocation LIGHT_AMBIENT = light("ambient");
     public static final ResourceLocation LIGHT_DIRECTIONAL = light("directional");
@@ -21,6 +24,9 @@ public final class VeilShaders {
     public static final ResourceLocation LIGHT_VANILLA_LIGHTMAP = light("vanilla_lightmap");
     public static final ResourceLocation LIGHT_SKY = light("sky");
     public static final ResourceLocation LIGHT_INDIRECT_SPHERE = light("indirect_sphere");
+    public static final ResourceLocation LIGHT_CLUSTER_BIN = light("cluster_bin");
+    public static final ResourceLocation LIGHT_CLUSTERED_POINT = light("clustered_point");
+    public static final ResourceLocation LIGHT_CLUSTERED_AREA = light("clustered_area");
 
     public static final ResourceLocation SKINNED_MESH = necromancer("skinned_mesh");
 
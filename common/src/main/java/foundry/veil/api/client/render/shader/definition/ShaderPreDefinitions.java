@@ -3,6 +3,7 @@ package foundry.veil.api.client.render.shader.definition;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -10,6 +11,7 @@ import java.util.function.Consumer;
  * <p>Regular definitions are added with {@link #define(String)}, {@link #define(String, String)},
  * and {@link #set(String, String)}. These schedule a shader recompilation every time they are set
  * so shaders can remain up-to-date. </p>
+ * <p>Definitions can be read from any thread, since shaders are processed in the background.</p>
  */
 public class ShaderPreDefinitions {
 
@@ -23,9 +25,9 @@ public class ShaderPreDefinitions {
      */
     public ShaderPreDefinitions() {
         this.definitionCallbacks = new HashSet<>();
-        this.definitions = new HashMap<>();
+        this.definitions = new ConcurrentHashMap<>();
         this.definitionsView = Collections.unmodifiableMap(this.definitions);
-        this.staticDefinitions = new HashMap<>();
+        this.staticDefinitions = new ConcurrentHashMap<>();
     }
 
     private String getDefinition(String name, @Nullable String definition) {
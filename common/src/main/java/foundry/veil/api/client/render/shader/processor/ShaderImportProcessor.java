@@ -1,18 +1,26 @@
 package foundry.veil.api.client.render.shader.processor;
 
 import foundry.veil.api.client.render.shader.ShaderManager;
+import foundry.veil.api.client.render.shader.definition.ShaderPreDefinitions;
 import net.minecraft.ResourceLocationException;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.Resource;
 import net.minecraft.server.packs.resources.ResourceProvider;
 import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
 
 /**
- * Processes a shader to add imports.
+ * <p>Processes a shader to add imports.</p>
+ * <p>Each import is loaded and split into segments once for the lifetime of the processor. The fully processed import is cached
+ * along with everything it added to the shader, so including the same file from many shaders only processes it once.
+ * An import can expand differently depending on which of its own imports a shader already included,
+ * so the cache is keyed on the import and the part of its import graph that is already present.
+ * Cached imports are processed again if any pre-definition they depend on changed.</p>
+ * <p>Import processors should only depend on the import source and pre-definitions for the cache to stay valid.</p>
  *
  * @author Ocelot
  */
@@ -22,9 +30,10 @@ public class ShaderImportProcessor implements ShaderPreProcessor {
 
     private final ResourceProvider resourceProvider;
     private final Set<ResourceLocation> addedImports;
-    private final Map<ResourceLocation, String> imports;
-    private final List<ResourceLocation> importOrder;
-    private int layer;
+    private final Map<ResourceLocation, Import> imports;
+    private final Map<ResourceLocation, Set<ResourceLocation>> importGraph;
+    private final Map<ExpansionKey, Expansion> expansions;
+    private final Deque<Recorder> recorders;
 
     /**
      * Creates a new import processor that loads import files from the specified resource provider.
@@ -35,8 +44,9 @@ public class ShaderImportProcessor implements ShaderPreProcessor {
         this.resourceProvider = resourceProvider;
         this.addedImports = new HashSet<>();
         this.imports = new HashMap<>();
-        this.importOrder = new ArrayList<>();
-        this.layer = 0;
+        this.importGraph = new HashMap<>();
+        this.expansions = new HashMap<>();
+        this.recorders = new ArrayDeque<>();
     }
 
     @Override
@@ -46,44 +56,41 @@ public class ShaderImportProcessor implements ShaderPreProcessor {
 
     @Override
     public String modify(Context context, String source) throws IOException {
-        List<String> inputLines = source.lines().toList();
-        List<String> output = new LinkedList<>();
+        Segment[] segments = null;
+        ResourceLocation name = context.name();
+        if (!context.isSourceFile() && name != null) {
+            // Imports are parsed once, so only the source of other files has to be split
+            Import loaded = this.imports.get(name);
+            if (loaded != null && loaded.error() == null && loaded.source() == source) {
+                segments = loaded.segments();
+            }
+        }
+        if (segments == null) {
+            segments = parse(source);
+        }
 
-        for (String line : inputLines) {
-            if (!line.startsWith(ShaderImportProcessor.INCLUDE_KEY)) {
-                output.add(line);
+        StringJoiner output = new StringJoiner("\n");
+        for (Segment segment : segments) {
+            if (segment.text() != null) {
+                output.add(segment.text());
+            }
+
+            String line = segment.include();
+            if (line == null) {
                 continue;
             }
 
             try {
-                String trimmedImport = line.substring(ShaderImportProcessor.INCLUDE_KEY.length()).trim();
-                ResourceLocation include = new ResourceLocation(trimmedImport);
+                ResourceLocation include = new ResourceLocation(line.substring(ShaderImportProcessor.INCLUDE_KEY.length()).trim());
                 context.addInclude(include);
 
                 // Only read and process the import if it hasn't been added yet
-                if (!this.addedImports.add(include)) {
+                if (!this.addImport(include)) {
                     continue;
                 }
 
                 try {
-                    if (!this.imports.containsKey(include)) {
-                        this.imports.put(include, this.loadImport(include));
-                        this.importOrder.add(include);
-                    }
-
-                    String importString = this.imports.get(include);
-                    if (importString == null) {
-                        throw new IOException("Import previously failed to load");
-                    }
-
-                    long lineNumber = String.join("\n", output).lines().count();
-                    int sourceNumber = this.importOrder.indexOf(include) + 1;
-//                    output.add("#line 0 " + sourceNumber);
-                    this.layer++;
-                    output.add(context.modify(include, importString));
-                    this.layer--;
-//                    output.add("#line " + lineNumber + " " + (this.layer == 0 ? 0 : sourceNumber));
-//                    output.add("#line " + lineNumber);
+                    output.add(this.expand(context, include));
                 } catch (Exception e) {
                     throw new IOException("Failed to add import: " + line, e);
                 }
@@ -92,7 +99,103 @@ public class ShaderImportProcessor implements ShaderPreProcessor {
             }
         }
 
-        return String.join("\n", output);
+        return output.toString();
+    }
+
+    private boolean addImport(ResourceLocation include) {
+        if (!this.addedImports.add(include)) {
+            return false;
+        }
+        for (Recorder recorder : this.recorders) {
+            recorder.addedImports.add(include);
+        }
+        return true;
+    }
+
+    private String expand(Context context, ResourceLocation include) throws IOException {
+        Import loaded = this.getImport(include);
+        if (loaded.error() != null) {
+            throw loaded.error();
+        }
+
+        // Imports already in the shader are skipped, so they change the output
+        Set<ResourceLocation> present = new HashSet<>();
+        for (ResourceLocation dependency : this.getImportGraph(include)) {
+            if (this.addedImports.contains(dependency)) {
+                present.add(dependency);
+            }
+        }
+
+        ExpansionKey key = new ExpansionKey(include, present);
+        ShaderPreDefinitions definitions = context.preDefinitions();
+        Expansion expansion = this.expansions.get(key);
+        if (expansion != null && expansion.isValid(definitions)) {
+            expansion.replay(this, context);
+            return expansion.source();
+        }
+
+        Recorder recorder = new Recorder();
+        this.recorders.push(recorder);
+        String source;
+        try {
+            source = context.modify(include, loaded.source(), recorder);
+        } finally {
+            this.recorders.pop();
+        }
+
+        this.expansions.put(key, recorder.finish(source, definitions));
+        return source;
+    }
+
+    private Import getImport(ResourceLocation include) {
+        Import loaded = this.imports.get(include);
+        if (loaded == null) {
+            try {
+                String source = this.loadImport(include);
+                loaded = new Import(source, parse(source), null);
+            } catch (IOException e) {
+                loaded = new Import("", new Segment[0], e);
+            }
+            this.imports.put(include, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Retrieves every import reachable from the specified import.
+     *
+     * @param include The import to get the graph of
+     * @return All direct and indirect imports of that import
+     */
+    private Set<ResourceLocation> getImportGraph(ResourceLocation include) {
+        Set<ResourceLocation> graph = this.importGraph.get(include);
+        if (graph != null) {
+            return graph;
+        }
+
+        graph = new HashSet<>();
+        Deque<ResourceLocation> queue = new ArrayDeque<>();
+        queue.add(include);
+        while (!queue.isEmpty()) {
+            Import loaded = this.getImport(queue.poll());
+            for (Segment segment : loaded.segments()) {
+                if (segment.include() == null) {
+                    continue;
+                }
+
+                try {
+                    ResourceLocation dependency = new ResourceLocation(segment.include().substring(ShaderImportProcessor.INCLUDE_KEY.length()).trim());
+                    if (graph.add(dependency)) {
+                        queue.add(dependency);
+                    }
+                } catch (ResourceLocationException ignored) {
+                    // Reported when the import is expanded
+                }
+            }
+        }
+
+        this.importGraph.put(include, graph);
+        return graph;
     }
 
     private String loadImport(ResourceLocation source) throws IOException {
@@ -101,4 +204,120 @@ public class ShaderImportProcessor implements ShaderPreProcessor {
             return IOUtils.toString(reader);
         }
     }
+
+    private static Segment[] parse(String source) {
+        List<Segment> segments = new ArrayList<>();
+        StringJoiner text = null;
+        for (String line : (Iterable<String>) source.lines()::iterator) {
+            if (line.startsWith(ShaderImportProcessor.INCLUDE_KEY)) {
+                segments.add(new Segment(text != null ? text.toString() : null, line));
+                text = null;
+                continue;
+            }
+
+            if (text == null) {
+                text = new StringJoiner("\n");
+            }
+            text.add(line);
+        }
+        if (text != null) {
+            segments.add(new Segment(text.toString(), null));
+        }
+        return segments.toArray(Segment[]::new);
+    }
+
+    /**
+     * A run of lines in a source file.
+     *
+     * @param text    The lines before the include or <code>null</code> if there are none
+     * @param include The include directive after the text or <code>null</code> if this is the end of the file
+     */
+    private record Segment(@Nullable String text, @Nullable String include) {
+    }
+
+    /**
+     * A loaded import file.
+     *
+     * @param source   The source of the import
+     * @param segments The source split at each include
+     * @param error    The error thrown when loading the file or <code>null</code> if it loaded
+     */
+    private record Import(String source, Segment[] segments, @Nullable IOException error) {
+    }
+
+    private record ExpansionKey(ResourceLocation include, Set<ResourceLocation> present) {
+    }
+
+    /**
+     * A fully processed import and everything it added to the shader.
+     */
+    private record Expansion(String source,
+                             List<ResourceLocation> includes,
+                             List<ResourceLocation> addedImports,
+                             Map<String, Integer> uniformBindings,
+                             Map<String, String> definitions) {
+
+        private boolean isValid(@Nullable ShaderPreDefinitions preDefinitions) {
+            for (Map.Entry<String, String> entry : this.definitions.entrySet()) {
+                String value = preDefinitions != null ? preDefinitions.getDefinition(entry.getKey()) : null;
+                if (!Objects.equals(value, entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void replay(ShaderImportProcessor processor, Context context) {
+            for (ResourceLocation include : this.includes) {
+                context.addInclude(include);
+            }
+            for (ResourceLocation include : this.addedImports) {
+                processor.addImport(include);
+            }
+            for (Map.Entry<String, Integer> entry : this.uniformBindings.entrySet()) {
+                context.addUniformBinding(entry.getKey(), entry.getValue());
+            }
+            for (String definition : this.definitions.keySet()) {
+                context.addDefinitionDependency(definition);
+            }
+        }
+    }
+
+    private static class Recorder implements Context.Listener {
+
+        private final List<ResourceLocation> includes;
+        private final List<ResourceLocation> addedImports;
+        private final Map<String, Integer> uniformBindings;
+        private final Set<String> definitions;
+
+        private Recorder() {
+            this.includes = new ArrayList<>();
+            this.addedImports = new ArrayList<>();
+            this.uniformBindings = new LinkedHashMap<>();
+            this.definitions = new LinkedHashSet<>();
+        }
+
+        @Override
+        public void addUniformBinding(String name, int binding) {
+            this.uniformBindings.put(name, binding);
+        }
+
+        @Override
+        public void addDefinitionDependency(String name) {
+            this.definitions.add(name);
+        }
+
+        @Override
+        public void addInclude(ResourceLocation name) {
+            this.includes.add(name);
+        }
+
+        private Expansion finish(String source, @Nullable ShaderPreDefinitions preDefinitions) {
+            Map<String, String> definitions = new LinkedHashMap<>();
+            for (String definition : this.definitions) {
+                definitions.put(definition, preDefinitions != null ? preDefinitions.getDefinition(definition) : null);
+            }
+            return new Expansion(source, List.copyOf(this.includes), List.copyOf(this.addedImports), this.uniformBindings, definitions);
+        }
+    }
 }
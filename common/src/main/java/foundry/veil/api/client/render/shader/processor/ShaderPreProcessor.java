@@ -73,6 +73,21 @@ public interface ShaderPreProcessor {
          */
         String modify(@Nullable ResourceLocation name, String source) throws IOException;
 
+        /**
+         * Runs the specified source through the entire processing list like {@link #modify(ResourceLocation, String)}.
+         * Everything added to the shader while processing is also passed to the listener, so processors can replay it later without processing the source again.
+         * Contexts that don't support listeners process the source normally without notifying the listener.
+         *
+         * @param name     The name of the shader file to modify or <code>null</code> if the source is a raw string
+         * @param source   The shader source code to modify
+         * @param listener The listener to notify of everything added to the shader
+         * @return The modified source
+         * @throws IOException If any error occurs while editing the source
+         */
+        default String modify(@Nullable ResourceLocation name, String source, Listener listener) throws IOException {
+            return this.modify(name, source);
+        }
+
         /**
          * Sets the uniform binding for a shader.
          *
@@ -121,5 +136,33 @@ public interface ShaderPreProcessor {
          */
         @Nullable
         ShaderPreDefinitions preDefinitions();
+
+        /**
+         * Receives everything added to a shader while a source is processed.
+         */
+        interface Listener {
+
+            /**
+             * Called when a uniform binding is set.
+             *
+             * @param name    The name of the uniform
+             * @param binding The binding it was set to
+             */
+            void addUniformBinding(String name, int binding);
+
+            /**
+             * Called when the shader is marked as dependent on a pre-definition.
+             *
+             * @param name The name of the definition
+             */
+            void addDefinitionDependency(String name);
+
+            /**
+             * Called when an include is added to the shader.
+             *
+             * @param name The name of the include
+             */
+            void addInclude(ResourceLocation name);
+        }
     }
 }
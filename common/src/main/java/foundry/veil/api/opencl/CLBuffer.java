@@ -1,14 +1,16 @@
 package foundry.veil.api.opencl;
 
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.opencl.CL10;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.*;
+import java.util.HashSet;
+import java.util.Set;
 
-import static org.lwjgl.opencl.CL10.clEnqueueReadBuffer;
-import static org.lwjgl.opencl.CL10.clEnqueueWriteBuffer;
+import static org.lwjgl.opencl.CL10.*;
 
 /**
  * <p>A generic data buffer that can be uploaded to/from OpenCL.</p>
@@ -31,6 +33,8 @@ import static org.lwjgl.opencl.CL10.clEnqueueWriteBuffer;
  *             // data.pointer() is still going to be 0 after this call
  *         }
  * </pre>
+ * <p>Buffers created with {@link CL10#CL_MEM_ALLOC_HOST_PTR} or {@link CL10#CL_MEM_USE_HOST_PTR} can be mapped with
+ * {@link #map(int, long, long)} to access their contents without copying them.</p>
  *
  * @author Ocelot
  */
@@ -39,11 +43,79 @@ public class CLBuffer implements CLMemObject {
     protected final CLKernel kernel;
     protected final CLEnvironment environment;
     protected  long pointer;
+    private final ByteBuffer hostData;
+    private final Set<CLMappedRegion> mappings;
 
     CLBuffer(CLKernel kernel, long pointer) {
+        this(kernel, pointer, null);
+    }
+
+    CLBuffer(CLKernel kernel, long pointer, @Nullable ByteBuffer hostData) {
         this.kernel = kernel;
         this.environment = kernel.getEnvironment();
         this.pointer = pointer;
+        this.hostData = hostData;
+        this.mappings = new HashSet<>();
+    }
+
+    /**
+     * <p>Maps a region of this buffer into host memory and waits for the mapping to be ready.</p>
+     * <p>For buffers allocated in host memory this doesn't copy any data. The region must be closed before the buffer is used by a kernel again.
+     * Use {@link CLTaskGraph#map(CLBuffer, int, long, long, CLEvent...)} to map without blocking.</p>
+     *
+     * @param flags  How the mapped data will be accessed. Any of {@link CL10#CL_MAP_READ}, {@link CL10#CL_MAP_WRITE}, or {@link org.lwjgl.opencl.CL12#CL_MAP_WRITE_INVALIDATE_REGION}
+     * @param offset The offset into this buffer to start the region at
+     * @param size   The size of the region in bytes
+     * @return The mapped region
+     * @throws CLException If any error occurs while trying to map the buffer
+     * @see CL10#clEnqueueMapBuffer(long, long, boolean, long, long, long, PointerBuffer, PointerBuffer, IntBuffer, ByteBuffer)
+     */
+    public CLMappedRegion map(int flags, long offset, long size) throws CLException {
+        return this.map(this.environment.getCommandQueue(), true, flags, offset, size, null, null);
+    }
+
+    @ApiStatus.Internal
+    CLMappedRegion map(long commandQueue, boolean blocking, int flags, long offset, long size, @Nullable PointerBuffer waitList, @Nullable PointerBuffer event) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer errcode_ret = stack.callocInt(1);
+            ByteBuffer data = clEnqueueMapBuffer(commandQueue, this.pointer, blocking, flags, offset, size, waitList, event, errcode_ret, null);
+            VeilOpenCL.checkCLError(errcode_ret);
+            if (data == null) {
+                throw new CLException("Failed to map buffer", CL_MAP_FAILURE);
+            }
+
+            CLMappedRegion region = new CLMappedRegion(this, offset, flags, data);
+            this.mappings.add(region);
+            return region;
+        }
+    }
+
+    /**
+     * Unmaps the specified region and waits for the device to finish unmapping it.
+     */
+    @ApiStatus.Internal
+    void unmap(CLMappedRegion region) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            if (!this.unmap(this.environment.getCommandQueue(), region, null, event)) {
+                return;
+            }
+
+            try {
+                VeilOpenCL.checkCLError(clWaitForEvents(event));
+            } finally {
+                clReleaseEvent(event.get(0));
+            }
+        }
+    }
+
+    @ApiStatus.Internal
+    boolean unmap(long commandQueue, CLMappedRegion region, @Nullable PointerBuffer waitList, @Nullable PointerBuffer event) throws CLException {
+        if (!this.mappings.remove(region)) {
+            return false;
+        }
+        VeilOpenCL.checkCLError(clEnqueueUnmapMemObject(commandQueue, this.pointer, region.release(), waitList, event));
+        return true;
     }
 
     /**
@@ -361,8 +433,22 @@ public class CLBuffer implements CLMemObject {
         return this.pointer;
     }
 
+    /**
+     * @return The host memory this buffer uses if it was created with {@link CL10#CL_MEM_USE_HOST_PTR}. It must not be freed before this buffer
+     */
+    public @Nullable ByteBuffer getHostData() {
+        return this.hostData;
+    }
+
     @Override
     public void free() {
+        for (CLMappedRegion region : this.mappings.toArray(CLMappedRegion[]::new)) {
+            try {
+                this.unmap(region);
+            } catch (CLException e) {
+                VeilOpenCL.LOGGER.error("Failed to unmap buffer region", e);
+            }
+        }
         this.kernel.free(this);
     }
 }
@@ -204,6 +204,18 @@ public class CLEnvironment implements NativeResource {
         }
     }
 
+    /**
+     * <p>Creates a new task graph with its own command queue.</p>
+     * <p>The returned graph should be freed when it is no longer needed.</p>
+     *
+     * @param outOfOrder Whether commands without dependencies between them should be allowed to run in any order. Ignored if the device doesn't support it
+     * @return A new task graph
+     * @throws CLException If there was an error creating the command queue
+     */
+    public CLTaskGraph createTaskGraph(boolean outOfOrder) throws CLException {
+        return new CLTaskGraph(this, outOfOrder);
+    }
+
     /**
      * Blocks until all CL commands have completed.
      *
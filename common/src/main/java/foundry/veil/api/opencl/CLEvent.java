@@ -0,0 +1,60 @@
+package foundry.veil.api.opencl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.lwjgl.system.NativeResource;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opencl.CL10.clReleaseEvent;
+import static org.lwjgl.opencl.CL10.clRetainEvent;
+
+/**
+ * A handle to a command enqueued by a {@link CLTaskGraph}. Events can be passed as dependencies of other commands,
+ * even ones in other task graphs of the same environment.
+ *
+ * @author Ocelot
+ */
+public class CLEvent implements NativeResource {
+
+    private final CLEnvironment environment;
+    private final long pointer;
+    private CompletableFuture<Void> future;
+    private boolean freed;
+
+    CLEvent(CLEnvironment environment, long pointer) {
+        this.environment = environment;
+        this.pointer = pointer;
+    }
+
+    /**
+     * <p>Retrieves a future that completes when the command for this event has finished on the device.</p>
+     * <p>Commands are not guaranteed to be sent to the device until {@link CLTaskGraph#submit()} is called.</p>
+     *
+     * @return The future for this event
+     * @throws CLException If any error occurs while listening to the event
+     */
+    public synchronized CompletableFuture<Void> future() throws CLException {
+        if (this.future == null) {
+            // The dispatcher releases the event when it fires, so it needs its own reference
+            VeilOpenCL.checkCLError(clRetainEvent(this.pointer));
+            this.future = this.environment.getEventDispatcher().listen(this.pointer);
+        }
+        return this.future;
+    }
+
+    /**
+     * @return The pointer to the OpenCL event
+     */
+    public long pointer() {
+        return this.pointer;
+    }
+
+    @ApiStatus.Internal
+    @Override
+    public synchronized void free() {
+        if (!this.freed) {
+            this.freed = true;
+            clReleaseEvent(this.pointer);
+        }
+    }
+}
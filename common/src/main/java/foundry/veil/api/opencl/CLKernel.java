@@ -1,8 +1,7 @@
 package foundry.veil.api.opencl;
 
 import com.mojang.blaze3d.systems.RenderSystem;
-import it.unimi.dsi.fastutil.longs.LongArraySet;
-import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectArraySet;
 import net.minecraft.resources.ResourceLocation;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
@@ -17,7 +16,9 @@ import org.lwjgl.opengl.GL;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.NativeResource;
 
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.Set;
 
 import static org.lwjgl.opencl.CL10.*;
 import static org.lwjgl.opencl.CL10GL.*;
@@ -37,7 +38,7 @@ public class CLKernel implements NativeResource {
     private final ResourceLocation program;
     private final long handle;
     private final int maxWorkGroupSize;
-    private final LongSet pointers;
+    private final Set<CLBuffer> buffers;
     private final boolean legacySyncGLtoCL;
     private final boolean legacySyncCLtoGL;
 
@@ -45,7 +46,7 @@ public class CLKernel implements NativeResource {
         this.environment = environment;
         this.program = program;
         this.handle = handle;
-        this.pointers = new LongArraySet();
+        this.buffers = new ObjectArraySet<>();
         this.legacySyncGLtoCL = !environment.getDevice().capabilities().cl_khr_gl_event;
         this.legacySyncCLtoGL = !RenderSystem.isOnRenderThread() || !GL.getCapabilities().GL_ARB_cl_event;
 
@@ -261,8 +262,32 @@ public class CLKernel implements NativeResource {
             IntBuffer error_ret = stack.mallocInt(1);
             long pointer = clCreateBuffer(this.environment.getContext(), flags, size, error_ret);
             VeilOpenCL.checkCLError(error_ret.get(0));
-            this.pointers.add(pointer);
-            return new CLBuffer(this, pointer);
+            CLBuffer buffer = new CLBuffer(this, pointer);
+            this.buffers.add(buffer);
+            return buffer;
+        }
+    }
+
+    /**
+     * <p>Creates a new CL memory buffer that uses the specified host memory as its storage.</p>
+     * <p>This is intended for {@link CL10#CL_MEM_USE_HOST_PTR MEM_USE_HOST_PTR}, which lets devices that share memory with the host
+     * access the data without any copies. The host memory must stay allocated until the returned buffer is freed and should only
+     * be accessed through {@link CLBuffer#map(int, long, long)} while the buffer is in use.</p>
+     *
+     * @param flags    a bit-field that is used to specify allocation and usage information. Should contain {@link CL10#CL_MEM_USE_HOST_PTR MEM_USE_HOST_PTR} or {@link CL10#CL_MEM_COPY_HOST_PTR MEM_COPY_HOST_PTR}
+     * @param hostData The host memory to use for the buffer. The size of the buffer is the remaining size of this buffer
+     * @return A data buffer that can be used with {@link #setPointers(int, long...)} or {@link #setPointers(int, CLMemObject...)}
+     * @throws CLException If there is any problem creating the buffer
+     * @see CL10#clCreateBuffer(long, long, ByteBuffer, IntBuffer)
+     */
+    public CLBuffer createBuffer(int flags, ByteBuffer hostData) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer error_ret = stack.mallocInt(1);
+            long pointer = clCreateBuffer(this.environment.getContext(), flags, hostData, error_ret);
+            VeilOpenCL.checkCLError(error_ret.get(0));
+            CLBuffer buffer = new CLBuffer(this, pointer, (flags & CL_MEM_USE_HOST_PTR) != 0 ? hostData : null);
+            this.buffers.add(buffer);
+            return buffer;
         }
     }
 
@@ -320,8 +345,9 @@ public class CLKernel implements NativeResource {
             IntBuffer error_ret = stack.mallocInt(1);
             long pointer = clCreateFromGLBuffer(this.environment.getContext(), flags, buffer, error_ret);
             VeilOpenCL.checkCLError(error_ret.get(0));
-            this.pointers.add(pointer);
-            return new CLBuffer(this, pointer);
+            CLBuffer clBuffer = new CLBuffer(this, pointer);
+            this.buffers.add(clBuffer);
+            return clBuffer;
         }
     }
 
@@ -513,15 +539,18 @@ public class CLKernel implements NativeResource {
     @Override
     public void free() {
         clReleaseKernel(this.handle);
-        this.pointers.forEach(CL10::clReleaseMemObject);
-        this.pointers.clear();
+        // Buffers unmap their open regions before they are released
+        for (CLBuffer buffer : this.buffers.toArray(CLBuffer[]::new)) {
+            buffer.free();
+        }
+        this.buffers.clear();
         this.environment.free(this);
     }
 
     @ApiStatus.Internal
     void free(CLMemObject object) {
-        long pointer = object.pointer();
-        this.pointers.remove(pointer);
-        clReleaseMemObject(pointer);
+        if (this.buffers.remove(object)) {
+            clReleaseMemObject(object.pointer());
+        }
     }
 }
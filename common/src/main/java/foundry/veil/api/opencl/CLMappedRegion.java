@@ -0,0 +1,94 @@
+package foundry.veil.api.opencl;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A region of a {@link CLBuffer} that is mapped into host memory.</p>
+ * <p>On devices that share memory with the host, reading and writing the mapped data doesn't copy anything. The data is
+ * only valid until the region is unmapped, after which the device is allowed to use the buffer again.</p>
+ * <pre>
+ *     try (CLMappedRegion region = buffer.map(CL_MAP_WRITE, 0, size)) {
+ *         region.data().putInt(0, 4);
+ *     }
+ * </pre>
+ * <p>Regions mapped through a {@link CLTaskGraph} can only be accessed after the event passed to them completes and
+ * should be unmapped with {@link CLTaskGraph#unmap(CLMappedRegion, CLEvent...)} so later commands can depend on the unmap.</p>
+ *
+ * @author Ocelot
+ */
+public class CLMappedRegion implements AutoCloseable {
+
+    private final CLBuffer buffer;
+    private final long offset;
+    private final int flags;
+    private ByteBuffer data;
+
+    CLMappedRegion(CLBuffer buffer, long offset, int flags, ByteBuffer data) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.flags = flags;
+        this.data = data;
+    }
+
+    /**
+     * @return The mapped data. This must not be used after the region is closed
+     * @throws IllegalStateException If the region has been unmapped
+     */
+    public ByteBuffer data() {
+        if (this.data == null) {
+            throw new IllegalStateException("Region has been unmapped");
+        }
+        return this.data;
+    }
+
+    /**
+     * @return The buffer this region is from
+     */
+    public CLBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * @return The offset into the buffer the region starts at
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return The flags the region was mapped with
+     */
+    public int getFlags() {
+        return this.flags;
+    }
+
+    /**
+     * @return Whether this region is still mapped
+     */
+    public boolean isMapped() {
+        return this.data != null;
+    }
+
+    @ApiStatus.Internal
+    ByteBuffer release() {
+        ByteBuffer data = this.data;
+        this.data = null;
+        return data;
+    }
+
+    /**
+     * <p>Unmaps this region on the environment command queue and waits for the unmap to complete.</p>
+     * <p>Any writes to the data are visible to all commands enqueued after this returns, on any queue.
+     * Use {@link CLTaskGraph#unmap(CLMappedRegion, CLEvent...)} to unmap without blocking.</p>
+     *
+     * @throws CLException If any error occurs while unmapping the buffer
+     */
+    @Override
+    public void close() throws CLException {
+        if (this.data != null) {
+            this.buffer.unmap(this);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package foundry.veil.api.opencl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opencl.CL10;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opencl.CL10.*;
+import static org.lwjgl.opencl.CL12.clEnqueueMarkerWithWaitList;
+import static org.lwjgl.opencl.CL20.clCreateCommandQueueWithProperties;
+
+/**
+ * <p>Enqueues transfers and kernels on a dedicated command queue without blocking the host.</p>
+ * <p>Every command returns a {@link CLEvent} and accepts the events it depends on, so chains like
+ * write &rarr; kernel &rarr; kernel &rarr; read can be submitted at once and only waited on when the result is needed.
+ * When the queue is out-of-order, commands without dependencies between them can overlap on the device. Each graph
+ * has its own queue, so multiple graphs can be used to feed several queues that depend on each other's events.</p>
+ * <pre>
+ *     CLTaskGraph graph = environment.createTaskGraph(true);
+ *     CLEvent upload = graph.write(input, 0, data);
+ *     CLEvent kernel = graph.execute(kernel, size, 1, upload);
+ *     CLEvent download = graph.read(output, 0, result, kernel);
+ *     graph.submit().thenRun(() -> ...);
+ * </pre>
+ * <p>Events are owned by the graph and stay valid until {@link #finish()} or {@link #free()} is called.</p>
+ *
+ * @author Ocelot
+ */
+public class CLTaskGraph implements NativeResource {
+
+    private final CLEnvironment environment;
+    private final long commandQueue;
+    private final boolean outOfOrder;
+    private final List<CLEvent> events;
+    private final List<CLEvent> pending;
+
+    CLTaskGraph(CLEnvironment environment, boolean outOfOrder) throws CLException {
+        VeilOpenCL.DeviceInfo device = environment.getDevice();
+        this.environment = environment;
+        this.outOfOrder = outOfOrder && (VeilOpenCL.getDeviceInfoLong(device.id(), CL_DEVICE_QUEUE_PROPERTIES) & CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE) != 0;
+        if (outOfOrder && !this.outOfOrder) {
+            VeilOpenCL.LOGGER.warn("Device {} doesn't support out-of-order queues, commands will run in order", device.name());
+        }
+        this.events = new ArrayList<>();
+        this.pending = new ArrayList<>();
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer errcode_ret = stack.callocInt(1);
+            this.commandQueue = clCreateCommandQueueWithProperties(environment.getContext(), device.id(), this.outOfOrder ? stack.longs(CL_QUEUE_PROPERTIES, CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE, 0) : null, errcode_ret);
+            VeilOpenCL.checkCLError(errcode_ret);
+        }
+    }
+
+    private static @Nullable PointerBuffer waitList(MemoryStack stack, CLEvent[] dependencies) {
+        if (dependencies.length == 0) {
+            return null;
+        }
+
+        PointerBuffer waitList = stack.mallocPointer(dependencies.length);
+        for (int i = 0; i < dependencies.length; i++) {
+            waitList.put(i, dependencies[i].pointer());
+        }
+        return waitList;
+    }
+
+    private CLEvent track(PointerBuffer event) {
+        CLEvent clEvent = new CLEvent(this.environment, event.get(0));
+        this.events.add(clEvent);
+        this.pending.add(clEvent);
+        return clEvent;
+    }
+
+    private void validate(CLKernel kernel) {
+        if (kernel.getEnvironment() != this.environment) {
+            throw new IllegalArgumentException("Kernel belongs to a different environment");
+        }
+    }
+
+    /**
+     * Enqueues a write of the specified data into a buffer. The data must not be modified until the returned event completes.
+     *
+     * @param buffer       The buffer to write to
+     * @param offset       The offset into the buffer to start writing data to
+     * @param data         The data to write
+     * @param dependencies The events that must complete before the write starts
+     * @return The event for the write
+     * @throws CLException If any error occurs while enqueuing the write
+     * @see CL10#clEnqueueWriteBuffer(long, long, boolean, long, ByteBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent write(CLBuffer buffer, long offset, ByteBuffer data, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueWriteBuffer(this.commandQueue, buffer.pointer(), false, offset, data, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues a write of the specified data into a buffer. The data must not be modified until the returned event completes.
+     *
+     * @param buffer       The buffer to write to
+     * @param offset       The offset into the buffer to start writing data to
+     * @param data         The data to write
+     * @param dependencies The events that must complete before the write starts
+     * @return The event for the write
+     * @throws CLException If any error occurs while enqueuing the write
+     * @see CL10#clEnqueueWriteBuffer(long, long, boolean, long, IntBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent write(CLBuffer buffer, long offset, IntBuffer data, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueWriteBuffer(this.commandQueue, buffer.pointer(), false, offset, data, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues a write of the specified data into a buffer. The data must not be modified until the returned event completes.
+     *
+     * @param buffer       The buffer to write to
+     * @param offset       The offset into the buffer to start writing data to
+     * @param data         The data to write
+     * @param dependencies The events that must complete before the write starts
+     * @return The event for the write
+     * @throws CLException If any error occurs while enqueuing the write
+     * @see CL10#clEnqueueWriteBuffer(long, long, boolean, long, FloatBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent write(CLBuffer buffer, long offset, FloatBuffer data, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueWriteBuffer(this.commandQueue, buffer.pointer(), false, offset, data, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues a read of a buffer into the specified store. The store must not be accessed until the returned event completes.
+     *
+     * @param buffer       The buffer to read from
+     * @param offset       The offset into the buffer to start reading data from
+     * @param store        The buffer to store into
+     * @param dependencies The events that must complete before the read starts
+     * @return The event for the read
+     * @throws CLException If any error occurs while enqueuing the read
+     * @see CL10#clEnqueueReadBuffer(long, long, boolean, long, ByteBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent read(CLBuffer buffer, long offset, ByteBuffer store, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueReadBuffer(this.commandQueue, buffer.pointer(), false, offset, store, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues a read of a buffer into the specified store. The store must not be accessed until the returned event completes.
+     *
+     * @param buffer       The buffer to read from
+     * @param offset       The offset into the buffer to start reading data from
+     * @param store        The buffer to store into
+     * @param dependencies The events that must complete before the read starts
+     * @return The event for the read
+     * @throws CLException If any error occurs while enqueuing the read
+     * @see CL10#clEnqueueReadBuffer(long, long, boolean, long, IntBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent read(CLBuffer buffer, long offset, IntBuffer store, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueReadBuffer(this.commandQueue, buffer.pointer(), false, offset, store, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues a read of a buffer into the specified store. The store must not be accessed until the returned event completes.
+     *
+     * @param buffer       The buffer to read from
+     * @param offset       The offset into the buffer to start reading data from
+     * @param store        The buffer to store into
+     * @param dependencies The events that must complete before the read starts
+     * @return The event for the read
+     * @throws CLException If any error occurs while enqueuing the read
+     * @see CL10#clEnqueueReadBuffer(long, long, boolean, long, FloatBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent read(CLBuffer buffer, long offset, FloatBuffer store, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueReadBuffer(this.commandQueue, buffer.pointer(), false, offset, store, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * <p>Enqueues a map of a region of a buffer into host memory without waiting for it.</p>
+     * <p>The mapped data must not be accessed until the returned event completes, and the buffer must not be used by a kernel
+     * until the region is unmapped with {@link #unmap(CLMappedRegion, CLEvent...)}.</p>
+     *
+     * @param buffer       The buffer to map
+     * @param flags        How the mapped data will be accessed. Any of {@link CL10#CL_MAP_READ}, {@link CL10#CL_MAP_WRITE}, or {@link org.lwjgl.opencl.CL12#CL_MAP_WRITE_INVALIDATE_REGION}
+     * @param offset       The offset into the buffer to start the region at
+     * @param size         The size of the region in bytes
+     * @param dependencies The events that must complete before the map starts
+     * @return The mapped region and the event for the map
+     * @throws CLException If any error occurs while enqueuing the map
+     * @see CL10#clEnqueueMapBuffer(long, long, boolean, long, long, long, PointerBuffer, PointerBuffer, IntBuffer, ByteBuffer)
+     */
+    public MapResult map(CLBuffer buffer, int flags, long offset, long size, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            CLMappedRegion region = buffer.map(this.commandQueue, false, flags, offset, size, waitList(stack, dependencies), event);
+            return new MapResult(region, this.track(event));
+        }
+    }
+
+    /**
+     * Enqueues an unmap of a region. Writes to the mapped data are visible to commands that depend on the returned event.
+     *
+     * @param region       The region to unmap
+     * @param dependencies The events that must complete before the unmap starts
+     * @return The event for the unmap
+     * @throws CLException           If any error occurs while enqueuing the unmap
+     * @throws IllegalStateException If the region has already been unmapped
+     * @see CL10#clEnqueueUnmapMemObject(long, long, ByteBuffer, PointerBuffer, PointerBuffer)
+     */
+    public CLEvent unmap(CLMappedRegion region, CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            if (!region.getBuffer().unmap(this.commandQueue, region, waitList(stack, dependencies), event)) {
+                throw new IllegalStateException("Region has been unmapped");
+            }
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues the specified kernel in 1 dimension. The current kernel arguments are captured, so they can be changed as soon as this returns.
+     *
+     * @param kernel         The kernel to execute
+     * @param globalWorkSize The size of the global work group
+     * @param localWorkSize  The size of each local work group
+     * @param dependencies   The events that must complete before the kernel starts
+     * @return The event for the kernel
+     * @throws CLException If any error occurs while enqueuing the kernel
+     * @see CLKernel#execute(int, int)
+     */
+    public CLEvent execute(CLKernel kernel, int globalWorkSize, int localWorkSize, CLEvent... dependencies) throws CLException {
+        this.validate(kernel);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueNDRangeKernel(this.commandQueue, kernel.getHandle(), 1, null, stack.pointers(globalWorkSize), stack.pointers(localWorkSize), waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Enqueues the specified kernel in n dimensions. The current kernel arguments are captured, so they can be changed as soon as this returns.
+     *
+     * @param kernel          The kernel to execute
+     * @param globalWorkSizes The size of each global work group
+     * @param localWorkSizes  The size of each local work group
+     * @param dependencies    The events that must complete before the kernel starts
+     * @return The event for the kernel
+     * @throws CLException              If any error occurs while enqueuing the kernel
+     * @throws IllegalArgumentException If the length of <code>globalWorkSizes</code> and <code>localWorkSizes</code> are not equal
+     * @see CLKernel#execute(int[], int[])
+     */
+    public CLEvent execute(CLKernel kernel, int[] globalWorkSizes, int[] localWorkSizes, CLEvent... dependencies) throws CLException, IllegalArgumentException {
+        if (globalWorkSizes.length != localWorkSizes.length) {
+            throw new IllegalArgumentException("Global work size and local work size must have the same length");
+        }
+        this.validate(kernel);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer global_work_size = stack.mallocPointer(globalWorkSizes.length);
+            for (int i = 0; i < globalWorkSizes.length; i++) {
+                global_work_size.put(i, globalWorkSizes[i]);
+            }
+            PointerBuffer local_work_size = stack.mallocPointer(localWorkSizes.length);
+            for (int i = 0; i < localWorkSizes.length; i++) {
+                local_work_size.put(i, localWorkSizes[i]);
+            }
+            PointerBuffer event = stack.mallocPointer(1);
+            VeilOpenCL.checkCLError(clEnqueueNDRangeKernel(this.commandQueue, kernel.getHandle(), globalWorkSizes.length, null, global_work_size, local_work_size, waitList(stack, dependencies), event));
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Creates an event that completes when all specified events have completed. This is useful to join several branches of the graph.
+     * Devices without OpenCL 1.2 wait for every previous command in this graph instead.
+     *
+     * @param dependencies The events to wait for
+     * @return The event that completes after all dependencies
+     * @throws CLException If any error occurs while enqueuing the marker
+     */
+    public CLEvent join(CLEvent... dependencies) throws CLException {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer event = stack.mallocPointer(1);
+            if (this.environment.getDevice().capabilities().OpenCL12) {
+                VeilOpenCL.checkCLError(clEnqueueMarkerWithWaitList(this.commandQueue, waitList(stack, dependencies), event));
+            } else {
+                VeilOpenCL.checkCLError(clEnqueueMarker(this.commandQueue, event));
+            }
+            return this.track(event);
+        }
+    }
+
+    /**
+     * Sends all commands enqueued since the last submit to the device without waiting for them.
+     *
+     * @return A future that completes when all commands enqueued since the last submit have completed
+     * @throws CLException If any error occurs while submitting the commands
+     */
+    public CompletableFuture<Void> submit() throws CLException {
+        CompletableFuture<?>[] futures = new CompletableFuture[this.pending.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = this.pending.get(i).future();
+        }
+        this.pending.clear();
+        VeilOpenCL.checkCLError(clFlush(this.commandQueue));
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Blocks until all commands in this graph have completed and releases all events created by it.
+     *
+     * @throws CLException If any error occurs while trying to block
+     */
+    public void finish() throws CLException {
+        VeilOpenCL.checkCLError(clFinish(this.commandQueue));
+        this.events.forEach(CLEvent::free);
+        this.events.clear();
+        this.pending.clear();
+    }
+
+    /**
+     * @return Whether commands without dependencies between them are allowed to run in any order
+     */
+    public boolean isOutOfOrder() {
+        return this.outOfOrder;
+    }
+
+    /**
+     * @return The pointer to the OpenCL queue used by this graph
+     */
+    public long getCommandQueue() {
+        return this.commandQueue;
+    }
+
+    @ApiStatus.Internal
+    @Override
+    public void free() {
+        try {
+            this.finish();
+        } catch (CLException e) {
+            VeilOpenCL.LOGGER.error("Failed to finish task graph", e);
+        }
+        clReleaseCommandQueue(this.commandQueue);
+    }
+
+    /**
+     * A region mapped by {@link #map(CLBuffer, int, long, long, CLEvent...)}.
+     *
+     * @param region The mapped region. The data must not be accessed until the event completes
+     * @param event  The event for the map
+     */
+    public record MapResult(CLMappedRegion region, CLEvent event) {
+    }
+}
@@ -4,6 +4,8 @@ import foundry.veil.api.opencl.CLException;
 import org.jetbrains.annotations.NotNull;
 import org.lwjgl.opencl.CL10;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.lwjgl.opencl.CL10.CL_COMPLETE;
 
 /**
@@ -33,4 +35,15 @@ public interface CLEventDispatcher {
      * @throws CLException If the event is invalid
      */
     void listen(long event, long eventStatus, @NotNull Runnable callback) throws CLException;
+
+    /**
+     * <p>Listens for the specified event to complete.</p>
+     * <p>The returned future is completed exceptionally with a {@link CLException} if the command the event belongs to fails.
+     * Like the other listen methods, the reference to the event is released once it fires.</p>
+     *
+     * @param event The event to listen to. This is a pointer to an event provided by an OpenCL function.
+     * @return A future that completes when the event completes
+     * @throws CLException If the event is invalid
+     */
+    CompletableFuture<Void> listen(long event) throws CLException;
 }
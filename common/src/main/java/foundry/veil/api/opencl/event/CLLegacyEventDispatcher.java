@@ -9,8 +9,10 @@ import org.lwjgl.system.MemoryStack;
 import java.nio.IntBuffer;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 import static org.lwjgl.opencl.CL10.*;
 
@@ -59,7 +61,7 @@ public class CLLegacyEventDispatcher implements CLEventDispatcher {
                     VeilOpenCL.checkCLError(clGetEventInfo(event.event, CL_EVENT_COMMAND_EXECUTION_STATUS, status, null));
 
                     if (status.get(0) <= event.eventStatus) {
-                        event.callback.run();
+                        event.callback.accept(status.get(0));
                         clReleaseEvent(event.event);
                         continue;
                     }
@@ -75,11 +77,28 @@ public class CLLegacyEventDispatcher implements CLEventDispatcher {
     @Override
     public void listen(long event, long eventStatus, @NotNull Runnable callback) throws CLException {
         Objects.requireNonNull(callback, "callback");
+        this.add(new EventListener(event, eventStatus, status -> callback.run()));
+    }
+
+    @Override
+    public CompletableFuture<Void> listen(long event) throws CLException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.add(new EventListener(event, CL_COMPLETE, status -> {
+            if (status < 0) {
+                future.completeExceptionally(new CLException("Event failed", status));
+            } else {
+                future.complete(null);
+            }
+        }));
+        return future;
+    }
+
+    private void add(EventListener listener) throws CLException {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VeilOpenCL.checkCLError(clGetEventInfo(event, CL_EVENT_REFERENCE_COUNT, stack.mallocInt(1), null));
+            VeilOpenCL.checkCLError(clGetEventInfo(listener.event, CL_EVENT_REFERENCE_COUNT, stack.mallocInt(1), null));
         }
 
-        this.eventListeners.add(new EventListener(event, eventStatus, callback));
+        this.eventListeners.add(listener);
         synchronized (this.eventNotifier) {
             this.eventNotifier.notifyAll();
         }
@@ -95,6 +114,6 @@ public class CLLegacyEventDispatcher implements CLEventDispatcher {
         this.listenerThread.join(4000);
     }
 
-    private record EventListener(long event, long eventStatus, Runnable callback) {
+    private record EventListener(long event, long eventStatus, IntConsumer callback) {
     }
 }
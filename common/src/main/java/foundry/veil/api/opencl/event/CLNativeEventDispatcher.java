@@ -7,6 +7,7 @@ import org.jetbrains.annotations.NotNull;
 import org.lwjgl.system.MemoryUtil;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opencl.CL10.CL_COMPLETE;
 import static org.lwjgl.opencl.CL10.clReleaseEvent;
@@ -28,4 +29,19 @@ public class CLNativeEventDispatcher implements CLEventDispatcher {
             }
         }, MemoryUtil.NULL));
     }
+
+    @Override
+    public CompletableFuture<Void> listen(long event) throws CLException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // The callback is also fired with a negative status if the command fails
+        VeilOpenCL.checkCLError(clSetEventCallback(event, CL_COMPLETE, (e, event_command_exec_status, user_data) -> {
+            if (event_command_exec_status < 0) {
+                future.completeExceptionally(new CLException("Event failed", event_command_exec_status));
+            } else {
+                future.complete(null);
+            }
+            clReleaseEvent(event);
+        }, MemoryUtil.NULL));
+        return future;
+    }
 }
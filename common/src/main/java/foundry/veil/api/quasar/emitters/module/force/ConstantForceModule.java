@@ -32,4 +32,8 @@ public class ConstantForceModule implements ForceParticleModule {
     public Vector3d getAcceleration() {
         return this.acceleration;
     }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
@@ -68,4 +68,20 @@ public class PointAttractorForceModule extends SimplePositionedForce {
     public void setInvertDistanceModifier(boolean invertDistanceModifier) {
         this.invertDistanceModifier = invertDistanceModifier;
     }
+
+    public double getRangeSquared() {
+        return this.rangeSq;
+    }
+
+    public float getStrength() {
+        return this.strength;
+    }
+
+    public boolean isStrengthByDistance() {
+        return this.strengthByDistance;
+    }
+
+    public boolean isInvertDistanceModifier() {
+        return this.invertDistanceModifier;
+    }
 }
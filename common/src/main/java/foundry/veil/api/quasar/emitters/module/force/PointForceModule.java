@@ -46,4 +46,12 @@ public class PointForceModule extends SimplePositionedForce {
     public void setStrength(float strength) {
         this.strength = strength;
     }
+
+    public double getRangeSquared() {
+        return this.rangeSq;
+    }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
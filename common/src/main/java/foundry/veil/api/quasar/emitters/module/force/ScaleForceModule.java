@@ -36,4 +36,8 @@ public class ScaleForceModule implements ForceParticleModule {
     public Vector3d getScale() {
         return this.scale;
     }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
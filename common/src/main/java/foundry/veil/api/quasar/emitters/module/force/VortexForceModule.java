@@ -64,4 +64,12 @@ public class VortexForceModule extends SimplePositionedForce {
     public void setStrength(float strength) {
         this.strength = strength;
     }
+
+    public double getRangeSquared() {
+        return this.rangeSq;
+    }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
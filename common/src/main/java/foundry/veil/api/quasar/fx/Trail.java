@@ -11,6 +11,7 @@ import net.minecraft.client.renderer.texture.OverlayTexture;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.phys.Vec3;
 import org.joml.Matrix4f;
+import org.joml.Vector3d;
 import org.joml.Vector3f;
 
 import java.util.Locale;
@@ -209,6 +210,33 @@ public class Trail {
         this.rotations = newRotations;
     }
 
+    /**
+     * Expands the specified box to contain every point of this trail and its width.
+     *
+     * @param min The minimum corner of the box
+     * @param max The maximum corner of the box
+     */
+    public void expandBounds(Vector3d min, Vector3d max) {
+        for (int i = 0; i < this.points.length; i++) {
+            Vec3 point = this.points[i];
+            if (point == null) {
+                continue;
+            }
+
+            float width = this.widthFunction.apply(this.points.length > 1 ? (float) i / (this.points.length - 1) : 0.0F);
+            double extent = Math.abs(width) / 2.0;
+            if (!this.billboard && this.parentRotation && this.rotations != null) {
+                // The width is applied along an axis scaled by the rotation vector
+                Vec3 rotation = this.rotations[Math.min(i + this.frequency, this.rotations.length - 1)];
+                if (rotation != null) {
+                    extent *= Math.max(rotation.length(), 1.0);
+                }
+            }
+            min.set(Math.min(min.x, point.x - extent), Math.min(min.y, point.y - extent), Math.min(min.z, point.z - extent));
+            max.set(Math.max(max.x, point.x + extent), Math.max(max.y, point.y + extent), Math.max(max.z, point.z + extent));
+        }
+    }
+
     public void render(PoseStack stack, VertexConsumer consumer, int light) {
         Vector3f[][] corners = new Vector3f[this.points.length][2];
         for (int i = 0; i < this.points.length; i++) {
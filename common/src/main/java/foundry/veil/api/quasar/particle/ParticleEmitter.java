@@ -7,13 +7,19 @@ import foundry.veil.api.TickTaskScheduler;
 import foundry.veil.api.quasar.data.*;
 import foundry.veil.api.quasar.data.module.CodeModule;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
+import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
 import foundry.veil.api.quasar.emitters.module.update.FaceVelocityModule;
+import foundry.veil.api.quasar.fx.Trail;
+import foundry.veil.impl.quasar.InstancedParticleRenderer;
+import foundry.veil.impl.quasar.QuasarComputeSimulator;
 import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.RandomSource;
@@ -53,7 +59,10 @@ public class ParticleEmitter {
     private final RandomSource randomSource;
     private final Vector3d position;
     private final Vector3d offset;
-    private final List<QuasarParticle> particles;
+    private final ParticleStorage particles;
+    private final Vector3d boundsMin;
+    private final Vector3d boundsMax;
+    private final BlockPos.MutableBlockPos lightPos;
 
     private int maxLifetime;
     private boolean loop;
@@ -64,6 +73,15 @@ public class ParticleEmitter {
     private ParticleSettings particleSettings;
     private boolean forceSpawn;
     private QuasarParticleData particleData;
+    private boolean gpuExpressible;
+    private long sectionPos;
+    private double renderDistanceSq;
+    private boolean visible;
+    private int lastTick;
+    @Nullable
+    private ParticleModuleSet sharedModules;
+    @Nullable
+    private QuasarComputeSimulator.EmitterState computeState;
 
     @Nullable
     private Entity attachedEntity;
@@ -79,7 +97,10 @@ public class ParticleEmitter {
         this.randomSource = RandomSource.create();
         this.position = new Vector3d();
         this.offset = new Vector3d();
-        this.particles = new ArrayList<>();
+        this.particles = new ParticleStorage();
+        this.boundsMin = new Vector3d();
+        this.boundsMax = new Vector3d();
+        this.lightPos = new BlockPos.MutableBlockPos();
 
         this.maxLifetime = data.maxLifetime();
         this.loop = data.loop();
@@ -91,6 +112,11 @@ public class ParticleEmitter {
         this.particleSettings = emitterSettings.particleSettings();
         this.forceSpawn = emitterSettings.forceSpawn();
         this.particleData = data.particleData();
+        this.gpuExpressible = QuasarComputeSimulator.isExpressible(this.modules, this.particleData);
+        this.sectionPos = Long.MAX_VALUE;
+        this.renderDistanceSq = 0;
+        this.visible = true;
+        this.lastTick = -1;
 
         TickTaskScheduler scheduler = particleManager.getScheduler();
         this.spawnTask = scheduler.scheduleAtFixedRate(this::spawn, 0, data.rate());
@@ -122,20 +148,32 @@ public class ParticleEmitter {
 //            }
 //        });
 
-            ParticleModuleSet.Builder builder = ParticleModuleSet.builder();
-            for (ParticleModuleData module : this.modules) {
-                module.addModules(builder);
-            }
-            if (this.particleData.faceVelocity()) {
-                builder.addModule(new FaceVelocityModule());
-            }
-
-            QuasarParticle particle = new QuasarParticle(this.level, this.randomSource, this.particleManager.getScheduler(), this.particleData, builder.build(), this.particleSettings, this);
+            // Simulated particles share one set of modules, so the forces applied to all of them can be read from a single place
+            ParticleModuleSet modules = this.gpuExpressible && this.particleManager.getComputeSimulator() != null ? this.getSharedModules() : this.createModules();
+            QuasarParticle particle = new QuasarParticle(this.level, this.randomSource, this.particleManager.getScheduler(), this.particleData, modules, this.particleSettings, this);
             particle.getPosition().set(particlePos);
             particle.getVelocity().set(particleDirection);
             particle.init();
-            this.particles.add(particle);
         }
+        this.particles.flush();
+    }
+
+    private ParticleModuleSet createModules() {
+        ParticleModuleSet.Builder builder = ParticleModuleSet.builder();
+        for (ParticleModuleData module : this.modules) {
+            module.addModules(builder);
+        }
+        if (this.particleData.faceVelocity()) {
+            builder.addModule(new FaceVelocityModule());
+        }
+        return builder.build();
+    }
+
+    private ParticleModuleSet getSharedModules() {
+        if (this.sharedModules == null) {
+            this.sharedModules = this.createModules();
+        }
+        return this.sharedModules;
     }
 
     private static List<ParticleModuleData> createModuleSet(QuasarParticleData data) {
@@ -171,6 +209,21 @@ public class ParticleEmitter {
         }
     }
 
+    /**
+     * Ticks this emitter and ages all particles by any ticks that were skipped since the last update.
+     *
+     * @param tickCount The current tick of the particle manager
+     */
+    @ApiStatus.Internal
+    void tick(int tickCount) {
+        int elapsed = this.lastTick < 0 ? 1 : tickCount - this.lastTick;
+        this.lastTick = tickCount;
+        this.tick();
+        if (elapsed > 1) {
+            this.age(elapsed - 1);
+        }
+    }
+
     @ApiStatus.Internal
     void tick() {
         this.position.set(0);
@@ -185,16 +238,29 @@ public class ParticleEmitter {
         }
 
         this.position.add(this.offset);
-        Iterator<QuasarParticle> iterator = this.particles.iterator();
-        while (iterator.hasNext()) {
-            QuasarParticle particle = iterator.next();
+
+        QuasarComputeSimulator simulator = this.gpuExpressible ? this.particleManager.getComputeSimulator() : null;
+        if (simulator != null && this.tickCompute(simulator)) {
+            this.updateBounds();
+            return;
+        }
+        this.releaseComputeState(true);
+
+        int i = 0;
+        while (i < this.particles.size()) {
+            QuasarParticle particle = this.particles.get(i);
             particle.tick();
 
             if (particle.isRemoved()) {
-                iterator.remove();
                 particle.onRemove();
+                // The last particle is moved into this slot, so tick it next
+                this.particles.remove(i);
+            } else {
+                i++;
             }
         }
+        this.particles.flush();
+        this.updateBounds();
 
 //        if (this.removed) {
 //            this.cancelTasks();
@@ -210,16 +276,193 @@ public class ParticleEmitter {
 //        }
     }
 
+    private boolean tickCompute(QuasarComputeSimulator simulator) {
+        ParticleModuleSet modules = this.getSharedModules();
+        ForceParticleModule[] forces = modules.getForceModules();
+        if (!simulator.canSimulate(forces)) {
+            return false;
+        }
+
+        ParticleStorage storage = this.particles;
+        if (this.computeState == null) {
+            this.computeState = simulator.createState();
+            storage.setTrackSources(true);
+        }
+
+        // Positions on the CPU are one tick behind the simulation and are only used for light, bounds, and trails
+        storage.flush();
+        storage.tickRender();
+        this.computeState.readback(storage);
+
+        int size = storage.size();
+        double[] positions = storage.getPositions();
+        int[] lightColors = storage.getLightColors();
+        for (int i = 0; i < size; i++) {
+            int offset = i * 3;
+            this.lightPos.set(positions[offset], positions[offset + 1], positions[offset + 2]);
+            lightColors[i] = LevelRenderer.getLightColor(this.level, this.lightPos);
+        }
+        modules.updateEnabled();
+
+        // Iterate backwards so the particle swapped into a removed slot has already been aged
+        int[] ages = storage.getAges();
+        int[] lifetimes = storage.getLifetimes();
+        for (int i = size - 1; i >= 0; i--) {
+            QuasarParticle particle = storage.get(i);
+            if (++ages[i] >= lifetimes[i]) {
+                particle.remove();
+            }
+            if (particle.isRemoved()) {
+                particle.onRemove();
+                storage.remove(i);
+            }
+        }
+
+        simulator.simulate(this.computeState, storage, forces, this.position);
+        return true;
+    }
+
+    /**
+     * Ages all particles without moving them and removes any that have expired.
+     *
+     * @param ticks The number of ticks to age by
+     */
+    private void age(int ticks) {
+        ParticleStorage storage = this.particles;
+        storage.flush();
+
+        int[] ages = storage.getAges();
+        int[] lifetimes = storage.getLifetimes();
+        for (int i = storage.size() - 1; i >= 0; i--) {
+            ages[i] += ticks;
+            if (ages[i] >= lifetimes[i]) {
+                QuasarParticle particle = storage.get(i);
+                particle.remove();
+                particle.onRemove();
+                storage.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Stops simulating particles on the GPU.
+     *
+     * @param keep Whether to copy the latest simulation results back so the particles can continue on the CPU
+     */
+    private void releaseComputeState(boolean keep) {
+        if (this.computeState == null) {
+            return;
+        }
+
+        if (keep) {
+            this.particles.flush();
+            this.computeState.finish(this.particles);
+        }
+        this.computeState.free();
+        this.computeState = null;
+        this.particles.setTrackSources(false);
+    }
+
+    /**
+     * Recalculates the box containing all particles for this tick and the previous tick.
+     */
+    private void updateBounds() {
+        int size = this.particles.size();
+        if (size == 0) {
+            this.boundsMin.set(this.position);
+            this.boundsMax.set(this.position);
+            return;
+        }
+
+        double[] positions = this.particles.getPositions();
+        double[] velocities = this.particles.getVelocities();
+        float[] radii = this.particles.getRadii();
+        double extent = this.getMeshExtent();
+        // The CPU copy of simulated particles is a tick behind, and they are drawn up to two ticks ahead of it
+        double ahead = this.computeState != null ? 2.0 : 0.0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            int offset = i * 3;
+            double x = positions[offset];
+            double y = positions[offset + 1];
+            double z = positions[offset + 2];
+            // Particles are interpolated from the last position, so include it in the bounds
+            double lastX = x - velocities[offset];
+            double lastY = y - velocities[offset + 1];
+            double lastZ = z - velocities[offset + 2];
+            double nextX = x + velocities[offset] * ahead;
+            double nextY = y + velocities[offset + 1] * ahead;
+            double nextZ = z + velocities[offset + 2] * ahead;
+            double radius = radii[i] * extent;
+            minX = Math.min(minX, Math.min(nextX, lastX) - radius);
+            minY = Math.min(minY, Math.min(nextY, lastY) - radius);
+            minZ = Math.min(minZ, Math.min(nextZ, lastZ) - radius);
+            maxX = Math.max(maxX, Math.max(nextX, lastX) + radius);
+            maxY = Math.max(maxY, Math.max(nextY, lastY) + radius);
+            maxZ = Math.max(maxZ, Math.max(nextZ, lastZ) + radius);
+        }
+        this.boundsMin.set(minX, minY, minZ);
+        this.boundsMax.set(maxX, maxY, maxZ);
+
+        // Trails keep old positions, so they can reach far outside the particles themselves
+        for (int i = 0; i < size; i++) {
+            List<Trail> trails = this.particles.getTrailsOrNull(i);
+            if (trails != null) {
+                for (Trail trail : trails) {
+                    trail.expandBounds(this.boundsMin, this.boundsMax);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The farthest distance from the center of a particle to a corner of its mesh, relative to its radius
+     */
+    private double getMeshExtent() {
+        // Velocity stretch scales one axis of the mesh
+        double stretch = 1.0 + Math.max(this.particleData.velocityStretchFactor(), 0.0F);
+        if (this.particleData.renderStyle() instanceof RenderStyle.Billboard) {
+            return Math.sqrt(1.0 + stretch * stretch);
+        }
+        return Math.sqrt(2.0 + stretch * stretch);
+    }
+
     // TODO move to renderer
     @ApiStatus.Internal
     public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, float partialTicks) {
+        this.render(poseStack, bufferSource, camera, partialTicks, null);
+    }
+
+    @ApiStatus.Internal
+    public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, float partialTicks, @Nullable InstancedParticleRenderer instancedRenderer) {
         Vec3 projectedView = camera.getPosition();
         RenderStyle renderStyle = this.particleData.renderStyle();
 
+        boolean instanced = instancedRenderer != null && InstancedParticleRenderer.canDraw(renderStyle, this.particleData.additive());
         Vector3f renderOffset = new Vector3f();
+
+        // Additive particles don't need sorting, so they can be drawn straight from the simulation in slot order
+        QuasarComputeSimulator.EmitterState simulation = null;
+        Vector3f anchorOffset = null;
+        if (instanced && this.particleData.additive() && this.computeState != null && this.computeState.isInSync(this.particles) && this.particles.hasSingleRenderType()) {
+            simulation = this.computeState;
+            Vector3dc anchor = simulation.getAnchor();
+            anchorOffset = new Vector3f(
+                    (float) (anchor.x() - projectedView.x()),
+                    (float) (anchor.y() - projectedView.y()),
+                    (float) (anchor.z() - projectedView.z()));
+        }
         RenderType lastRenderType = null;
+        TextureAtlasSprite lastSprite = null;
+        VertexConsumer buffer = null;
         VertexConsumer builder = null;
-        for (QuasarParticle particle : this.particles) {
+        for (int i = 0; i < this.particles.size(); i++) {
+            QuasarParticle particle = this.particles.get(i);
             RenderData renderData = particle.getRenderData();
 
             particle.render(partialTicks);
@@ -255,32 +498,64 @@ public class ParticleEmitter {
 //        }
             renderData.renderTrails(poseStack, bufferSource, projectedView, LightTexture.FULL_BRIGHT);
 
+            if (simulation != null) {
+                instancedRenderer.addSimulated(renderStyle, this.particleData, renderData, anchorOffset, simulation);
+                continue;
+            }
+
             Vector3dc renderPosition = renderData.getRenderPosition();
             renderOffset.set(
                     (float) (renderPosition.x() - projectedView.x()),
                     (float) (renderPosition.y() - projectedView.y()),
                     (float) (renderPosition.z() - projectedView.z()));
 
+            if (instanced) {
+                instancedRenderer.add(renderStyle, this.particleData, renderData, renderOffset);
+                continue;
+            }
+
             RenderType renderType = renderData.getRenderType();
+            TextureAtlasSprite sprite = renderData.getAtlasSprite();
             if (!renderType.equals(lastRenderType)) {
                 lastRenderType = renderType;
-                builder = bufferSource.getBuffer(renderType);
-
-                TextureAtlasSprite sprite = renderData.getAtlasSprite();
-                if (sprite != null) {
-                    builder = sprite.wrap(builder);
-                }
+                buffer = bufferSource.getBuffer(renderType);
+                lastSprite = null;
+                builder = buffer;
+            }
+            // Particles sharing an atlas can still use different sprites from it
+            if (sprite != lastSprite) {
+                lastSprite = sprite;
+                builder = sprite != null ? sprite.wrap(buffer) : buffer;
             }
 
             renderStyle.render(poseStack, particle, renderData, renderOffset, builder, 1, partialTicks);
         }
+        this.particles.flush();
+    }
+
+    /**
+     * <p>Updates an emitter that is outside the view without drawing any particles.</p>
+     * <p>Render modules still run, since lights they place can reach the screen even when the particles can't be seen.
+     * Trails keep recording points so they don't jump when the emitter comes back into view.</p>
+     *
+     * @param partialTicks The percentage from last tick to this tick
+     */
+    @ApiStatus.Internal
+    public void renderCulled(float partialTicks) {
+        for (int i = 0; i < this.particles.size(); i++) {
+            QuasarParticle particle = this.particles.get(i);
+            particle.render(partialTicks);
+            particle.getRenderData().pushTrailPoints();
+        }
+        this.particles.flush();
     }
 
     @ApiStatus.Internal
     void onRemoved() {
         this.cancelTasks();
-        for (QuasarParticle particle : this.particles) {
-            particle.onRemove();
+        this.releaseComputeState(false);
+        for (int i = 0; i < this.particles.size(); i++) {
+            this.particles.get(i).onRemove();
         }
         this.particles.clear();
     }
@@ -293,6 +568,9 @@ public class ParticleEmitter {
      */
     public void addCodeModule(CodeModule module) {
         this.modules.add(module);
+        // User code can only run on the CPU
+        this.gpuExpressible = false;
+        this.sharedModules = null;
     }
 
     /**
@@ -307,7 +585,11 @@ public class ParticleEmitter {
             return 0;
         }
         int removeCount = Math.min(count, this.particles.size());
-        this.particles.subList(0, removeCount).clear();
+        // Remove back to front so particles swapped in from the end are never part of the trimmed range
+        for (int i = removeCount - 1; i >= 0; i--) {
+            this.particles.get(i).onRemove();
+            this.particles.remove(i);
+        }
         return removeCount;
     }
 
@@ -356,6 +638,54 @@ public class ParticleEmitter {
         return this.particles.size();
     }
 
+    /**
+     * @return The minimum corner of the box containing all particles as of the last tick
+     */
+    public Vector3dc getBoundsMin() {
+        return this.boundsMin;
+    }
+
+    /**
+     * @return The maximum corner of the box containing all particles as of the last tick
+     */
+    public Vector3dc getBoundsMax() {
+        return this.boundsMax;
+    }
+
+    /**
+     * @return The packed section position this emitter is currently indexed under
+     */
+    long getSectionPos() {
+        return this.sectionPos;
+    }
+
+    void setSectionPos(long sectionPos) {
+        this.sectionPos = sectionPos;
+    }
+
+    double getRenderDistanceSq() {
+        return this.renderDistanceSq;
+    }
+
+    void setRenderDistanceSq(double renderDistanceSq) {
+        this.renderDistanceSq = renderDistanceSq;
+    }
+
+    boolean isVisible() {
+        return this.visible;
+    }
+
+    void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * @return The packed storage of all particles in this emitter
+     */
+    public ParticleStorage getStorage() {
+        return this.particles;
+    }
+
     public int getMaxLifetime() {
         return this.maxLifetime;
     }
@@ -463,6 +793,8 @@ public class ParticleEmitter {
 
     public void setParticleData(QuasarParticleData particleData) {
         this.particleData = particleData;
+        this.gpuExpressible = QuasarComputeSimulator.isExpressible(this.modules, particleData);
+        this.sharedModules = null;
     }
 
     /**
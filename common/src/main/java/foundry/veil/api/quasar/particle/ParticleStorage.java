@@ -0,0 +1,647 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.Veil;
+import foundry.veil.api.client.render.rendertype.VeilRenderType;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import foundry.veil.api.quasar.fx.Trail;
+import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.Mth;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Structure-of-arrays storage for all particles owned by a single {@link ParticleEmitter}.</p>
+ * <p>The hot simulation state of each particle lives in packed primitive arrays indexed by slot.
+ * {@link QuasarParticle} instances only hold their slot index and act as views into this storage.
+ * Removing a particle moves the last particle into the freed slot, so live particles are always packed at the front.</p>
+ * <p>Vector state is exposed through a single cursor per storage. Calling {@link QuasarParticle#getPosition()},
+ * {@link QuasarParticle#getVelocity()}, or {@link QuasarParticle#getRotation()} binds that particle to the cursor,
+ * writing back whichever particle was previously bound. The returned vectors must not be kept across particles.</p>
+ * <p>Render state is stored the same way and exposed through a single {@link RenderData} cursor, so particles do not
+ * allocate any render objects of their own.</p>
+ * <p>When the state of the particles is kept somewhere else, like a GPU buffer, {@link #setTrackSources(boolean)} records
+ * which slot each particle came from so the copy can be rearranged to match without reading it back.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class ParticleStorage {
+
+    @Deprecated
+    static final ResourceLocation BLANK = Veil.veilPath("textures/special/blank.png");
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Vector3d position;
+    private final Vector3d velocity;
+    private final Vector3f rotation;
+    private final BlockPos.MutableBlockPos blockPosition;
+    private final RenderData renderData;
+
+    private QuasarParticle[] particles;
+    private double[] positions;
+    private double[] velocities;
+    private float[] rotations;
+    private float[] radii;
+    private int[] ages;
+    private int[] lifetimes;
+
+    private double[] prevPositions;
+    private double[] renderPositions;
+    private float[] prevRotations;
+    private float[] renderRotations;
+    private float[] prevRadii;
+    private float[] renderRadii;
+    private float[] renderAges;
+    private float[] agePercents;
+    private int[] lightColors;
+    private float[] colors;
+    private boolean[] additive;
+    private SpriteData[] spriteData;
+    private TextureAtlasSprite[] atlasSprites;
+    private RenderType[] renderTypes;
+    private List<Trail>[] trails;
+
+    private int[] sources;
+    private boolean trackSources;
+    private boolean sourcesChanged;
+    private int layoutVersion;
+
+    private int size;
+    private int bound;
+
+    public ParticleStorage() {
+        this.position = new Vector3d();
+        this.velocity = new Vector3d();
+        this.rotation = new Vector3f();
+        this.blockPosition = new BlockPos.MutableBlockPos();
+        this.renderData = new RenderData(this);
+
+        this.particles = new QuasarParticle[DEFAULT_CAPACITY];
+        this.positions = new double[DEFAULT_CAPACITY * 3];
+        this.velocities = new double[DEFAULT_CAPACITY * 3];
+        this.rotations = new float[DEFAULT_CAPACITY * 3];
+        this.radii = new float[DEFAULT_CAPACITY];
+        this.ages = new int[DEFAULT_CAPACITY];
+        this.lifetimes = new int[DEFAULT_CAPACITY];
+
+        this.prevPositions = new double[DEFAULT_CAPACITY * 3];
+        this.renderPositions = new double[DEFAULT_CAPACITY * 3];
+        this.prevRotations = new float[DEFAULT_CAPACITY * 3];
+        this.renderRotations = new float[DEFAULT_CAPACITY * 3];
+        this.prevRadii = new float[DEFAULT_CAPACITY];
+        this.renderRadii = new float[DEFAULT_CAPACITY];
+        this.renderAges = new float[DEFAULT_CAPACITY];
+        this.agePercents = new float[DEFAULT_CAPACITY];
+        this.lightColors = new int[DEFAULT_CAPACITY];
+        this.colors = new float[DEFAULT_CAPACITY * 4];
+        this.additive = new boolean[DEFAULT_CAPACITY];
+        this.spriteData = new SpriteData[DEFAULT_CAPACITY];
+        this.atlasSprites = new TextureAtlasSprite[DEFAULT_CAPACITY];
+        this.renderTypes = new RenderType[DEFAULT_CAPACITY];
+        this.trails = createTrails(DEFAULT_CAPACITY);
+        this.sources = new int[DEFAULT_CAPACITY];
+        this.size = 0;
+        this.bound = -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.particles.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.particles.length + (this.particles.length >> 1));
+        this.particles = Arrays.copyOf(this.particles, newCapacity);
+        this.positions = Arrays.copyOf(this.positions, newCapacity * 3);
+        this.velocities = Arrays.copyOf(this.velocities, newCapacity * 3);
+        this.rotations = Arrays.copyOf(this.rotations, newCapacity * 3);
+        this.radii = Arrays.copyOf(this.radii, newCapacity);
+        this.ages = Arrays.copyOf(this.ages, newCapacity);
+        this.lifetimes = Arrays.copyOf(this.lifetimes, newCapacity);
+
+        this.prevPositions = Arrays.copyOf(this.prevPositions, newCapacity * 3);
+        this.renderPositions = Arrays.copyOf(this.renderPositions, newCapacity * 3);
+        this.prevRotations = Arrays.copyOf(this.prevRotations, newCapacity * 3);
+        this.renderRotations = Arrays.copyOf(this.renderRotations, newCapacity * 3);
+        this.prevRadii = Arrays.copyOf(this.prevRadii, newCapacity);
+        this.renderRadii = Arrays.copyOf(this.renderRadii, newCapacity);
+        this.renderAges = Arrays.copyOf(this.renderAges, newCapacity);
+        this.agePercents = Arrays.copyOf(this.agePercents, newCapacity);
+        this.lightColors = Arrays.copyOf(this.lightColors, newCapacity);
+        this.colors = Arrays.copyOf(this.colors, newCapacity * 4);
+        this.additive = Arrays.copyOf(this.additive, newCapacity);
+        this.spriteData = Arrays.copyOf(this.spriteData, newCapacity);
+        this.atlasSprites = Arrays.copyOf(this.atlasSprites, newCapacity);
+        this.renderTypes = Arrays.copyOf(this.renderTypes, newCapacity);
+        this.trails = Arrays.copyOf(this.trails, newCapacity);
+        this.sources = Arrays.copyOf(this.sources, newCapacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Trail>[] createTrails(int capacity) {
+        return (List<Trail>[]) new List<?>[capacity];
+    }
+
+    /**
+     * Allocates a new slot at the end of the storage.
+     *
+     * @param particle The particle that will view the slot
+     * @param data     The data to get the initial render state from
+     * @param radius   The initial radius of the particle
+     * @param lifetime The lifetime of the particle in ticks
+     * @return The slot index allocated
+     */
+    int add(QuasarParticle particle, QuasarParticleData data, float radius, int lifetime) {
+        this.ensureCapacity(this.size + 1);
+
+        int index = this.size++;
+        this.particles[index] = particle;
+        Arrays.fill(this.positions, index * 3, index * 3 + 3, 0.0);
+        Arrays.fill(this.velocities, index * 3, index * 3 + 3, 0.0);
+        Arrays.fill(this.rotations, index * 3, index * 3 + 3, 0.0F);
+        this.radii[index] = radius;
+        this.ages[index] = 0;
+        this.lifetimes[index] = lifetime;
+
+        Arrays.fill(this.prevPositions, index * 3, index * 3 + 3, 0.0);
+        Arrays.fill(this.renderPositions, index * 3, index * 3 + 3, 0.0);
+        Arrays.fill(this.prevRotations, index * 3, index * 3 + 3, 0.0F);
+        Arrays.fill(this.renderRotations, index * 3, index * 3 + 3, 0.0F);
+        this.prevRadii[index] = 1.0F;
+        this.renderRadii[index] = 1.0F;
+        this.renderAges[index] = 0.0F;
+        this.agePercents[index] = 0.0F;
+        this.lightColors[index] = LightTexture.FULL_BRIGHT;
+        Arrays.fill(this.colors, index * 4, index * 4 + 4, 1.0F);
+        this.additive[index] = data.additive();
+        this.spriteData[index] = data.spriteData();
+        this.atlasSprites[index] = null;
+        this.trails[index] = null;
+        this.updateRenderType(index);
+        if (this.trackSources) {
+            this.sources[index] = -1;
+            this.sourcesChanged = true;
+        }
+        return index;
+    }
+
+    /**
+     * Removes the particle in the specified slot by moving the last particle into it.
+     *
+     * @param index The slot to remove
+     * @return The particle that was removed
+     */
+    QuasarParticle remove(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+
+        this.flush();
+        this.bound = -1;
+
+        QuasarParticle removed = this.particles[index];
+        removed.detach();
+
+        int last = --this.size;
+        if (index != last) {
+            QuasarParticle moved = this.particles[last];
+            this.particles[index] = moved;
+            System.arraycopy(this.positions, last * 3, this.positions, index * 3, 3);
+            System.arraycopy(this.velocities, last * 3, this.velocities, index * 3, 3);
+            System.arraycopy(this.rotations, last * 3, this.rotations, index * 3, 3);
+            this.radii[index] = this.radii[last];
+            this.ages[index] = this.ages[last];
+            this.lifetimes[index] = this.lifetimes[last];
+
+            System.arraycopy(this.prevPositions, last * 3, this.prevPositions, index * 3, 3);
+            System.arraycopy(this.renderPositions, last * 3, this.renderPositions, index * 3, 3);
+            System.arraycopy(this.prevRotations, last * 3, this.prevRotations, index * 3, 3);
+            System.arraycopy(this.renderRotations, last * 3, this.renderRotations, index * 3, 3);
+            this.prevRadii[index] = this.prevRadii[last];
+            this.renderRadii[index] = this.renderRadii[last];
+            this.renderAges[index] = this.renderAges[last];
+            this.agePercents[index] = this.agePercents[last];
+            this.lightColors[index] = this.lightColors[last];
+            System.arraycopy(this.colors, last * 4, this.colors, index * 4, 4);
+            this.additive[index] = this.additive[last];
+            this.spriteData[index] = this.spriteData[last];
+            this.atlasSprites[index] = this.atlasSprites[last];
+            this.renderTypes[index] = this.renderTypes[last];
+            this.trails[index] = this.trails[last];
+            this.sources[index] = this.sources[last];
+            moved.setIndex(index);
+        }
+        this.sourcesChanged = true;
+        this.layoutVersion++;
+        this.particles[last] = null;
+        this.spriteData[last] = null;
+        this.atlasSprites[last] = null;
+        this.renderTypes[last] = null;
+        this.trails[last] = null;
+        return removed;
+    }
+
+    /**
+     * Removes all particles from this storage.
+     */
+    void clear() {
+        this.flush();
+        for (int i = 0; i < this.size; i++) {
+            this.particles[i].detach();
+        }
+        Arrays.fill(this.particles, 0, this.size, null);
+        Arrays.fill(this.spriteData, 0, this.size, null);
+        Arrays.fill(this.atlasSprites, 0, this.size, null);
+        Arrays.fill(this.renderTypes, 0, this.size, null);
+        Arrays.fill(this.trails, 0, this.size, null);
+        this.sourcesChanged = true;
+        this.layoutVersion++;
+        this.size = 0;
+        this.bound = -1;
+    }
+
+    /**
+     * Loads the vector state of the specified slot into the cursor vectors. Binding <code>-1</code> writes back and releases the cursor.
+     *
+     * @param index The slot to bind
+     */
+    void bind(int index) {
+        if (this.bound == index) {
+            return;
+        }
+
+        this.flush();
+        this.bound = index;
+        if (index < 0) {
+            return;
+        }
+
+        int offset = index * 3;
+        this.position.set(this.positions[offset], this.positions[offset + 1], this.positions[offset + 2]);
+        this.velocity.set(this.velocities[offset], this.velocities[offset + 1], this.velocities[offset + 2]);
+        this.rotation.set(this.rotations[offset], this.rotations[offset + 1], this.rotations[offset + 2]);
+    }
+
+    /**
+     * Writes the cursor vectors back into the slot currently bound.
+     */
+    public void flush() {
+        if (this.bound < 0) {
+            return;
+        }
+
+        int offset = this.bound * 3;
+        this.positions[offset] = this.position.x;
+        this.positions[offset + 1] = this.position.y;
+        this.positions[offset + 2] = this.position.z;
+        this.velocities[offset] = this.velocity.x;
+        this.velocities[offset + 1] = this.velocity.y;
+        this.velocities[offset + 2] = this.velocity.z;
+        this.rotations[offset] = this.rotation.x;
+        this.rotations[offset + 1] = this.rotation.y;
+        this.rotations[offset + 2] = this.rotation.z;
+    }
+
+    Vector3d getPosition(int index) {
+        this.bind(index);
+        return this.position;
+    }
+
+    Vector3d getVelocity(int index) {
+        this.bind(index);
+        return this.velocity;
+    }
+
+    Vector3f getRotation(int index) {
+        this.bind(index);
+        return this.rotation;
+    }
+
+    BlockPos.MutableBlockPos getBlockPosition(int index) {
+        Vector3d position = this.getPosition(index);
+        return this.blockPosition.set(position.x, position.y, position.z);
+    }
+
+    float getRadius(int index) {
+        return this.radii[index];
+    }
+
+    void setRadius(int index, float radius) {
+        this.radii[index] = radius;
+    }
+
+    int getAge(int index) {
+        return this.ages[index];
+    }
+
+    void setAge(int index, int age) {
+        this.ages[index] = age;
+    }
+
+    int getLifetime(int index) {
+        return this.lifetimes[index];
+    }
+
+    /**
+     * Captures the current state of all particles as the start of the interpolation for the next frames.
+     */
+    void tickRender() {
+        this.bind(-1);
+        System.arraycopy(this.positions, 0, this.prevPositions, 0, this.size * 3);
+        System.arraycopy(this.rotations, 0, this.prevRotations, 0, this.size * 3);
+        System.arraycopy(this.radii, 0, this.prevRadii, 0, this.size);
+    }
+
+    /**
+     * Captures the current state of a particle as the start of the interpolation for the next frames.
+     *
+     * @param index      The slot to update
+     * @param lightColor The packed light color of the particle
+     */
+    void tickRender(int index, int lightColor) {
+        this.bind(-1);
+        System.arraycopy(this.positions, index * 3, this.prevPositions, index * 3, 3);
+        System.arraycopy(this.rotations, index * 3, this.prevRotations, index * 3, 3);
+        this.prevRadii[index] = this.radii[index];
+        this.lightColors[index] = lightColor;
+    }
+
+    /**
+     * Interpolates the render state of a particle between the last tick and the current state.
+     *
+     * @param index        The slot to update
+     * @param partialTicks The percentage from last tick to this tick
+     * @param lifetime     The lifetime to calculate the age percentage with
+     */
+    void updateRender(int index, float partialTicks, int lifetime) {
+        this.bind(-1);
+        for (int i = index * 3; i < index * 3 + 3; i++) {
+            this.renderPositions[i] = Mth.lerp(partialTicks, this.prevPositions[i], this.positions[i]);
+            this.renderRotations[i] = Mth.lerp(partialTicks, this.prevRotations[i], this.rotations[i]);
+        }
+        this.renderRadii[index] = Mth.lerp(partialTicks, this.prevRadii[index], this.radii[index]);
+        this.renderAges[index] = this.ages[index] + partialTicks;
+        this.agePercents[index] = Math.min(this.renderAges[index] / (float) lifetime, 1.0F);
+    }
+
+    /**
+     * @param index The slot to view or <code>-1</code> for the default state
+     * @return The render state cursor bound to the specified slot
+     */
+    RenderData getRenderData(int index) {
+        this.renderData.bind(index);
+        return this.renderData;
+    }
+
+    private void updateRenderType(int index) {
+        TextureAtlasSprite atlasSprite = this.atlasSprites[index];
+        SpriteData spriteData = this.spriteData[index];
+        if (atlasSprite != null) {
+            this.renderTypes[index] = VeilRenderType.quasarParticle(atlasSprite.atlasLocation(), this.additive[index]);
+        } else if (spriteData != null) {
+            this.renderTypes[index] = VeilRenderType.quasarParticle(spriteData.sprite(), this.additive[index]);
+        } else {
+            this.renderTypes[index] = VeilRenderType.quasarParticle(BLANK, this.additive[index]);
+        }
+    }
+
+    boolean isAdditive(int index) {
+        return this.additive[index];
+    }
+
+    @Nullable
+    SpriteData getSpriteData(int index) {
+        return this.spriteData[index];
+    }
+
+    void setSpriteData(int index, @Nullable SpriteData spriteData) {
+        this.spriteData[index] = spriteData;
+        this.updateRenderType(index);
+    }
+
+    @Nullable
+    TextureAtlasSprite getAtlasSprite(int index) {
+        return this.atlasSprites[index];
+    }
+
+    void setAtlasSprite(int index, @Nullable TextureAtlasSprite atlasSprite) {
+        this.atlasSprites[index] = atlasSprite;
+        this.updateRenderType(index);
+    }
+
+    RenderType getRenderType(int index) {
+        return this.renderTypes[index];
+    }
+
+    List<Trail> getTrails(int index) {
+        List<Trail> trails = this.trails[index];
+        if (trails == null) {
+            trails = this.trails[index] = new ArrayList<>();
+        }
+        return trails;
+    }
+
+    @Nullable
+    List<Trail> getTrailsOrNull(int index) {
+        return this.trails[index];
+    }
+
+    /**
+     * @return Whether every particle uses the same render type
+     */
+    public boolean hasSingleRenderType() {
+        for (int i = 1; i < this.size; i++) {
+            if (this.renderTypes[i] != this.renderTypes[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets whether the previous slot of each particle should be recorded. Enabling this marks every current particle as new.
+     *
+     * @param trackSources Whether to track sources
+     */
+    public void setTrackSources(boolean trackSources) {
+        this.trackSources = trackSources;
+        if (trackSources) {
+            Arrays.fill(this.sources, 0, this.size, -1);
+            this.sourcesChanged = true;
+        }
+    }
+
+    /**
+     * Marks the current slot of every particle as its source.
+     */
+    public void resetSources() {
+        for (int i = 0; i < this.size; i++) {
+            this.sources[i] = i;
+        }
+        this.sourcesChanged = false;
+    }
+
+    /**
+     * @return Whether any particle was added or moved since the last call to {@link #resetSources()}
+     */
+    public boolean hasSourcesChanged() {
+        return this.sourcesChanged;
+    }
+
+    /**
+     * @return The slot each particle was in when {@link #resetSources()} was last called or a negative number for particles added since.
+     * Only the first <code>size</code> values are valid
+     */
+    public int[] getSources() {
+        return this.sources;
+    }
+
+    /**
+     * @return A counter that changes every time particles are moved to a different slot
+     */
+    public int getLayoutVersion() {
+        return this.layoutVersion;
+    }
+
+    /**
+     * @param index The slot to get the particle from
+     * @return The particle viewing the specified slot
+     */
+    public QuasarParticle get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.particles[index];
+    }
+
+    /**
+     * @return The number of live particles
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Whether there are no live particles
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> positions. Only the first <code>size * 3</code> values are valid
+     */
+    public double[] getPositions() {
+        this.bind(-1);
+        return this.positions;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> velocities. Only the first <code>size * 3</code> values are valid
+     */
+    public double[] getVelocities() {
+        this.bind(-1);
+        return this.velocities;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> rotations in radians. Only the first <code>size * 3</code> values are valid
+     */
+    public float[] getRotations() {
+        this.bind(-1);
+        return this.rotations;
+    }
+
+    /**
+     * @return The raw radius of each particle. Only the first <code>size</code> values are valid
+     */
+    public float[] getRadii() {
+        return this.radii;
+    }
+
+    /**
+     * @return The raw age of each particle. Only the first <code>size</code> values are valid
+     */
+    public int[] getAges() {
+        return this.ages;
+    }
+
+    /**
+     * @return The raw lifetime of each particle. Only the first <code>size</code> values are valid
+     */
+    public int[] getLifetimes() {
+        return this.lifetimes;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> positions as of the last tick. Only the first <code>size * 3</code> values are valid
+     */
+    public double[] getPrevPositions() {
+        return this.prevPositions;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> interpolated positions. Only the first <code>size * 3</code> values are valid
+     */
+    public double[] getRenderPositions() {
+        return this.renderPositions;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> rotations as of the last tick. Only the first <code>size * 3</code> values are valid
+     */
+    public float[] getPrevRotations() {
+        return this.prevRotations;
+    }
+
+    /**
+     * @return The raw packed <code>x, y, z</code> interpolated rotations. Only the first <code>size * 3</code> values are valid
+     */
+    public float[] getRenderRotations() {
+        return this.renderRotations;
+    }
+
+    /**
+     * @return The raw interpolated radius of each particle. Only the first <code>size</code> values are valid
+     */
+    public float[] getRenderRadii() {
+        return this.renderRadii;
+    }
+
+    /**
+     * @return The raw interpolated age of each particle. Only the first <code>size</code> values are valid
+     */
+    public float[] getRenderAges() {
+        return this.renderAges;
+    }
+
+    /**
+     * @return The raw percentage of the lifetime of each particle. Only the first <code>size</code> values are valid
+     */
+    public float[] getAgePercents() {
+        return this.agePercents;
+    }
+
+    /**
+     * @return The raw packed light color of each particle. Only the first <code>size</code> values are valid
+     */
+    public int[] getLightColors() {
+        return this.lightColors;
+    }
+
+    /**
+     * @return The raw packed <code>r, g, b, a</code> colors. Only the first <code>size * 4</code> values are valid
+     */
+    public float[] getColors() {
+        return this.colors;
+    }
+}
@@ -7,13 +7,19 @@ import foundry.veil.api.client.render.CullFrustum;
 import foundry.veil.api.quasar.data.ParticleEmitterData;
 import foundry.veil.api.quasar.data.QuasarParticles;
 import foundry.veil.impl.TickTaskSchedulerImpl;
+import foundry.veil.impl.quasar.InstancedParticleRenderer;
+import foundry.veil.impl.quasar.QuasarComputeSimulator;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.core.SectionPos;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.Mth;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
@@ -28,19 +34,35 @@ public class ParticleSystemManager {
     private static final double REMOVAL_DISTANCE_SQ = 128.0 * 128.0;
 
     private final List<ParticleEmitter> particleEmitters;
+    private final Long2ObjectMap<EmitterSection> sections;
     private final Set<ResourceLocation> invalidEmitters;
     private final AtomicInteger particleCount;
 
     private ClientLevel level;
     private TickTaskSchedulerImpl scheduler;
+    private boolean computeSimulation;
+    private QuasarComputeSimulator computeSimulator;
+    private boolean instancedRendering;
+    private InstancedParticleRenderer instancedRenderer;
+    private double distantTickDistanceSq;
+    private int distantTickInterval;
+    private int tickCount;
 
     public ParticleSystemManager() {
         this.particleEmitters = new ArrayList<>();
+        this.sections = new Long2ObjectOpenHashMap<>();
         this.invalidEmitters = new HashSet<>();
 
         this.particleCount = new AtomicInteger();
         this.level = null;
         this.scheduler = null;
+        this.computeSimulation = false;
+        this.computeSimulator = null;
+        this.instancedRendering = false;
+        this.instancedRenderer = null;
+        this.distantTickDistanceSq = 64.0 * 64.0;
+        this.distantTickInterval = 1;
+        this.tickCount = 0;
     }
 
     @ApiStatus.Internal
@@ -49,6 +71,14 @@ public class ParticleSystemManager {
         if (this.scheduler != null) {
             this.scheduler.shutdown();
         }
+        if (this.computeSimulator != null) {
+            this.computeSimulator.free();
+            this.computeSimulator = null;
+        }
+        if (this.instancedRenderer != null) {
+            this.instancedRenderer.free();
+            this.instancedRenderer = null;
+        }
 
         this.level = level;
         this.scheduler = new TickTaskSchedulerImpl();
@@ -69,7 +99,10 @@ public class ParticleSystemManager {
     }
 
     public void addParticleSystem(ParticleEmitter particleEmitter) {
-        this.scheduler.execute(() -> this.particleEmitters.add(particleEmitter));
+        this.scheduler.execute(() -> {
+            this.particleEmitters.add(particleEmitter);
+            this.updateSection(particleEmitter);
+        });
     }
 
     public void clear() {
@@ -77,6 +110,32 @@ public class ParticleSystemManager {
             particleEmitter.onRemoved();
         }
         this.particleEmitters.clear();
+        this.sections.clear();
+    }
+
+    private void updateSection(ParticleEmitter emitter) {
+        Vector3d pos = emitter.getPosition();
+        long sectionPos = SectionPos.asLong(SectionPos.posToSectionCoord(pos.x), SectionPos.posToSectionCoord(pos.y), SectionPos.posToSectionCoord(pos.z));
+        long oldSectionPos = emitter.getSectionPos();
+        if (sectionPos == oldSectionPos) {
+            return;
+        }
+
+        this.removeFromSection(emitter);
+        emitter.setSectionPos(sectionPos);
+        this.sections.computeIfAbsent(sectionPos, unused -> new EmitterSection()).emitters.add(emitter);
+    }
+
+    private void removeFromSection(ParticleEmitter emitter) {
+        long sectionPos = emitter.getSectionPos();
+        EmitterSection section = this.sections.get(sectionPos);
+        if (section != null) {
+            section.emitters.remove(emitter);
+            if (section.emitters.isEmpty()) {
+                this.sections.remove(sectionPos);
+            }
+        }
+        emitter.setSectionPos(Long.MAX_VALUE);
     }
 
     @ApiStatus.Internal
@@ -87,27 +146,88 @@ public class ParticleSystemManager {
 
         this.scheduler.run();
         this.particleCount.set(0);
+        this.tickCount++;
+
+        Entity cameraEntity = Minecraft.getInstance().cameraEntity;
+        boolean reduceDistant = this.distantTickInterval > 1 && cameraEntity != null;
         Iterator<ParticleEmitter> iterator = this.particleEmitters.iterator();
         while (iterator.hasNext()) {
             ParticleEmitter emitter = iterator.next();
-            emitter.tick();
+            if (reduceDistant) {
+                Vector3d pos = emitter.getPosition();
+                // Offset by identity so distant emitters don't all tick on the same frame
+                if (cameraEntity.distanceToSqr(pos.x, pos.y, pos.z) > this.distantTickDistanceSq && (this.tickCount + System.identityHashCode(emitter)) % this.distantTickInterval != 0) {
+                    this.particleCount.addAndGet(emitter.getParticleCount());
+                    continue;
+                }
+            }
+
+            emitter.tick(this.tickCount);
             if (emitter.isRemoved()) {
                 emitter.onRemoved();
+                this.removeFromSection(emitter);
                 iterator.remove();
                 continue;
             }
 
+            this.updateSection(emitter);
             this.particleCount.addAndGet(emitter.getParticleCount());
         }
+
+        for (EmitterSection section : this.sections.values()) {
+            section.updateBounds();
+        }
     }
 
     @ApiStatus.Internal
     public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, CullFrustum frustum, float partialTicks) {
-        // TODO store emitters per-chunk and fetch them from the renderer
+        for (EmitterSection section : this.sections.values()) {
+            boolean sectionVisible = section.isVisible(frustum);
+            List<ParticleEmitter> emitters = section.emitters;
+            for (int i = 0; i < emitters.size(); i++) {
+                ParticleEmitter emitter = emitters.get(i);
+                // A section with a single emitter has the same bounds as the emitter
+                emitter.setVisible(sectionVisible && (emitters.size() == 1 || frustum.testAab(emitter.getBoundsMin(), emitter.getBoundsMax())));
+            }
+        }
 
-        this.particleEmitters.sort(Comparator.comparingDouble(a -> -a.getPosition().distanceSquared(camera.getPosition().x, camera.getPosition().y, camera.getPosition().z)));
-        for (ParticleEmitter emitter : this.particleEmitters) {
-            emitter.render(poseStack, bufferSource, camera, partialTicks);
+        Vec3 cameraPos = camera.getPosition();
+        for (int i = 0; i < this.particleEmitters.size(); i++) {
+            ParticleEmitter emitter = this.particleEmitters.get(i);
+            emitter.setRenderDistanceSq(emitter.getPosition().distanceSquared(cameraPos.x, cameraPos.y, cameraPos.z));
+        }
+        sortFarthestFirst(this.particleEmitters);
+
+        InstancedParticleRenderer instancedRenderer = this.getInstancedRenderer();
+        for (int i = 0; i < this.particleEmitters.size(); i++) {
+            ParticleEmitter emitter = this.particleEmitters.get(i);
+            if (emitter.isVisible()) {
+                emitter.render(poseStack, bufferSource, camera, partialTicks, instancedRenderer);
+            } else {
+                emitter.renderCulled(partialTicks);
+            }
+        }
+        if (instancedRenderer != null) {
+            instancedRenderer.draw(poseStack, partialTicks);
+        }
+    }
+
+    /**
+     * Insertion sorts emitters from farthest to nearest. Emitter order barely changes between frames,
+     * so this is close to linear instead of a full sort every frame.
+     *
+     * @param emitters The emitters to sort
+     */
+    private static void sortFarthestFirst(List<ParticleEmitter> emitters) {
+        for (int i = 1; i < emitters.size(); i++) {
+            ParticleEmitter emitter = emitters.get(i);
+            double distance = emitter.getRenderDistanceSq();
+            int j = i - 1;
+            while (j >= 0 && emitters.get(j).getRenderDistanceSq() < distance) {
+                emitters.set(j + 1, emitters.get(j));
+                j--;
+            }
+            emitters.set(j + 1, emitter);
         }
     }
 
@@ -144,6 +264,81 @@ public class ParticleSystemManager {
         return this.scheduler;
     }
 
+    /**
+     * @return The GPU particle simulator or <code>null</code> if compute simulation is disabled or unsupported
+     */
+    @ApiStatus.Internal
+    public @Nullable QuasarComputeSimulator getComputeSimulator() {
+        if (!this.computeSimulation || !QuasarComputeSimulator.isSupported()) {
+            return null;
+        }
+        if (this.computeSimulator == null) {
+            this.computeSimulator = new QuasarComputeSimulator();
+        }
+        return this.computeSimulator;
+    }
+
+    /**
+     * @return Whether emitters that only use GPU-expressible modules are simulated with compute shaders
+     */
+    public boolean isComputeSimulation() {
+        return this.computeSimulation;
+    }
+
+    /**
+     * Sets whether emitters that only use GPU-expressible modules should be simulated with compute shaders.
+     * Emitters using update modules, collision, or {@link foundry.veil.api.quasar.data.module.CodeModule} always run on the CPU.
+     * Simulated particles share their modules with the rest of the emitter and their CPU positions are one tick behind.
+     *
+     * @param computeSimulation Whether to enable compute simulation
+     */
+    public void setComputeSimulation(boolean computeSimulation) {
+        this.computeSimulation = computeSimulation;
+    }
+
+    /**
+     * @return The instanced particle renderer or <code>null</code> if instanced rendering is disabled
+     */
+    @ApiStatus.Internal
+    public @Nullable InstancedParticleRenderer getInstancedRenderer() {
+        if (!this.instancedRendering) {
+            return null;
+        }
+        if (this.instancedRenderer == null) {
+            this.instancedRenderer = new InstancedParticleRenderer();
+        }
+        return this.instancedRenderer;
+    }
+
+    /**
+     * @return Whether billboard and cube particles are drawn with instanced draw calls
+     */
+    public boolean isInstancedRendering() {
+        return this.instancedRendering;
+    }
+
+    /**
+     * Sets whether billboard and cube particles should be drawn with instanced draw calls. Disabled by default.
+     * Particles using custom {@link RenderStyle} implementations, or render types without an instanced program for the active renderer, always use the buffer source.
+     *
+     * @param instancedRendering Whether to enable instanced rendering
+     */
+    public void setInstancedRendering(boolean instancedRendering) {
+        this.instancedRendering = instancedRendering;
+    }
+
+    /**
+     * Sets how emitters far from the camera are ticked. Emitters farther than the specified distance only tick once every <code>interval</code> ticks.
+     * Particles in those emitters are still aged by every tick that was skipped, so they expire on time.
+     *
+     * @param distance The distance from the camera after which emitters tick less often
+     * @param interval The number of ticks between updates of distant emitters. <code>1</code> ticks all emitters every tick
+     */
+    public void setDistantTickRate(double distance, int interval) {
+        this.distantTickDistanceSq = distance * distance;
+        this.distantTickInterval = Math.max(interval, 1);
+    }
+
     public int getEmitterCount() {
         return this.particleEmitters.size();
     }
@@ -151,4 +346,30 @@ public class ParticleSystemManager {
     public int getParticleCount() {
         return this.particleCount.get();
     }
+
+    private static class EmitterSection {
+
+        private final List<ParticleEmitter> emitters;
+        private final Vector3d min;
+        private final Vector3d max;
+
+        private EmitterSection() {
+            this.emitters = new ArrayList<>();
+            this.min = new Vector3d();
+            this.max = new Vector3d();
+        }
+
+        private void updateBounds() {
+            this.min.set(Double.POSITIVE_INFINITY);
+            this.max.set(Double.NEGATIVE_INFINITY);
+            for (ParticleEmitter emitter : this.emitters) {
+                this.min.min(emitter.getBoundsMin());
+                this.max.max(emitter.getBoundsMax());
+            }
+        }
+
+        private boolean isVisible(CullFrustum frustum) {
+            return frustum.testAab(this.min, this.max);
+        }
+    }
 }
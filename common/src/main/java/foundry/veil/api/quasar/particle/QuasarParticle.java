@@ -1,6 +1,5 @@
 package foundry.veil.api.quasar.particle;
 
-import com.google.common.base.Suppliers;
 import foundry.veil.api.TickTaskScheduler;
 import foundry.veil.api.quasar.data.ParticleSettings;
 import foundry.veil.api.quasar.data.QuasarParticleData;
@@ -24,8 +23,14 @@ import org.joml.Vector3f;
 
 import java.util.Iterator;
 import java.util.List;
-import java.util.function.Supplier;
 
+/**
+ * <p>A single particle spawned by a {@link ParticleEmitter}.</p>
+ * <p>The simulation state (position, velocity, rotation, radius, age, and lifetime) is not stored in this object.
+ * Instead, it is a view into the {@link ParticleStorage} of the owning emitter.</p>
+ * <p>Once removed from the emitter, the last state of the particle is kept so it can still be queried.
+ * Changes made to a removed particle have no effect.</p>
+ */
 public class QuasarParticle {
 
     private static final double MAXIMUM_COLLISION_VELOCITY_SQUARED = Mth.square(100.0D);
@@ -37,19 +42,25 @@ public class QuasarParticle {
     private final ParticleSettings settings;
     private final ParticleEmitter emitter;
     private final ParticleModuleSet modules;
-    private final Vector3d position;
-    private final Vector3d velocity;
-    private final Vector3f rotation;
-    private final BlockPos.MutableBlockPos blockPosition;
+    private final ParticleStorage storage;
     private final boolean hasCollision;
-    private float radius;
-    private final int lifetime;
-    private int age;
-    private AABB boundingBox;
+    private int index;
+    private boolean removed;
     private boolean stoppedByCollision;
 
-    private final Supplier<MolangRuntime> environment;
-    private final RenderData renderData;
+    // The last state of the particle once it has been removed from the storage
+    private double detachedX, detachedY, detachedZ;
+    private double detachedVelocityX, detachedVelocityY, detachedVelocityZ;
+    private float detachedXRot, detachedYRot, detachedZRot;
+    private float detachedRadius;
+    private int detachedAge;
+    private int detachedLifetime;
+    // Only allocated if a removed particle is queried
+    private Vector3d detachedPosition;
+    private Vector3d detachedVelocity;
+    private Vector3f detachedRotation;
+
+    private MolangRuntime environment;
 
     public QuasarParticle(ClientLevel level, RandomSource randomSource, TickTaskScheduler scheduler, QuasarParticleData data, ParticleModuleSet modules, ParticleSettings settings, ParticleEmitter emitter) {
         this.level = level;
@@ -59,34 +70,32 @@ public class QuasarParticle {
         this.settings = settings;
         this.emitter = emitter;
         this.modules = modules;
-        this.position = new Vector3d();
-        this.velocity = new Vector3d();
-        this.rotation = new Vector3f();
-        this.blockPosition = new BlockPos.MutableBlockPos();
+        this.storage = emitter.getStorage();
         this.hasCollision = this.modules.getCollisionModules().length > 0;
-        this.radius = settings.particleSize(this.randomSource);
-        this.lifetime = settings.particleLifetime(this.randomSource);
-        this.age = 0;
+        this.index = this.storage.add(this, data, settings.particleSize(this.randomSource), settings.particleLifetime(this.randomSource));
 
-        this.renderData = new RenderData(data);
         // Don't create the environment if the particle never uses it
-        this.environment = Suppliers.memoize(() -> MolangRuntime.runtime()
-                .setQuery("x", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().x()))
-                .setQuery("y", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().y()))
-                .setQuery("z", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().z()))
-                .setQuery("velX", MolangExpression.of(() -> (float) this.velocity.x()))
-                .setQuery("velY", MolangExpression.of(() -> (float) this.velocity.y()))
-                .setQuery("velZ", MolangExpression.of(() -> (float) this.velocity.z()))
-                .setQuery("speedSq", MolangExpression.of(() -> (float) this.velocity.lengthSquared()))
-                .setQuery("speed", MolangExpression.of(() -> (float) this.velocity.length()))
-                .setQuery("xRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().x())))
-                .setQuery("yRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().y())))
-                .setQuery("zRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().z())))
-                .setQuery("scale", MolangExpression.of(this.renderData::getRenderRadius))
-                .setQuery("age", MolangExpression.of(this.renderData::getRenderAge))
-                .setQuery("agePercent", MolangExpression.of(this.renderData::getAgePercent))
-                .setQuery("lifetime", this.lifetime)
-                .create());
+        this.environment = null;
+    }
+
+    private MolangRuntime createEnvironment() {
+        return MolangRuntime.runtime()
+                .setQuery("x", MolangExpression.of(() -> (float) this.getRenderData().getRenderPosition().x()))
+                .setQuery("y", MolangExpression.of(() -> (float) this.getRenderData().getRenderPosition().y()))
+                .setQuery("z", MolangExpression.of(() -> (float) this.getRenderData().getRenderPosition().z()))
+                .setQuery("velX", MolangExpression.of(() -> (float) this.getVelocity().x()))
+                .setQuery("velY", MolangExpression.of(() -> (float) this.getVelocity().y()))
+                .setQuery("velZ", MolangExpression.of(() -> (float) this.getVelocity().z()))
+                .setQuery("speedSq", MolangExpression.of(() -> (float) this.getVelocity().lengthSquared()))
+                .setQuery("speed", MolangExpression.of(() -> (float) this.getVelocity().length()))
+                .setQuery("xRot", MolangExpression.of(() -> (float) Math.toDegrees(this.getRenderData().getRenderRotation().x())))
+                .setQuery("yRot", MolangExpression.of(() -> (float) Math.toDegrees(this.getRenderData().getRenderRotation().y())))
+                .setQuery("zRot", MolangExpression.of(() -> (float) Math.toDegrees(this.getRenderData().getRenderRotation().z())))
+                .setQuery("scale", MolangExpression.of(() -> this.getRenderData().getRenderRadius()))
+                .setQuery("age", MolangExpression.of(() -> this.getRenderData().getRenderAge()))
+                .setQuery("agePercent", MolangExpression.of(() -> this.getRenderData().getAgePercent()))
+                .setQuery("lifetime", this.getStoredLifetime())
+                .create();
     }
 
     private void move(double dx, double dy, double dz) {
@@ -94,10 +103,10 @@ public class QuasarParticle {
             return;
         }
 
-        AABB box = this.getBoundingBox();
         double d0 = dx;
         double d1 = dy;
         double d2 = dz;
+        AABB box = this.hasCollision ? this.getBoundingBox() : null;
         if (this.hasCollision && dx * dx + dy * dy + dz * dz < MAXIMUM_COLLISION_VELOCITY_SQUARED) {
             Vec3 vec3 = Entity.collideBoundingBox(null, new Vec3(dx, dy, dz), box, this.level, List.of());
             dx = vec3.x;
@@ -106,8 +115,7 @@ public class QuasarParticle {
         }
 
         if (dx != 0.0D || dy != 0.0D || dz != 0.0D) {
-            this.position.add(dx, dy, dz);
-            this.updateBoundingBox();
+            this.getPosition().add(dx, dy, dz);
         }
 
         if (!this.hasCollision) {
@@ -126,18 +134,19 @@ public class QuasarParticle {
             this.stoppedByCollision = true;
         }
 
+        Vector3d velocity = this.getVelocity();
         if (d0 != dx) {
-            this.velocity.x = 0;
+            velocity.x = 0;
             this.stoppedByCollision = true;
         }
 
         if (d1 != dy) {
-            this.velocity.y = 0;
+            velocity.y = 0;
             this.stoppedByCollision = true;
         }
 
         if (d2 != dz) {
-            this.velocity.z = 0;
+            velocity.z = 0;
             this.stoppedByCollision = true;
         }
 
@@ -149,11 +158,6 @@ public class QuasarParticle {
         }
     }
 
-    private void updateBoundingBox() {
-        double r = this.radius / 2.0;
-        this.boundingBox = new AABB(this.position.x - r, this.position.y - r, this.position.z - r, this.position.x + r, this.position.y + r, this.position.z + r);
-    }
-
     private int getLightColor() {
         return LevelRenderer.getLightColor(this.level, this.getBlockPosition());
     }
@@ -163,14 +167,14 @@ public class QuasarParticle {
         for (InitParticleModule initModule : this.modules.getInitModules()) {
             initModule.init(this);
         }
-        this.renderData.tick(this, this.getLightColor());
-        this.updateBoundingBox();
+        if (this.index >= 0) {
+            this.storage.tickRender(this.index, this.getLightColor());
+        }
     }
 
     @ApiStatus.Internal
     public void tick() {
-        this.renderData.tick(this, this.getLightColor());
-        this.modules.updateEnabled();
+        this.preTick();
         for (UpdateParticleModule updateModule : this.modules.getUpdateModules()) {
             updateModule.update(this);
         }
@@ -180,10 +184,26 @@ public class QuasarParticle {
             updateModule.applyForce(this);
         }
 
-        this.move(this.velocity.x, this.velocity.y, this.velocity.z);
+        Vector3d velocity = this.getVelocity();
+        this.move(velocity.x, velocity.y, velocity.z);
+        this.postTick();
+    }
+
+    /**
+     * Captures the previous render state. Runs before forces and movement are applied.
+     */
+    void preTick() {
+        this.storage.tickRender(this.index, this.getLightColor());
+        this.modules.updateEnabled();
+    }
 
-        this.age++;
-        if (this.age >= this.lifetime) {
+    /**
+     * Ages the particle after forces and movement have been applied.
+     */
+    void postTick() {
+        int age = this.storage.getAge(this.index) + 1;
+        this.storage.setAge(this.index, age);
+        if (age >= this.storage.getLifetime(this.index)) {
             this.remove();
         }
     }
@@ -194,7 +214,9 @@ public class QuasarParticle {
         while (iterator.hasNext()) {
             iterator.next().render(this, partialTicks);
         }
-        this.renderData.render(this, partialTicks);
+        if (this.index >= 0) {
+            this.storage.updateRender(this.index, partialTicks, this.getLifetime());
+        }
     }
 
     @ApiStatus.Internal
@@ -204,12 +226,45 @@ public class QuasarParticle {
         }
     }
 
+    @ApiStatus.Internal
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Copies the state of this particle out of the storage before its slot is released.
+     */
+    void detach() {
+        if (this.index < 0) {
+            return;
+        }
+
+        int offset = this.index * 3;
+        double[] positions = this.storage.getPositions();
+        double[] velocities = this.storage.getVelocities();
+        float[] rotations = this.storage.getRotations();
+        this.detachedX = positions[offset];
+        this.detachedY = positions[offset + 1];
+        this.detachedZ = positions[offset + 2];
+        this.detachedVelocityX = velocities[offset];
+        this.detachedVelocityY = velocities[offset + 1];
+        this.detachedVelocityZ = velocities[offset + 2];
+        this.detachedXRot = rotations[offset];
+        this.detachedYRot = rotations[offset + 1];
+        this.detachedZRot = rotations[offset + 2];
+        this.detachedRadius = this.storage.getRadius(this.index);
+        this.detachedAge = this.storage.getAge(this.index);
+        this.detachedLifetime = this.storage.getLifetime(this.index);
+        this.index = -1;
+        this.removed = true;
+    }
+
     public void remove() {
-        this.age = Integer.MIN_VALUE;
+        this.removed = true;
     }
 
     public boolean isRemoved() {
-        return this.age < 0;
+        return this.removed;
     }
 
     public ClientLevel getLevel() {
@@ -240,37 +295,73 @@ public class QuasarParticle {
         return this.modules;
     }
 
+    /**
+     * @return The position of this particle. This is a shared cursor and is only valid until another particle of the same emitter is accessed
+     */
     public Vector3d getPosition() {
-        return this.position;
+        if (this.index >= 0) {
+            return this.storage.getPosition(this.index);
+        }
+        if (this.detachedPosition == null) {
+            this.detachedPosition = new Vector3d();
+        }
+        // Reset every time since changes to a removed particle have no effect
+        return this.detachedPosition.set(this.detachedX, this.detachedY, this.detachedZ);
     }
 
     public BlockPos getBlockPosition() {
-        return this.blockPosition.set(this.position.x, this.position.y, this.position.z);
+        if (this.index >= 0) {
+            return this.storage.getBlockPosition(this.index);
+        }
+        return BlockPos.containing(this.detachedX, this.detachedY, this.detachedZ);
     }
 
+    /**
+     * @return The velocity of this particle. This is a shared cursor and is only valid until another particle of the same emitter is accessed
+     */
     public Vector3d getVelocity() {
-        return this.velocity;
+        if (this.index >= 0) {
+            return this.storage.getVelocity(this.index);
+        }
+        if (this.detachedVelocity == null) {
+            this.detachedVelocity = new Vector3d();
+        }
+        return this.detachedVelocity.set(this.detachedVelocityX, this.detachedVelocityY, this.detachedVelocityZ);
     }
 
     public BlockState getBlockStateInOrUnder() {
-        BlockState in = this.level.getBlockState(BlockPos.containing(this.position.x, this.position.y + 0.5, this.position.z));
+        Vector3d position = this.getPosition();
+        BlockState in = this.level.getBlockState(BlockPos.containing(position.x, position.y + 0.5, position.z));
         if (!in.isAir()) {
             return in;
         }
 
-        return this.level.getBlockState(BlockPos.containing(this.position.x, this.position.y - 0.5, this.position.z));
+        return this.level.getBlockState(BlockPos.containing(position.x, position.y - 0.5, position.z));
     }
 
+    /**
+     * @return The rotation of this particle. This is a shared cursor and is only valid until another particle of the same emitter is accessed
+     */
     public Vector3f getRotation() {
-        return this.rotation;
+        if (this.index >= 0) {
+            return this.storage.getRotation(this.index);
+        }
+        if (this.detachedRotation == null) {
+            this.detachedRotation = new Vector3f();
+        }
+        return this.detachedRotation.set(this.detachedXRot, this.detachedYRot, this.detachedZRot);
     }
 
     public float getRadius() {
-        return this.radius;
+        return this.index >= 0 ? this.storage.getRadius(this.index) : this.detachedRadius;
     }
 
     public int getAge() {
-        return this.age;
+        return this.index >= 0 ? this.storage.getAge(this.index) : this.detachedAge;
+    }
+
+    private int getStoredLifetime() {
+        return this.index >= 0 ? this.storage.getLifetime(this.index) : this.detachedLifetime;
     }
 
     public int getLifetime() {
@@ -278,27 +369,38 @@ public class QuasarParticle {
     }
 
     public AABB getBoundingBox() {
-        return this.boundingBox;
+        Vector3d position = this.getPosition();
+        double r = this.getRadius() / 2.0;
+        return new AABB(position.x - r, position.y - r, position.z - r, position.x + r, position.y + r, position.z + r);
     }
 
+    /**
+     * @return The render state of this particle. This is a shared cursor and is only valid until another particle of the same emitter is accessed
+     */
     public RenderData getRenderData() {
-        return this.renderData;
+        return this.storage.getRenderData(this.index);
     }
 
     public MolangEnvironment getEnvironment() {
-        return this.environment.get();
+        if (this.environment == null) {
+            this.environment = this.createEnvironment();
+        }
+        return this.environment;
     }
 
     public void vectorToRotation(double x, double y, double z) {
-        this.rotation.set((float) Math.asin(y), (float) Math.atan2(x, z), 0);
+        this.getRotation().set((float) Math.asin(y), (float) Math.atan2(x, z), 0);
     }
 
     public void setRadius(float radius) {
-        this.radius = radius;
-        this.updateBoundingBox();
+        if (this.index >= 0) {
+            this.storage.setRadius(this.index, radius);
+        }
     }
 
     public void setAge(int age) {
-        this.age = age;
+        if (this.index >= 0) {
+            this.storage.setAge(this.index, age);
+        }
     }
 }
@@ -1,204 +1,207 @@
 package foundry.veil.api.quasar.particle;
 
 import com.mojang.blaze3d.vertex.PoseStack;
-import foundry.veil.Veil;
 import foundry.veil.api.client.render.rendertype.VeilRenderType;
-import foundry.veil.api.quasar.data.QuasarParticleData;
 import foundry.veil.api.quasar.fx.Trail;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
-import net.minecraft.resources.ResourceLocation;
-import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
-import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.joml.*;
 
-import java.lang.Math;
-import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * <p>The render state of a single particle.</p>
+ * <p>Render state is stored in the {@link ParticleStorage} of the owning emitter, so this is a cursor shared by every
+ * particle in the same emitter. It is only valid until {@link QuasarParticle#getRenderData()} is called for another
+ * particle of the same emitter. Removed particles see the default state and ignore all changes.</p>
+ */
 public class RenderData {
 
-    @Deprecated
-    private static final ResourceLocation BLANK = Veil.veilPath("textures/special/blank.png");
-
-    private final Vector3d prevPosition;
+    private final ParticleStorage storage;
     private final Vector3d renderPosition;
-    private final Vector3f prevRotation;
     private final Vector3f renderRotation;
-    private float prevRadius;
-    private float renderRadius;
-    private int lightColor;
-    private float red;
-    private float green;
-    private float blue;
-    private float alpha;
-    public float renderAge;
-    public float agePercent;
-    private final boolean additive;
-    private SpriteData spriteData;
-    private TextureAtlasSprite atlasSprite;
-    private RenderType renderType;
-    private final List<Trail> trails;
-
-    public RenderData(QuasarParticleData data) {
-        this.prevPosition = new Vector3d();
+    private int index;
+
+    RenderData(ParticleStorage storage) {
+        this.storage = storage;
         this.renderPosition = new Vector3d();
-        this.prevRotation = new Vector3f();
         this.renderRotation = new Vector3f();
-        this.prevRadius = 1.0F;
-        this.renderRadius = 1.0F;
-        this.lightColor = LightTexture.FULL_BRIGHT;
-        this.red = 1.0F;
-        this.green = 1.0F;
-        this.blue = 1.0F;
-        this.alpha = 1.0F;
-        this.renderAge = 0.0F;
-        this.additive = data.additive();
-        this.spriteData = data.spriteData();
-        this.atlasSprite = null;
-        this.updateRenderType();
-        this.trails = new ArrayList<>();
-    }
-
-    private void updateRenderType() {
-        if (this.atlasSprite != null) {
-            this.renderType = VeilRenderType.quasarParticle(this.atlasSprite.atlasLocation(), this.additive);
-        } else if (this.spriteData != null) {
-            this.renderType = VeilRenderType.quasarParticle(this.spriteData.sprite(), this.additive);
-        } else {
-            this.renderType = VeilRenderType.quasarParticle(BLANK, this.additive);
-        }
+        this.index = -1;
     }
 
-    @ApiStatus.Internal
-    public void tick(QuasarParticle particle, int lightColor) {
-        this.prevPosition.set(particle.getPosition());
-        this.prevRotation.set(particle.getRotation());
-        this.prevRadius = particle.getRadius();
-        this.lightColor = lightColor;
-    }
-
-    @ApiStatus.Internal
-    public void render(QuasarParticle particle, float partialTicks) {
-        this.prevPosition.lerp(particle.getPosition(), partialTicks, this.renderPosition);
-        this.prevRotation.lerp(particle.getRotation(), partialTicks, this.renderRotation);
-        this.renderRadius = Mth.lerp(partialTicks, this.prevRadius, particle.getRadius());
-        this.renderAge = particle.getAge() + partialTicks;
-        this.agePercent = Math.min(this.renderAge / (float) particle.getLifetime(), 1.0F);
+    void bind(int index) {
+        this.index = index;
     }
 
     public Vector3dc getRenderPosition() {
-        return this.renderPosition;
+        if (this.index < 0) {
+            return this.renderPosition.zero();
+        }
+        double[] positions = this.storage.getRenderPositions();
+        int offset = this.index * 3;
+        return this.renderPosition.set(positions[offset], positions[offset + 1], positions[offset + 2]);
     }
 
     public Vector3fc getRenderRotation() {
-        return this.renderRotation;
+        if (this.index < 0) {
+            return this.renderRotation.zero();
+        }
+        float[] rotations = this.storage.getRenderRotations();
+        int offset = this.index * 3;
+        return this.renderRotation.set(rotations[offset], rotations[offset + 1], rotations[offset + 2]);
     }
 
     public float getRenderRadius() {
-        return this.renderRadius;
+        return this.index < 0 ? 1.0F : this.storage.getRenderRadii()[this.index];
     }
 
     public float getRenderAge() {
-        return this.renderAge;
+        return this.index < 0 ? 0.0F : this.storage.getRenderAges()[this.index];
     }
 
     public float getAgePercent() {
-        return this.agePercent;
+        return this.index < 0 ? 0.0F : this.storage.getAgePercents()[this.index];
     }
 
     public int getLightColor() {
-        return this.lightColor;
+        return this.index < 0 ? LightTexture.FULL_BRIGHT : this.storage.getLightColors()[this.index];
     }
 
     public float getRed() {
-        return this.red;
+        return this.getColor(0);
     }
 
     public float getGreen() {
-        return this.green;
+        return this.getColor(1);
     }
 
     public float getBlue() {
-        return this.blue;
+        return this.getColor(2);
     }
 
     public float getAlpha() {
-        return this.alpha;
+        return this.getColor(3);
+    }
+
+    private float getColor(int component) {
+        return this.index < 0 ? 1.0F : this.storage.getColors()[this.index * 4 + component];
+    }
+
+    /**
+     * @return Whether this particle is drawn with additive blending
+     */
+    public boolean isAdditive() {
+        return this.index >= 0 && this.storage.isAdditive(this.index);
     }
 
     public @Nullable SpriteData getSpriteData() {
-        return this.spriteData;
+        return this.index < 0 ? null : this.storage.getSpriteData(this.index);
     }
 
-    public TextureAtlasSprite getAtlasSprite() {
-        return this.atlasSprite;
+    public @Nullable TextureAtlasSprite getAtlasSprite() {
+        return this.index < 0 ? null : this.storage.getAtlasSprite(this.index);
     }
 
     public RenderType getRenderType() {
-        return this.renderType;
+        return this.index < 0 ? VeilRenderType.quasarParticle(ParticleStorage.BLANK, false) : this.storage.getRenderType(this.index);
     }
 
+    /**
+     * @return The trails of this particle. The list is created the first time this is called
+     */
     public List<Trail> getTrails() {
-        return this.trails;
+        return this.index < 0 ? List.of() : this.storage.getTrails(this.index);
     }
 
     // TODO move to renderer
     public void renderTrails(PoseStack poseStack, MultiBufferSource bufferSource, Vec3 cameraPos, int packedLight) {
-        if (this.trails.isEmpty()) {
+        List<Trail> trails = this.pushTrailPoints();
+        if (trails == null) {
             return;
         }
 
         poseStack.pushPose();
         poseStack.translate(-cameraPos.x(), -cameraPos.y(), -cameraPos.z());
-        for (Trail trail : this.trails) {
-            trail.pushRotatedPoint(new Vec3(this.prevPosition.x, this.prevPosition.y, this.prevPosition.z), new Vec3(this.prevRotation.x, this.prevRotation.y, this.prevRotation.z));
+        for (Trail trail : trails) {
             trail.render(poseStack, bufferSource.getBuffer(VeilRenderType.quasarTrail(trail.getTexture())), packedLight);
         }
         poseStack.popPose();
     }
 
+    /**
+     * Adds the current position of this particle to all of its trails.
+     *
+     * @return The trails of this particle or <code>null</code> if it has none
+     */
+    @Nullable List<Trail> pushTrailPoints() {
+        List<Trail> trails = this.index < 0 ? null : this.storage.getTrailsOrNull(this.index);
+        if (trails == null || trails.isEmpty()) {
+            return null;
+        }
+
+        double[] positions = this.storage.getPrevPositions();
+        float[] rotations = this.storage.getPrevRotations();
+        int offset = this.index * 3;
+        Vec3 position = new Vec3(positions[offset], positions[offset + 1], positions[offset + 2]);
+        Vec3 rotation = new Vec3(rotations[offset], rotations[offset + 1], rotations[offset + 2]);
+        for (Trail trail : trails) {
+            trail.pushRotatedPoint(position, rotation);
+        }
+        return trails;
+    }
+
     public void setRed(float red) {
-        this.red = red;
+        this.setColor(0, red);
     }
 
     public void setGreen(float green) {
-        this.green = green;
+        this.setColor(1, green);
     }
 
     public void setBlue(float blue) {
-        this.blue = blue;
+        this.setColor(2, blue);
     }
 
     public void setAlpha(float alpha) {
-        this.alpha = alpha;
+        this.setColor(3, alpha);
+    }
+
+    private void setColor(int component, float value) {
+        if (this.index >= 0) {
+            this.storage.getColors()[this.index * 4 + component] = value;
+        }
     }
 
     public void setColor(float red, float green, float blue, float alpha) {
-        this.red = red;
-        this.green = green;
-        this.blue = blue;
-        this.alpha = alpha;
+        if (this.index < 0) {
+            return;
+        }
+
+        float[] colors = this.storage.getColors();
+        int offset = this.index * 4;
+        colors[offset] = red;
+        colors[offset + 1] = green;
+        colors[offset + 2] = blue;
+        colors[offset + 3] = alpha;
     }
 
     public void setColor(Vector4fc color) {
-        this.red = color.x();
-        this.green = color.y();
-        this.blue = color.z();
-        this.alpha = color.w();
+        this.setColor(color.x(), color.y(), color.z(), color.w());
     }
 
     public void setSpriteData(@Nullable SpriteData spriteData) {
-        this.spriteData = spriteData;
-        this.updateRenderType();
+        if (this.index >= 0) {
+            this.storage.setSpriteData(this.index, spriteData);
+        }
     }
 
     public void setAtlasSprite(@Nullable TextureAtlasSprite atlasSprite) {
-        this.atlasSprite = atlasSprite;
-        this.updateRenderType();
+        if (this.index >= 0) {
+            this.storage.setAtlasSprite(this.index, atlasSprite);
+        }
     }
 }
@@ -18,7 +18,7 @@ public interface RenderStyle {
     void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, VertexConsumer builder, double ageModifier, float partialTicks);
 
     final class Cube implements RenderStyle {
-        private static final Vector3fc[] CUBE_POSITIONS = {
+        public static final Vector3fc[] CUBE_POSITIONS = {
                 // TOP
                 new Vector3f(1, 1, -1), new Vector3f(1, 1, 1), new Vector3f(-1, 1, 1), new Vector3f(-1, 1, -1),
 
@@ -55,6 +55,7 @@ public class FramebufferFileEditor implements ResourceFileEditor<FramebufferReso
     private boolean linear;
     private int levels;
     private String name;
+    private FramebufferAttachmentDefinition.Encoding encoding = FramebufferAttachmentDefinition.Encoding.NONE;
 
     public FramebufferFileEditor() {
         this.open = new ImBoolean(false);
@@ -213,6 +214,9 @@ public class FramebufferFileEditor implements ResourceFileEditor<FramebufferReso
             }
         });
         text(builder -> builder.append(attachment.format().name()).append(" ").append(attachment.dataType().name()));
+        if (attachment.encoding() != FramebufferAttachmentDefinition.Encoding.NONE) {
+            text(builder -> builder.append(attachment.encoding().getDisplayName()));
+        }
         text(builder -> builder.append(attachment.levels()).append(texture ? " Mipmaps" : " Samples"));
 
         ImGui.endGroup();
@@ -316,7 +320,7 @@ public class FramebufferFileEditor implements ResourceFileEditor<FramebufferReso
         if (this.attachmentIndex == 0) {
             this.builder.setDepthBuffer(new FramebufferAttachmentDefinition(this.type, this.format, this.dataType, true, this.linear, this.levels, this.name));
         } else {
-            this.builder.setColorBuffer(this.attachmentIndex - 1, new FramebufferAttachmentDefinition(this.type, this.format, this.dataType, false, this.linear, this.levels, this.name));
+            this.builder.setColorBuffer(this.attachmentIndex - 1, new FramebufferAttachmentDefinition(this.type, this.format, this.dataType, false, this.linear, this.levels, this.name, this.encoding));
         }
     }
 
@@ -342,6 +346,7 @@ public class FramebufferFileEditor implements ResourceFileEditor<FramebufferReso
             this.linear = buffer.linear();
             this.levels = buffer.levels();
             this.name = buffer.name();
+            this.encoding = buffer.encoding();
         }
     }
 
@@ -1,18 +1,13 @@
 package foundry.veil.api.resource.type;
 
 import foundry.veil.api.client.render.VeilRenderSystem;
-import foundry.veil.api.client.render.shader.CompiledShader;
 import foundry.veil.api.client.render.shader.ShaderManager;
-import foundry.veil.api.client.render.shader.program.ShaderProgram;
 import foundry.veil.api.resource.VeilResourceAction;
 import foundry.veil.api.resource.VeilResourceInfo;
 import foundry.veil.impl.resource.action.TextEditAction;
 import net.minecraft.resources.ResourceLocation;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public record VeilShaderIncludeResource(VeilResourceInfo resourceInfo) implements VeilShaderResource<VeilShaderIncludeResource> {
 
@@ -30,31 +25,14 @@ public record VeilShaderIncludeResource(VeilResourceInfo resourceInfo) implement
     public void hotReload() {
         ResourceLocation id = ShaderManager.INCLUDE_LISTER.fileToId(this.resourceInfo.location());
 
+        // Only shaders that depend on this include need to be recompiled
         ShaderManager shaderManager = VeilRenderSystem.renderer().getShaderManager();
         ShaderManager deferredShaderManager = VeilRenderSystem.renderer().getDeferredRenderer().getDeferredShaderManager();
-        Set<ResourceLocation> programs = getShaders(id, shaderManager);
-        Set<ResourceLocation> deferredPrograms = getShaders(id, deferredShaderManager);
-
-        for (ResourceLocation program : programs) {
+        for (ResourceLocation program : List.copyOf(shaderManager.getIncludeDependents(id))) {
             shaderManager.scheduleRecompile(program);
         }
-
-        for (ResourceLocation program : deferredPrograms) {
+        for (ResourceLocation program : List.copyOf(deferredShaderManager.getIncludeDependents(id))) {
             deferredShaderManager.scheduleRecompile(program);
         }
     }
-
-    private static Set<ResourceLocation> getShaders(ResourceLocation id, ShaderManager shaderManager) {
-        Set<ResourceLocation> programs = new HashSet<>();
-        for (Map.Entry<ResourceLocation, ShaderProgram> entry : shaderManager.getShaders().entrySet()) {
-            ShaderProgram program = entry.getValue();
-            for (CompiledShader shader : program.getShaders().values()) {
-                if (shader.includes().contains(id)) {
-                    programs.add(entry.getKey());
-                    break;
-                }
-            }
-        }
-        return programs;
-    }
 }
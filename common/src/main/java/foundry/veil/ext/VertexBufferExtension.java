@@ -7,7 +7,11 @@ public interface VertexBufferExtension {
 
     void veil$drawInstanced(int instances);
 
+    void veil$drawInstanced(int instances, int baseInstance);
+
     void veil$drawIndirect(long indirect, int drawCount, int stride);
 
+    void veil$drawIndirectCount(long indirect, long drawCount, int maxDrawCount, int stride);
+
     int veil$getIndexCount();
 }
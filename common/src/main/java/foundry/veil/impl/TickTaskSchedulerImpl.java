@@ -3,25 +3,57 @@ package foundry.veil.impl;
 import foundry.veil.Veil;
 import foundry.veil.api.TickTaskScheduler;
 import org.jetbrains.annotations.ApiStatus;
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * <p>Hierarchical timing wheel implementation of {@link TickTaskScheduler}.</p>
+ * <p>Each level has 64 slots, where a slot in level <code>n</code> spans <code>64<sup>n</sup></code> ticks.
+ * Tasks are linked directly into the slot of their execution tick, so scheduling and cancelling are constant time.
+ * When the current tick enters a new slot of a higher level, that slot is cascaded down into the lower levels.</p>
+ * <p>Tasks can be submitted and cancelled from any thread. They are queued and applied to the wheel at the start of the next {@link #run()}.</p>
+ *
+ * @author Ocelot
+ */
 @ApiStatus.Internal
 public class TickTaskSchedulerImpl implements TickTaskScheduler {
 
-    private final Queue<Task> tasks;
-    private long tick;
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // 6 levels of 64 slots can hold any delay that fits in an int
+    private static final int LEVELS = 6;
+
+    private final Slot[][] wheels;
+    private final Queue<Task> pending;
+    private final Queue<Task> cancelled;
+    private volatile long tick;
+    private long sequence;
+    private int size;
     private volatile boolean stopped;
 
     public TickTaskSchedulerImpl() {
-        this.tasks = new PriorityBlockingQueue<>();
+        this.wheels = new Slot[LEVELS][WHEEL_SIZE];
+        for (Slot[] wheel : this.wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Slot();
+            }
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
         this.tick = 0;
+        this.sequence = 0;
+        this.size = 0;
         this.stopped = false;
     }
 
@@ -29,27 +61,34 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
      * Runs a single tick and executes all pending tasks for that time.
      */
     public void run() {
-        Iterator<Task> iterator = this.tasks.iterator();
-        while (iterator.hasNext()) {
-            Task task = iterator.next();
-            if (task.isDone()) {
-                iterator.remove();
-                continue;
-            }
-            if (this.tick < task.executionTick) {
-                break;
+        this.drainCancelled();
+        this.drainPending();
+
+        long tick = this.tick;
+        // Higher levels must cascade first so their tasks can land in the lower levels for this tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * WHEEL_BITS;
+            if ((tick & ((1L << shift) - 1)) == 0) {
+                Slot slot = this.wheels[level][(int) (tick >>> shift) & WHEEL_MASK];
+                Task task;
+                while ((task = slot.poll()) != null) {
+                    this.size--;
+                    this.insert(task);
+                }
             }
+        }
 
-            try {
-                task.runnable.run();
-                task.finish(null);
-            } catch (Throwable t) {
-                Veil.LOGGER.error("Failed to execute task", t);
-                task.finish(t);
+        Slot slot = this.wheels[0][(int) tick & WHEEL_MASK];
+        Task task;
+        while ((task = slot.poll()) != null) {
+            this.size--;
+            if (task.execute() && !this.stopped) {
+                // Periodic tasks reuse the same node for the next execution
+                task.executionTick = tick + task.period;
+                this.insert(task);
             }
-            iterator.remove();
         }
-        this.tick++;
+        this.tick = tick + 1;
     }
 
     /**
@@ -57,27 +96,61 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
      */
     public void shutdown() {
         this.stopped = true;
+        this.drainCancelled();
+        this.drainPending();
+
+        List<Task> remaining = new ArrayList<>(this.size);
+        for (Slot[] wheel : this.wheels) {
+            for (Slot slot : wheel) {
+                Task task;
+                while ((task = slot.poll()) != null) {
+                    remaining.add(task);
+                }
+            }
+        }
+        this.size = 0;
 
-        Iterator<Task> iterator = this.tasks.iterator();
-        while (iterator.hasNext()) {
-            Task task = iterator.next();
-            if (task.isDone()) {
-                iterator.remove();
-                continue;
+        remaining.sort(Comparator.<Task>comparingLong(task -> task.executionTick).thenComparingLong(task -> task.sequence));
+        for (Task task : remaining) {
+            task.execute();
+        }
+    }
+
+    private void drainCancelled() {
+        Task task;
+        while ((task = this.cancelled.poll()) != null) {
+            if (task.slot != null) {
+                task.slot.remove(task);
+                this.size--;
             }
+        }
+    }
 
-            try {
-                task.runnable.run();
-                task.finish(null);
-            } catch (Throwable t) {
-                Veil.LOGGER.error("Failed to execute task", t);
-                task.finish(t);
+    private void drainPending() {
+        Task task;
+        while ((task = this.pending.poll()) != null) {
+            if (!task.cancelled.get()) {
+                task.sequence = this.sequence++;
+                this.insert(task);
             }
-            iterator.remove();
         }
-        if (!this.tasks.isEmpty()) {
-            throw new IllegalStateException(this.tasks.size() + " tasks were first over!");
+    }
+
+    private void insert(Task task) {
+        long tick = this.tick;
+        long executionTick = Math.max(task.executionTick, tick);
+        long delta = executionTick - tick;
+        // Tasks due within 64^(n+1) ticks go into level n
+        int level = delta == 0 ? 0 : Math.min((63 - Long.numberOfLeadingZeros(delta)) / WHEEL_BITS, LEVELS - 1);
+        this.wheels[level][(int) (executionTick >>> (level * WHEEL_BITS)) & WHEEL_MASK].add(task);
+        this.size++;
+    }
+
+    private void submit(Task task) {
+        if (this.stopped) {
+            throw new RejectedExecutionException();
         }
+        this.pending.add(task);
     }
 
     private void validate(Object command) {
@@ -87,10 +160,19 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
         }
     }
 
+    private void cancelOnCompletion(CompletableFuture<?> future, Task task) {
+        future.exceptionally(e -> {
+            if (future.isCancelled() && task.cancelled.compareAndSet(false, true)) {
+                this.cancelled.add(task);
+            }
+            return null;
+        });
+    }
+
     @Override
     public void execute(Runnable command) {
         this.validate(command);
-        this.tasks.add(new Task(command, 0));
+        this.submit(new Task(command, null, null, this.tick, 0));
     }
 
     @Override
@@ -101,20 +183,9 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
         }
 
         CompletableFuture<?> future = new CompletableFuture<>();
-        Task task = new Task(() -> {
-            try {
-                command.run();
-            } catch (Throwable t) {
-                future.completeExceptionally(t);
-            }
-        }, this.tick + delay);
-        this.tasks.add(task);
-        future.exceptionally(e -> {
-            if (future.isCancelled()) {
-                task.cancel(false);
-            }
-            return null;
-        });
+        Task task = new Task(command, null, future, this.tick + delay, 0);
+        this.cancelOnCompletion(future, task);
+        this.submit(task);
         return future;
     }
 
@@ -126,20 +197,9 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
         }
 
         CompletableFuture<V> future = new CompletableFuture<>();
-        Task task = new Task(() -> {
-            try {
-                future.complete(callable.call());
-            } catch (Throwable t) {
-                future.completeExceptionally(t);
-            }
-        }, this.tick + delay);
-        this.tasks.add(task);
-        future.exceptionally(e -> {
-            if (future.isCancelled()) {
-                task.cancel(false);
-            }
-            return null;
-        });
+        Task task = new Task(null, callable, future, this.tick + delay, 0);
+        this.cancelOnCompletion(future, task);
+        this.submit(task);
         return future;
     }
 
@@ -151,94 +211,122 @@ public class TickTaskSchedulerImpl implements TickTaskScheduler {
         }
 
         CompletableFuture<?> future = new CompletableFuture<>();
-        Task task = this.schedule(future, command, new AtomicBoolean(), initialDelay, period);
-        this.tasks.add(task);
-        future.exceptionally(e -> {
-            if (future.isCancelled()) {
-                task.cancel(false);
-            }
-            return null;
-        });
+        // A period of 0 would run forever in the same tick, so run every tick instead
+        Task task = new Task(command, null, future, this.tick + initialDelay, Math.max(period, 1));
+        this.cancelOnCompletion(future, task);
+        this.submit(task);
         return future;
     }
 
-    private Task schedule(CompletableFuture<?> future, Runnable command, AtomicBoolean cancelled, int delay, int period) {
-        return new Task(() -> {
-            try {
-                command.run();
-                if (!this.stopped) {
-                    this.tasks.add(this.schedule(future, command, cancelled, period, period));
-                }
-            } catch (Throwable t) {
-                future.completeExceptionally(t);
-            }
-        }, cancelled, this.tick + delay);
-    }
-
     @Override
     public boolean isShutdown() {
         return this.stopped;
     }
 
-    private class Task implements ScheduledFuture<Object> {
+    /**
+     * A single scheduled task. Doubles as a node in the intrusive linked list of its wheel slot.
+     */
+    private static class Task {
 
         private final Runnable runnable;
+        private final Callable<?> callable;
+        private final CompletableFuture<?> future;
+        private final int period;
         private final AtomicBoolean cancelled;
-        private final long executionTick;
-        private boolean complete;
-        private Throwable error;
-
-        private Task(Runnable task, long executionTick) {
-            this(task, new AtomicBoolean(), executionTick);
-        }
-
-        private Task(Runnable task, AtomicBoolean cancelled, long executionTick) {
-            this.runnable = task;
-            this.cancelled = cancelled;
+        private long executionTick;
+        private long sequence;
+
+        private Slot slot;
+        private Task previous;
+        private Task next;
+
+        private Task(@Nullable Runnable runnable, @Nullable Callable<?> callable, @Nullable CompletableFuture<?> future, long executionTick, int period) {
+            this.runnable = runnable;
+            this.callable = callable;
+            this.future = future;
+            this.period = period;
+            this.cancelled = new AtomicBoolean();
             this.executionTick = executionTick;
         }
 
-        public void finish(@Nullable Throwable error) {
-            this.complete = true;
-            this.error = error;
-        }
-
-        @Override
-        public long getDelay(@NotNull TimeUnit unit) {
-            return TimeUnit.MILLISECONDS.convert((this.executionTick - TickTaskSchedulerImpl.this.tick) * 50L, unit);
-        }
-
-        @Override
-        public int compareTo(@NotNull Delayed o) {
-            return Long.compareUnsigned(this.executionTick, ((Task) o).executionTick);
-        }
+        /**
+         * Runs this task.
+         *
+         * @return Whether the task is periodic and should be scheduled again
+         */
+        @SuppressWarnings("unchecked")
+        private boolean execute() {
+            if (this.cancelled.get()) {
+                return false;
+            }
 
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return this.cancelled.compareAndSet(false, true);
-        }
+            try {
+                if (this.callable != null) {
+                    Object result = this.callable.call();
+                    ((CompletableFuture<Object>) this.future).complete(result);
+                    return false;
+                }
 
-        @Override
-        public boolean isCancelled() {
-            return this.cancelled.get();
+                this.runnable.run();
+                if (this.period > 0) {
+                    return !this.cancelled.get();
+                }
+                if (this.future != null) {
+                    this.future.complete(null);
+                }
+            } catch (Throwable t) {
+                if (this.future != null) {
+                    this.future.completeExceptionally(t);
+                } else {
+                    Veil.LOGGER.error("Failed to execute task", t);
+                }
+            }
+            return false;
         }
+    }
 
-        @Override
-        public boolean isDone() {
-            return this.complete || this.cancelled.get();
+    /**
+     * A FIFO list of the tasks scheduled in a single wheel slot.
+     */
+    private static class Slot {
+
+        private Task head;
+        private Task tail;
+
+        private void add(Task task) {
+            task.slot = this;
+            task.previous = this.tail;
+            task.next = null;
+            if (this.tail != null) {
+                this.tail.next = task;
+            } else {
+                this.head = task;
+            }
+            this.tail = task;
         }
 
-        @Override
-        public Object get() throws ExecutionException {
-            if (this.error != null) {
-                throw new ExecutionException(this.error);
+        private void remove(Task task) {
+            if (task.previous != null) {
+                task.previous.next = task.next;
+            } else {
+                this.head = task.next;
             }
-            return null;
+            if (task.next != null) {
+                task.next.previous = task.previous;
+            } else {
+                this.tail = task.previous;
+            }
+            task.slot = null;
+            task.previous = null;
+            task.next = null;
         }
 
-        @Override
-        public Object get(long timeout, @NotNull TimeUnit unit) throws ExecutionException {
-            return this.get();
+        private @Nullable Task poll() {
+            Task task = this.head;
+            if (task != null) {
+                this.remove(task);
+            }
+            return task;
         }
     }
 }
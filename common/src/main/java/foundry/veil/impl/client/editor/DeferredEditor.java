@@ -23,11 +23,13 @@ public class DeferredEditor extends SingleWindowEditor {
     private static final Component ENABLE_AO = Component.translatable("editor.veil.deferred.toggle.ao");
     private static final Component ENABLE_VANILLA_LIGHT = Component.translatable("editor.veil.deferred.toggle.vanilla_light");
     private static final Component ENABLE_VANILLA_ENTITY_LIGHT = Component.translatable("editor.veil.deferred.toggle.vanilla_entity_light");
+    private static final Component ENABLE_SINGLE_LIGHT_PASS = Component.translatable("editor.veil.deferred.toggle.single_light_pass");
 
     private final ImBoolean enableDeferredPipeline = new ImBoolean();
     private final ImBoolean enableAmbientOcclusion = new ImBoolean();
     private final ImBoolean enableVanillaLight = new ImBoolean();
     private final ImBoolean enableEntityLight = new ImBoolean();
+    private final ImBoolean enableSingleLightPass = new ImBoolean();
 
     @Override
     public Component getDisplayName() {
@@ -86,6 +88,12 @@ public class DeferredEditor extends SingleWindowEditor {
             }
         }
 
+        ImGui.sameLine();
+        this.enableSingleLightPass.set(deferredRenderer.isSingleLightPass());
+        if (ImGui.checkbox(ENABLE_SINGLE_LIGHT_PASS.getString(), this.enableSingleLightPass)) {
+            deferredRenderer.setSingleLightPass(this.enableSingleLightPass.get());
+        }
+
         VeilImGuiUtil.component(FramebufferEditor.TITLE);
         if (ImGui.beginTabBar("##framebuffers")) {
             FramebufferEditor.drawBuffers(VeilFramebuffers.OPAQUE, null);
@@ -0,0 +1,143 @@
+package foundry.veil.impl.client.editor;
+
+import foundry.veil.Veil;
+import foundry.veil.api.client.editor.SingleWindowEditor;
+import foundry.veil.api.client.imgui.VeilImGuiUtil;
+import foundry.veil.api.client.render.GpuProfiler;
+import foundry.veil.api.client.render.VeilRenderSystem;
+import imgui.ImGui;
+import imgui.flag.ImGuiTableFlags;
+import imgui.type.ImBoolean;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.nio.file.Path;
+import java.util.*;
+
+@ApiStatus.Internal
+public class GpuProfilerEditor extends SingleWindowEditor {
+
+    public static final Component TITLE = Component.translatable("editor.veil.gpu_profiler.title");
+
+    private static final Component UNSUPPORTED = Component.translatable("editor.veil.gpu_profiler.unsupported");
+    private static final Component ENABLED = Component.translatable("editor.veil.gpu_profiler.toggle.enabled");
+    private static final Component EXPORT = Component.translatable("editor.veil.gpu_profiler.button.export");
+    private static final Component EXPORT_DESC = Component.translatable("editor.veil.gpu_profiler.button.export.desc");
+    private static final Component SECTION = Component.translatable("editor.veil.gpu_profiler.section");
+    private static final Component LAST = Component.translatable("editor.veil.gpu_profiler.last");
+    private static final Component AVERAGE = Component.translatable("editor.veil.gpu_profiler.average");
+    private static final Component MAX = Component.translatable("editor.veil.gpu_profiler.max");
+
+    private final ImBoolean enabled = new ImBoolean();
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    @Override
+    public Component getDisplayName() {
+        return TITLE;
+    }
+
+    @Override
+    public Component getGroup() {
+        return INFO_GROUP;
+    }
+
+    @Override
+    protected void renderComponents() {
+        if (!VeilRenderSystem.timerQuerySupported()) {
+            VeilImGuiUtil.component(UNSUPPORTED);
+            return;
+        }
+
+        GpuProfiler profiler = VeilRenderSystem.renderer().getGpuProfiler();
+        this.enabled.set(profiler.isEnabled());
+        if (ImGui.checkbox(ENABLED.getString(), this.enabled)) {
+            profiler.setEnabled(this.enabled.get());
+        }
+
+        ImGui.sameLine();
+        ImGui.beginDisabled(profiler.getHistory().isEmpty());
+        if (ImGui.button(EXPORT.getString())) {
+            Path file = Minecraft.getInstance().gameDirectory.toPath().resolve("veil").resolve("gpu_profiler").resolve(Util.getFilenameFormattedDateTime() + ".csv");
+            try {
+                profiler.exportCsv(file);
+                Veil.LOGGER.info("Exported GPU profiler results to {}", file);
+            } catch (Exception e) {
+                Veil.LOGGER.error("Failed to export GPU profiler results to {}", file, e);
+            }
+        }
+        ImGui.endDisabled();
+        ImGui.sameLine();
+        VeilImGuiUtil.tooltip(EXPORT_DESC.getString());
+
+        // Average every section over the recorded frames
+        this.stats.clear();
+        Collection<List<GpuProfiler.Result>> history = profiler.getHistory();
+        for (List<GpuProfiler.Result> frame : history) {
+            for (GpuProfiler.Result result : frame) {
+                Stats stats = this.stats.computeIfAbsent(result.path(), unused -> new Stats());
+                stats.total += result.nanos();
+                stats.max = Math.max(stats.max, result.nanos());
+            }
+        }
+
+        List<GpuProfiler.Result> latest = profiler.getLatest();
+        if (latest.isEmpty()) {
+            return;
+        }
+
+        long frameTime = 0;
+        for (GpuProfiler.Result result : latest) {
+            if (result.depth() == 0) {
+                frameTime += result.nanos();
+            }
+        }
+        ImGui.text(String.format(Locale.ROOT, "%.3f ms", frameTime / 1_000_000.0));
+
+        if (ImGui.beginTable("##sections", 4, ImGuiTableFlags.Borders | ImGuiTableFlags.RowBg | ImGuiTableFlags.Resizable | ImGuiTableFlags.ScrollY)) {
+            ImGui.tableSetupColumn(SECTION.getString());
+            ImGui.tableSetupColumn(LAST.getString());
+            ImGui.tableSetupColumn(AVERAGE.getString());
+            ImGui.tableSetupColumn(MAX.getString());
+            ImGui.tableSetupScrollFreeze(0, 1);
+            ImGui.tableHeadersRow();
+
+            for (GpuProfiler.Result result : latest) {
+                Stats stats = this.stats.get(result.path());
+                String path = result.path();
+                ImGui.tableNextRow();
+                ImGui.tableNextColumn();
+                ImGui.indent(result.depth() * 10.0F + 1.0F);
+                ImGui.text(path.substring(path.lastIndexOf('/') + 1));
+                ImGui.unindent(result.depth() * 10.0F + 1.0F);
+                ImGui.tableNextColumn();
+                ImGui.text(String.format(Locale.ROOT, "%.3f", result.nanos() / 1_000_000.0));
+                ImGui.tableNextColumn();
+                ImGui.text(String.format(Locale.ROOT, "%.3f", stats.total / (double) history.size() / 1_000_000.0));
+                ImGui.tableNextColumn();
+                ImGui.text(String.format(Locale.ROOT, "%.3f", stats.max / 1_000_000.0));
+            }
+
+            ImGui.endTable();
+        }
+    }
+
+    @Override
+    public void onShow() {
+        super.onShow();
+        VeilRenderSystem.renderer().getGpuProfiler().setEnabled(true);
+    }
+
+    @Override
+    public void onHide() {
+        super.onHide();
+        VeilRenderSystem.renderer().getGpuProfiler().setEnabled(false);
+    }
+
+    private static class Stats {
+
+        private long total;
+        private long max;
+    }
+}
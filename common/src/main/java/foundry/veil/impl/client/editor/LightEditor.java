@@ -33,6 +33,8 @@ public class LightEditor extends SingleWindowEditor {
     private static final Component REMOVE_ALL = Component.translatable("editor.veil.deferred_light.button.remove_all");
     private static final Component REMOVE_ALL_DESC = Component.translatable("editor.veil.deferred_light.button.remove_all.desc");
     private static final Component SET_POSITION = Component.translatable("editor.veil.deferred_light.button.set_position");
+    private static final Component CLUSTERED = Component.translatable("editor.veil.deferred_light.toggle.clustered");
+    private static final Component CLUSTERED_DESC = Component.translatable("editor.veil.deferred_light.toggle.clustered.desc");
     private static final Component ATTRIBUTES = Component.translatable("editor.veil.deferred_light.attributes");
 
     private final List<ResourceKey<LightTypeRegistry.LightType<?>>> lightTypes = new ArrayList<>();
@@ -94,6 +96,16 @@ public class LightEditor extends SingleWindowEditor {
             VeilImGuiUtil.setTooltip(REMOVE_ALL_DESC);
         }
 
+        ImGui.sameLine();
+        ImGui.beginDisabled(lightType == null || !lightType.supportsClusteredLighting());
+        if (ImGui.checkbox(CLUSTERED.getString(), lightType != null && lightRenderer.isClusteredLighting(lightType)) && lightType != null) {
+            lightRenderer.setClusteredLighting(lightType, !lightRenderer.isClusteredLighting(lightType));
+        }
+        ImGui.endDisabled();
+        if (ImGui.isItemHovered(ImGuiHoveredFlags.AllowWhenDisabled)) {
+            VeilImGuiUtil.setTooltip(CLUSTERED_DESC);
+        }
+
         ImGui.beginTabBar("##lights");
         for (ResourceKey<LightTypeRegistry.LightType<?>> key : this.lightTypes) {
             ResourceLocation id = key.location();
@@ -7,9 +7,12 @@ import foundry.veil.api.client.imgui.CodeEditor;
 import foundry.veil.api.client.imgui.VeilImGuiUtil;
 import foundry.veil.api.client.imgui.VeilLanguageDefinitions;
 import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.shader.ProgramBinaryCache;
+import foundry.veil.api.client.render.shader.ShaderModificationCache;
 import foundry.veil.api.client.render.shader.definition.ShaderPreDefinitions;
 import foundry.veil.api.client.render.shader.program.ShaderProgram;
 import foundry.veil.impl.client.imgui.VeilImGuiImpl;
+import foundry.veil.impl.client.render.shader.ShaderProgramImpl;
 import foundry.veil.impl.compat.IrisShaderMap;
 import foundry.veil.impl.compat.SodiumShaderMap;
 import foundry.veil.mixin.accessor.GameRendererAccessor;
@@ -64,6 +67,12 @@ public class ShaderEditor extends SingleWindowEditor implements ResourceManagerR
     private static final Component SHADER_DEFINITIONS = Component.translatable("editor.veil.shader.definitions");
     private static final Component SHADER_DEFINITIONS_HINT = Component.translatable("editor.veil.shader.definitions.hint");
     private static final Component OPEN_SOURCE = Component.translatable("editor.veil.shader.open_source");
+    private static final Component CLEAR_PROGRAM_CACHE = Component.translatable("editor.veil.shader.button.clear_program_cache");
+    private static final Component CLEAR_PROGRAM_CACHE_DESC = Component.translatable("editor.veil.shader.button.clear_program_cache.desc");
+    private static final Component CLEAR_MODIFIED_SHADER_CACHE = Component.translatable("editor.veil.shader.button.clear_modified_shader_cache");
+    private static final Component CLEAR_MODIFIED_SHADER_CACHE_DESC = Component.translatable("editor.veil.shader.button.clear_modified_shader_cache.desc");
+    private static final Component RESET_UNIFORM_UPLOADS = Component.translatable("editor.veil.shader.button.reset_uniform_uploads");
+    private static final Component RESET_UNIFORM_UPLOADS_DESC = Component.translatable("editor.veil.shader.button.reset_uniform_uploads.desc");
 
     private static final Pattern ERROR_PARSER = Pattern.compile("ERROR: (\\d+):(\\d+): (.+)");
     private static final Pattern LINE_DIRECTIVE_PARSER = Pattern.compile("#line\\s+(\\d+)\\s*(\\d+)?");
@@ -329,6 +338,39 @@ public class ShaderEditor extends SingleWindowEditor implements ResourceManagerR
                 this.openShaderButton(GL_GEOMETRY_SHADER);
                 this.openShaderButton(GL_TESS_CONTROL_SHADER);
                 this.openShaderButton(GL_TESS_EVALUATION_SHADER);
+
+                ProgramBinaryCache binaryCache = VeilRenderSystem.renderer().getProgramBinaryCache();
+                ImGui.separator();
+                if (binaryCache.isSupported()) {
+                    VeilImGuiUtil.component(Component.translatable("editor.veil.shader.program_cache", binaryCache.getHits(), binaryCache.getMisses()));
+                    if (ImGui.button(CLEAR_PROGRAM_CACHE.getString())) {
+                        binaryCache.clear();
+                    }
+                    if (ImGui.isItemHovered()) {
+                        VeilImGuiUtil.setTooltip(CLEAR_PROGRAM_CACHE_DESC);
+                    }
+                } else {
+                    VeilImGuiUtil.component(Component.translatable("editor.veil.shader.program_cache.unsupported"));
+                }
+
+                ShaderModificationCache modificationCache = VeilRenderSystem.renderer().getShaderModificationManager().getCache();
+                ImGui.separator();
+                VeilImGuiUtil.component(Component.translatable("editor.veil.shader.modified_shader_cache", modificationCache.getHits(), modificationCache.getMisses()));
+                if (ImGui.button(CLEAR_MODIFIED_SHADER_CACHE.getString())) {
+                    modificationCache.clear();
+                }
+                if (ImGui.isItemHovered()) {
+                    VeilImGuiUtil.setTooltip(CLEAR_MODIFIED_SHADER_CACHE_DESC);
+                }
+
+                ImGui.separator();
+                VeilImGuiUtil.component(Component.translatable("editor.veil.shader.uniform_uploads", ShaderProgramImpl.getIssuedUniformUploads(), ShaderProgramImpl.getElidedUniformUploads()));
+                if (ImGui.button(RESET_UNIFORM_UPLOADS.getString())) {
+                    ShaderProgramImpl.resetUniformUploadCounters();
+                }
+                if (ImGui.isItemHovered()) {
+                    VeilImGuiUtil.setTooltip(RESET_UNIFORM_UPLOADS_DESC);
+                }
             }
             ImGui.endChild();
 
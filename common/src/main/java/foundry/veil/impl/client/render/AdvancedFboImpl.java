@@ -75,6 +75,7 @@ public class AdvancedFboImpl implements AdvancedFbo {
     private final int clearMask;
     private final int[] drawBuffers;
     private final Supplier<Wrapper> wrapper;
+    private boolean drawn;
 
     public AdvancedFboImpl(int width, int height, AdvancedFboAttachment[] colorAttachments, @Nullable AdvancedFboAttachment depthAttachment) {
         this.id = -1;
@@ -95,6 +96,7 @@ public class AdvancedFboImpl implements AdvancedFbo {
                 .map(i -> GL_COLOR_ATTACHMENT0 + i)
                 .toArray();
         this.wrapper = Suppliers.memoize(() -> new Wrapper(this));
+        this.drawn = true;
     }
 
     @Override
@@ -131,12 +133,14 @@ public class AdvancedFboImpl implements AdvancedFbo {
     public void clear() {
         if (this.clearMask != 0) {
             GlStateManager._clear(this.clearMask, Minecraft.ON_OSX);
+            this.drawn = false;
         }
     }
 
     @Override
     public void bind(boolean setViewport) {
         glBindFramebuffer(GL_FRAMEBUFFER, this.id);
+        this.drawn = true;
         if (setViewport) {
             RenderSystem.viewport(0, 0, this.width, this.height);
         }
@@ -150,11 +154,22 @@ public class AdvancedFboImpl implements AdvancedFbo {
     @Override
     public void bindDraw(boolean setViewport) {
         glBindFramebuffer(GL_DRAW_FRAMEBUFFER, this.id);
+        this.drawn = true;
         if (setViewport) {
             RenderSystem.viewport(0, 0, this.width, this.height);
         }
     }
 
+    @Override
+    public void markDrawn() {
+        this.drawn = true;
+    }
+
+    @Override
+    public boolean isDrawn() {
+        return this.drawn;
+    }
+
     @Override
     public void free() {
         if (this.id == -1) {
@@ -0,0 +1,66 @@
+package foundry.veil.impl.client.render.deferred.light;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.deferred.light.AreaLight;
+import foundry.veil.api.client.render.deferred.light.renderer.ClusteredLightRenderer;
+import foundry.veil.api.client.render.deferred.light.renderer.LightRenderer;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Matrix4d;
+import org.joml.Vector2fc;
+import org.joml.Vector3dc;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+@ApiStatus.Internal
+public class ClusteredAreaLightRenderer extends ClusteredLightRenderer<AreaLight> {
+
+    private final Matrix4d matrix;
+
+    public ClusteredAreaLightRenderer() {
+        super(Float.BYTES * 24);
+        this.matrix = new Matrix4d();
+    }
+
+    @Override
+    protected Vector3dc getPosition(AreaLight light) {
+        return light.getPosition();
+    }
+
+    @Override
+    protected float getRadius(AreaLight light) {
+        return light.getSize().length() + light.getDistance();
+    }
+
+    @Override
+    protected void store(AreaLight light, ByteBuffer buffer) {
+        // Same matrix as AreaLight#updateMatrix
+        this.matrix.rotation(light.getOrientation()).translate(light.getPosition());
+        this.matrix.getFloats(buffer.position(), buffer);
+        buffer.position(buffer.position() + Float.BYTES * 16);
+
+        Vector3fc color = light.getColor();
+        float brightness = light.getBrightness();
+        buffer.putFloat(color.x() * brightness);
+        buffer.putFloat(color.y() * brightness);
+        buffer.putFloat(color.z() * brightness);
+        buffer.putFloat(light.getDistance());
+
+        Vector2fc size = light.getSize();
+        buffer.putFloat(size.x());
+        buffer.putFloat(size.y());
+        buffer.putFloat(light.getAngle());
+        buffer.putFloat(0.0F);
+    }
+
+    @Override
+    protected void setupRenderState(LightRenderer lightRenderer, List<AreaLight> lights) {
+        VeilRenderSystem.setShader(VeilShaders.LIGHT_CLUSTERED_AREA);
+    }
+
+    @Override
+    protected void clearRenderState(LightRenderer lightRenderer, List<AreaLight> lights) {
+    }
+}
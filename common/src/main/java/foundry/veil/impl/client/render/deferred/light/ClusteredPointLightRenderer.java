@@ -0,0 +1,51 @@
+package foundry.veil.impl.client.render.deferred.light;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.deferred.light.PointLight;
+import foundry.veil.api.client.render.deferred.light.renderer.ClusteredLightRenderer;
+import foundry.veil.api.client.render.deferred.light.renderer.LightRenderer;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3dc;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+@ApiStatus.Internal
+public class ClusteredPointLightRenderer extends ClusteredLightRenderer<PointLight> {
+
+    public ClusteredPointLightRenderer() {
+        super(Float.BYTES * 4);
+    }
+
+    @Override
+    protected Vector3dc getPosition(PointLight light) {
+        return light.getPosition();
+    }
+
+    @Override
+    protected float getRadius(PointLight light) {
+        return light.getRadius();
+    }
+
+    @Override
+    protected void store(PointLight light, ByteBuffer buffer) {
+        // The position is read from the light bounds
+        Vector3fc color = light.getColor();
+        float brightness = light.getBrightness();
+        buffer.putFloat(color.x() * brightness);
+        buffer.putFloat(color.y() * brightness);
+        buffer.putFloat(color.z() * brightness);
+        buffer.putFloat(light.getRadius());
+    }
+
+    @Override
+    protected void setupRenderState(LightRenderer lightRenderer, List<PointLight> lights) {
+        VeilRenderSystem.setShader(VeilShaders.LIGHT_CLUSTERED_POINT);
+    }
+
+    @Override
+    protected void clearRenderState(LightRenderer lightRenderer, List<PointLight> lights) {
+    }
+}
@@ -41,6 +41,7 @@ public final class VeilFirstPersonRenderer {
         VeilRenderSystem.renderer().getFramebufferManager().setFramebuffer(VeilFramebuffers.FIRST_PERSON, firstPerson);
         firstPerson.bind(false);
         firstPerson.setColorAttachmentTexture(0, framebufferTexture);
+        mainRenderTarget.markDrawn();
     }
 
     public static void unbind() {
@@ -2,60 +2,51 @@ package foundry.veil.impl.client.render.pipeline;
 
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.shader.definition.ShaderBlock;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import foundry.veil.impl.client.render.shader.definition.ShaderBlockArena;
 import foundry.veil.impl.client.render.shader.definition.ShaderBlockImpl;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.*;
 import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import org.jetbrains.annotations.ApiStatus;
+import org.lwjgl.system.NativeResource;
 
-import java.util.Objects;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL31C.GL_UNIFORM_BUFFER;
 import static org.lwjgl.opengl.GL43C.GL_SHADER_STORAGE_BUFFER;
 
 /**
- * Manages the state of uniform block bindings and their associated shader names.
+ * <p>Manages the state of uniform block bindings and their associated shader names.</p>
+ * <p>Each block name is assigned a binding the first time it is bound after a shader reload and keeps it until the next reload.
+ * Shaders are told about a name once, and new programs receive all names when they are linked,
+ * so binding a named block only costs the buffer bind no matter how many programs are loaded.
+ * When bindings run out, blocks and names that weren't used this frame are evicted, unnamed blocks first.</p>
+ * <p>Uniform and shader storage blocks have separate binding points, so each target is tracked with its own limit.</p>
  *
  * @author Ocelot
  */
 @ApiStatus.Internal
-public class VeilUniformBlockState {
+public class VeilUniformBlockState implements NativeResource {
 
-    private final Object2IntMap<ShaderBlockImpl<?>> boundBlocks;
-    private final Int2ObjectMap<CharSequence> shaderBindings;
-    private final IntSet usedBindings;
-    private int nextBinding;
+    private final Int2ObjectMap<TargetState> targets;
+    private final Int2ObjectMap<ShaderBlockArena> arenas;
 
     public VeilUniformBlockState() {
-        this.boundBlocks = new Object2IntArrayMap<>();
-        this.shaderBindings = new Int2ObjectArrayMap<>();
-        this.usedBindings = new IntOpenHashSet();
+        this.targets = new Int2ObjectArrayMap<>();
+        this.arenas = new Int2ObjectArrayMap<>();
     }
 
-    /**
-     * Looks for a stale binding that can be replaced with a new one.
-     */
-    private void freeBinding() {
-        ObjectIterator<Object2IntMap.Entry<ShaderBlockImpl<?>>> iterator = this.boundBlocks.object2IntEntrySet().iterator();
-        while (iterator.hasNext()) {
-            Object2IntMap.Entry<ShaderBlockImpl<?>> entry = iterator.next();
-            int binding = entry.getIntValue();
-            if (this.usedBindings.contains(binding)) {
-                continue;
-            }
-
-            this.unbind(binding, entry.getKey());
-            iterator.remove();
-
-            this.nextBinding = binding;
-            return;
+    private TargetState getState(ShaderBlockImpl<?> block) {
+        int target = block.getBinding();
+        TargetState state = this.targets.get(target);
+        if (state == null) {
+            state = new TargetState(target);
+            this.targets.put(target, state);
         }
-
-        throw new IllegalStateException("Too many shader blocks bound, failed to find empty space.");
+        return state;
     }
 
     /**
@@ -69,28 +60,12 @@ public class VeilUniformBlockState {
             throw new UnsupportedOperationException("Cannot bind " + block.getClass());
         }
 
-        int binding = this.boundBlocks.getOrDefault(block, -1);
-        if (binding == -1) {
-            if (this.nextBinding >= VeilRenderSystem.maxUniformBuffersBindings()) {
-                this.freeBinding();
-            }
-
-            binding = this.nextBinding;
-            this.boundBlocks.put(impl, binding);
-
-            // Find the next open binding
-            while (this.boundBlocks.containsValue(this.nextBinding)) {
-                this.nextBinding++;
-            }
-        }
-
-        impl.bind(binding);
-        this.usedBindings.add(binding);
-        return binding;
+        return this.getState(impl).bind(impl);
     }
 
     /**
-     * Binds and assigns the bound index to all shaders under the specified name.
+     * Binds the specified block to the binding of the specified name.
+     * The first time a name is bound after a reload, it is assigned a binding and all shaders are updated to use it.
      *
      * @param name  The name of the block to bind in shader code
      * @param block The block to bind
@@ -100,21 +75,19 @@ public class VeilUniformBlockState {
             throw new UnsupportedOperationException("Cannot bind " + block.getClass());
         }
 
-        int binding = this.bind(block);
-        CharSequence boundName = this.shaderBindings.get(binding);
-        if (!Objects.equals(name, boundName)) {
-            this.shaderBindings.put(binding, name);
-            VeilRenderSystem.renderer().getShaderManager().setGlobal(shader -> {
-                switch (impl.getBinding()) {
-                    case GL_UNIFORM_BUFFER -> shader.setUniformBlock(name, binding);
-                    case GL_SHADER_STORAGE_BUFFER -> shader.setStorageBlock(name, binding);
-                }
-            });
+        String key = name.toString();
+        TargetState state = this.getState(impl);
+        // A name can only refer to one kind of block at a time
+        for (TargetState other : this.targets.values()) {
+            if (other != state) {
+                other.removeName(key);
+            }
         }
+        state.bind(key, impl);
     }
 
     /**
-     * Unbinds the specified shader block.
+     * Unbinds the specified shader block. Names keep their binding, so shaders don't need to be updated if the name is bound again.
      *
      * @param block The block to unbind
      */
@@ -123,41 +96,241 @@ public class VeilUniformBlockState {
             throw new UnsupportedOperationException("Cannot unbind " + block.getClass());
         }
 
-        if (this.boundBlocks.containsKey(block)) {
-            this.unbind(this.boundBlocks.removeInt(block), impl);
+        TargetState state = this.targets.get(impl.getBinding());
+        if (state != null) {
+            state.unbind(impl);
         }
     }
 
-    private void unbind(int binding, ShaderBlockImpl<?> block) {
-        block.unbind(binding);
-
-        CharSequence name = this.shaderBindings.remove(binding);
-        if (name != null) {
-            VeilRenderSystem.renderer().getShaderManager().setGlobal(shader -> {
-                switch (block.getBinding()) {
-                    case GL_UNIFORM_BUFFER -> shader.setUniformBlock(name, 0);
-                    case GL_SHADER_STORAGE_BUFFER -> shader.setStorageBlock(name, 0);
-                }
-            });
+    /**
+     * Assigns the binding of every block name to the specified program. Called when a program is linked.
+     *
+     * @param program The program to update
+     */
+    public void applyBindings(ShaderProgram program) {
+        for (TargetState state : this.targets.values()) {
+            for (NamedBinding namedBinding : state.namedBindings.values()) {
+                namedBinding.apply(program);
+            }
         }
+    }
 
-        // Fill the gap since the spot is open now
-        if (binding < this.nextBinding) {
-            this.nextBinding = binding;
+    /**
+     * Drops the bindings of all names, so they are assigned again the next time they are bound. Called when shaders are reloaded.
+     */
+    public void reload() {
+        for (TargetState state : this.targets.values()) {
+            state.clearNames();
         }
     }
 
     /**
-     * Forces all shader bindings to be re-uploaded the next time {@link #bind(CharSequence, ShaderBlock)} is called.
+     * Retrieves the shared buffer that fixed-size blocks of the specified type are allocated from.
+     *
+     * @param target The buffer target of the blocks
+     * @return The arena for that target
      */
-    public void queueUpload() {
-        this.shaderBindings.clear();
+    public ShaderBlockArena getArena(int target) {
+        ShaderBlockArena arena = this.arenas.get(target);
+        if (arena == null) {
+            arena = new ShaderBlockArena(target);
+            this.arenas.put(target, arena);
+        }
+        return arena;
     }
 
     /**
      * Clears all used bindings from the current frame.
      */
     public void clear() {
-        this.usedBindings.clear();
+        for (TargetState state : this.targets.values()) {
+            state.usedBindings.clear();
+        }
+    }
+
+    @Override
+    public void free() {
+        this.arenas.values().forEach(ShaderBlockArena::free);
+        this.arenas.clear();
+    }
+
+    /**
+     * The bindings of a single buffer target.
+     */
+    private static class TargetState {
+
+        private final int target;
+        private final Object2IntMap<ShaderBlockImpl<?>> boundBlocks;
+        private final Map<String, NamedBinding> namedBindings;
+        private final Int2ObjectMap<ShaderBlockImpl<?>> namedBlocks;
+        private final IntSet usedBindings;
+        private int nextBinding;
+
+        private TargetState(int target) {
+            this.target = target;
+            this.boundBlocks = new Object2IntArrayMap<>();
+            this.namedBindings = new Object2ObjectArrayMap<>();
+            this.namedBlocks = new Int2ObjectArrayMap<>();
+            this.usedBindings = new IntOpenHashSet();
+        }
+
+        private boolean isOccupied(int binding) {
+            return this.namedBlocks.containsKey(binding) || this.isNamed(binding) || this.boundBlocks.containsValue(binding);
+        }
+
+        private boolean isNamed(int binding) {
+            for (NamedBinding namedBinding : this.namedBindings.values()) {
+                if (namedBinding.binding() == binding) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Looks for a binding that wasn't used this frame and can be replaced with a new one.
+         */
+        private void freeBinding() {
+            ObjectIterator<Object2IntMap.Entry<ShaderBlockImpl<?>>> iterator = this.boundBlocks.object2IntEntrySet().iterator();
+            while (iterator.hasNext()) {
+                Object2IntMap.Entry<ShaderBlockImpl<?>> entry = iterator.next();
+                int binding = entry.getIntValue();
+                if (this.usedBindings.contains(binding)) {
+                    continue;
+                }
+
+                entry.getKey().unbind(binding);
+                iterator.remove();
+
+                this.nextBinding = binding;
+                return;
+            }
+
+            // Shaders still refer to an evicted name until it is bound again, which assigns it a new binding
+            for (NamedBinding namedBinding : this.namedBindings.values()) {
+                int binding = namedBinding.binding();
+                if (this.usedBindings.contains(binding)) {
+                    continue;
+                }
+
+                this.removeName(namedBinding.name());
+                this.nextBinding = binding;
+                return;
+            }
+
+            throw new IllegalStateException("Too many shader blocks bound, failed to find empty space.");
+        }
+
+        /**
+         * Finds the next binding that isn't used by any block or name.
+         *
+         * @return The binding to use
+         */
+        private int allocateBinding() {
+            if (this.nextBinding >= VeilRenderSystem.maxTargetBindings(this.target)) {
+                this.freeBinding();
+            }
+
+            int binding = this.nextBinding;
+            // Find the next open binding
+            do {
+                this.nextBinding++;
+            } while (this.isOccupied(this.nextBinding));
+            return binding;
+        }
+
+        private int bind(ShaderBlockImpl<?> block) {
+            int binding = this.boundBlocks.getOrDefault(block, -1);
+            if (binding == -1) {
+                binding = this.allocateBinding();
+                this.boundBlocks.put(block, binding);
+            }
+
+            block.bind(binding);
+            this.usedBindings.add(binding);
+            return binding;
+        }
+
+        private void bind(String name, ShaderBlockImpl<?> block) {
+            NamedBinding namedBinding = this.namedBindings.get(name);
+            if (namedBinding == null) {
+                namedBinding = new NamedBinding(name, this.allocateBinding(), this.target);
+                this.namedBindings.put(name, namedBinding);
+
+                // Shaders only need to be told once, new programs are updated when they link
+                NamedBinding apply = namedBinding;
+                VeilRenderSystem.renderer().getShaderManager().setGlobal(apply::apply);
+                VeilRenderSystem.renderer().getDeferredRenderer().getDeferredShaderManager().setGlobal(apply::apply);
+            }
+
+            int binding = namedBinding.binding();
+            ShaderBlockImpl<?> previous = this.namedBlocks.put(binding, block);
+            if (previous != null && previous != block) {
+                previous.unbind(binding);
+            }
+            block.bind(binding);
+            this.usedBindings.add(binding);
+        }
+
+        private void unbind(ShaderBlockImpl<?> block) {
+            if (this.boundBlocks.containsKey(block)) {
+                int binding = this.boundBlocks.removeInt(block);
+                block.unbind(binding);
+
+                // Fill the gap since the spot is open now
+                if (binding < this.nextBinding && !this.isOccupied(binding)) {
+                    this.nextBinding = binding;
+                }
+            }
+
+            IntIterator iterator = this.namedBlocks.keySet().iterator();
+            while (iterator.hasNext()) {
+                int binding = iterator.nextInt();
+                if (this.namedBlocks.get(binding) == block) {
+                    block.unbind(binding);
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void removeName(String name) {
+            NamedBinding namedBinding = this.namedBindings.remove(name);
+            if (namedBinding == null) {
+                return;
+            }
+
+            int binding = namedBinding.binding();
+            ShaderBlockImpl<?> block = this.namedBlocks.remove(binding);
+            if (block != null) {
+                block.unbind(binding);
+            }
+            if (binding < this.nextBinding && !this.isOccupied(binding)) {
+                this.nextBinding = binding;
+            }
+        }
+
+        private void clearNames() {
+            for (Int2ObjectMap.Entry<ShaderBlockImpl<?>> entry : this.namedBlocks.int2ObjectEntrySet()) {
+                entry.getValue().unbind(entry.getIntKey());
+            }
+            this.namedBlocks.clear();
+            this.namedBindings.clear();
+
+            // Start filling from the lowest binding that is open again
+            this.nextBinding = 0;
+            while (this.isOccupied(this.nextBinding)) {
+                this.nextBinding++;
+            }
+        }
+    }
+
+    private record NamedBinding(String name, int binding, int target) {
+
+        private void apply(ShaderProgram program) {
+            switch (this.target) {
+                case GL_UNIFORM_BUFFER -> program.setUniformBlock(this.name, this.binding);
+                case GL_SHADER_STORAGE_BUFFER -> program.setStorageBlock(this.name, this.binding);
+            }
+        }
     }
 }
@@ -1,6 +1,7 @@
 package foundry.veil.impl.client.render.shader;
 
 import foundry.veil.api.client.render.shader.CompiledShader;
+import foundry.veil.api.client.render.shader.ProcessedShader;
 import foundry.veil.api.client.render.shader.ShaderCompiler;
 import foundry.veil.api.client.render.shader.ShaderException;
 import foundry.veil.api.client.render.shader.program.ProgramDefinition;
@@ -22,31 +23,44 @@ import java.util.Objects;
 @ApiStatus.Internal
 public class CachedShaderCompiler extends DirectShaderCompiler {
 
+    private final Map<Integer, ProcessedShader> processedShaders;
     private final Map<Integer, CompiledShader> shaders;
 
     public CachedShaderCompiler(@Nullable ResourceProvider provider) {
         super(provider);
+        this.processedShaders = new HashMap<>();
         this.shaders = new HashMap<>();
     }
 
     @Override
-    public CompiledShader compile(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException {
+    public ProcessedShader process(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException {
         int hash = Objects.hash(type, id);
+        if (this.processedShaders.containsKey(hash)) {
+            return this.processedShaders.get(hash);
+        }
+        ProcessedShader shader = super.process(context, type, sourceType, id);
+        this.processedShaders.put(hash, shader);
+        return shader;
+    }
+
+    @Override
+    public CompiledShader compile(ProcessedShader processedShader) throws ShaderException {
+        int hash = Objects.hash(processedShader.type(), processedShader.sourceType(), processedShader.source());
         if (this.shaders.containsKey(hash)) {
             return this.shaders.get(hash);
         }
-        CompiledShader shader = super.compile(context, type, sourceType, id);
+        CompiledShader shader = super.compile(processedShader);
         this.shaders.put(hash, shader);
         return shader;
     }
 
     @Override
-    public CompiledShader compile(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException {
-        int hash = Objects.hash(type, source);
+    public CompiledShader submit(ProcessedShader processedShader) throws ShaderException {
+        int hash = Objects.hash(processedShader.type(), processedShader.sourceType(), processedShader.source());
         if (this.shaders.containsKey(hash)) {
             return this.shaders.get(hash);
         }
-        CompiledShader shader = super.compile(context, type, sourceType, source);
+        CompiledShader shader = super.submit(processedShader);
         this.shaders.put(hash, shader);
         return shader;
     }
@@ -54,6 +68,7 @@ public class CachedShaderCompiler extends DirectShaderCompiler {
     @Override
     public void free() {
         super.free();
+        this.processedShaders.clear();
         this.shaders.clear();
     }
 }
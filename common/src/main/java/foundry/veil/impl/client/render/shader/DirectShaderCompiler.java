@@ -6,6 +6,7 @@ import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.shader.CompiledShader;
 import foundry.veil.api.client.render.shader.ShaderCompiler;
 import foundry.veil.api.client.render.shader.ShaderException;
+import foundry.veil.api.client.render.shader.ProcessedShader;
 import foundry.veil.api.client.render.shader.ShaderManager;
 import foundry.veil.api.client.render.shader.definition.ShaderPreDefinitions;
 import foundry.veil.api.client.render.shader.processor.*;
@@ -30,7 +31,7 @@ import static org.lwjgl.opengl.GL20C.*;
 import static org.lwjgl.opengl.GL43C.GL_COMPUTE_SHADER;
 
 /**
- * Creates a new shader and compiles each time {@link #compile(Context, int, ProgramDefinition.SourceType, String)} is called.
+ * Creates a new shader and compiles each time {@link #compile(ProcessedShader)} is called.
  * This should only be used for compiling single shaders.
  *
  * @author Ocelot
@@ -74,24 +75,22 @@ public class DirectShaderCompiler implements ShaderCompiler {
     }
 
     @Override
-    public CompiledShader compile(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException {
+    public ProcessedShader process(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, ResourceLocation id) throws IOException, ShaderException {
         if (this.provider == null) {
             throw new IOException("Failed to read " + ShaderManager.getTypeName(type) + " from " + id + " because no provider was specified");
         }
-        this.validateType(type);
 
         ResourceLocation location = context.sourceSet().getTypeConverter(type).idToFile(id);
         try (Reader reader = this.provider.openAsReader(location)) {
             this.compilingName = id;
-            return this.compile(context, type, sourceType, IOUtils.toString(reader));
+            return this.process(context, type, sourceType, IOUtils.toString(reader));
         } finally {
             this.compilingName = null;
         }
     }
 
     @Override
-    public CompiledShader compile(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException {
-        this.validateType(type);
+    public ProcessedShader process(ShaderCompiler.Context context, int type, ProgramDefinition.SourceType sourceType, String source) throws IOException, ShaderException {
         ShaderPreProcessor processor = this.getProcessor();
         ShaderPreProcessor importProcessor = this.getImportProcessor();
         processor.prepare();
@@ -101,28 +100,50 @@ public class DirectShaderCompiler implements ShaderCompiler {
         Set<String> dependencies = new HashSet<>();
         Set<ResourceLocation> includes = new HashSet<>();
         Set<ResourceLocation> includesView = Collections.unmodifiableSet(includes);
-        String transformed = processor.modify(new PreProcessorContext(importProcessor, context, uniformBindings, dependencies, includes, includesView, this.compilingName, true), source);
+        String transformed = processor.modify(new PreProcessorContext(importProcessor, context, uniformBindings, dependencies, includes, includesView, List.of(), this.compilingName, true), source);
+        return new ProcessedShader(this.compilingName, type, sourceType, transformed, Object2IntMaps.unmodifiable(uniformBindings), Collections.unmodifiableSet(dependencies), includesView);
+    }
+
+    private int createShader(ProcessedShader processedShader) throws ShaderException {
+        int type = processedShader.type();
+        this.validateType(type);
 
+        ResourceLocation name = processedShader.sourceFile();
+        String transformed = processedShader.source();
         int shader = glCreateShader(type);
-        switch (sourceType) {
+        switch (processedShader.sourceType()) {
             case GLSL -> GlStateManager.glShaderSource(shader, List.of(transformed));
-            case GLSL_SPIRV -> VeilShaderUploader.get().compile(shader, type, this.compilingName != null ? this.compilingName.toString() : "Shader #" + context, transformed, false);
-            case HLSL_SPIRV -> VeilShaderUploader.get().compile(shader, type, this.compilingName != null ? this.compilingName.toString() : "Shader #" + context, transformed, true);
+            case GLSL_SPIRV -> VeilShaderUploader.get().compile(shader, type, name != null ? name.toString() : "Shader #" + shader, transformed, false);
+            case HLSL_SPIRV -> VeilShaderUploader.get().compile(shader, type, name != null ? name.toString() : "Shader #" + shader, transformed, true);
             case SPIRV -> throw new UnsupportedOperationException("TODO implement");
         }
 
         glCompileShader(shader);
+        return shader;
+    }
+
+    @Override
+    public CompiledShader compile(ProcessedShader processedShader) throws ShaderException {
+        int shader = this.createShader(processedShader);
         if (glGetShaderi(shader, GL_COMPILE_STATUS) != GL_TRUE) {
             String log = glGetShaderInfoLog(shader);
             if (Veil.VERBOSE_SHADER_ERRORS) {
-                log += "\n" + transformed;
+                log += "\n" + processedShader.source();
             }
             glDeleteShader(shader); // Delete to prevent leaks
-            throw new ShaderException("Failed to compile " + ShaderManager.getTypeName(type) + " shader", log);
+            throw new ShaderException("Failed to compile " + ShaderManager.getTypeName(processedShader.type()) + " shader", log);
         }
 
         this.shaders.add(shader);
-        return new CompiledShader(this.compilingName, shader, Object2IntMaps.unmodifiable(uniformBindings), Collections.unmodifiableSet(dependencies), includesView);
+        return processedShader.toCompiled(shader);
+    }
+
+    @Override
+    public CompiledShader submit(ProcessedShader processedShader) throws ShaderException {
+        // Querying the status here would wait for the driver, so errors are checked after the program links
+        int shader = this.createShader(processedShader);
+        this.shaders.add(shader);
+        return processedShader.toCompiled(shader);
     }
 
     @Override
@@ -161,28 +182,47 @@ public class DirectShaderCompiler implements ShaderCompiler {
                                        Set<String> dependencies,
                                        Set<ResourceLocation> includes,
                                        Set<ResourceLocation> includesView,
+                                       List<Listener> listeners,
                                        @Nullable ResourceLocation name,
                                        boolean sourceFile) implements ShaderPreProcessor.Context {
 
         @Override
         public String modify(@Nullable ResourceLocation name, String source) throws IOException {
-            PreProcessorContext context = new PreProcessorContext(this.preProcessor, this.context, this.uniformBindings, this.dependencies, this.includes, this.includesView, name, false);
+            PreProcessorContext context = new PreProcessorContext(this.preProcessor, this.context, this.uniformBindings, this.dependencies, this.includes, this.includesView, this.listeners, name, false);
+            return this.preProcessor.modify(context, source);
+        }
+
+        @Override
+        public String modify(@Nullable ResourceLocation name, String source, Listener listener) throws IOException {
+            List<Listener> listeners = new ArrayList<>(this.listeners.size() + 1);
+            listeners.addAll(this.listeners);
+            listeners.add(listener);
+            PreProcessorContext context = new PreProcessorContext(this.preProcessor, this.context, this.uniformBindings, this.dependencies, this.includes, this.includesView, listeners, name, false);
             return this.preProcessor.modify(context, source);
         }
 
         @Override
         public void addUniformBinding(String name, int binding) {
             this.uniformBindings.put(name, binding);
+            for (Listener listener : this.listeners) {
+                listener.addUniformBinding(name, binding);
+            }
         }
 
         @Override
         public void addDefinitionDependency(String name) {
             this.dependencies.add(name);
+            for (Listener listener : this.listeners) {
+                listener.addDefinitionDependency(name);
+            }
         }
 
         @Override
         public void addInclude(ResourceLocation name) {
             this.includes.add(name);
+            for (Listener listener : this.listeners) {
+                listener.addInclude(name);
+            }
         }
 
         @Override
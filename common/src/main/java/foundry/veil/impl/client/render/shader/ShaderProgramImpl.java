@@ -8,8 +8,11 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import foundry.veil.Veil;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.shader.CompiledShader;
+import foundry.veil.api.client.render.shader.ProcessedShader;
+import foundry.veil.api.client.render.shader.ProgramBinaryCache;
 import foundry.veil.api.client.render.shader.ShaderCompiler;
 import foundry.veil.api.client.render.shader.ShaderException;
+import foundry.veil.api.client.render.shader.ShaderManager;
 import foundry.veil.api.client.render.shader.program.MutableUniformAccess;
 import foundry.veil.api.client.render.shader.program.ProgramDefinition;
 import foundry.veil.api.client.render.shader.program.ShaderProgram;
@@ -30,14 +33,28 @@ import net.minecraft.server.packs.resources.Resource;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix2fc;
 import org.joml.Matrix3f;
+import org.joml.Matrix3fc;
+import org.joml.Matrix3x2fc;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Matrix4x3fc;
+import org.joml.Vector2fc;
+import org.joml.Vector2ic;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.joml.Vector3ic;
 import org.joml.Vector4f;
+import org.joml.Vector4fc;
+import org.joml.Vector4ic;
+import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -50,7 +67,11 @@ import static org.lwjgl.opengl.GL13C.GL_TEXTURE0;
 import static org.lwjgl.opengl.GL20C.*;
 import static org.lwjgl.opengl.GL31C.GL_INVALID_INDEX;
 import static org.lwjgl.opengl.GL31C.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL41C.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41C.glProgramParameteri;
 import static org.lwjgl.opengl.GL43C.*;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+import static org.lwjgl.system.MemoryUtil.NULL;
 
 /**
  * @author Ocelot
@@ -66,6 +87,7 @@ public class ShaderProgramImpl implements ShaderProgram {
     private final Map<String, ShaderTextureSource> textureSources;
     private final Set<String> definitionDependencies;
     private final TextureCache textures;
+    private final UniformCache uniformValues;
     private final Supplier<Wrapper> wrapper;
     private ProgramDefinition definition;
     private int program;
@@ -77,6 +99,7 @@ public class ShaderProgramImpl implements ShaderProgram {
         this.uniformBlocks = new Object2IntArrayMap<>();
         this.storageBlocks = new Object2IntArrayMap<>();
         this.textures = new TextureCache(this);
+        this.uniformValues = new UniformCache();
         this.textureSources = new HashMap<>();
         this.definitionDependencies = new HashSet<>();
         this.wrapper = Suppliers.memoize(() -> {
@@ -94,65 +117,114 @@ public class ShaderProgramImpl implements ShaderProgram {
     private void clearShader() {
         if (this.program != 0) {
             // The shaders are already marked for deletion, they just have to be unlinked since the program isn't deleted
-            this.shaders.values().forEach(shader -> glDetachShader(this.program, shader.id()));
+            this.shaders.values().forEach(shader -> {
+                if (shader.id() != 0) {
+                    glDetachShader(this.program, shader.id());
+                }
+            });
         }
         this.shaders.clear();
         this.uniforms.clear();
         this.uniformBlocks.clear();
+        this.storageBlocks.clear();
+        this.uniformValues.clear();
         this.textures.clear();
         this.textureSources.clear();
         this.definitionDependencies.clear();
     }
 
+    /**
+     * Runs all pre-processors on the shaders of the program being compiled. This doesn't use OpenGL, so it can be called from any thread.
+     *
+     * @param context  The context to use when processing shaders
+     * @param compiler The compiler to process shaders with
+     * @return All shaders to attach to the program
+     * @throws IOException     If any shader could not be read or processed
+     * @throws ShaderException If any shader could not be processed
+     */
+    public static List<ProcessedShader> process(ShaderCompiler.Context context, ShaderCompiler compiler) throws IOException, ShaderException {
+        Int2ObjectMap<ProgramDefinition.ShaderSource> shaders = Objects.requireNonNull(context.definition()).shaders();
+        List<ProcessedShader> processedShaders = new ArrayList<>(shaders.size() + 1);
+        for (Int2ObjectMap.Entry<ProgramDefinition.ShaderSource> entry : shaders.int2ObjectEntrySet()) {
+            ProgramDefinition.ShaderSource source = entry.getValue();
+            processedShaders.add(compiler.process(context, entry.getIntKey(), source.sourceType(), source.location()));
+        }
+
+        // Fragment shaders aren't strictly necessary if the fragment output isn't used,
+        // however mac shaders don't work without a fragment shader. This adds a "dummy" fragment shader
+        // on mac specifically for all rendering shaders.
+        if (Minecraft.ON_OSX && !shaders.containsKey(GL_COMPUTE_SHADER) && !shaders.containsKey(GL_FRAGMENT_SHADER)) {
+            processedShaders.add(compiler.process(context, GL_FRAGMENT_SHADER, ProgramDefinition.SourceType.GLSL, "out vec4 fragColor;void main(){fragColor=vec4(1.0);}"));
+        }
+        return processedShaders;
+    }
+
     @Override
     public void compile(ShaderCompiler.Context context, ShaderCompiler compiler) throws Exception {
-        this.definition = Objects.requireNonNull(context.definition());
-
-        this.clearShader();
-        this.textureSources.putAll(this.definition.textures());
+        this.link(context, compiler, process(context, compiler)).finish();
+    }
 
-        if (this.program == 0) {
-            this.program = glCreateProgram();
-        }
+    /**
+     * <p>Starts linking a new program from the specified shaders without waiting for the driver.</p>
+     * <p>The current program stays in use until {@link PendingLink#finish()} swaps in the new one,
+     * so a program that fails to compile keeps its last working version.</p>
+     *
+     * @param context          The context to use when compiling shaders
+     * @param compiler         The compiler to submit shaders to
+     * @param processedShaders The shaders to attach from {@link #process(ShaderCompiler.Context, ShaderCompiler)}
+     * @return The link in progress
+     * @throws ShaderException If any shader could not be created
+     */
+    public PendingLink link(ShaderCompiler.Context context, ShaderCompiler compiler, List<ProcessedShader> processedShaders) throws ShaderException {
+        ProgramDefinition definition = Objects.requireNonNull(context.definition());
+        Int2ObjectMap<CompiledShader> shaders = new Int2ObjectArrayMap<>(processedShaders.size());
+        int program = glCreateProgram();
 
         try {
-            Int2ObjectMap<ProgramDefinition.ShaderSource> shaders = this.definition.shaders();
-            for (Int2ObjectMap.Entry<ProgramDefinition.ShaderSource> entry : shaders.int2ObjectEntrySet()) {
-                int glType = entry.getIntKey();
-                ProgramDefinition.ShaderSource source = entry.getValue();
-                CompiledShader shader = compiler.compile(context, glType, source.sourceType(), source.location());
-                glAttachShader(this.program, shader.id());
-                this.shaders.put(glType, shader);
+            ProgramBinaryCache binaryCache = context.binaryCache();
+            String binaryKey = binaryCache != null ? binaryCache.getKey(context.preDefinitions(), processedShaders) : null;
+            if (binaryKey != null && binaryCache.load(program, binaryKey)) {
+                // The program is already linked, so no shaders need to be compiled
+                for (ProcessedShader processedShader : processedShaders) {
+                    shaders.put(processedShader.type(), processedShader.toCompiled(0));
+                }
+                return new PendingLink(program, definition, processedShaders, shaders, null, null);
             }
 
-            // Fragment shaders aren't strictly necessary if the fragment output isn't used,
-            // however mac shaders don't work without a fragment shader. This adds a "dummy" fragment shader
-            // on mac specifically for all rendering shaders.
-            if (Minecraft.ON_OSX && !shaders.containsKey(GL_COMPUTE_SHADER) && !shaders.containsKey(GL_FRAGMENT_SHADER)) {
-                CompiledShader shader = compiler.compile(context, GL_FRAGMENT_SHADER, ProgramDefinition.SourceType.GLSL, "out vec4 fragColor;void main(){fragColor=vec4(1.0);}");
-                glAttachShader(this.program, shader.id());
-                this.shaders.put(GL_FRAGMENT_SHADER, shader);
+            for (ProcessedShader processedShader : processedShaders) {
+                CompiledShader shader = compiler.submit(processedShader);
+                glAttachShader(program, shader.id());
+                shaders.put(processedShader.type(), shader);
             }
 
-            glLinkProgram(this.program);
-            if (glGetProgrami(this.program, GL_LINK_STATUS) != GL_TRUE) {
-                String log = glGetProgramInfoLog(this.program);
-                throw new ShaderException("Failed to link shader", log);
+            if (binaryKey != null) {
+                glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
             }
-
-            this.shaders.values().forEach(shader -> {
-                shader.apply(this);
-                this.definitionDependencies.addAll(shader.definitionDependencies());
-            });
+            glLinkProgram(program);
+            return new PendingLink(program, definition, processedShaders, shaders, binaryCache, binaryKey);
         } catch (Exception e) {
-            this.clearShader(); // F
+            glDeleteProgram(program);
             throw e;
         }
     }
 
+    private void swap(int program, ProgramDefinition definition, Int2ObjectMap<CompiledShader> shaders) {
+        this.free();
+        this.definition = definition;
+        this.program = program;
+        this.shaders.putAll(shaders);
+        this.textureSources.putAll(definition.textures());
+        this.shaders.values().forEach(shader -> {
+            shader.apply(this);
+            this.definitionDependencies.addAll(shader.definitionDependencies());
+        });
+        VeilRenderSystem.applyShaderBlockBindings(this);
+    }
+
     @Override
     public void free() {
         this.clearShader();
+        this.uniformValues.free();
         if (this.program > 0) {
             glDeleteProgram(this.program);
             this.program = 0;
@@ -208,6 +280,222 @@ public class ShaderProgramImpl implements ShaderProgram {
         return this.program;
     }
 
+    @Override
+    public void setFloat(CharSequence name, float value) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 1, Float.floatToRawIntBits(value), 0, 0, 0)) {
+            glProgramUniform1f(this.program, location, value);
+        }
+    }
+
+    @Override
+    public void setVector(CharSequence name, float x, float y) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 2, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), 0, 0)) {
+            glProgramUniform2f(this.program, location, x, y);
+        }
+    }
+
+    @Override
+    public void setVector(CharSequence name, float x, float y, float z) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 3, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z), 0)) {
+            glProgramUniform3f(this.program, location, x, y, z);
+        }
+    }
+
+    @Override
+    public void setVector(CharSequence name, float x, float y, float z, float w) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 4, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z), Float.floatToRawIntBits(w))) {
+            glProgramUniform4f(this.program, location, x, y, z, w);
+        }
+    }
+
+    @Override
+    public void setInt(CharSequence name, int value) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 1, value, 0, 0, 0)) {
+            glProgramUniform1i(this.program, location, value);
+        }
+    }
+
+    @Override
+    public void setVectorI(CharSequence name, int x, int y) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 2, x, y, 0, 0)) {
+            glProgramUniform2i(this.program, location, x, y);
+        }
+    }
+
+    @Override
+    public void setVectorI(CharSequence name, int x, int y, int z) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 3, x, y, z, 0)) {
+            glProgramUniform3i(this.program, location, x, y, z);
+        }
+    }
+
+    @Override
+    public void setVectorI(CharSequence name, int x, int y, int z, int w) {
+        int location = this.getUniform(name);
+        if (location != -1 && this.uniformValues.set(location, 4, x, y, z, w)) {
+            glProgramUniform4i(this.program, location, x, y, z, w);
+        }
+    }
+
+    // Arrays write to a range of locations, so they aren't cached and only invalidate what they overwrite
+
+    @Override
+    public void setFloats(CharSequence name, float... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setFloats(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector2fc... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector3fc... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector4fc... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setInts(CharSequence name, int... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setInts(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector2ic... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector3ic... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setVectors(CharSequence name, Vector4ic... values) {
+        this.uniformValues.invalidate(this.getUniform(name), values.length);
+        ShaderProgram.super.setVectors(name, values);
+    }
+
+    @Override
+    public void setMatrix(CharSequence name, Matrix2fc value) {
+        int location = this.getUniform(name);
+        if (location == -1) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(2 * 2);
+            value.get(buffer);
+            if (this.uniformValues.set(location, buffer)) {
+                glProgramUniformMatrix2fv(this.program, location, false, buffer);
+            }
+        }
+    }
+
+    @Override
+    public void setMatrix(CharSequence name, Matrix3fc value) {
+        int location = this.getUniform(name);
+        if (location == -1) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(3 * 3);
+            value.get(buffer);
+            if (this.uniformValues.set(location, buffer)) {
+                glProgramUniformMatrix3fv(this.program, location, false, buffer);
+            }
+        }
+    }
+
+    @Override
+    public void setMatrix(CharSequence name, Matrix3x2fc value) {
+        int location = this.getUniform(name);
+        if (location == -1) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(3 * 2);
+            value.get(buffer);
+            if (this.uniformValues.set(location, buffer)) {
+                glProgramUniformMatrix3x2fv(this.program, location, false, buffer);
+            }
+        }
+    }
+
+    @Override
+    public void setMatrix(CharSequence name, Matrix4fc value) {
+        int location = this.getUniform(name);
+        if (location == -1) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(4 * 4);
+            value.get(buffer);
+            if (this.uniformValues.set(location, buffer)) {
+                glProgramUniformMatrix4fv(this.program, location, false, buffer);
+            }
+        }
+    }
+
+    @Override
+    public void setMatrix(CharSequence name, Matrix4x3fc value) {
+        int location = this.getUniform(name);
+        if (location == -1) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(4 * 3);
+            value.get(buffer);
+            if (this.uniformValues.set(location, buffer)) {
+                glProgramUniformMatrix4x3fv(this.program, location, false, buffer);
+            }
+        }
+    }
+
+    /**
+     * @return The number of uniform uploads sent to OpenGL since the last reset
+     */
+    public static long getIssuedUniformUploads() {
+        return UniformCache.issued;
+    }
+
+    /**
+     * @return The number of uniform uploads skipped because the value was already set since the last reset
+     */
+    public static long getElidedUniformUploads() {
+        return UniformCache.elided;
+    }
+
+    /**
+     * Resets the issued and elided uniform upload counters.
+     */
+    public static void resetUniformUploadCounters() {
+        UniformCache.issued = 0;
+        UniformCache.elided = 0;
+    }
+
     @Override
     public @Nullable ProgramDefinition getDefinition() {
         return this.definition;
@@ -247,6 +535,212 @@ public class ShaderProgramImpl implements ShaderProgram {
         this.textures.clear();
     }
 
+    /**
+     * A program that was submitted to the driver and may still be compiling and linking.
+     *
+     * @author Ocelot
+     */
+    public class PendingLink {
+
+        private final int program;
+        private final ProgramDefinition definition;
+        private final List<ProcessedShader> processedShaders;
+        private final Int2ObjectMap<CompiledShader> shaders;
+        private final ProgramBinaryCache binaryCache;
+        private final String binaryKey;
+        private boolean finished;
+
+        private PendingLink(int program, ProgramDefinition definition, List<ProcessedShader> processedShaders, Int2ObjectMap<CompiledShader> shaders, @Nullable ProgramBinaryCache binaryCache, @Nullable String binaryKey) {
+            this.program = program;
+            this.definition = definition;
+            this.processedShaders = processedShaders;
+            this.shaders = shaders;
+            this.binaryCache = binaryCache;
+            this.binaryKey = binaryKey;
+        }
+
+        /**
+         * @return Whether the driver has finished compiling and linking. This is always <code>true</code> if parallel shader compilation isn't supported
+         */
+        public boolean isDone() {
+            return this.finished || !VeilRenderSystem.parallelShaderCompileSupported() || glGetProgrami(this.program, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+        }
+
+        /**
+         * Waits for the driver to finish linking and replaces the current program with the new one.
+         *
+         * @throws ShaderException If any shader failed to compile or the program failed to link. The previous program is kept in this case
+         */
+        public void finish() throws ShaderException {
+            if (this.finished) {
+                throw new IllegalStateException("Program link already finished");
+            }
+            this.finished = true;
+
+            if (glGetProgrami(this.program, GL_LINK_STATUS) != GL_TRUE) {
+                ShaderException exception = this.getError();
+                glDeleteProgram(this.program);
+                throw exception;
+            }
+
+            if (this.binaryKey != null) {
+                this.binaryCache.save(this.program, this.binaryKey);
+            }
+            ShaderProgramImpl.this.swap(this.program, this.definition, this.shaders);
+        }
+
+        /**
+         * Deletes the new program without replacing the current one.
+         */
+        public void cancel() {
+            if (!this.finished) {
+                this.finished = true;
+                glDeleteProgram(this.program);
+            }
+        }
+
+        private ShaderException getError() {
+            // Compile errors are only checked now so the driver never had to wait on individual shaders
+            for (ProcessedShader processedShader : this.processedShaders) {
+                int shader = this.shaders.get(processedShader.type()).id();
+                if (shader != 0 && glGetShaderi(shader, GL_COMPILE_STATUS) != GL_TRUE) {
+                    String log = glGetShaderInfoLog(shader);
+                    if (Veil.VERBOSE_SHADER_ERRORS) {
+                        log += "\n" + processedShader.source();
+                    }
+                    return new ShaderException("Failed to compile " + ShaderManager.getTypeName(processedShader.type()) + " shader", log);
+                }
+            }
+            return new ShaderException("Failed to link shader", glGetProgramInfoLog(this.program));
+        }
+
+        /**
+         * @return The shader program the new program will replace
+         */
+        public ShaderProgramImpl getShader() {
+            return ShaderProgramImpl.this;
+        }
+    }
+
+    /**
+     * Shadow copy of the last value uploaded to each uniform location. Values are stored off-heap
+     * in fixed size slots indexed by location, so checking a value is a few memory reads.
+     * Only values set through the program are tracked, so any uniform changed directly through OpenGL must be invalidated.
+     */
+    private static class UniformCache implements NativeResource {
+
+        // Large enough for the biggest non-array uniform, a mat4
+        private static final int SLOT_INTS = 16;
+        private static final int SLOT_SIZE = SLOT_INTS * Integer.BYTES;
+        // Drivers hand out small locations, so anything past this is simply not cached
+        private static final int MAX_LOCATIONS = 1024;
+
+        private static long issued;
+        private static long elided;
+
+        private long address;
+        private byte[] sizes;
+
+        private UniformCache() {
+            this.address = NULL;
+            this.sizes = new byte[0];
+        }
+
+        private long slot(int location) {
+            if (location >= this.sizes.length) {
+                int capacity = Math.min(Math.max(location + 1, this.sizes.length * 2), MAX_LOCATIONS);
+                this.address = MemoryUtil.nmemRealloc(this.address, (long) capacity * SLOT_SIZE);
+                this.sizes = Arrays.copyOf(this.sizes, capacity);
+            }
+            return this.address + (long) location * SLOT_SIZE;
+        }
+
+        /**
+         * Stores up to 4 ints or float bits at the specified location.
+         *
+         * @return Whether the value changed and must be uploaded
+         */
+        private boolean set(int location, int count, int x, int y, int z, int w) {
+            if (location >= MAX_LOCATIONS) {
+                issued++;
+                return true;
+            }
+
+            long slot = this.slot(location);
+            if (this.sizes[location] == count &&
+                    MemoryUtil.memGetInt(slot) == x &&
+                    MemoryUtil.memGetInt(slot + 4) == y &&
+                    MemoryUtil.memGetInt(slot + 8) == z &&
+                    MemoryUtil.memGetInt(slot + 12) == w) {
+                elided++;
+                return false;
+            }
+
+            this.sizes[location] = (byte) count;
+            MemoryUtil.memPutInt(slot, x);
+            MemoryUtil.memPutInt(slot + 4, y);
+            MemoryUtil.memPutInt(slot + 8, z);
+            MemoryUtil.memPutInt(slot + 12, w);
+            issued++;
+            return true;
+        }
+
+        /**
+         * Stores the remaining contents of the specified buffer at the specified location.
+         *
+         * @return Whether the value changed and must be uploaded
+         */
+        private boolean set(int location, FloatBuffer value) {
+            int count = value.remaining();
+            if (location >= MAX_LOCATIONS || count > SLOT_INTS) {
+                issued++;
+                return true;
+            }
+
+            long slot = this.slot(location);
+            long valueAddress = MemoryUtil.memAddress(value);
+            if (this.sizes[location] == count && equals(slot, valueAddress, count)) {
+                elided++;
+                return false;
+            }
+
+            this.sizes[location] = (byte) count;
+            MemoryUtil.memCopy(valueAddress, slot, (long) count * Float.BYTES);
+            issued++;
+            return true;
+        }
+
+        private static boolean equals(long a, long b, int count) {
+            for (int i = 0; i < count; i++) {
+                if (MemoryUtil.memGetInt(a + i * 4L) != MemoryUtil.memGetInt(b + i * 4L)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void invalidate(int location, int count) {
+            if (location < 0) {
+                return;
+            }
+            int end = Math.min(location + count, this.sizes.length);
+            if (location < end) {
+                Arrays.fill(this.sizes, location, end, (byte) 0);
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(this.sizes, (byte) 0);
+        }
+
+        @Override
+        public void free() {
+            MemoryUtil.nmemFree(this.address);
+            this.address = NULL;
+            this.sizes = new byte[0];
+        }
+    }
+
     private static class TextureCache {
 
         private final ShaderProgram program;
@@ -44,6 +44,12 @@ public class SimpleShaderProcessor {
             return processor.modify(new Context(name), source);
         }
 
+        @Override
+        public String modify(@Nullable ResourceLocation name, String source, Listener listener) throws IOException {
+            // Nothing can be added to vanilla shaders, so there is nothing to listen to
+            return this.modify(name, source);
+        }
+
         @Override
         public void addUniformBinding(String name, int binding) {
             throw new UnsupportedOperationException();
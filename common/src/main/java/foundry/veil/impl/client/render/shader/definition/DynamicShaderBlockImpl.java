@@ -1,18 +1,19 @@
 package foundry.veil.impl.client.render.shader.definition;
 
+import foundry.veil.api.client.render.StreamingBuffer;
 import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.shader.definition.DynamicShaderBlock;
 import foundry.veil.api.client.render.shader.definition.ShaderBlock;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.util.function.BiConsumer;
 
-import static org.lwjgl.opengl.GL15C.*;
 import static org.lwjgl.opengl.GL30C.glBindBufferBase;
+import static org.lwjgl.opengl.GL30C.glBindBufferRange;
 
 /**
  * Dynamic-size implementation of {@link ShaderBlock}.
@@ -23,8 +24,12 @@ import static org.lwjgl.opengl.GL30C.glBindBufferBase;
 @ApiStatus.Internal
 public class DynamicShaderBlockImpl<T> extends ShaderBlockImpl<T> implements DynamicShaderBlock<T> {
 
+    // The largest offset alignment OpenGL allows for uniform and shader storage buffers
+    private static final int BLOCK_ALIGNMENT = 256;
+
     protected final BiConsumer<T, ByteBuffer> serializer;
 
+    private StreamingBuffer streamingBuffer;
     private long size;
     private boolean resized;
 
@@ -51,36 +56,27 @@ public class DynamicShaderBlockImpl<T> extends ShaderBlockImpl<T> implements Dyn
     public void bind(int index) {
         Validate.inclusiveBetween(0, VeilRenderSystem.maxTargetBindings(this.binding), index);
 
-        if (this.buffer == 0) {
-            this.buffer = glGenBuffers();
+        if (this.streamingBuffer == null) {
+            this.streamingBuffer = new StreamingBuffer(this.size, BLOCK_ALIGNMENT);
             this.resized = true;
         }
 
-        if (this.resized) {
+        if (this.resized || this.dirty) {
             this.resized = false;
-            this.dirty = true;
-            glBindBuffer(this.binding, this.buffer);
-            glBufferData(this.binding, this.size, GL_DYNAMIC_DRAW);
-            glBindBuffer(this.binding, 0);
-        }
-
-        if (this.dirty) {
             this.dirty = false;
-            glBindBuffer(this.binding, this.buffer);
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                if (this.value != null) {
-                    ByteBuffer buffer = stack.malloc((int) this.size);
-                    this.serializer.accept(this.value, buffer);
-                    buffer.rewind();
-                    glBufferSubData(this.binding, 0, buffer);
-                } else {
-                    glBufferSubData(this.binding, 0, stack.calloc((int) this.size));
-                }
+
+            // Changes within a frame are placed one after another, so the buffer is only fenced once per frame
+            ByteBuffer buffer = this.streamingBuffer.mapFrame(Math.max(this.size, 1));
+            if (this.value != null) {
+                this.serializer.accept(this.value, buffer);
+            } else {
+                MemoryUtil.memSet(buffer, 0);
             }
-            glBindBuffer(this.binding, 0);
+            this.streamingBuffer.unmap();
+            this.buffer = this.streamingBuffer.getBuffer();
         }
 
-        glBindBufferBase(this.binding, index, this.buffer);
+        glBindBufferRange(this.binding, index, this.buffer, this.streamingBuffer.getOffset(), Math.max(this.size, 1));
     }
 
     @Override
@@ -88,4 +84,14 @@ public class DynamicShaderBlockImpl<T> extends ShaderBlockImpl<T> implements Dyn
         Validate.inclusiveBetween(0, VeilRenderSystem.maxTargetBindings(this.binding), index);
         glBindBufferBase(this.binding, index, 0);
     }
+
+    @Override
+    public void free() {
+        VeilRenderSystem.unbind(this);
+        if (this.streamingBuffer != null) {
+            this.streamingBuffer.free();
+            this.streamingBuffer = null;
+            this.buffer = 0;
+        }
+    }
 }
@@ -0,0 +1,168 @@
+package foundry.veil.impl.client.render.shader.definition;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.lwjgl.system.NativeResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15C.*;
+
+/**
+ * <p>Packs fixed-size shader blocks into a few large GL buffers instead of creating a buffer for every block.</p>
+ * <p>Buffers are allocated in pages of {@value #PAGE_SIZE} bytes and blocks are placed at offsets aligned to {@value #ALIGNMENT} bytes,
+ * so they can be bound with <code>glBindBufferRange</code>. Pages are never moved, so an allocation keeps its buffer and offset until it is freed.
+ * Blocks larger than a page are given a page of their own.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class ShaderBlockArena implements NativeResource {
+
+    // The largest offset alignment OpenGL allows for uniform and shader storage buffers
+    private static final int ALIGNMENT = 256;
+    private static final int PAGE_SIZE = 64 * 1024;
+
+    private final int target;
+    private final List<Page> pages;
+
+    /**
+     * Creates a new arena.
+     *
+     * @param target The buffer target blocks are bound to
+     */
+    public ShaderBlockArena(int target) {
+        this.target = target;
+        this.pages = new ArrayList<>();
+    }
+
+    /**
+     * Allocates a region of the specified size.
+     *
+     * @param size The number of bytes to allocate
+     * @return The allocated region
+     */
+    public Allocation allocate(int size) {
+        int alignedSize = Math.max((size + ALIGNMENT - 1) / ALIGNMENT, 1) * ALIGNMENT;
+        for (Page page : this.pages) {
+            int offset = page.allocate(alignedSize);
+            if (offset != -1) {
+                return new Allocation(page, offset, size);
+            }
+        }
+
+        Page page = new Page(this.target, Math.max(PAGE_SIZE, alignedSize));
+        this.pages.add(page);
+        return new Allocation(page, page.allocate(alignedSize), size);
+    }
+
+    /**
+     * Returns the specified region to the arena.
+     *
+     * @param allocation The region to free
+     */
+    public void free(Allocation allocation) {
+        Page page = allocation.page;
+        page.free(allocation.offset, Math.max((allocation.size + ALIGNMENT - 1) / ALIGNMENT, 1) * ALIGNMENT);
+        if (page.isEmpty()) {
+            page.free();
+            this.pages.remove(page);
+        }
+    }
+
+    @Override
+    public void free() {
+        this.pages.forEach(Page::free);
+        this.pages.clear();
+    }
+
+    /**
+     * A region of an arena buffer.
+     *
+     * @param page   The page the region is in
+     * @param offset The offset of the region in bytes
+     * @param size   The size of the region in bytes
+     */
+    public record Allocation(Page page, int offset, int size) {
+
+        /**
+         * @return The GL buffer the region is in
+         */
+        public int buffer() {
+            return this.page.buffer;
+        }
+    }
+
+    /**
+     * A single GL buffer with a sorted list of free ranges.
+     */
+    public static class Page {
+
+        private final int size;
+        private final List<int[]> freeRanges;
+        private int buffer;
+
+        private Page(int target, int size) {
+            this.size = size;
+            this.freeRanges = new ArrayList<>();
+            this.freeRanges.add(new int[]{0, size});
+            this.buffer = glGenBuffers();
+            glBindBuffer(target, this.buffer);
+            glBufferData(target, size, GL_DYNAMIC_DRAW);
+            glBindBuffer(target, 0);
+        }
+
+        private int allocate(int size) {
+            for (int i = 0; i < this.freeRanges.size(); i++) {
+                int[] range = this.freeRanges.get(i);
+                if (range[1] < size) {
+                    continue;
+                }
+
+                int offset = range[0];
+                range[0] += size;
+                range[1] -= size;
+                if (range[1] == 0) {
+                    this.freeRanges.remove(i);
+                }
+                return offset;
+            }
+            return -1;
+        }
+
+        private void free(int offset, int size) {
+            int index = 0;
+            while (index < this.freeRanges.size() && this.freeRanges.get(index)[0] < offset) {
+                index++;
+            }
+            this.freeRanges.add(index, new int[]{offset, size});
+
+            // Merge with the next and previous ranges if they touch
+            if (index + 1 < this.freeRanges.size()) {
+                int[] next = this.freeRanges.get(index + 1);
+                if (offset + size == next[0]) {
+                    this.freeRanges.get(index)[1] += next[1];
+                    this.freeRanges.remove(index + 1);
+                }
+            }
+            if (index > 0) {
+                int[] previous = this.freeRanges.get(index - 1);
+                if (previous[0] + previous[1] == offset) {
+                    previous[1] += this.freeRanges.get(index)[1];
+                    this.freeRanges.remove(index);
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return this.freeRanges.size() == 1 && this.freeRanges.get(0)[1] == this.size;
+        }
+
+        private void free() {
+            if (this.buffer != 0) {
+                glDeleteBuffers(this.buffer);
+                this.buffer = 0;
+            }
+        }
+    }
+}
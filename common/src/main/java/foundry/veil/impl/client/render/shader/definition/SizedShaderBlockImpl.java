@@ -9,11 +9,13 @@ import org.lwjgl.system.MemoryStack;
 import java.nio.ByteBuffer;
 import java.util.function.BiConsumer;
 
-import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL15C.glBindBuffer;
+import static org.lwjgl.opengl.GL15C.glBufferSubData;
 import static org.lwjgl.opengl.GL30C.glBindBufferBase;
+import static org.lwjgl.opengl.GL30C.glBindBufferRange;
 
 /**
- * Fixed-size implementation of {@link ShaderBlock}.
+ * Fixed-size implementation of {@link ShaderBlock}. The data is stored in a region of the shared {@link ShaderBlockArena} for the buffer target.
  *
  * @param <T> The type of object to serialize
  * @author Ocelot
@@ -23,6 +25,7 @@ public class SizedShaderBlockImpl<T> extends ShaderBlockImpl<T> {
 
     protected final BiConsumer<T, ByteBuffer> serializer;
     private final int size;
+    private ShaderBlockArena.Allocation allocation;
 
     public SizedShaderBlockImpl(int binding, int size, BiConsumer<T, ByteBuffer> serializer) {
         super(binding);
@@ -34,11 +37,9 @@ public class SizedShaderBlockImpl<T> extends ShaderBlockImpl<T> {
     public void bind(int index) {
         Validate.inclusiveBetween(0, VeilRenderSystem.maxTargetBindings(this.binding), index);
 
-        if (this.buffer == 0) {
-            this.buffer = glGenBuffers();
-            glBindBuffer(this.binding, this.buffer);
-            glBufferData(this.binding, this.size, GL_DYNAMIC_DRAW);
-            glBindBuffer(this.binding, 0);
+        if (this.allocation == null) {
+            this.allocation = VeilRenderSystem.blockArena(this.binding).allocate(this.size);
+            this.buffer = this.allocation.buffer();
             this.dirty = true;
         }
 
@@ -50,15 +51,15 @@ public class SizedShaderBlockImpl<T> extends ShaderBlockImpl<T> {
                     ByteBuffer buffer = stack.malloc(this.size);
                     this.serializer.accept(this.value, buffer);
                     buffer.rewind();
-                    glBufferSubData(this.binding, 0, buffer);
+                    glBufferSubData(this.binding, this.allocation.offset(), buffer);
                 } else {
-                    glBufferSubData(this.binding, 0, stack.calloc(this.size));
+                    glBufferSubData(this.binding, this.allocation.offset(), stack.calloc(this.size));
                 }
             }
             glBindBuffer(this.binding, 0);
         }
 
-        glBindBufferBase(this.binding, index, this.buffer);
+        glBindBufferRange(this.binding, index, this.buffer, this.allocation.offset(), this.size);
     }
 
     @Override
@@ -66,4 +67,14 @@ public class SizedShaderBlockImpl<T> extends ShaderBlockImpl<T> {
         Validate.inclusiveBetween(0, VeilRenderSystem.maxTargetBindings(this.binding), index);
         glBindBufferBase(this.binding, index, 0);
     }
+
+    @Override
+    public void free() {
+        VeilRenderSystem.unbind(this);
+        if (this.allocation != null) {
+            VeilRenderSystem.blockArena(this.binding).free(this.allocation);
+            this.allocation = null;
+            this.buffer = 0;
+        }
+    }
 }
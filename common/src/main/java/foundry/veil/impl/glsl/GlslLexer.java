@@ -1,6 +1,5 @@
 package foundry.veil.impl.glsl;
 
-import com.mojang.brigadier.StringReader;
 import foundry.veil.impl.glsl.grammar.GlslTypeQualifier;
 import foundry.veil.impl.glsl.grammar.GlslTypeSpecifier;
 import foundry.veil.impl.glsl.node.expression.GlslAssignmentNode;
@@ -8,56 +7,343 @@ import foundry.veil.impl.glsl.node.expression.GlslUnaryNode;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.*;
 
 /**
+ * <p>Splits GLSL source code into tokens in a single pass.</p>
+ * <p>Keywords and operators are looked up in tables built from {@link TokenType#getLiterals()},
+ * and everything else is scanned by hand. The longest match always wins, and ties go to the token type declared first.</p>
+ *
  * @author Ocelot
  */
 @ApiStatus.Internal
 public final class GlslLexer {
 
-    public static Token[] createTokens(String input) throws GlslSyntaxException {
-        StringReader reader = new StringReader(input);
+    private static final KeywordTable KEYWORDS;
+    private static final String[][] OPERATORS;
+    private static final TokenType[][] OPERATOR_TYPES;
+
+    static {
+        Map<String, TokenType> keywords = new LinkedHashMap<>();
+        List<List<String>> operators = new ArrayList<>(128);
+        for (int i = 0; i < 128; i++) {
+            operators.add(new ArrayList<>());
+        }
+        Map<String, TokenType> operatorTypes = new HashMap<>();
+
+        for (TokenType type : TokenType.values()) {
+            for (String literal : type.getLiterals()) {
+                if (isIdentifierStart(literal.charAt(0))) {
+                    keywords.putIfAbsent(literal, type);
+                } else if (operatorTypes.putIfAbsent(literal, type) == null) {
+                    operators.get(literal.charAt(0)).add(literal);
+                }
+            }
+        }
+
+        KEYWORDS = new KeywordTable(keywords);
+        OPERATORS = new String[128][];
+        OPERATOR_TYPES = new TokenType[128][];
+        for (int i = 0; i < 128; i++) {
+            List<String> candidates = operators.get(i);
+            // Check the longest operators first so "<<=" isn't read as "<<" and "="
+            candidates.sort(Comparator.comparingInt(String::length).reversed());
+            OPERATORS[i] = candidates.toArray(String[]::new);
+            OPERATOR_TYPES[i] = candidates.stream().map(operatorTypes::get).toArray(TokenType[]::new);
+        }
+    }
+
+    private GlslLexer() {
+    }
+
+    public static Token[] createTokens(CharSequence input) throws GlslSyntaxException {
         List<Token> tokens = new ArrayList<>();
+        int length = input.length();
+        int cursor = skipWhitespace(input, 0);
+
+        while (cursor < length) {
+            char c = input.charAt(cursor);
+            Token token;
+            int end;
+
+            if (c == '#') {
+                end = lineEnd(input, cursor + 1);
+                token = new Token(TokenType.DIRECTIVE, input.subSequence(cursor, end).toString());
+            } else if (isIdentifierStart(c)) {
+                end = cursor + 1;
+                while (end < length && isIdentifierPart(input.charAt(end))) {
+                    end++;
+                }
 
-        reader.skipWhitespace();
-        while (reader.canRead()) {
-            Token token = getToken(reader);
-            if (token != null) {
-                if (token.type != TokenType.COMMENT && token.type != TokenType.MULTI_COMMENT) {
-                    tokens.add(token);
+                int keyword = KEYWORDS.find(input, cursor, end);
+                token = keyword != -1 ? new Token(KEYWORDS.values[keyword], KEYWORDS.keys[keyword]) : new Token(TokenType.IDENTIFIER, input.subSequence(cursor, end).toString());
+            } else if (isDigit(c) || (c == '.' && cursor + 1 < length && isDigit(input.charAt(cursor + 1)))) {
+                TokenType type = TokenType.FLOATING_CONSTANT;
+                end = floatingEnd(input, cursor);
+
+                // Integers are always matched by the unsigned types since they also accept no suffix
+                int hexEnd = hexadecimalEnd(input, cursor);
+                if (hexEnd > end) {
+                    type = TokenType.UINTEGER_HEXADECIMAL_CONSTANT;
+                    end = hexEnd;
+                }
+                int octalEnd = octalEnd(input, cursor);
+                if (octalEnd > end) {
+                    type = TokenType.UINTEGER_OCTAL_CONSTANT;
+                    end = octalEnd;
                 }
-                reader.skipWhitespace();
+                int decimalEnd = decimalEnd(input, cursor);
+                if (decimalEnd > end) {
+                    type = TokenType.UINTEGER_DECIMAL_CONSTANT;
+                    end = decimalEnd;
+                }
+                token = new Token(type, input.subSequence(cursor, end).toString());
+            } else if (c == '/' && cursor + 1 < length && input.charAt(cursor + 1) == '/') {
+                // Comments are skipped entirely
+                cursor = skipWhitespace(input, lineEnd(input, cursor + 2));
+                continue;
+            } else if (c == '/' && cursor + 1 < length && input.charAt(cursor + 1) == '*' && (end = commentEnd(input, cursor + 2)) != -1) {
+                cursor = skipWhitespace(input, end);
                 continue;
+            } else {
+                token = operator(input, cursor);
+                if (token == null) {
+                    throw new GlslSyntaxException("Unknown Token", input.toString(), cursor + 1);
+                }
+                end = cursor + token.value().length();
             }
 
-            throw new GlslSyntaxException("Unknown Token", reader.getString(), reader.getCursor() + 1);
+            tokens.add(token);
+            cursor = skipWhitespace(input, end);
         }
 
         return tokens.toArray(Token[]::new);
     }
 
-    private static @Nullable Token getToken(StringReader reader) {
-        String word = reader.getRemaining();
-        Token longest = null;
-        int length = 0;
-        for (TokenType type : TokenType.values()) {
-            Matcher matcher = type.pattern.matcher(word);
-            if (matcher.find() && matcher.start() == 0 && matcher.end() > length) {
-                length = matcher.end();
-                longest = new Token(type, word.substring(0, length));
+    private static @Nullable Token operator(CharSequence input, int cursor) {
+        char c = input.charAt(cursor);
+        if (c >= OPERATORS.length) {
+            return null;
+        }
+
+        String[] candidates = OPERATORS[c];
+        for (int i = 0; i < candidates.length; i++) {
+            String operator = candidates[i];
+            if (regionMatches(input, cursor, operator)) {
+                return new Token(OPERATOR_TYPES[c][i], operator);
             }
         }
+        return null;
+    }
 
-        if (longest != null) {
-            reader.setCursor(reader.getCursor() + length);
-            return longest;
+    private static boolean regionMatches(CharSequence input, int start, String value) {
+        if (start + value.length() > input.length()) {
+            return false;
         }
+        for (int i = 0; i < value.length(); i++) {
+            if (input.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return null;
+    private static int skipWhitespace(CharSequence input, int cursor) {
+        int length = input.length();
+        while (cursor < length && Character.isWhitespace(input.charAt(cursor))) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private static int lineEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        while (cursor < length) {
+            char c = input.charAt(cursor);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                break;
+            }
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private static int commentEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        for (int i = cursor; i + 1 < length; i++) {
+            if (input.charAt(i) == '*' && input.charAt(i + 1) == '/') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    private static int digitsEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        while (cursor < length && isDigit(input.charAt(cursor))) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private static int exponentEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        if (cursor >= length || (input.charAt(cursor) != 'e' && input.charAt(cursor) != 'E')) {
+            return cursor;
+        }
+
+        int start = cursor + 1;
+        if (start < length && (input.charAt(start) == '+' || input.charAt(start) == '-')) {
+            start++;
+        }
+        int end = digitsEnd(input, start);
+        return end > start ? end : cursor;
+    }
+
+    private static int floatSuffixEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        if (cursor < length) {
+            char c = input.charAt(cursor);
+            if (c == 'f' || c == 'F') {
+                return cursor + 1;
+            }
+            if (cursor + 1 < length && ((c == 'l' && input.charAt(cursor + 1) == 'f') || (c == 'L' && input.charAt(cursor + 1) == 'F'))) {
+                return cursor + 2;
+            }
+        }
+        return cursor;
+    }
+
+    private static int unsignedSuffixEnd(CharSequence input, int cursor) {
+        if (cursor < input.length() && (input.charAt(cursor) == 'u' || input.charAt(cursor) == 'U')) {
+            return cursor + 1;
+        }
+        return cursor;
+    }
+
+    /**
+     * Matches <code>(\d+\.\d*|\.\d+)([eE][+-]?\d+)?(f|F|lf|LF)?</code> or <code>\d+[eE][+-]?\d+(f|F|lf|LF)?</code>.
+     *
+     * @return The end of the floating point constant or <code>-1</code> if there isn't one
+     */
+    private static int floatingEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        int end = digitsEnd(input, cursor);
+        if (end > cursor) {
+            if (end < length && input.charAt(end) == '.') {
+                end = digitsEnd(input, end + 1);
+            } else {
+                // Without a decimal point the exponent is required
+                int exponentEnd = exponentEnd(input, end);
+                return exponentEnd > end ? floatSuffixEnd(input, exponentEnd) : -1;
+            }
+        } else if (input.charAt(cursor) == '.' && cursor + 1 < length && isDigit(input.charAt(cursor + 1))) {
+            end = digitsEnd(input, cursor + 1);
+        } else {
+            return -1;
+        }
+        return floatSuffixEnd(input, exponentEnd(input, end));
+    }
+
+    private static int hexadecimalEnd(CharSequence input, int cursor) {
+        int length = input.length();
+        if (cursor + 1 >= length || input.charAt(cursor) != '0' || (input.charAt(cursor + 1) != 'x' && input.charAt(cursor + 1) != 'X')) {
+            return -1;
+        }
+
+        int end = cursor + 2;
+        while (end < length && isHexDigit(input.charAt(end))) {
+            end++;
+        }
+        return unsignedSuffixEnd(input, end);
+    }
+
+    private static int octalEnd(CharSequence input, int cursor) {
+        if (input.charAt(cursor) != '0') {
+            return -1;
+        }
+
+        int length = input.length();
+        int end = cursor + 1;
+        while (end < length && input.charAt(end) >= '0' && input.charAt(end) <= '7') {
+            end++;
+        }
+        return unsignedSuffixEnd(input, end);
+    }
+
+    private static int decimalEnd(CharSequence input, int cursor) {
+        char c = input.charAt(cursor);
+        if (c < '1' || c > '9') {
+            return -1;
+        }
+        return unsignedSuffixEnd(input, digitsEnd(input, cursor + 1));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    /**
+     * Open addressing hash table from keywords to their token types that can be queried with a range of characters.
+     */
+    private static final class KeywordTable {
+
+        private final String[] keys;
+        private final TokenType[] values;
+        private final int mask;
+
+        private KeywordTable(Map<String, TokenType> keywords) {
+            // Keep the table at most 25% full so lookups for identifiers that aren't keywords end quickly
+            int size = Integer.highestOneBit(keywords.size() * 4 - 1) << 1;
+            this.keys = new String[size];
+            this.values = new TokenType[size];
+            this.mask = size - 1;
+
+            for (Map.Entry<String, TokenType> entry : keywords.entrySet()) {
+                int index = entry.getKey().hashCode() & this.mask;
+                while (this.keys[index] != null) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = entry.getKey();
+                this.values[index] = entry.getValue();
+            }
+        }
+
+        /**
+         * Finds the keyword for the specified range of characters.
+         *
+         * @return The index of the keyword or <code>-1</code> if the range is not a keyword
+         */
+        private int find(CharSequence input, int start, int end) {
+            // Same hash as String#hashCode
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + input.charAt(i);
+            }
+
+            int length = end - start;
+            int index = hash & this.mask;
+            String key;
+            while ((key = this.keys[index]) != null) {
+                if (key.length() == length && regionMatches(input, start, key)) {
+                    return index;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return -1;
+        }
     }
 
     public record Token(TokenType type, String value) {
@@ -68,10 +354,10 @@ public final class GlslLexer {
     }
 
     public enum TokenType {
-        DIRECTIVE("#.*"),
-        GLSL_MACRO("__LINE__|__FILE__|__VERSION__"),
-        COMMENT("\\/\\/.*"),
-        MULTI_COMMENT("\\/\\*[^*]*\\*+(?:[^/*][^*]*\\*+)*\\/"),
+        DIRECTIVE,
+        GLSL_MACRO("__LINE__", "__FILE__", "__VERSION__"),
+        COMMENT,
+        MULTI_COMMENT,
 
         CONST("const"),
         BOOL("bool"),
@@ -238,44 +524,44 @@ public final class GlslLexer {
         SUBROUTINE("subroutine"),
 
         // TYPE_NAME ??
-        FLOATING_CONSTANT("(?:(?:\\d+\\.\\d+|\\d+\\.|\\.\\d+)(?:[eE][+-]?\\d+)?(?:f|F|lf|LF)?)|(?:\\d+)(?:\\.|[eE][+-]?\\d+)(?:f|F|lf|LF)?"),
-        UINTEGER_HEXADECIMAL_CONSTANT("0[xX][0-9a-fA-F]*[uU]?"),
-        UINTEGER_OCTAL_CONSTANT("0[0-7]*[uU]?"),
-        UINTEGER_DECIMAL_CONSTANT("[1-9][\\d]*[uU]?"),
-        INTEGER_HEXADECIMAL_CONSTANT("0[xX][0-9a-fA-F]*"),
-        INTEGER_OCTAL_CONSTANT("0[0-7]*"),
-        INTEGER_DECIMAL_CONSTANT("[1-9][\\d]*"),
-        BOOL_CONSTANT("true|false"),
+        FLOATING_CONSTANT,
+        UINTEGER_HEXADECIMAL_CONSTANT,
+        UINTEGER_OCTAL_CONSTANT,
+        UINTEGER_DECIMAL_CONSTANT,
+        INTEGER_HEXADECIMAL_CONSTANT,
+        INTEGER_OCTAL_CONSTANT,
+        INTEGER_DECIMAL_CONSTANT,
+        BOOL_CONSTANT("true", "false"),
         // FIELD_SELECTION
 
         LEFT_OP("<<"),
         RIGHT_OP(">>"),
-        INC_OP("\\+\\+"),
+        INC_OP("++"),
         DEC_OP("--"),
         LE_OP("<="),
         GE_OP(">="),
         EQ_OP("=="),
         NE_OP("!="),
         AND_OP("&&"),
-        OR_OP("\\|\\|"),
-        XOR_OP("\\^\\^"),
-        MUL_ASSIGN("\\*="),
-        DIV_ASSIGN("\\/="),
-        ADD_ASSIGN("\\+="),
+        OR_OP("||"),
+        XOR_OP("^^"),
+        MUL_ASSIGN("*="),
+        DIV_ASSIGN("/="),
+        ADD_ASSIGN("+="),
         MOD_ASSIGN("%="),
         LEFT_ASSIGN("<<="),
         RIGHT_ASSIGN(">>="),
         AND_ASSIGN("&="),
-        XOR_ASSIGN("\\^="),
-        OR_ASSIGN("\\|="),
+        XOR_ASSIGN("^="),
+        OR_ASSIGN("|="),
         SUB_ASSIGN("-="),
-        LEFT_PAREN("\\("),
-        RIGHT_PAREN("\\)"),
-        LEFT_BRACKET("\\["),
-        RIGHT_BRACKET("\\]"),
-        LEFT_BRACE("\\{"),
-        RIGHT_BRACE("\\}"),
-        DOT("\\."),
+        LEFT_PAREN("("),
+        RIGHT_PAREN(")"),
+        LEFT_BRACKET("["),
+        RIGHT_BRACKET("]"),
+        LEFT_BRACE("{"),
+        RIGHT_BRACE("}"),
+        DOT("."),
         COMMA(","),
         COLON(":"),
         EQUAL("="),
@@ -283,16 +569,16 @@ public final class GlslLexer {
         BANG("!"),
         DASH("-"),
         TILDE("~"),
-        PLUS("\\+"),
-        STAR("\\*"),
-        SLASH("\\/"),
+        PLUS("+"),
+        STAR("*"),
+        SLASH("/"),
         PERCENT("%"),
         LEFT_ANGLE("<"),
         RIGHT_ANGLE(">"),
-        VERTICAL_BAR("\\|"),
-        CARET("\\^"),
+        VERTICAL_BAR("|"),
+        CARET("^"),
         AMPERSAND("&"),
-        QUESTION("\\?"),
+        QUESTION("?"),
 
         INVARIANT("invariant"),
         PRECISE("precise"),
@@ -301,12 +587,19 @@ public final class GlslLexer {
         LOW_PRECISION("lowp"),
         PRECISION("precision"),
 
-        IDENTIFIER("[_a-zA-Z][\\d_a-zA-Z]*");
+        IDENTIFIER;
 
-        private final Pattern pattern;
+        private final String[] literals;
+
+        TokenType(String... literals) {
+            this.literals = literals;
+        }
 
-        TokenType(String regex) {
-            this.pattern = Pattern.compile(regex);
+        /**
+         * @return The exact strings this token matches or an empty array if the token is scanned by the lexer
+         */
+        public String[] getLiterals() {
+            return this.literals;
         }
 
         public @Nullable GlslTypeSpecifier.BuiltinType asBuiltinType() {
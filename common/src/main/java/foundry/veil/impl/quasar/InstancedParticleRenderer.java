@@ -0,0 +1,453 @@
+package foundry.veil.impl.quasar;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.deferred.VeilDeferredRenderer;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import foundry.veil.api.quasar.particle.RenderData;
+import foundry.veil.api.quasar.particle.RenderStyle;
+import foundry.veil.api.quasar.particle.SpriteData;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector3fc;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL20C.glDisableVertexAttribArray;
+import static org.lwjgl.opengl.GL20C.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20C.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30C.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL33C.glVertexAttribDivisor;
+
+/**
+ * <p>Draws {@link RenderStyle.Billboard} and {@link RenderStyle.Cube} particles as instances of a shared mesh.</p>
+ * <p>Each particle writes one 56 byte instance record instead of 4 or 24 full vertices.
+ * All particles that share a render type and style are drawn with a single instanced draw call.</p>
+ * <p>Additive and regular particles use separate programs, so the deferred renderer can replace each of them the same
+ * way it replaces the regular particle shaders. Regular particles are sorted back to front like the buffer source does.
+ * If no instanced program exists for the active renderer, particles must be drawn with the buffer source instead.</p>
+ * <p>Additive particles simulated on the GPU read their positions directly from the simulation buffer, so their movement
+ * never has to be copied back before drawing. Each simulated emitter is drawn as its own unsorted batch.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class InstancedParticleRenderer implements NativeResource {
+
+    private static final int INSTANCE_SIZE = Float.BYTES * 12 + 4 + Short.BYTES * 2;
+
+    private final VertexBuffer billboardMesh;
+    private final VertexBuffer cubeMesh;
+    private final int instanceVbo;
+    private final Map<BatchKey, Batch> batches;
+    private final Matrix4f modelView;
+    private final Matrix3f cameraOrientation;
+    private long capacity;
+
+    public InstancedParticleRenderer() {
+        this.billboardMesh = createMesh(false);
+        this.cubeMesh = createMesh(true);
+        this.instanceVbo = glGenBuffers();
+        this.batches = new LinkedHashMap<>();
+        this.modelView = new Matrix4f();
+        this.cameraOrientation = new Matrix3f();
+        this.capacity = 0;
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.instanceVbo);
+        this.billboardMesh.bind();
+        setupBufferState(0L);
+        this.cubeMesh.bind();
+        setupBufferState(0L);
+        VertexBuffer.unbind();
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    private static VertexBuffer createMesh(boolean cube) {
+        Tesselator tesselator = RenderSystem.renderThreadTesselator();
+        BufferBuilder builder = tesselator.getBuilder();
+        builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
+        if (cube) {
+            Vector3fc[] positions = RenderStyle.Cube.CUBE_POSITIONS;
+            for (int i = 0; i < positions.length; i++) {
+                int j = i % 4;
+                Vector3fc pos = positions[i];
+                builder.vertex(pos.x(), pos.y(), pos.z()).uv((int) (j / 2.0F), j % 2).endVertex();
+            }
+        } else {
+            // Matches the UVs assigned in RenderStyle.Billboard
+            builder.vertex(1, -1, 0).uv(0, 0).endVertex();
+            builder.vertex(-1, -1, 0).uv(1, 0).endVertex();
+            builder.vertex(-1, 1, 0).uv(1, 1).endVertex();
+            builder.vertex(1, 1, 0).uv(0, 1).endVertex();
+        }
+
+        VertexBuffer vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        vbo.bind();
+        vbo.upload(builder.end());
+        VertexBuffer.unbind();
+        return vbo;
+    }
+
+    private static void setupBufferState(long offset) {
+        glEnableVertexAttribArray(4);
+        glEnableVertexAttribArray(5);
+        glEnableVertexAttribArray(6);
+        glEnableVertexAttribArray(7);
+        glEnableVertexAttribArray(8);
+
+        glVertexAttribPointer(4, 4, GL_FLOAT, false, INSTANCE_SIZE, offset);
+        glVertexAttribPointer(5, 4, GL_FLOAT, false, INSTANCE_SIZE, offset + Float.BYTES * 4);
+        glVertexAttribPointer(6, 4, GL_FLOAT, false, INSTANCE_SIZE, offset + Float.BYTES * 8);
+        glVertexAttribPointer(7, 4, GL_UNSIGNED_BYTE, true, INSTANCE_SIZE, offset + Float.BYTES * 12);
+        glVertexAttribIPointer(8, 2, GL_SHORT, INSTANCE_SIZE, offset + Float.BYTES * 12 + 4);
+
+        glVertexAttribDivisor(4, 1);
+        glVertexAttribDivisor(5, 1);
+        glVertexAttribDivisor(6, 1);
+        glVertexAttribDivisor(7, 1);
+        glVertexAttribDivisor(8, 1);
+    }
+
+    /**
+     * Checks whether particles of the specified style can be drawn with this renderer.
+     *
+     * @param renderStyle The style to check
+     * @return Whether the style is supported
+     */
+    public static boolean isSupported(RenderStyle renderStyle) {
+        return renderStyle instanceof RenderStyle.Billboard || renderStyle instanceof RenderStyle.Cube;
+    }
+
+    /**
+     * Retrieves the instanced program to draw particles with, replaced by the deferred version when the deferred renderer is active.
+     *
+     * @param additive Whether the particles use additive blending
+     * @return The program to use or <code>null</code> if there is no instanced program for the active renderer
+     */
+    public static @Nullable ShaderProgram getShader(boolean additive) {
+        ResourceLocation id = additive ? VeilShaders.PARTICLE_INSTANCED_ADD : VeilShaders.PARTICLE_INSTANCED;
+        VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
+        if (deferredRenderer.isActive()) {
+            return deferredRenderer.getDeferredShaderManager().getShader(id);
+        }
+        return VeilRenderSystem.renderer().getShaderManager().getShader(id);
+    }
+
+    /**
+     * Checks whether particles can be drawn with this renderer for the active renderer.
+     *
+     * @param renderStyle The style to check
+     * @param additive    Whether the particles use additive blending
+     * @return Whether the particles can be drawn instanced
+     */
+    public static boolean canDraw(RenderStyle renderStyle, boolean additive) {
+        return isSupported(renderStyle) && getShader(additive) != null;
+    }
+
+    private static void setupSimulatedState() {
+        glEnableVertexAttribArray(9);
+        glEnableVertexAttribArray(10);
+
+        glVertexAttribPointer(9, 3, GL_FLOAT, false, QuasarComputeSimulator.PARTICLE_SIZE, 0L);
+        glVertexAttribPointer(10, 3, GL_FLOAT, false, QuasarComputeSimulator.PARTICLE_SIZE, Float.BYTES * 4);
+
+        glVertexAttribDivisor(9, 1);
+        glVertexAttribDivisor(10, 1);
+    }
+
+    /**
+     * Adds a single particle to the batch for its render type.
+     *
+     * @param renderStyle  The style to draw the particle with. Must pass {@link #isSupported(RenderStyle)}
+     * @param data         The data of the particle
+     * @param renderData   The interpolated render state of the particle
+     * @param renderOffset The position of the particle relative to the camera
+     */
+    public void add(RenderStyle renderStyle, QuasarParticleData data, RenderData renderData, Vector3fc renderOffset) {
+        boolean billboard = renderStyle instanceof RenderStyle.Billboard;
+        Batch batch = this.batches.computeIfAbsent(new BatchKey(renderData.getRenderType(), billboard, renderData.isAdditive(), null), unused -> new Batch());
+        put(batch.reserve(), billboard, data, renderData, renderOffset);
+    }
+
+    /**
+     * Adds a single particle that is positioned by the compute simulation. Particles must be added in the same order as
+     * they are stored in the simulation, and every particle of the emitter has to be added.
+     *
+     * @param renderStyle  The style to draw the particle with. Must pass {@link #isSupported(RenderStyle)}
+     * @param data         The data of the particle
+     * @param renderData   The render state of the particle. Only the position is ignored
+     * @param anchorOffset The anchor of the simulation relative to the camera
+     * @param simulation   The simulation to read positions from
+     */
+    public void addSimulated(RenderStyle renderStyle, QuasarParticleData data, RenderData renderData, Vector3fc anchorOffset, QuasarComputeSimulator.EmitterState simulation) {
+        boolean billboard = renderStyle instanceof RenderStyle.Billboard;
+        Batch batch = this.batches.computeIfAbsent(new BatchKey(renderData.getRenderType(), billboard, renderData.isAdditive(), simulation), unused -> new Batch());
+        put(batch.reserve(), billboard, data, renderData, anchorOffset);
+    }
+
+    private static void put(ByteBuffer buffer, boolean billboard, QuasarParticleData data, RenderData renderData, Vector3fc renderOffset) {
+
+        buffer.putFloat(renderOffset.x());
+        buffer.putFloat(renderOffset.y());
+        buffer.putFloat(renderOffset.z());
+        buffer.putFloat(renderData.getRenderRadius());
+
+        float stretch = data.velocityStretchFactor();
+        if (billboard) {
+            if (data.faceVelocity()) {
+                Vector3fc rotation = renderData.getRenderRotation();
+                buffer.putFloat(rotation.x()).putFloat(rotation.y()).putFloat(rotation.z());
+            } else {
+                buffer.putFloat(0.0F).putFloat(0.0F).putFloat(0.0F);
+            }
+            buffer.putFloat(Math.max(stretch, 0.0F));
+        } else {
+            Vector3fc rotation = renderData.getRenderRotation();
+            buffer.putFloat(rotation.x()).putFloat(rotation.y()).putFloat(rotation.z());
+            buffer.putFloat(stretch);
+        }
+
+        float u0 = 0.0F;
+        float v0 = 0.0F;
+        float u1 = 1.0F;
+        float v1 = 1.0F;
+        SpriteData spriteData = renderData.getSpriteData();
+        if (spriteData != null) {
+            float age = renderData.getRenderAge();
+            float agePercent = renderData.getAgePercent();
+            u0 = spriteData.u(age, agePercent, 0.0F);
+            v0 = spriteData.v(age, agePercent, 0.0F);
+            u1 = spriteData.u(age, agePercent, 1.0F);
+            v1 = spriteData.v(age, agePercent, 1.0F);
+        }
+        TextureAtlasSprite sprite = renderData.getAtlasSprite();
+        if (sprite != null) {
+            // Same remapping as TextureAtlasSprite#wrap uses for the buffer source path
+            float spriteU0 = sprite.getU0();
+            float spriteV0 = sprite.getV0();
+            float spriteWidth = sprite.getU1() - spriteU0;
+            float spriteHeight = sprite.getV1() - spriteV0;
+            u0 = spriteU0 + spriteWidth * u0;
+            v0 = spriteV0 + spriteHeight * v0;
+            u1 = spriteU0 + spriteWidth * u1;
+            v1 = spriteV0 + spriteHeight * v1;
+        }
+        buffer.putFloat(u0).putFloat(v0).putFloat(u1).putFloat(v1);
+
+        buffer.put((byte) (renderData.getRed() * 255.0F));
+        buffer.put((byte) (renderData.getGreen() * 255.0F));
+        buffer.put((byte) (renderData.getBlue() * 255.0F));
+        buffer.put((byte) (renderData.getAlpha() * 255.0F));
+
+        int lightColor = renderData.getLightColor();
+        buffer.putShort((short) (lightColor & 0xFFFF));
+        buffer.putShort((short) (lightColor >> 16 & 0xFFFF));
+    }
+
+    /**
+     * Uploads and draws all batched particles, then clears all batches.
+     *
+     * @param poseStack    The pose the particles were collected with
+     * @param partialTicks The percentage from last tick to this tick
+     */
+    public void draw(PoseStack poseStack, float partialTicks) {
+        long size = 0;
+        for (Batch batch : this.batches.values()) {
+            size += batch.size();
+        }
+        if (size == 0) {
+            return;
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.instanceVbo);
+        if (size > this.capacity) {
+            this.capacity = (long) (size * 1.5);
+        }
+        // Orphan the previous contents so the driver doesn't wait for last frame's draws
+        glBufferData(GL_ARRAY_BUFFER, this.capacity, GL_STREAM_DRAW);
+
+        long offset = 0;
+        for (Map.Entry<BatchKey, Batch> entry : this.batches.entrySet()) {
+            Batch batch = entry.getValue();
+            // Additive blending doesn't depend on order, so only regular particles are sorted.
+            // Simulated instances have to stay in the same order as the simulation buffer
+            if (!entry.getKey().additive() && entry.getKey().simulation() == null) {
+                batch.sortBackToFront();
+            }
+            batch.offset = offset;
+            if (batch.count > 0) {
+                nglBufferSubData(GL_ARRAY_BUFFER, offset, batch.size(), MemoryUtil.memAddress0(batch.buffer));
+                offset += batch.size();
+            }
+        }
+
+        this.modelView.set(RenderSystem.getModelViewMatrix()).mul(poseStack.last().pose());
+        this.cameraOrientation.set(Minecraft.getInstance().getEntityRenderDispatcher().cameraOrientation());
+
+        Iterator<Map.Entry<BatchKey, Batch>> iterator = this.batches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BatchKey, Batch> entry = iterator.next();
+            Batch batch = entry.getValue();
+            QuasarComputeSimulator.EmitterState simulation = entry.getKey().simulation();
+            if (batch.count == 0) {
+                continue;
+            }
+
+            RenderType renderType = entry.getKey().renderType();
+            VertexBuffer mesh = entry.getKey().billboard() ? this.billboardMesh : this.cubeMesh;
+
+            renderType.setupRenderState();
+            ShaderProgram shader = getShader(entry.getKey().additive());
+            if (shader != null) {
+                VeilRenderSystem.setShader(shader);
+                shader.setup();
+                shader.setMatrix("ModelViewMat", this.modelView);
+                shader.setMatrix("ProjMat", RenderSystem.getProjectionMatrix());
+                shader.setMatrix("CameraOrientation", this.cameraOrientation);
+                shader.setInt("Billboard", entry.getKey().billboard() ? 1 : 0);
+                shader.setInt("Simulated", simulation != null ? 1 : 0);
+                shader.setFloat("PartialTicks", partialTicks);
+
+                mesh.bind();
+                glBindBuffer(GL_ARRAY_BUFFER, this.instanceVbo);
+                setupBufferState(batch.offset);
+                if (simulation != null) {
+                    glBindBuffer(GL_ARRAY_BUFFER, simulation.getRenderBuffer());
+                    setupSimulatedState();
+                }
+                VeilRenderSystem.drawInstanced(mesh, batch.count);
+                if (simulation != null) {
+                    glDisableVertexAttribArray(9);
+                    glDisableVertexAttribArray(10);
+                }
+                ShaderProgram.unbind();
+            }
+            renderType.clearRenderState();
+            batch.clear();
+
+            // Simulated batches belong to a single emitter, so they are only kept for one frame
+            if (simulation != null) {
+                batch.free();
+                iterator.remove();
+            }
+        }
+
+        VertexBuffer.unbind();
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void free() {
+        this.billboardMesh.close();
+        this.cubeMesh.close();
+        glDeleteBuffers(this.instanceVbo);
+        for (Batch batch : this.batches.values()) {
+            batch.free();
+        }
+        this.batches.clear();
+    }
+
+    private record BatchKey(RenderType renderType, boolean billboard, boolean additive, @Nullable QuasarComputeSimulator.EmitterState simulation) {
+    }
+
+    private static class Batch implements NativeResource {
+
+        private ByteBuffer buffer;
+        private ByteBuffer sortBuffer;
+        private float[] distances;
+        private int[] order;
+        private int count;
+        private long offset;
+
+        private Batch() {
+            this.buffer = MemoryUtil.memAlloc(INSTANCE_SIZE * 64);
+            this.sortBuffer = null;
+            this.distances = new float[0];
+            this.order = new int[0];
+            this.count = 0;
+        }
+
+        /**
+         * Reorders all instances from farthest to nearest the camera.
+         */
+        private void sortBackToFront() {
+            if (this.count < 2) {
+                return;
+            }
+
+            if (this.distances.length < this.count) {
+                this.distances = new float[this.buffer.capacity() / INSTANCE_SIZE];
+                this.order = new int[this.distances.length];
+            }
+
+            // Instances store their offset from the camera first
+            long address = MemoryUtil.memAddress0(this.buffer);
+            for (int i = 0; i < this.count; i++) {
+                long instance = address + (long) i * INSTANCE_SIZE;
+                float x = MemoryUtil.memGetFloat(instance);
+                float y = MemoryUtil.memGetFloat(instance + Float.BYTES);
+                float z = MemoryUtil.memGetFloat(instance + Float.BYTES * 2);
+                this.distances[i] = x * x + y * y + z * z;
+                this.order[i] = i;
+            }
+
+            float[] distances = this.distances;
+            IntArrays.quickSort(this.order, 0, this.count, (a, b) -> Float.compare(distances[b], distances[a]));
+
+            if (this.sortBuffer == null || this.sortBuffer.capacity() < this.buffer.capacity()) {
+                this.sortBuffer = MemoryUtil.memRealloc(this.sortBuffer, this.buffer.capacity());
+            }
+            long sortAddress = MemoryUtil.memAddress0(this.sortBuffer);
+            for (int i = 0; i < this.count; i++) {
+                MemoryUtil.memCopy(address + (long) this.order[i] * INSTANCE_SIZE, sortAddress + (long) i * INSTANCE_SIZE, INSTANCE_SIZE);
+            }
+
+            ByteBuffer sorted = this.sortBuffer;
+            this.sortBuffer = this.buffer;
+            this.buffer = sorted;
+        }
+
+        private ByteBuffer reserve() {
+            int position = this.count * INSTANCE_SIZE;
+            if (position + INSTANCE_SIZE > this.buffer.capacity()) {
+                this.buffer = MemoryUtil.memRealloc(this.buffer, (int) (this.buffer.capacity() * 1.5) + INSTANCE_SIZE);
+            }
+            this.count++;
+            return this.buffer.position(position);
+        }
+
+        private long size() {
+            return (long) this.count * INSTANCE_SIZE;
+        }
+
+        private void clear() {
+            this.count = 0;
+        }
+
+        @Override
+        public void free() {
+            MemoryUtil.memFree(this.buffer);
+            if (this.sortBuffer != null) {
+                MemoryUtil.memFree(this.sortBuffer);
+                this.sortBuffer = null;
+            }
+        }
+    }
+}
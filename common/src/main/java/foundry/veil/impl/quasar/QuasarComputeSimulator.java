@@ -0,0 +1,585 @@
+package foundry.veil.impl.quasar;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import foundry.veil.api.client.render.shader.definition.DynamicShaderBlock;
+import foundry.veil.api.client.render.shader.definition.ShaderBlock;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import foundry.veil.api.quasar.data.module.ParticleModuleData;
+import foundry.veil.api.quasar.data.module.force.*;
+import foundry.veil.api.quasar.data.module.init.BlockParticleModuleData;
+import foundry.veil.api.quasar.data.module.init.InitSizeParticleModuleData;
+import foundry.veil.api.quasar.data.module.init.InitSubEmitterModuleData;
+import foundry.veil.api.quasar.data.module.init.InitialVelocityModuleData;
+import foundry.veil.api.quasar.data.module.render.ColorParticleModuleData;
+import foundry.veil.api.quasar.data.module.render.TrailParticleModuleData;
+import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.force.*;
+import foundry.veil.api.quasar.emitters.module.init.InitRandomRotationModuleData;
+import foundry.veil.api.quasar.particle.ParticleStorage;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL43C.*;
+
+/**
+ * <p>Simulates the built-in particle forces and integration on the GPU with a compute shader.</p>
+ * <p>Only emitters where every module can be expressed on the GPU are simulated here,
+ * see {@link #isExpressible(List, QuasarParticleData)}. All other emitters use the regular CPU path.</p>
+ * <p>The position and velocity of each particle stay in an {@link EmitterState} on the GPU between ticks. The CPU only
+ * uploads the slot each particle moved from and the state of newly spawned particles, so it never waits for the simulation.
+ * The results are copied back asynchronously and are available to the CPU one tick later.</p>
+ * <p>Positions are stored relative to an anchor near the emitter to avoid losing precision far from the world origin.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class QuasarComputeSimulator implements NativeResource {
+
+    /**
+     * The size of each particle in bytes. Stores the previous position, position, and velocity as <code>vec4</code>.
+     */
+    public static final int PARTICLE_SIZE = Float.BYTES * 12;
+    private static final int SPAWN_SIZE = Float.BYTES * 8;
+    private static final int FORCE_SIZE = Float.BYTES * 12;
+    private static final int WORK_GROUP_SIZE = 64;
+    private static final double REBASE_DISTANCE_SQ = 64.0 * 64.0;
+
+    private static final int FORCE_CONSTANT = 0;
+    private static final int FORCE_DRAG = 1;
+    private static final int FORCE_POINT_ATTRACTOR = 2;
+    private static final int FORCE_POINT = 3;
+    private static final int FORCE_VORTEX = 4;
+
+    private static final int FLAG_STRENGTH_BY_DISTANCE = 1;
+    private static final int FLAG_INVERT_DISTANCE_MODIFIER = 2;
+
+    private static final Vector3dc ZERO = new Vector3d();
+
+    private final int sourceBuffer;
+    private final int spawnBuffer;
+    private final int forceBuffer;
+    private final DynamicShaderBlock<?> sourceBlock;
+    private final DynamicShaderBlock<?> spawnBlock;
+    private final DynamicShaderBlock<?> forceBlock;
+    private final Vector3d forcePosition;
+    private ByteBuffer sourceData;
+    private ByteBuffer spawnData;
+    private ByteBuffer forceData;
+
+    public QuasarComputeSimulator() {
+        this.sourceBuffer = glGenBuffers();
+        this.spawnBuffer = glGenBuffers();
+        this.forceBuffer = glGenBuffers();
+        this.sourceBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.sourceBuffer);
+        this.spawnBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.spawnBuffer);
+        this.forceBlock = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.forceBuffer);
+        this.forcePosition = new Vector3d();
+        this.sourceData = MemoryUtil.memAlloc(Integer.BYTES * WORK_GROUP_SIZE);
+        this.spawnData = MemoryUtil.memAlloc(SPAWN_SIZE * WORK_GROUP_SIZE);
+        this.forceData = MemoryUtil.memAlloc(FORCE_SIZE * 4);
+
+        // The scratch buffers are never empty so they can always be bound
+        upload(this.sourceBuffer, this.sourceBlock, this.sourceData, 0);
+        upload(this.spawnBuffer, this.spawnBlock, this.spawnData, 0);
+        upload(this.forceBuffer, this.forceBlock, this.forceData, 0);
+    }
+
+    /**
+     * @return Whether the GPU is able to run particle simulation
+     */
+    public static boolean isSupported() {
+        return VeilRenderSystem.computeSupported();
+    }
+
+    /**
+     * Checks whether all modules of an emitter can be simulated on the GPU.
+     * Update modules, collision modules, code modules, and vector fields must run on the CPU.
+     *
+     * @param modules      The modules of the emitter
+     * @param particleData The particle data the emitter spawns
+     * @return Whether the emitter can be simulated entirely on the GPU
+     */
+    public static boolean isExpressible(List<ParticleModuleData> modules, QuasarParticleData particleData) {
+        if (particleData.faceVelocity()) {
+            return false;
+        }
+
+        for (ParticleModuleData module : modules) {
+            if (isForce(module)) {
+                continue;
+            }
+
+            // These only run when particles are created or rendered
+            if (module instanceof InitSizeParticleModuleData ||
+                    module instanceof InitialVelocityModuleData ||
+                    module instanceof InitSubEmitterModuleData ||
+                    module instanceof InitRandomRotationModuleData ||
+                    module instanceof ColorParticleModuleData ||
+                    module instanceof TrailParticleModuleData) {
+                continue;
+            }
+            if (module instanceof BlockParticleModuleData blockModule && !blockModule.dynamic()) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isForce(ParticleModuleData module) {
+        return module instanceof GravityForceData ||
+                module instanceof WindForceData ||
+                module instanceof DragForceData ||
+                module instanceof PointAttractorForceData ||
+                module instanceof PointForceData ||
+                module instanceof VortexForceData;
+    }
+
+    /**
+     * Checks whether the simulation shader is available and all the specified force modules can be simulated.
+     *
+     * @param forces The force modules currently applied to the particles
+     * @return Whether {@link #simulate(EmitterState, ParticleStorage, ForceParticleModule[], Vector3dc)} can be used
+     */
+    public boolean canSimulate(ForceParticleModule[] forces) {
+        ShaderProgram shader = VeilRenderSystem.renderer().getShaderManager().getShader(VeilShaders.QUASAR_SIMULATE);
+        if (shader == null || !shader.isCompute()) {
+            return false;
+        }
+
+        for (ForceParticleModule force : forces) {
+            if (!(force instanceof ConstantForceModule ||
+                    force instanceof ScaleForceModule ||
+                    force instanceof PointAttractorForceModule ||
+                    force instanceof PointForceModule ||
+                    force instanceof VortexForceModule)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A new GPU copy of the particles of a single emitter
+     */
+    public EmitterState createState() {
+        return new EmitterState();
+    }
+
+    private static void upload(int buffer, DynamicShaderBlock<?> block, ByteBuffer data, long size) {
+        // Orphan the previous contents so the upload never waits for the last dispatch
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, buffer);
+        glBufferData(GL_SHADER_STORAGE_BUFFER, data.capacity(), GL_STREAM_DRAW);
+        if (size > 0) {
+            nglBufferSubData(GL_SHADER_STORAGE_BUFFER, 0, size, MemoryUtil.memAddress0(data));
+        }
+        block.setSize(data.capacity());
+    }
+
+    private static ByteBuffer reserve(ByteBuffer buffer, long size) {
+        if (size <= buffer.capacity()) {
+            return buffer;
+        }
+        return MemoryUtil.memRealloc(buffer, (int) Math.max(size, buffer.capacity() * 3L / 2L));
+    }
+
+    private void putForce(FloatBuffer buffer, int type, float strength, double rangeSq, int flags, double x, double y, double z, Vector3dc axis) {
+        buffer.put(type).put(strength).put((float) rangeSq).put(flags);
+        buffer.put((float) x).put((float) y).put((float) z).put(0.0F);
+        buffer.put((float) axis.x()).put((float) axis.y()).put((float) axis.z()).put(0.0F);
+    }
+
+    private void putPositionedForce(FloatBuffer buffer, int type, float strength, double rangeSq, int flags, PositionedForce force, Vector3dc origin, Vector3dc anchor, Vector3dc axis) {
+        Vector3d position = this.forcePosition.set(force.getPosition());
+        if (force.isLocalPosition()) {
+            position.add(origin);
+        }
+        position.sub(anchor);
+        this.putForce(buffer, type, strength, rangeSq, flags, position.x, position.y, position.z, axis);
+    }
+
+    private int writeForces(ForceParticleModule[] forces, Vector3dc origin, Vector3dc anchor) {
+        this.forceData = reserve(this.forceData, (long) forces.length * FORCE_SIZE);
+
+        // Module state is read every tick so changes like ForceParticleModule#setStrength are applied immediately
+        FloatBuffer buffer = this.forceData.asFloatBuffer();
+        for (ForceParticleModule force : forces) {
+            if (force instanceof ConstantForceModule constant) {
+                Vector3d acceleration = constant.getAcceleration();
+                this.putForce(buffer, FORCE_CONSTANT, constant.getStrength(), 0, 0, acceleration.x, acceleration.y, acceleration.z, ZERO);
+            } else if (force instanceof ScaleForceModule scale) {
+                Vector3d value = scale.getScale();
+                this.putForce(buffer, FORCE_DRAG, scale.getStrength(), 0, 0, value.x, value.y, value.z, ZERO);
+            } else if (force instanceof PointAttractorForceModule attractor) {
+                int flags = (attractor.isStrengthByDistance() ? FLAG_STRENGTH_BY_DISTANCE : 0) | (attractor.isInvertDistanceModifier() ? FLAG_INVERT_DISTANCE_MODIFIER : 0);
+                this.putPositionedForce(buffer, FORCE_POINT_ATTRACTOR, attractor.getStrength(), attractor.getRangeSquared(), flags, attractor, origin, anchor, ZERO);
+            } else if (force instanceof PointForceModule point) {
+                this.putPositionedForce(buffer, FORCE_POINT, point.getStrength(), point.getRangeSquared(), 0, point, origin, anchor, ZERO);
+            } else if (force instanceof VortexForceModule vortex) {
+                this.putPositionedForce(buffer, FORCE_VORTEX, vortex.getStrength(), vortex.getRangeSquared(), 0, vortex, origin, anchor, vortex.getVortexAxis());
+            }
+        }
+
+        upload(this.forceBuffer, this.forceBlock, this.forceData, (long) forces.length * FORCE_SIZE);
+        return forces.length;
+    }
+
+    /**
+     * Uploads the slot each particle came from and the state of all new particles.
+     *
+     * @return The number of new particles
+     */
+    private int writeSources(ParticleStorage storage, Vector3dc anchor) {
+        int count = storage.size();
+        int[] sources = storage.getSources();
+        double[] positions = storage.getPositions();
+        double[] velocities = storage.getVelocities();
+
+        int spawned = 0;
+        for (int i = 0; i < count; i++) {
+            if (sources[i] < 0) {
+                spawned++;
+            }
+        }
+
+        this.sourceData = reserve(this.sourceData, (long) count * Integer.BYTES);
+        this.spawnData = reserve(this.spawnData, (long) spawned * SPAWN_SIZE);
+
+        IntBuffer sourceBuffer = this.sourceData.asIntBuffer();
+        FloatBuffer spawnBuffer = this.spawnData.asFloatBuffer();
+        int spawnIndex = 0;
+        for (int i = 0; i < count; i++) {
+            int source = sources[i];
+            if (source >= 0) {
+                sourceBuffer.put(source);
+                continue;
+            }
+
+            // New particles are read from the spawn buffer instead of the last simulation
+            int offset = i * 3;
+            sourceBuffer.put(-1 - spawnIndex++);
+            spawnBuffer.put((float) (positions[offset] - anchor.x())).put((float) (positions[offset + 1] - anchor.y())).put((float) (positions[offset + 2] - anchor.z())).put(0.0F);
+            spawnBuffer.put((float) velocities[offset]).put((float) velocities[offset + 1]).put((float) velocities[offset + 2]).put(0.0F);
+        }
+
+        upload(this.sourceBuffer, this.sourceBlock, this.sourceData, (long) count * Integer.BYTES);
+        upload(this.spawnBuffer, this.spawnBlock, this.spawnData, (long) spawned * SPAWN_SIZE);
+        return spawned;
+    }
+
+    /**
+     * Applies all forces to the particles of an emitter and moves them by their velocity. The results stay on the GPU,
+     * see {@link EmitterState#readback(ParticleStorage)} to copy them back.
+     *
+     * @param state   The GPU copy of the particles
+     * @param storage The particles to simulate
+     * @param forces  The force modules to apply. Must pass {@link #canSimulate(ForceParticleModule[])}
+     * @param origin  The position of the emitter
+     */
+    public void simulate(EmitterState state, ParticleStorage storage, ForceParticleModule[] forces, Vector3dc origin) {
+        int count = storage.size();
+        if (count == 0) {
+            state.count = 0;
+            state.version = storage.getLayoutVersion();
+            storage.resetSources();
+            return;
+        }
+
+        ShaderProgram shader = VeilRenderSystem.setShader(VeilShaders.QUASAR_SIMULATE);
+        if (shader == null) {
+            return;
+        }
+
+        float shiftX = 0.0F;
+        float shiftY = 0.0F;
+        float shiftZ = 0.0F;
+        if (!state.anchored) {
+            state.anchor.set(origin);
+            state.anchored = true;
+        } else if (state.anchor.distanceSquared(origin) > REBASE_DISTANCE_SQ) {
+            // Move the anchor with the emitter so positions near it stay precise
+            shiftX = (float) (state.anchor.x - origin.x());
+            shiftY = (float) (state.anchor.y - origin.y());
+            shiftZ = (float) (state.anchor.z - origin.z());
+            state.anchor.set(origin);
+        }
+
+        state.reserve(count);
+        boolean remap = storage.hasSourcesChanged();
+        if (remap) {
+            this.writeSources(storage, state.anchor);
+        }
+        int forceCount = this.writeForces(forces, origin, state.anchor);
+
+        int source = state.current;
+        int destination = 1 - source;
+        try {
+            VeilRenderSystem.bind("QuasarParticlesIn", state.blocks[source]);
+            VeilRenderSystem.bind("QuasarParticlesOut", state.blocks[destination]);
+            VeilRenderSystem.bind("QuasarSources", this.sourceBlock);
+            VeilRenderSystem.bind("QuasarSpawned", this.spawnBlock);
+            VeilRenderSystem.bind("QuasarForces", this.forceBlock);
+
+            shader.setInt("ParticleCount", count);
+            shader.setInt("ForceCount", forceCount);
+            shader.setInt("Remap", remap ? 1 : 0);
+            shader.setVector("OriginShift", shiftX, shiftY, shiftZ);
+            shader.bind();
+
+            // Large emitters can need more groups than a single dispatch allows
+            int maxGroups = VeilRenderSystem.maxComputeWorkGroupCountX();
+            int groups = (count + WORK_GROUP_SIZE - 1) / WORK_GROUP_SIZE;
+            for (int group = 0; group < groups; group += maxGroups) {
+                shader.setInt("BaseParticle", group * WORK_GROUP_SIZE);
+                glDispatchCompute(Math.min(groups - group, maxGroups), 1, 1);
+            }
+            glMemoryBarrier(GL_SHADER_STORAGE_BARRIER_BIT | GL_VERTEX_ATTRIB_ARRAY_BARRIER_BIT | GL_BUFFER_UPDATE_BARRIER_BIT);
+
+            ShaderProgram.unbind();
+        } finally {
+            VeilRenderSystem.unbind(state.blocks[source]);
+            VeilRenderSystem.unbind(state.blocks[destination]);
+            VeilRenderSystem.unbind(this.sourceBlock);
+            VeilRenderSystem.unbind(this.spawnBlock);
+            VeilRenderSystem.unbind(this.forceBlock);
+        }
+
+        state.current = destination;
+        state.count = count;
+        state.version = storage.getLayoutVersion();
+        storage.resetSources();
+        state.requestReadback();
+    }
+
+    @Override
+    public void free() {
+        this.sourceBlock.free();
+        this.spawnBlock.free();
+        this.forceBlock.free();
+        glDeleteBuffers(this.sourceBuffer);
+        glDeleteBuffers(this.spawnBuffer);
+        glDeleteBuffers(this.forceBuffer);
+        MemoryUtil.memFree(this.sourceData);
+        MemoryUtil.memFree(this.spawnData);
+        MemoryUtil.memFree(this.forceData);
+    }
+
+    /**
+     * <p>The GPU copy of the particles of a single emitter.</p>
+     * <p>Particles are stored in two buffers that are swapped every tick. The last written buffer can be drawn directly
+     * with {@link #getRenderBuffer()} while it matches the layout of the emitter storage.</p>
+     */
+    public static class EmitterState implements NativeResource {
+
+        private final int[] buffers;
+        private final DynamicShaderBlock<?>[] blocks;
+        private final int readbackBuffer;
+        private final Vector3d anchor;
+        private final Vector3d readbackAnchor;
+        private boolean anchored;
+        private int current;
+        private int capacity;
+        private int count;
+        private int version;
+
+        private long fence;
+        private long readbackSize;
+        private int readbackCount;
+        private int readbackVersion;
+        private ByteBuffer readbackData;
+
+        private EmitterState() {
+            this.buffers = new int[]{glGenBuffers(), glGenBuffers()};
+            this.blocks = new DynamicShaderBlock[]{
+                    ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.buffers[0]),
+                    ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, this.buffers[1])
+            };
+            this.readbackBuffer = glGenBuffers();
+            this.anchor = new Vector3d();
+            this.readbackAnchor = new Vector3d();
+            this.anchored = false;
+            this.current = 0;
+            this.capacity = 0;
+            this.count = 0;
+            this.version = -1;
+            this.fence = 0L;
+            this.readbackSize = 0L;
+            this.readbackData = null;
+        }
+
+        private void reserve(int count) {
+            if (count <= this.capacity) {
+                return;
+            }
+
+            int newCapacity = Math.max(count, this.capacity * 3 / 2);
+            long size = (long) newCapacity * PARTICLE_SIZE;
+
+            // The last results are the input of the next simulation, so they have to be kept
+            int current = this.buffers[this.current];
+            int resized = glGenBuffers();
+            glBindBuffer(GL_COPY_WRITE_BUFFER, resized);
+            glBufferData(GL_COPY_WRITE_BUFFER, size, GL_DYNAMIC_COPY);
+            if (this.count > 0) {
+                glBindBuffer(GL_COPY_READ_BUFFER, current);
+                glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, (long) this.count * PARTICLE_SIZE);
+                glBindBuffer(GL_COPY_READ_BUFFER, 0);
+            }
+            glDeleteBuffers(current);
+            this.blocks[this.current].free();
+            this.buffers[this.current] = resized;
+            this.blocks[this.current] = ShaderBlock.wrapper(GL_SHADER_STORAGE_BUFFER, resized);
+
+            glBindBuffer(GL_COPY_WRITE_BUFFER, this.buffers[1 - this.current]);
+            glBufferData(GL_COPY_WRITE_BUFFER, size, GL_DYNAMIC_COPY);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+
+            this.blocks[0].setSize(size);
+            this.blocks[1].setSize(size);
+            this.capacity = newCapacity;
+        }
+
+        /**
+         * Copies the latest results into a separate buffer that can be read without waiting for the GPU.
+         */
+        private void requestReadback() {
+            // Only one readback is in flight at a time. It is picked up again next tick
+            if (this.fence != 0L) {
+                return;
+            }
+
+            long size = (long) this.count * PARTICLE_SIZE;
+            glBindBuffer(GL_COPY_READ_BUFFER, this.buffers[this.current]);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, this.readbackBuffer);
+            if (size > this.readbackSize) {
+                this.readbackSize = (long) this.capacity * PARTICLE_SIZE;
+                glBufferData(GL_COPY_WRITE_BUFFER, this.readbackSize, GL_STREAM_READ);
+            }
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, size);
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+
+            this.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            this.readbackCount = this.count;
+            this.readbackVersion = this.version;
+            this.readbackAnchor.set(this.anchor);
+        }
+
+        /**
+         * Copies the results of an earlier simulation into the CPU storage if the GPU has finished them. This never waits for the GPU.
+         *
+         * @param storage The storage to write positions and velocities into
+         * @return Whether the storage was updated
+         */
+        public boolean readback(ParticleStorage storage) {
+            if (this.fence == 0L) {
+                return false;
+            }
+
+            int status = glClientWaitSync(this.fence, 0, 0L);
+            if (status != GL_ALREADY_SIGNALED && status != GL_CONDITION_SATISFIED) {
+                return false;
+            }
+            glDeleteSync(this.fence);
+            this.fence = 0L;
+
+            // Particles were moved to different slots since the copy was made, so the results no longer line up
+            if (this.readbackVersion != storage.getLayoutVersion()) {
+                return false;
+            }
+
+            this.read(storage, this.readbackBuffer, Math.min(this.readbackCount, storage.size()), this.readbackAnchor);
+            return true;
+        }
+
+        private void read(ParticleStorage storage, int buffer, int count, Vector3dc anchor) {
+            if (count <= 0) {
+                return;
+            }
+
+            long size = (long) count * PARTICLE_SIZE;
+            if (this.readbackData == null || this.readbackData.capacity() < size) {
+                this.readbackData = MemoryUtil.memRealloc(this.readbackData, (int) size);
+            }
+
+            glBindBuffer(GL_COPY_READ_BUFFER, buffer);
+            nglGetBufferSubData(GL_COPY_READ_BUFFER, 0, size, MemoryUtil.memAddress0(this.readbackData));
+            glBindBuffer(GL_COPY_READ_BUFFER, 0);
+
+            double[] positions = storage.getPositions();
+            double[] velocities = storage.getVelocities();
+            FloatBuffer data = this.readbackData.asFloatBuffer();
+            for (int i = 0; i < count; i++) {
+                int offset = i * 3;
+                int particle = i * 12;
+                positions[offset] = data.get(particle + 4) + anchor.x();
+                positions[offset + 1] = data.get(particle + 5) + anchor.y();
+                positions[offset + 2] = data.get(particle + 6) + anchor.z();
+                velocities[offset] = data.get(particle + 8);
+                velocities[offset + 1] = data.get(particle + 9);
+                velocities[offset + 2] = data.get(particle + 10);
+            }
+        }
+
+        /**
+         * Waits for the latest results and copies them into the CPU storage. Only used when switching an emitter back to the CPU.
+         *
+         * @param storage The storage to write positions and velocities into
+         */
+        public void finish(ParticleStorage storage) {
+            if (this.version != storage.getLayoutVersion()) {
+                return;
+            }
+            this.read(storage, this.buffers[this.current], Math.min(this.count, storage.size()), this.anchor);
+        }
+
+        /**
+         * @param storage The storage of the emitter
+         * @return Whether the latest results have one entry for each particle in the same slot as the storage
+         */
+        public boolean isInSync(ParticleStorage storage) {
+            return this.count > 0 && this.count == storage.size() && this.version == storage.getLayoutVersion();
+        }
+
+        /**
+         * @return The buffer with the latest results. Each particle is {@value #PARTICLE_SIZE} bytes, starting with the previous and current position
+         */
+        public int getRenderBuffer() {
+            return this.buffers[this.current];
+        }
+
+        /**
+         * @return The position all particle positions are relative to
+         */
+        public Vector3dc getAnchor() {
+            return this.anchor;
+        }
+
+        @Override
+        public void free() {
+            if (this.fence != 0L) {
+                glDeleteSync(this.fence);
+                this.fence = 0L;
+            }
+            this.blocks[0].free();
+            this.blocks[1].free();
+            glDeleteBuffers(this.buffers);
+            glDeleteBuffers(this.readbackBuffer);
+            if (this.readbackData != null) {
+                MemoryUtil.memFree(this.readbackData);
+                this.readbackData = null;
+            }
+        }
+    }
+}
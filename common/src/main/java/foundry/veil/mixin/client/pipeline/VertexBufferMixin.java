@@ -7,6 +7,7 @@ import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.client.render.shader.program.ShaderProgram;
 import foundry.veil.ext.VertexBufferExtension;
 import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.Unique;
@@ -15,6 +16,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyArg;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import static org.lwjgl.opengl.ARBIndirectParameters.glMultiDrawElementsIndirectCountARB;
 import static org.lwjgl.opengl.GL11C.glDrawArrays;
 import static org.lwjgl.opengl.GL11C.glGetInteger;
 import static org.lwjgl.opengl.GL15C.GL_ELEMENT_ARRAY_BUFFER;
@@ -23,7 +25,10 @@ import static org.lwjgl.opengl.GL20C.GL_CURRENT_PROGRAM;
 import static org.lwjgl.opengl.GL31C.glDrawArraysInstanced;
 import static org.lwjgl.opengl.GL31C.glDrawElementsInstanced;
 import static org.lwjgl.opengl.GL40C.GL_PATCHES;
+import static org.lwjgl.opengl.GL42C.glDrawArraysInstancedBaseInstance;
+import static org.lwjgl.opengl.GL42C.glDrawElementsInstancedBaseInstance;
 import static org.lwjgl.opengl.GL43C.glMultiDrawElementsIndirect;
+import static org.lwjgl.opengl.GL46C.glMultiDrawElementsIndirectCount;
 
 @Mixin(VertexBuffer.class)
 public abstract class VertexBufferMixin implements VertexBufferExtension {
@@ -56,6 +61,15 @@ public abstract class VertexBufferMixin implements VertexBufferExtension {
         }
     }
 
+    @Override
+    public void veil$drawInstanced(int instances, int baseInstance) {
+        if (!RenderSystem.isOnRenderThread()) {
+            RenderSystem.recordRenderCall(() -> this._veil$drawInstanced(instances, baseInstance));
+        } else {
+            this._veil$drawInstanced(instances, baseInstance);
+        }
+    }
+
     @Override
     public void veil$drawIndirect(long indirect, int drawCount, int stride) {
         if (!RenderSystem.isOnRenderThread()) {
@@ -65,6 +79,15 @@ public abstract class VertexBufferMixin implements VertexBufferExtension {
         }
     }
 
+    @Override
+    public void veil$drawIndirectCount(long indirect, long drawCount, int maxDrawCount, int stride) {
+        if (!RenderSystem.isOnRenderThread()) {
+            RenderSystem.recordRenderCall(() -> this._veil$drawIndirectCount(indirect, drawCount, maxDrawCount, stride));
+        } else {
+            this._veil$drawIndirectCount(indirect, drawCount, maxDrawCount, stride);
+        }
+    }
+
     @Override
     public int veil$getIndexCount() {
         return this.indexCount;
@@ -114,6 +137,24 @@ public abstract class VertexBufferMixin implements VertexBufferExtension {
         glDrawElementsInstanced(this.veil$getDrawMode(this.mode.asGLMode), this.indexCount, this.getIndexType().asGLType, 0L, instances);
     }
 
+    @Unique
+    private void _veil$drawInstanced(int instances, int baseInstance) {
+        if (baseInstance == 0) {
+            this._veil$drawInstanced(instances);
+            return;
+        }
+
+        if (this.mode == VertexFormat.Mode.QUADS) {
+            ShaderProgram shader = VeilRenderSystem.getShader();
+            if (shader != null && shader.hasTesselation() && shader.getProgram() == glGetInteger(GL_CURRENT_PROGRAM)) {
+                glDrawArraysInstancedBaseInstance(GL_PATCHES, 0, this.indexCount * 4 / 6, instances, baseInstance);
+                return;
+            }
+        }
+
+        glDrawElementsInstancedBaseInstance(this.veil$getDrawMode(this.mode.asGLMode), this.indexCount, this.getIndexType().asGLType, 0L, instances, baseInstance);
+    }
+
     @Unique
     private void _veil$drawIndirect(long indirect, int drawCount, int stride) {
         if (this.sequentialIndices != null) {
@@ -124,4 +165,23 @@ public abstract class VertexBufferMixin implements VertexBufferExtension {
             glMultiDrawElementsIndirect(this.veil$getDrawMode(this.mode.asGLMode), this.indexType.asGLType, indirect, drawCount, stride);
         }
     }
+
+    @Unique
+    private void _veil$drawIndirectCount(long indirect, long drawCount, int maxDrawCount, int stride) {
+        int indexType;
+        if (this.sequentialIndices != null) {
+            this.sequentialIndices.bind(this.indexCount);
+            indexType = this.sequentialIndices.type().asGLType;
+        } else {
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.indexBufferId);
+            indexType = this.indexType.asGLType;
+        }
+
+        int mode = this.veil$getDrawMode(this.mode.asGLMode);
+        if (GL.getCapabilities().OpenGL46) {
+            glMultiDrawElementsIndirectCount(mode, indexType, indirect, drawCount, maxDrawCount, stride);
+        } else {
+            glMultiDrawElementsIndirectCountARB(mode, indexType, indirect, drawCount, maxDrawCount, stride);
+        }
+    }
 }
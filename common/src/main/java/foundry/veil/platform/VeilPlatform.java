@@ -1,6 +1,7 @@
 package foundry.veil.platform;
 
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Manages common platform-specific features.
@@ -21,6 +22,14 @@ public interface VeilPlatform {
      */
     boolean isModLoaded(String modId);
 
+    /**
+     * Retrieves the version of a loaded mod.
+     *
+     * @param modId The mod to get the version of
+     * @return The version of the mod or <code>null</code> if it is not loaded
+     */
+    @Nullable String getModVersion(String modId);
+
     /**
      * @return Whether Sodium is present
      */
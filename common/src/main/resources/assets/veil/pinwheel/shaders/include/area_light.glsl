@@ -0,0 +1,25 @@
+// acos approximation
+// faster and also doesn't flicker weirdly
+float sacos( float x )
+{
+    float y = abs( clamp(x,-1.0,1.0) );
+    float z = (-0.168577*y + 1.56723) * sqrt(1.0 - y);
+    return mix( 0.5*3.1415927, z, sign(x) );
+}
+
+struct AreaLightResult { vec3 position; float angle; };
+AreaLightResult closestPointOnPlaneAndAngle(vec3 point, mat4 planeMatrix, vec2 planeSize) {
+    // no idea why i need to do this
+    planeMatrix[3].xyz *= -1.0;
+    // transform the point to the plane's local space
+    vec3 localSpacePoint = (planeMatrix * vec4(point, 1.0)).xyz;
+    // clamp position
+    vec3 localSpacePointOnPlane = vec3(clamp(localSpacePoint.xy, -planeSize, planeSize), 0);
+
+    // calculate the angles
+    vec3 direction = normalize(localSpacePoint - localSpacePointOnPlane);
+    float angle = sacos(dot(direction, vec3(0.0, 0.0, 1.0)));
+
+    // transform back to global space
+    return AreaLightResult((inverse(planeMatrix) * vec4(localSpacePointOnPlane, 1.0)).xyz, angle);
+}
@@ -0,0 +1,38 @@
+// Packs and unpacks the compact deferred buffer encodings.
+// Normals use octahedral encoding and are stored in a two channel signed normalized buffer.
+// Materials are stored in an RGB10_A2UI buffer with the material id in red, transparency in green, and the vanilla light coordinates in blue.
+
+vec2 octahedronWrap(vec2 v) {
+    return (1.0 - abs(v.yx)) * vec2(v.x >= 0.0 ? 1.0 : -1.0, v.y >= 0.0 ? 1.0 : -1.0);
+}
+
+vec2 encodeNormal(vec3 normal) {
+    normal /= abs(normal.x) + abs(normal.y) + abs(normal.z);
+    return normal.z >= 0.0 ? normal.xy : octahedronWrap(normal.xy);
+}
+
+vec3 decodeNormal(vec2 encoded) {
+    vec3 normal = vec3(encoded, 1.0 - abs(encoded.x) - abs(encoded.y));
+    float t = max(-normal.z, 0.0);
+    normal.x += normal.x >= 0.0 ? -t : t;
+    normal.y += normal.y >= 0.0 ? -t : t;
+    return normalize(normal);
+}
+
+// Vanilla light only has 16 levels, so 5 bits for block and sky light is enough
+uvec4 packMaterial(uint material, uint transparency, vec2 vanillaLight) {
+    uvec2 light = uvec2(clamp(vanillaLight, 0.0, 1.0) * 31.0 + 0.5);
+    return uvec4(material, transparency, (light.x << 5u) | light.y, 1u);
+}
+
+uint unpackMaterial(uvec4 data) {
+    return data.r;
+}
+
+uint unpackTransparency(uvec4 data) {
+    return data.g;
+}
+
+vec2 unpackVanillaLight(uvec4 data) {
+    return vec2((data.b >> 5u) & 31u, data.b & 31u) / 31.0;
+}
@@ -0,0 +1,34 @@
+#include veil:camera
+
+// Number of clusters along the screen x, screen y, and depth axes
+uniform ivec3 ClusterGrid;
+// Number of light indices stored for each cluster
+uniform int MaxClusterLights;
+
+int clusterCount() {
+    return ClusterGrid.x * ClusterGrid.y * ClusterGrid.z;
+}
+
+// Depth slices are spaced exponentially so clusters stay roughly cube shaped
+float clusterSliceDepth(int slice) {
+    return VeilCamera.NearPlane * pow(VeilCamera.FarPlane / VeilCamera.NearPlane, float(slice) / float(ClusterGrid.z));
+}
+
+int clusterSlice(float viewDepth) {
+    float slice = log(max(viewDepth, VeilCamera.NearPlane) / VeilCamera.NearPlane) / log(VeilCamera.FarPlane / VeilCamera.NearPlane);
+    return clamp(int(slice * float(ClusterGrid.z)), 0, ClusterGrid.z - 1);
+}
+
+int clusterIndex(ivec3 cluster) {
+    return cluster.x + ClusterGrid.x * (cluster.y + ClusterGrid.y * cluster.z);
+}
+
+int clusterIndex(vec2 screenUv, float viewDepth) {
+    ivec2 tile = clamp(ivec2(screenUv * vec2(ClusterGrid.xy)), ivec2(0), ClusterGrid.xy - 1);
+    return clusterIndex(ivec3(tile, clusterSlice(viewDepth)));
+}
+
+// Light indices for each cluster are stored after the light count of every cluster
+uint clusterLightOffset(int cluster) {
+    return uint(clusterCount() + cluster * MaxClusterLights);
+}
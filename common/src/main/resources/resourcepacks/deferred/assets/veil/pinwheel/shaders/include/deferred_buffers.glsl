@@ -1,6 +1,7 @@
+#include veil:deferred_packing
+
 layout(location = 0) out vec4 fragColor;
 layout(location = 1) out vec4 fragAlbedo;
-layout(location = 2) out vec4 fragNormal;
-layout(location = 3) out ivec4 fragMaterial;
-layout(location = 4) out vec4 fragLightSampler;
-layout(location = 5) out vec4 fragLightMap;
+layout(location = 2) out vec2 fragNormal;
+layout(location = 3) out uvec4 fragMaterial;
+layout(location = 4) out vec4 fragLightMap;
@@ -0,0 +1,149 @@
+import com.mojang.blaze3d.vertex.PoseStack;
+import foundry.veil.api.client.graveyard.AnimationProperties;
+import foundry.veil.api.client.graveyard.AnimationScheduler;
+import foundry.veil.api.client.graveyard.constraint.InverseKinematicsConstraint;
+import foundry.veil.api.client.graveyard.skeleton.InterpolatedBone;
+import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeleton;
+import foundry.veil.api.client.graveyard.skeleton.InterpolatedSkeletonParent;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Tag("benchmark")
+public class AnimationSchedulerBenchmark {
+
+    private static final int TICKS = 100;
+    private static final int LEGS = 6;
+
+    @Test
+    void testSpeed() {
+        try (AnimationScheduler scheduler = new AnimationScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 1, TimeUnit.HOURS)) {
+            // Load classes
+            for (int i = 0; i < 5; i++) {
+                this.runSerial(createEntities(50));
+                this.runParallel(scheduler, createEntities(50));
+            }
+
+            for (int count : new int[]{50, 200, 1000}) {
+                List<Entity> serialEntities = createEntities(count);
+                List<Entity> parallelEntities = createEntities(count);
+
+                long start = System.nanoTime();
+                this.runSerial(serialEntities);
+                long serialEnd = System.nanoTime();
+                this.runParallel(scheduler, parallelEntities);
+                long parallelEnd = System.nanoTime();
+
+                System.out.printf("%d entities: serial took %.2fms/tick, parallel took %.2fms/tick%n", count, (serialEnd - start) / 1_000_000.0F / TICKS, (parallelEnd - serialEnd) / 1_000_000.0F / TICKS);
+                Assertions.assertEquals(0, scheduler.getSkipped(), "Parallel run skipped skeletons");
+                assertSamePose(serialEntities, parallelEntities);
+            }
+        }
+    }
+
+    /**
+     * The previous implementation that ticked every skeleton on the main thread, kept as a baseline.
+     */
+    private void runSerial(List<Entity> entities) {
+        for (int i = 0; i < TICKS; i++) {
+            for (Entity entity : entities) {
+                AnimationProperties properties = new AnimationProperties();
+                entity.getSkeleton().addAnimationProperties(properties, entity);
+                entity.getSkeleton().tick(properties);
+            }
+        }
+    }
+
+    private void runParallel(AnimationScheduler scheduler, List<Entity> entities) {
+        for (int i = 0; i < TICKS; i++) {
+            scheduler.tick(entities);
+        }
+    }
+
+    /**
+     * Makes sure ticking in parallel produced exactly the same bone transforms as ticking serially.
+     */
+    private static void assertSamePose(List<Entity> expected, List<Entity> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            List<InterpolatedBone> expectedBones = ((LeggedSkeleton) expected.get(i).getSkeleton()).bones;
+            List<InterpolatedBone> actualBones = ((LeggedSkeleton) actual.get(i).getSkeleton()).bones;
+            for (int j = 0; j < expectedBones.size(); j++) {
+                Matrix4f expectedTransform = new Matrix4f(expectedBones.get(j).getModelSpaceTransformMatrix(new PoseStack(), 1.0F));
+                Matrix4f actualTransform = new Matrix4f(actualBones.get(j).getModelSpaceTransformMatrix(new PoseStack(), 1.0F));
+                Assertions.assertEquals(expectedTransform, actualTransform, "Entity " + i + " bone " + expectedBones.get(j).identifier);
+            }
+        }
+    }
+
+    private static List<Entity> createEntities(int count) {
+        List<Entity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entity entity = new Entity();
+            entity.setSkeleton(new LeggedSkeleton());
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static class Entity implements InterpolatedSkeletonParent {
+
+        private InterpolatedSkeleton skeleton;
+
+        @Override
+        public InterpolatedSkeleton getSkeleton() {
+            return this.skeleton;
+        }
+
+        @Override
+        public void setSkeleton(InterpolatedSkeleton skeleton) {
+            this.skeleton = skeleton;
+        }
+    }
+
+    /**
+     * Mirrors a boss with several legs that are each placed with inverse kinematics.
+     */
+    private static class LeggedSkeleton extends InterpolatedSkeleton {
+
+        private final InterpolatedBone body;
+        private final List<InterpolatedBone> bones;
+
+        private LeggedSkeleton() {
+            this.body = new InterpolatedBone("body");
+            this.body.setInitialTransform(0, 16, 0, new Quaternionf());
+            this.bones = new ArrayList<>();
+            this.bones.add(this.body);
+            this.addBone(this.body, null);
+
+            List<InterpolatedBone> feet = new ArrayList<>(LEGS);
+            for (int i = 0; i < LEGS; i++) {
+                InterpolatedBone parent = this.body;
+                for (int j = 0; j < 3; j++) {
+                    InterpolatedBone bone = new InterpolatedBone("leg" + i + "_" + j);
+                    bone.setInitialTransform(j == 0 ? 4 : 0, -6, 0, new Quaternionf().rotationY((float) (Math.PI * 2 * i / LEGS)));
+                    bone.setParent(parent);
+                    this.bones.add(bone);
+                    this.addBone(bone, null);
+                    parent = bone;
+                }
+                feet.add(parent);
+            }
+            this.buildRoots();
+
+            for (InterpolatedBone foot : feet) {
+                this.addConstraint(new InverseKinematicsConstraint(foot, 3, 0, -6, 0, 0.1F));
+            }
+        }
+
+        @Override
+        public void animate(AnimationProperties properties) {
+            this.body.rotation.rotateY(0.05F);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import foundry.veil.api.opencl.CLBuffer;
+import foundry.veil.api.opencl.CLEnvironment;
+import foundry.veil.api.opencl.CLException;
+import foundry.veil.api.opencl.CLKernel;
+import foundry.veil.api.opencl.CLMappedRegion;
+import foundry.veil.api.opencl.VeilOpenCL;
+import net.minecraft.resources.ResourceLocation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opencl.CL10.*;
+
+@Tag("benchmark")
+public class CLBufferMapBenchmark {
+
+    private static final int ITERATIONS = 100;
+
+    // Keeps the reads from being optimized away
+    private int checksum;
+
+    @Test
+    void testSpeed() throws Exception {
+        try (VeilOpenCL cl = VeilOpenCL.get()) {
+            Assertions.assertNotNull(cl);
+
+            CLEnvironment environment = cl.getEnvironment();
+            if (environment == null) {
+                return; // No OpenCL ):
+            }
+
+            environment.loadProgram(new ResourceLocation("map"), """
+                    void kernel increment(global int* a) {
+                        a[get_global_id(0)]++;
+                    }
+                    """);
+            CLKernel kernel = environment.createKernel(new ResourceLocation("map"), "increment");
+            System.out.println("Device: " + environment.getDevice().name());
+
+            for (int size : new int[]{64 * 1024, 1024 * 1024, 16 * 1024 * 1024}) {
+                ByteBuffer data = MemoryUtil.memAlloc(size);
+                ByteBuffer hostData = MemoryUtil.memAlloc(size);
+                try {
+                    MemoryUtil.memSet(data, 0);
+                    MemoryUtil.memSet(hostData, 0);
+
+                    CLBuffer copied = kernel.createBuffer(CL_MEM_READ_WRITE, size);
+                    CLBuffer allocated = kernel.createBuffer(CL_MEM_READ_WRITE | CL_MEM_ALLOC_HOST_PTR, size);
+                    CLBuffer pinned = kernel.createBuffer(CL_MEM_READ_WRITE | CL_MEM_USE_HOST_PTR, hostData);
+
+                    // Allocated host memory starts undefined
+                    try (CLMappedRegion region = allocated.map(CL_MAP_WRITE, 0, size)) {
+                        MemoryUtil.memSet(region.data(), 0);
+                    }
+
+                    // Load classes and let the driver allocate everything
+                    this.runCopy(environment, kernel, copied, data);
+                    this.runMap(environment, kernel, allocated, size);
+                    this.runMap(environment, kernel, pinned, size);
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        this.runCopy(environment, kernel, copied, data);
+                    }
+                    long copyEnd = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        this.runMap(environment, kernel, allocated, size);
+                    }
+                    long allocEnd = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        this.runMap(environment, kernel, pinned, size);
+                    }
+                    long pinnedEnd = System.nanoTime();
+
+                    // Every run increments each int once, so all buffers should end up with the same contents
+                    try (CLMappedRegion region = allocated.map(CL_MAP_READ, 0, size)) {
+                        Assertions.assertEquals(data.getInt(0), region.data().getInt(0));
+                        Assertions.assertEquals(data.getInt(size - Integer.BYTES), region.data().getInt(size - Integer.BYTES));
+                    }
+                    try (CLMappedRegion region = pinned.map(CL_MAP_READ, 0, size)) {
+                        Assertions.assertEquals(data.getInt(0), region.data().getInt(0));
+                    }
+
+                    // Throughput includes the host writing and reading every value of the data each iteration
+                    System.out.printf("%dKB: copy took %.2fGB/s, mapped ALLOC_HOST_PTR took %.2fGB/s, mapped USE_HOST_PTR took %.2fGB/s%n",
+                            size / 1024,
+                            throughput(size, copyEnd - start),
+                            throughput(size, allocEnd - copyEnd),
+                            throughput(size, pinnedEnd - allocEnd));
+
+                    copied.free();
+                    allocated.free();
+                    pinned.free();
+                } finally {
+                    MemoryUtil.memFree(data);
+                    MemoryUtil.memFree(hostData);
+                }
+            }
+
+            kernel.free();
+        }
+    }
+
+    /**
+     * Writes every value on the host, uploads the data, runs the kernel and downloads and reads every value again through copies.
+     */
+    private void runCopy(CLEnvironment environment, CLKernel kernel, CLBuffer buffer, ByteBuffer data) throws CLException {
+        write(data);
+        buffer.write(0, data);
+        kernel.setPointers(0, buffer);
+        kernel.execute(data.capacity() / Integer.BYTES, 1);
+        buffer.read(0, data);
+        environment.finish();
+        this.checksum += read(data);
+    }
+
+    /**
+     * Writes every value in place, runs the kernel and reads every value of the result through a mapping.
+     */
+    private void runMap(CLEnvironment environment, CLKernel kernel, CLBuffer buffer, int size) throws CLException {
+        try (CLMappedRegion region = buffer.map(CL_MAP_READ | CL_MAP_WRITE, 0, size)) {
+            write(region.data());
+        }
+        kernel.setPointers(0, buffer);
+        kernel.execute(size / Integer.BYTES, 1);
+        try (CLMappedRegion region = buffer.map(CL_MAP_READ, 0, size)) {
+            this.checksum += read(region.data());
+        }
+        environment.finish();
+    }
+
+    /**
+     * Rewrites every value, so the host touches the whole region like a real producer would.
+     */
+    private static void write(ByteBuffer data) {
+        for (int i = 0; i < data.capacity(); i += Integer.BYTES) {
+            data.putInt(i, data.getInt(i));
+        }
+    }
+
+    /**
+     * Reads every value, so the host touches the whole region like a real consumer would.
+     */
+    private static int read(ByteBuffer data) {
+        int sum = 0;
+        for (int i = 0; i < data.capacity(); i += Integer.BYTES) {
+            sum += data.getInt(i);
+        }
+        return sum;
+    }
+
+    private static float throughput(int size, long nanos) {
+        // Each iteration moves the data to the device and back
+        return 2.0F * size * ITERATIONS / (nanos / 1_000_000_000.0F) / (1024.0F * 1024.0F * 1024.0F);
+    }
+}
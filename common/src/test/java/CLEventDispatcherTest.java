@@ -1,6 +1,8 @@
 import foundry.veil.api.opencl.CLBuffer;
 import foundry.veil.api.opencl.CLEnvironment;
+import foundry.veil.api.opencl.CLEvent;
 import foundry.veil.api.opencl.CLKernel;
+import foundry.veil.api.opencl.CLTaskGraph;
 import foundry.veil.api.opencl.VeilOpenCL;
 import net.minecraft.resources.ResourceLocation;
 import org.junit.jupiter.api.Assertions;
@@ -10,8 +12,10 @@ import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
 
 import static org.lwjgl.opencl.CL10.CL_MEM_READ_ONLY;
+import static org.lwjgl.opencl.CL10.CL_MEM_READ_WRITE;
 import static org.lwjgl.opencl.CL10.CL_MEM_WRITE_ONLY;
 
 public class CLEventDispatcherTest {
@@ -89,4 +93,65 @@ public class CLEventDispatcherTest {
             }
         }
     }
+
+    @Test
+    public void testTaskGraph() throws Exception {
+        try (VeilOpenCL cl = VeilOpenCL.get()) {
+            Assertions.assertNotNull(cl);
+
+            CLEnvironment environment = cl.getEnvironment();
+            if (environment == null) {
+                return; // No OpenCL ):
+            }
+
+            environment.loadProgram(new ResourceLocation("graph"), """
+                    void kernel twice(global const int* a, global int* b) {
+                        int index = get_global_id(0);
+                        b[index] = a[index] * 2;
+                    }
+                    """);
+
+            CLKernel first = environment.createKernel(new ResourceLocation("graph"), "twice");
+            CLKernel second = environment.createKernel(new ResourceLocation("graph"), "twice");
+            CLTaskGraph graph = environment.createTaskGraph(true);
+
+            IntBuffer data = MemoryUtil.memAllocInt(1_000_000);
+            IntBuffer outputData = MemoryUtil.memAllocInt(data.capacity());
+            try {
+                for (int i = 0; i < data.capacity(); i++) {
+                    data.put(i, i);
+                }
+
+                long size = (long) data.capacity() * Integer.BYTES;
+                CLBuffer input = first.createBuffer(CL_MEM_READ_ONLY, size);
+                CLBuffer intermediate = first.createBuffer(CL_MEM_READ_WRITE, size);
+                CLBuffer output = second.createBuffer(CL_MEM_WRITE_ONLY, size);
+
+                first.setPointers(0, input);
+                first.setPointers(1, intermediate);
+                second.setPointers(0, intermediate);
+                second.setPointers(1, output);
+
+                // The queue is out-of-order, so only the dependencies keep these in sequence
+                CLEvent upload = graph.write(input, 0, data);
+                CLEvent firstPass = graph.execute(first, data.capacity(), 1, upload);
+                CLEvent secondPass = graph.execute(second, data.capacity(), 1, firstPass);
+                CLEvent download = graph.read(output, 0, outputData, secondPass);
+                download.future().thenRun(() -> System.out.println("Read"));
+
+                graph.submit().get(10, TimeUnit.SECONDS);
+                Assertions.assertTrue(download.future().isDone());
+
+                for (int i = 0; i < outputData.capacity(); i++) {
+                    Assertions.assertEquals(data.get(i) * 4, outputData.get(i));
+                }
+            } finally {
+                graph.free();
+                first.free();
+                second.free();
+                MemoryUtil.memFree(data);
+                MemoryUtil.memFree(outputData);
+            }
+        }
+    }
 }
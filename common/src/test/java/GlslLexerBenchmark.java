@@ -0,0 +1,147 @@
+import foundry.veil.impl.glsl.GlslLexer;
+import foundry.veil.impl.glsl.GlslSyntaxException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Tag("benchmark")
+public class GlslLexerBenchmark {
+
+    private static final String[] VANILLA_SHADERS = {
+            "position", "position_color", "position_tex", "position_tex_color", "particle",
+            "rendertype_solid", "rendertype_cutout", "rendertype_translucent", "rendertype_lines",
+            "rendertype_entity_cutout", "rendertype_entity_translucent", "rendertype_text", "rendertype_end_portal"
+    };
+    // Repeat the Veil sources into one shader several thousand lines long
+    private static final int VEIL_REPEAT = 10;
+
+    @Test
+    void testSpeed() throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (String name : VANILLA_SHADERS) {
+            for (String extension : new String[]{".vsh", ".fsh"}) {
+                String source = this.readResource("/assets/minecraft/shaders/core/" + name + extension);
+                if (source != null) {
+                    sources.put(name + extension, source);
+                }
+            }
+        }
+
+        String veil = String.join("\n", this.readVeilShaders());
+        sources.put("veil (" + veil.lines().count() * VEIL_REPEAT + " lines)", (veil + "\n").repeat(VEIL_REPEAT));
+
+        // Load classes
+        for (int i = 0; i < 3; i++) {
+            for (String source : sources.values()) {
+                GlslLexer.createTokens(source);
+                RegexLexer.createTokens(source);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            String source = entry.getValue();
+
+            long start = System.nanoTime();
+            GlslLexer.Token[] tokens = GlslLexer.createTokens(source);
+            long lexerEnd = System.nanoTime();
+            GlslLexer.Token[] regexTokens = RegexLexer.createTokens(source);
+            long regexEnd = System.nanoTime();
+
+            Assertions.assertArrayEquals(regexTokens, tokens, entry.getKey());
+            System.out.printf("%s: %d tokens, lexer took %.2fms, regex took %.2fms%n", entry.getKey(), tokens.length, (lexerEnd - start) / 1_000_000.0F, (regexEnd - lexerEnd) / 1_000_000.0F);
+        }
+    }
+
+    private String readResource(String name) throws IOException {
+        try (InputStream stream = GlslLexerBenchmark.class.getResourceAsStream(name)) {
+            return stream != null ? new String(stream.readAllBytes(), StandardCharsets.UTF_8) : null;
+        }
+    }
+
+    private List<String> readVeilShaders() throws IOException, URISyntaxException {
+        URL root = GlslLexerBenchmark.class.getResource("/assets/veil/pinwheel/shaders");
+        Assertions.assertNotNull(root, "Veil shaders are not on the classpath");
+
+        List<String> sources = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(Path.of(root.toURI()))) {
+            for (Path file : files.filter(path -> path.toString().matches(".+\\.(vsh|fsh|gsh|comp|glsl)")).sorted().toList()) {
+                sources.add(Files.readString(file));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * The previous lexer, which tries every token regex at the cursor for each token.
+     * This anchors the patterns with <code>lookingAt</code> instead of searching the rest of the source with <code>find</code>,
+     * so it is already faster than the original implementation.
+     */
+    private static class RegexLexer {
+
+        private static final Map<GlslLexer.TokenType, Pattern> PATTERNS = new EnumMap<>(GlslLexer.TokenType.class);
+
+        static {
+            PATTERNS.put(GlslLexer.TokenType.DIRECTIVE, Pattern.compile("#.*"));
+            PATTERNS.put(GlslLexer.TokenType.COMMENT, Pattern.compile("\\/\\/.*"));
+            PATTERNS.put(GlslLexer.TokenType.MULTI_COMMENT, Pattern.compile("\\/\\*[^*]*\\*+(?:[^/*][^*]*\\*+)*\\/"));
+            PATTERNS.put(GlslLexer.TokenType.FLOATING_CONSTANT, Pattern.compile("(?:(?:\\d+\\.\\d+|\\d+\\.|\\.\\d+)(?:[eE][+-]?\\d+)?(?:f|F|lf|LF)?)|(?:\\d+)(?:\\.|[eE][+-]?\\d+)(?:f|F|lf|LF)?"));
+            PATTERNS.put(GlslLexer.TokenType.UINTEGER_HEXADECIMAL_CONSTANT, Pattern.compile("0[xX][0-9a-fA-F]*[uU]?"));
+            PATTERNS.put(GlslLexer.TokenType.UINTEGER_OCTAL_CONSTANT, Pattern.compile("0[0-7]*[uU]?"));
+            PATTERNS.put(GlslLexer.TokenType.UINTEGER_DECIMAL_CONSTANT, Pattern.compile("[1-9][\\d]*[uU]?"));
+            PATTERNS.put(GlslLexer.TokenType.INTEGER_HEXADECIMAL_CONSTANT, Pattern.compile("0[xX][0-9a-fA-F]*"));
+            PATTERNS.put(GlslLexer.TokenType.INTEGER_OCTAL_CONSTANT, Pattern.compile("0[0-7]*"));
+            PATTERNS.put(GlslLexer.TokenType.INTEGER_DECIMAL_CONSTANT, Pattern.compile("[1-9][\\d]*"));
+            PATTERNS.put(GlslLexer.TokenType.IDENTIFIER, Pattern.compile("[_a-zA-Z][\\d_a-zA-Z]*"));
+            for (GlslLexer.TokenType type : GlslLexer.TokenType.values()) {
+                String[] literals = type.getLiterals();
+                if (literals.length > 0) {
+                    PATTERNS.put(type, Pattern.compile(String.join("|", Arrays.stream(literals).map(Pattern::quote).toList())));
+                }
+            }
+        }
+
+        private static GlslLexer.Token[] createTokens(String input) throws GlslSyntaxException {
+            List<GlslLexer.Token> tokens = new ArrayList<>();
+            int cursor = skipWhitespace(input, 0);
+            while (cursor < input.length()) {
+                GlslLexer.TokenType longest = null;
+                int length = 0;
+                for (Map.Entry<GlslLexer.TokenType, Pattern> entry : PATTERNS.entrySet()) {
+                    Matcher matcher = entry.getValue().matcher(input).region(cursor, input.length());
+                    if (matcher.lookingAt() && matcher.end() - cursor > length) {
+                        length = matcher.end() - cursor;
+                        longest = entry.getKey();
+                    }
+                }
+
+                if (longest == null) {
+                    throw new GlslSyntaxException("Unknown Token", input, cursor + 1);
+                }
+                if (longest != GlslLexer.TokenType.COMMENT && longest != GlslLexer.TokenType.MULTI_COMMENT) {
+                    tokens.add(new GlslLexer.Token(longest, input.substring(cursor, cursor + length)));
+                }
+                cursor = skipWhitespace(input, cursor + length);
+            }
+            return tokens.toArray(GlslLexer.Token[]::new);
+        }
+
+        private static int skipWhitespace(String input, int cursor) {
+            while (cursor < input.length() && Character.isWhitespace(input.charAt(cursor))) {
+                cursor++;
+            }
+            return cursor;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import foundry.veil.impl.TickTaskSchedulerImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Tag("benchmark")
+public class TickTaskSchedulerBenchmark {
+
+    private static final int TICKS = 200;
+
+    @Test
+    void testSpeed() {
+        // Load classes
+        for (int i = 0; i < 5; i++) {
+            this.runWheel(10_000);
+            this.runQueue(10_000);
+        }
+
+        for (int tasks : new int[]{10_000, 50_000, 100_000}) {
+            long start = System.nanoTime();
+            this.runWheel(tasks);
+            long wheelEnd = System.nanoTime();
+            this.runQueue(tasks);
+            long queueEnd = System.nanoTime();
+
+            System.out.printf("%d tasks: timing wheel took %.1fms, priority queue took %.1fms%n", tasks, (wheelEnd - start) / 1_000_000.0F, (queueEnd - wheelEnd) / 1_000_000.0F);
+        }
+    }
+
+    /**
+     * Mirrors emitters: one periodic spawn task and one delayed remove task that gets cancelled and rescheduled.
+     */
+    private void runWheel(int tasks) {
+        Random random = new Random(0);
+        TickTaskSchedulerImpl scheduler = new TickTaskSchedulerImpl();
+        for (int i = 0; i < tasks / 2; i++) {
+            scheduler.scheduleAtFixedRate(() -> {
+            }, 0, 1 + random.nextInt(10));
+            scheduler.schedule(() -> {
+            }, 1 + random.nextInt(1000)).cancel(false);
+            scheduler.schedule(() -> {
+            }, 1 + random.nextInt(1000));
+        }
+        for (int i = 0; i < TICKS; i++) {
+            scheduler.run();
+        }
+    }
+
+    private void runQueue(int tasks) {
+        Random random = new Random(0);
+        PriorityQueueScheduler scheduler = new PriorityQueueScheduler();
+        for (int i = 0; i < tasks / 2; i++) {
+            scheduler.scheduleAtFixedRate(() -> {
+            }, 0, 1 + random.nextInt(10));
+            scheduler.schedule(() -> {
+            }, 1 + random.nextInt(1000)).set(true);
+            scheduler.schedule(() -> {
+            }, 1 + random.nextInt(1000));
+        }
+        for (int i = 0; i < TICKS; i++) {
+            scheduler.run();
+        }
+    }
+
+    /**
+     * The previous scheduler implementation backed by a priority queue, kept as a baseline.
+     */
+    private static class PriorityQueueScheduler {
+
+        private final Queue<Task> tasks = new PriorityBlockingQueue<>();
+        private long tick;
+
+        private void run() {
+            Iterator<Task> iterator = this.tasks.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.cancelled.get()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (this.tick < task.executionTick) {
+                    break;
+                }
+
+                task.runnable.run();
+                iterator.remove();
+            }
+            this.tick++;
+        }
+
+        private AtomicBoolean schedule(Runnable command, int delay) {
+            Task task = new Task(command, new AtomicBoolean(), this.tick + delay);
+            this.tasks.add(task);
+            return task.cancelled;
+        }
+
+        private void scheduleAtFixedRate(Runnable command, int initialDelay, int period) {
+            this.tasks.add(this.schedule(command, new AtomicBoolean(), initialDelay, period));
+        }
+
+        private Task schedule(Runnable command, AtomicBoolean cancelled, int delay, int period) {
+            return new Task(() -> {
+                command.run();
+                this.tasks.add(this.schedule(command, cancelled, period, period));
+            }, cancelled, this.tick + delay);
+        }
+
+        private record Task(Runnable runnable, AtomicBoolean cancelled, long executionTick) implements Comparable<Task> {
+
+            @Override
+            public int compareTo(Task o) {
+                return Long.compare(this.executionTick, o.executionTick);
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ import foundry.veil.impl.TickTaskSchedulerImpl;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,4 +32,28 @@ public class TickTaskSchedulerTest {
         scheduler.shutdown();
         Assertions.assertEquals(51, ticks.get());
     }
+
+    @Test
+    public void testOrder() {
+        TickTaskSchedulerImpl scheduler = new TickTaskSchedulerImpl();
+        List<Integer> order = new ArrayList<>();
+        scheduler.schedule(() -> order.add(5000), 5000);
+        scheduler.schedule(() -> order.add(10), 10);
+        scheduler.schedule(() -> order.add(70), 70);
+        scheduler.schedule(() -> order.add(2), 2);
+        scheduler.schedule(() -> order.add(70), 70);
+        CompletableFuture<?> cancelled = scheduler.schedule(() -> order.add(-1), 64);
+        cancelled.cancel(false);
+
+        int[] tick = new int[1];
+        CompletableFuture<?> future = scheduler.schedule(() -> Assertions.assertEquals(4100, tick[0]), 4100);
+        for (; tick[0] < 5001; tick[0]++) {
+            scheduler.run();
+        }
+        scheduler.shutdown();
+
+        Assertions.assertEquals(List.of(2, 10, 70, 70, 5000), order);
+        Assertions.assertTrue(future.isDone());
+        Assertions.assertFalse(future.isCompletedExceptionally());
+    }
 }
@@ -3,6 +3,7 @@ package foundry.veil.fabric.platform;
 import foundry.veil.platform.VeilPlatform;
 import net.fabricmc.loader.api.FabricLoader;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 @ApiStatus.Internal
 public class FabricVeilPlatform implements VeilPlatform {
@@ -17,6 +18,11 @@ public class FabricVeilPlatform implements VeilPlatform {
         return FabricLoader.getInstance().isModLoaded(modId);
     }
 
+    @Override
+    public @Nullable String getModVersion(String modId) {
+        return FabricLoader.getInstance().getModContainer(modId).map(container -> container.getMetadata().getVersion().getFriendlyString()).orElse(null);
+    }
+
     @Override
     public boolean isSodiumLoaded() {
         return this.isModLoaded("sodium");
@@ -2,7 +2,10 @@ package foundry.veil.forge.platform;
 
 import foundry.veil.platform.VeilPlatform;
 import net.minecraftforge.fml.loading.FMLLoader;
+import net.minecraftforge.fml.loading.moddiscovery.ModFileInfo;
+import net.minecraftforge.forgespi.language.IModInfo;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 @ApiStatus.Internal
 public class ForgeVeilPlatform implements VeilPlatform {
@@ -17,6 +20,21 @@ public class ForgeVeilPlatform implements VeilPlatform {
         return FMLLoader.getLoadingModList().getModFileById(modId) != null;
     }
 
+    @Override
+    public @Nullable String getModVersion(String modId) {
+        ModFileInfo file = FMLLoader.getLoadingModList().getModFileById(modId);
+        if (file == null) {
+            return null;
+        }
+
+        for (IModInfo mod : file.getMods()) {
+            if (modId.equals(mod.getModId())) {
+                return mod.getVersion().toString();
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean isSodiumLoaded() {
         return this.isModLoaded("rubidium");